@@ -0,0 +1,72 @@
+package com.powerreviews.jdbc.benchmarks;
+
+import com.powerreviews.jdbc.redis.JedisFactory;
+import com.powerreviews.jdbc.redis.RedisClient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Running a query whose result is cached, from the lookup to the last value read, against an
+ * in-process Redis server
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CacheHitBenchmark {
+    @Param({"10x5", "10000x20"})
+    public String shape;
+
+    // Size of the near cache, 0 to read every result from Redis
+    @Param({"0", "268435456"})
+    public long l1MaxBytes;
+
+    private FakeRedis redis;
+    private RedisClient redisClient;
+    private Statement statement;
+    private String sql;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        this.redis = new FakeRedis();
+        String url = "jdbc:redshiftcached://localhost:5439/benchmarks?redisUrl=127.0.0.1&redisPort=" + this.redis.getPort()
+                + (this.l1MaxBytes > 0 ? "&l1MaxBytes=" + this.l1MaxBytes : "");
+        this.redisClient = new RedisClient(url, null, new JedisFactory());
+        this.sql = "select * from reviews /* " + this.shape + " */";
+        // The database, only queried to fill the cache
+        this.statement = (Statement)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, method, args) -> "executeQuery".equals(method.getName()) ? ResultSets.create(this.shape) : null);
+        CodecBenchmark.read(this.redisClient.executeQuery(this.statement, this.sql), new Blackhole(
+                "Today's password is swordfish. I understand instantiating Blackholes directly is dangerous."));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.redisClient.close();
+        this.redis.close();
+    }
+
+    @Benchmark
+    public void hit(Blackhole blackhole) throws SQLException {
+        CodecBenchmark.read(this.redisClient.executeQuery(this.statement, this.sql), blackhole);
+    }
+}
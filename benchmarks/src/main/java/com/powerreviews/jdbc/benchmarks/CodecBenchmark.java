@@ -0,0 +1,75 @@
+package com.powerreviews.jdbc.benchmarks;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.powerreviews.jdbc.codec.CachePayload;
+import com.powerreviews.jdbc.codec.Compression;
+import com.powerreviews.jdbc.codec.ResultSetDecoder;
+import com.powerreviews.jdbc.codec.ResultSetEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing result sets into cache payloads, and reading them back
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+    // The default compression threshold of the driver
+    private static final int COMPRESSION_THRESHOLD = 1024;
+
+    @Param({"10x5", "10000x20", "wide"})
+    public String shape;
+
+    private MockResultSet resultSet;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws SQLException {
+        this.resultSet = ResultSets.create(this.shape);
+        this.payload = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() throws SQLException {
+        this.resultSet.beforeFirst();
+        return CachePayload.encode(null, ResultSetEncoder.encode(this.resultSet), Compression.LZ4, COMPRESSION_THRESHOLD);
+    }
+
+    @Benchmark
+    public void decode(Blackhole blackhole) throws IOException, SQLException {
+        ResultSet decoded = ResultSetDecoder.decode(CachePayload.decode(ByteBuffer.wrap(this.payload)).getBody());
+        read(decoded, blackhole);
+    }
+
+    /**
+     * Reads all the values of a result set
+     */
+    static void read(ResultSet resultSet, Blackhole blackhole) throws SQLException {
+        int columns = resultSet.getMetaData().getColumnCount();
+        while(resultSet.next()) {
+            for(int column = 1; column <= columns; column++) {
+                blackhole.consume(resultSet.getObject(column));
+            }
+        }
+    }
+}
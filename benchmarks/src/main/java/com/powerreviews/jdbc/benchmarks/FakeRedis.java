@@ -0,0 +1,192 @@
+package com.powerreviews.jdbc.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in-process server speaking enough of the Redis protocol for the cache hit path: GET, SET,
+ * SETEX, EXPIRE, EXISTS, DEL, PING and SELECT. Values are kept in memory and never expire, so
+ * that the benchmarks measure the driver and the network stack rather than a real Redis.
+ */
+public class FakeRedis implements Closeable {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    private final ServerSocket serverSocket;
+    private final ConcurrentMap<ByteBuffer, byte[]> values = new ConcurrentHashMap<>();
+
+    public FakeRedis() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(this::accept, "fake-redis-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * @return The port the server listens on, on the loopback address
+     */
+    public int getPort() {
+        return this.serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.serverSocket.close();
+    }
+
+    private void accept() {
+        while(!this.serverSocket.isClosed()) {
+            try {
+                Socket socket = this.serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread connection = new Thread(() -> serve(socket), "fake-redis-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                // The server has been closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try(Socket client = socket;
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            OutputStream out = new BufferedOutputStream(client.getOutputStream())) {
+            while(true) {
+                List<byte[]> command = readCommand(in);
+                if(command == null) {
+                    return;
+                }
+                execute(command, out);
+                // Pipelined commands are answered together
+                if(in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The client has disconnected
+        }
+    }
+
+    private void execute(List<byte[]> command, OutputStream out) throws IOException {
+        String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+        switch(name) {
+            case "GET":
+                writeBulk(out, this.values.get(ByteBuffer.wrap(command.get(1))));
+                break;
+            case "SET":
+                this.values.put(ByteBuffer.wrap(command.get(1)), command.get(2));
+                writeSimple(out, "OK");
+                break;
+            case "SETEX":
+                this.values.put(ByteBuffer.wrap(command.get(1)), command.get(3));
+                writeSimple(out, "OK");
+                break;
+            case "EXPIRE":
+            case "EXISTS":
+                writeInteger(out, this.values.containsKey(ByteBuffer.wrap(command.get(1))) ? 1 : 0);
+                break;
+            case "DEL":
+                long deleted = 0;
+                for(int i = 1; i < command.size(); i++) {
+                    deleted += this.values.remove(ByteBuffer.wrap(command.get(i))) != null ? 1 : 0;
+                }
+                writeInteger(out, deleted);
+                break;
+            case "PING":
+                writeSimple(out, "PONG");
+                break;
+            case "SELECT":
+            case "QUIT":
+                writeSimple(out, "OK");
+                break;
+            default:
+                out.write(("-ERR unknown command '" + name + "'").getBytes(StandardCharsets.US_ASCII));
+                out.write(CRLF);
+        }
+    }
+
+    /**
+     * @return The arguments of the next command, null if the client has disconnected
+     */
+    private static List<byte[]> readCommand(InputStream in) throws IOException {
+        int type = in.read();
+        if(type == -1) {
+            return null;
+        }
+        if(type != '*') {
+            throw new IOException("Unexpected command type: " + (char)type);
+        }
+        int count = Integer.parseInt(readLine(in));
+        List<byte[]> arguments = new ArrayList<>(count);
+        for(int i = 0; i < count; i++) {
+            if(in.read() != '$') {
+                throw new IOException("Bulk string expected");
+            }
+            byte[] argument = new byte[Integer.parseInt(readLine(in))];
+            int read = 0;
+            while(read < argument.length) {
+                int n = in.read(argument, read, argument.length - read);
+                if(n == -1) {
+                    throw new EOFException();
+                }
+                read += n;
+            }
+            readLine(in);
+            arguments.add(argument);
+        }
+        return arguments;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while((c = in.read()) != '\r') {
+            if(c == -1) {
+                throw new EOFException();
+            }
+            line.append((char)c);
+        }
+        in.read();
+        return line.toString();
+    }
+
+    private static void writeSimple(OutputStream out, String value) throws IOException {
+        out.write('+');
+        out.write(value.getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static void writeInteger(OutputStream out, long value) throws IOException {
+        out.write(':');
+        out.write(Long.toString(value).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+    }
+
+    private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+        if(value == null) {
+            out.write("$-1".getBytes(StandardCharsets.US_ASCII));
+            out.write(CRLF);
+            return;
+        }
+        out.write('$');
+        out.write(Integer.toString(value.length).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.write(value);
+        out.write(CRLF);
+    }
+}
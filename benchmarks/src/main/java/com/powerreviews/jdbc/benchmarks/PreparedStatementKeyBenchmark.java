@@ -0,0 +1,97 @@
+package com.powerreviews.jdbc.benchmarks;
+
+import com.powerreviews.jdbc.PreparedStatementWrapper;
+import com.powerreviews.jdbc.redis.JedisFactory;
+import com.powerreviews.jdbc.redis.PreparedQuery;
+import com.powerreviews.jdbc.redis.RedisClient;
+import com.powerreviews.jdbc.util.Murmur3;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Binding the parameters of a prepared statement and building the key its result is cached
+ * under, without looking the result up. In raw mode the query is written as the key, in hash mode
+ * the statement and its values are hashed without writing the query.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PreparedStatementKeyBenchmark {
+    @Param({"1", "10", "50", "200"})
+    public int parameters;
+
+    @Param({"raw", "hash"})
+    public String keyMode;
+
+    private String sql;
+    private KeyCapturingClient redisClient;
+    private PreparedStatement wrappedStatement;
+    private PreparedStatementWrapper statement;
+
+    /**
+     * Returns no result and keeps the key of the query it has been given instead of looking it up
+     */
+    private static class KeyCapturingClient extends RedisClient {
+        private final boolean hashKeys;
+        String key;
+
+        KeyCapturingClient(boolean hashKeys) {
+            // No Redis server: only the statement parsing and key building are measured
+            super("jdbc:redshiftcached://localhost:5439/benchmarks", null, new JedisFactory());
+            this.hashKeys = hashKeys;
+        }
+
+        @Override
+        public ResultSet executeQuery(PreparedStatement wrappedStatement, PreparedQuery query) {
+            if(this.hashKeys) {
+                Murmur3 murmur3 = new Murmur3();
+                query.hashTo(murmur3);
+                this.key = murmur3.hashHex();
+            } else {
+                StringBuilder sql = new StringBuilder();
+                query.appendTo(sql);
+                this.key = sql.toString();
+            }
+            return null;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        this.sql = Statements.withParameters(this.parameters);
+        this.redisClient = new KeyCapturingClient("hash".equals(this.keyMode));
+        this.wrappedStatement = ResultSets.noop(PreparedStatement.class);
+        this.statement = new PreparedStatementWrapper(null, this.wrappedStatement, this.sql, this.redisClient);
+    }
+
+    @Benchmark
+    public PreparedStatementWrapper prepare() {
+        return new PreparedStatementWrapper(null, this.wrappedStatement, this.sql, this.redisClient);
+    }
+
+    @Benchmark
+    public String executeQuery() throws SQLException {
+        for(int i = 1; i <= this.parameters; i++) {
+            this.statement.setInt(i, 100000 + i);
+        }
+        this.statement.executeQuery();
+        return this.redisClient.key;
+    }
+}
@@ -0,0 +1,92 @@
+package com.powerreviews.jdbc.benchmarks;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.MockResultSetMetaData;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Random;
+
+/**
+ * Representative result sets, and no-op JDBC objects for the benchmarks
+ */
+public class ResultSets {
+    // The column types cycled through by the mixed result sets
+    private static final int[] TYPES = {Types.INTEGER, Types.BIGINT, Types.VARCHAR, Types.DECIMAL, Types.TIMESTAMP};
+
+    private ResultSets() {
+    }
+
+    /**
+     * @param shape The shape of the result set: ROWSxCOLUMNS for mixed types, or "wide" for 1000
+     *              rows of 50 string columns
+     * @return A result set of that shape, with the same values for a given shape
+     */
+    public static MockResultSet create(String shape) {
+        if("wide".equals(shape)) {
+            return create(1000, 50, true);
+        }
+        String[] dimensions = shape.split("x");
+        return create(Integer.parseInt(dimensions[0]), Integer.parseInt(dimensions[1]), false);
+    }
+
+    private static MockResultSet create(int rows, int columns, boolean strings) {
+        Random random = new Random(rows * 31L + columns);
+        MockResultSet resultSet = new MockResultSet(rows + "x" + columns);
+        MockResultSetMetaData metaData = new MockResultSetMetaData();
+        metaData.setColumnCount(columns);
+        for(int column = 0; column < columns; column++) {
+            int type = strings ? Types.VARCHAR : TYPES[column % TYPES.length];
+            Object[] values = new Object[rows];
+            for(int row = 0; row < rows; row++) {
+                values[row] = value(type, random, strings);
+            }
+            String label = "column" + (column + 1);
+            resultSet.addColumn(label, values);
+            metaData.setColumnType(column + 1, type);
+            metaData.setColumnLabel(column + 1, label);
+            metaData.setColumnName(column + 1, label);
+        }
+        resultSet.setResultSetMetaData(metaData);
+        return resultSet;
+    }
+
+    private static Object value(int type, Random random, boolean longStrings) {
+        switch(type) {
+            case Types.INTEGER:
+                return random.nextInt(100000);
+            case Types.BIGINT:
+                return random.nextLong();
+            case Types.DECIMAL:
+                return BigDecimal.valueOf(random.nextInt(10000000), 2);
+            case Types.TIMESTAMP:
+                return new Timestamp(1500000000000L + random.nextInt(1000000000));
+            default:
+                // Strings repeat, as they do in the results of most queries
+                return (longStrings ? "a string value repeated in a wide result set, " : "value ") + random.nextInt(100);
+        }
+    }
+
+    /**
+     * @param type A JDBC interface
+     * @return An object whose methods do nothing and return null, 0 or false
+     */
+    public static <T> T noop(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(ResultSets.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Class<?> returnType = method.getReturnType();
+                    if(returnType == boolean.class) {
+                        return false;
+                    }
+                    if(returnType == int.class) {
+                        return 0;
+                    }
+                    if(returnType == long.class) {
+                        return 0L;
+                    }
+                    return null;
+                }));
+    }
+}
@@ -0,0 +1,42 @@
+package com.powerreviews.jdbc.benchmarks;
+
+import com.powerreviews.jdbc.util.SqlUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning the placeholders of a prepared statement into the template its cache keys are built from
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SqlUtilBenchmark {
+    @Param({"short", "long"})
+    public String statement;
+
+    private String sql;
+
+    @Setup
+    public void setUp() {
+        this.sql = "short".equals(this.statement) ? Statements.SHORT : Statements.LONG;
+    }
+
+    @Benchmark
+    public String tokenizeStatement() {
+        return SqlUtil.tokenizeStatement(this.sql);
+    }
+}
@@ -0,0 +1,48 @@
+package com.powerreviews.jdbc.benchmarks;
+
+/**
+ * Statements of the benchmarks
+ */
+public class Statements {
+    public static final String SHORT = "select * from reviews where merchant_id = ? and page_id = ?";
+
+    // A reporting query with literals, comments and 50 placeholders
+    public static final String LONG;
+
+    static {
+        StringBuilder sql = new StringBuilder()
+                .append("-- daily review counts\n")
+                .append("select r.merchant_id, r.page_id, date_trunc('day', r.created_date) as day,\n")
+                .append("       count(*) as reviews, avg(r.rating) as rating,\n")
+                .append("       sum(case when r.status = 'approved' then 1 else 0 end) as approved\n")
+                .append("from reviews r\n")
+                .append("join merchants m on m.merchant_id = r.merchant_id\n")
+                .append("left join pages p on p.page_id = r.page_id and p.locale = 'en_US'\n")
+                .append("where r.created_date between ? and ?\n")
+                .append("  and m.merchant_id in (");
+        for(int i = 0; i < 48; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        LONG = sql.append(")\n")
+                .append("  /* only the reviews which are not syndicated */\n")
+                .append("  and r.syndicated = false\n")
+                .append("group by 1, 2, 3\n")
+                .append("order by 1, 2, 3")
+                .toString();
+    }
+
+    private Statements() {
+    }
+
+    /**
+     * @param parameters The number of placeholders
+     * @return A query selecting the reviews with the given number of identifiers
+     */
+    public static String withParameters(int parameters) {
+        StringBuilder sql = new StringBuilder("select * from reviews where review_id in (");
+        for(int i = 0; i < parameters; i++) {
+            sql.append(i > 0 ? ", ?" : "?");
+        }
+        return sql.append(")").toString();
+    }
+}
@@ -0,0 +1,75 @@
+package com.powerreviews.jdbc;
+
+import com.powerreviews.jdbc.redis.JedisFactory;
+import com.powerreviews.jdbc.redis.RedisClient;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Properties;
+
+/**
+ * Administration of the results cached by the driver, e.g. to invalidate them after an ETL
+ * process has loaded fresh data. Can be run from the command line:
+ * <pre>
+ * java -cp redshift-jdbc-cached-driver.jar com.powerreviews.jdbc.CacheAdmin &lt;JDBC URL&gt; invalidate [schema]
+ * java -cp redshift-jdbc-cached-driver.jar com.powerreviews.jdbc.CacheAdmin &lt;JDBC URL&gt; invalidate-tables &lt;table&gt;...
+ * </pre>
+ */
+public class CacheAdmin {
+    private CacheAdmin() {
+    }
+
+    /**
+     * Invalidates the results cached by the clients using the generations of the given Redis server
+     * @param url The JDBC connection URL, only its Redis and key parameters are used
+     * @param info The JDBC connection properties, may be null
+     * @param schema The schema whose results are invalidated, null to invalidate all the results
+     * @return The new generation
+     * @throws IllegalArgumentException If the URL does not specify a Redis server
+     */
+    public static long invalidate(String url, Properties info, String schema) {
+        RedisClient redisClient = new RedisClient(url, info, new JedisFactory());
+        try {
+            return redisClient.invalidate(schema);
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException("No Redis server in " + url, e);
+        } finally {
+            redisClient.close();
+        }
+    }
+
+    /**
+     * Deletes the results cached from the given tables by the clients using table tags
+     * @param url The JDBC connection URL, only its Redis and key parameters are used
+     * @param info The JDBC connection properties, may be null
+     * @param tables The names of the tables, with or without their schema
+     * @return The number of deleted results
+     * @throws IllegalArgumentException If the URL does not specify a Redis server
+     */
+    public static long invalidateTables(String url, Properties info, Collection<String> tables) {
+        RedisClient redisClient = new RedisClient(url, info, new JedisFactory());
+        try {
+            return redisClient.invalidateTables(tables);
+        } catch (IllegalStateException e) {
+            throw new IllegalArgumentException("No Redis server in " + url, e);
+        } finally {
+            redisClient.close();
+        }
+    }
+
+    public static void main(String[] args) {
+        if(args.length > 2 && "invalidate-tables".equals(args[1])) {
+            long deleted = invalidateTables(args[0], null, Arrays.asList(args).subList(2, args.length));
+            System.out.println(deleted + " cached results invalidated");
+            return;
+        }
+        if(args.length < 2 || args.length > 3 || !"invalidate".equals(args[1])) {
+            System.err.println("Usage: CacheAdmin <JDBC URL> invalidate [schema]");
+            System.err.println("       CacheAdmin <JDBC URL> invalidate-tables <table>...");
+            System.exit(1);
+        }
+        String schema = args.length == 3 ? args[2] : null;
+        long generation = invalidate(args[0], null, schema);
+        System.out.println((schema != null ? "Schema " + schema : "All schemas") + " invalidated, generation " + generation);
+    }
+}
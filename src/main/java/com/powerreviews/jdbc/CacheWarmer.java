@@ -0,0 +1,126 @@
+package com.powerreviews.jdbc;
+
+import com.powerreviews.jdbc.redis.HotQueries;
+import com.powerreviews.jdbc.redis.JedisFactory;
+import com.powerreviews.jdbc.redis.RedisClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Warms the cache by running again the most valuable queries recorded by the clients with
+ * recordHotQueries enabled, usually right after the cache has been invalidated, so that the
+ * results are cached before the users ask for them. Queries are run in order of decreasing
+ * value, i.e. of number of runs times execution time, on a bounded number of connections. Can be
+ * run from the command line:
+ * <pre>
+ * java -cp redshift-jdbc-cached-driver.jar:redshift-jdbc.jar com.powerreviews.jdbc.CacheWarmer &lt;JDBC URL&gt; [queries] [connections]
+ * </pre>
+ */
+public class CacheWarmer {
+    final private static Logger log = LoggerFactory.getLogger(CacheWarmer.class);
+
+    private static final int DEFAULT_QUERIES = 100;
+    private static final int DEFAULT_CONNECTIONS = 4;
+
+    private CacheWarmer() {
+    }
+
+    /**
+     * Runs the most valuable recorded queries whose result is not cached and caches their result
+     * @param url The JDBC connection URL, used to connect to both Redis and the database
+     * @param info The JDBC connection properties, may be null
+     * @param queries The maximum number of queries to run
+     * @param connections The maximum number of queries run concurrently, each on a connection of its own
+     * @return The number of queries run, queries whose result was already cached are not run
+     * @throws SQLException If the database cannot be reached
+     * @throws InterruptedException
+     * @throws IllegalArgumentException If the URL does not specify a Redis server
+     */
+    public static int warm(String url, Properties info, int queries, int connections) throws SQLException, InterruptedException {
+        RedisClient redisClient = new RedisClient(url, info, new JedisFactory());
+        ExecutorService executor = null;
+        try {
+            List<HotQueries.HotQuery> hotQueries;
+            try {
+                hotQueries = redisClient.getHotQueries(queries);
+            } catch (IllegalStateException e) {
+                throw new IllegalArgumentException("No Redis server in " + url, e);
+            }
+            if(hotQueries.isEmpty()) {
+                return 0;
+            }
+
+            // The queries are taken in order by the connections as they become free
+            Queue<String> pending = new ConcurrentLinkedQueue<>();
+            for(HotQueries.HotQuery hotQuery : hotQueries) {
+                pending.add(hotQuery.getSql());
+            }
+            DriverWrapper driver = new DriverWrapper();
+            AtomicInteger run = new AtomicInteger();
+            int threads = Math.max(1, Math.min(connections, hotQueries.size()));
+            List<Callable<Void>> workers = new ArrayList<>(threads);
+            for(int i = 0; i < threads; i++) {
+                workers.add(() -> {
+                    try(Connection connection = driver.connectDatabase(url, info);
+                        Statement statement = connection.createStatement()) {
+                        String sql;
+                        while((sql = pending.poll()) != null) {
+                            try {
+                                if(redisClient.warm(statement, sql)) {
+                                    run.incrementAndGet();
+                                }
+                            } catch (SQLException e) {
+                                log.error("Unable to warm query: {}", sql, e);
+                            }
+                        }
+                    }
+                    return null;
+                });
+            }
+            executor = Executors.newFixedThreadPool(threads);
+            for(Future<Void> worker : executor.invokeAll(workers)) {
+                try {
+                    worker.get();
+                } catch (ExecutionException e) {
+                    if(e.getCause() instanceof SQLException) {
+                        throw (SQLException)e.getCause();
+                    }
+                    throw new IllegalStateException("Unable to warm the cache", e.getCause());
+                }
+            }
+            log.info("Cache warmed. Queries run: {}, already cached: {}", run.get(), hotQueries.size() - run.get());
+            return run.get();
+        } finally {
+            if(executor != null) {
+                executor.shutdownNow();
+            }
+            redisClient.close();
+        }
+    }
+
+    public static void main(String[] args) throws SQLException, InterruptedException {
+        if(args.length < 1 || args.length > 3) {
+            System.err.println("Usage: CacheWarmer <JDBC URL> [queries] [connections]");
+            System.exit(1);
+        }
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_QUERIES;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_CONNECTIONS;
+        int run = warm(args[0], null, queries, connections);
+        System.out.println(run + " queries cached");
+    }
+}
@@ -1,5 +1,6 @@
 package com.powerreviews.jdbc;
 
+import com.powerreviews.jdbc.metrics.CacheMetrics;
 import com.powerreviews.jdbc.redis.JedisFactory;
 import com.powerreviews.jdbc.redis.RedisClient;
 
@@ -26,6 +27,9 @@ public class DriverWrapper implements Driver {
 
     private Driver wrappedDriver;
 
+    // The metrics of the connections opened by this driver instance
+    private final CacheMetrics metrics = CacheMetrics.newDriverMetrics();
+
     static {
         try {
             DriverManager.registerDriver(new DriverWrapper());
@@ -61,14 +65,32 @@ public class DriverWrapper implements Driver {
     public Connection connect(String url, Properties info) throws SQLException {
         // Create the Redis client
         RedisClient redisClient = new RedisClient(url, info, new JedisFactory());
+        redisClient.setMetrics(metrics);
 
         // Remove our special stuff from the URL
         url = fixupUrl(url);
+
+        // Stale cached results are refreshed on connections of their own, opened like this one
+        String refreshUrl = url;
+        Properties refreshInfo = info != null ? (Properties)info.clone() : null;
+        redisClient.setConnectionFactory(() -> wrappedDriver.connect(refreshUrl, refreshInfo));
+
         // And pass through
         Connection conn = wrappedDriver.connect(url, info);
         return new ConnectionWrapper(conn, redisClient);
     }
 
+    /**
+     * Opens a connection to the database without the cache
+     * @param url The JDBC connection URL of this driver
+     * @param info The JDBC connection properties
+     * @return A connection of the wrapped driver
+     * @throws SQLException
+     */
+    Connection connectDatabase(String url, Properties info) throws SQLException {
+        return wrappedDriver.connect(fixupUrl(url), info);
+    }
+
     public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
             throws SQLException {
         return wrappedDriver.getPropertyInfo(url, info);
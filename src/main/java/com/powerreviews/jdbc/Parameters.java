@@ -0,0 +1,710 @@
+package com.powerreviews.jdbc;
+
+import com.powerreviews.jdbc.util.Murmur3;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.PushbackReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.net.URL;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.OffsetTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoField;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.UUID;
+
+/**
+ * The parameter values of a prepared statement, kept in slots indexed by parameter position with
+ * a tag telling the type of each value. Primitive values are stored unboxed, so setting a
+ * parameter does not allocate, and the values are written as text straight into the query the
+ * result is cached under. The values can be set again on another statement to replay the query.
+ * <p>
+ * Each value is written as a token made of a NUL character, which cannot appear in the SQL, the
+ * kind of the value, the length of its text, a colon and the text, e.g. {@code \0int2:42}, so
+ * that values of different kinds, such as the string "null" and a null, or values containing
+ * the text of other tokens, are never written the same way. Null values are written with their
+ * SQL type. Values set with different setters are of the same kind when they are sent the same
+ * way, e.g. an Integer set with setObject is written as if it was set with setInt. Temporal
+ * values set with a Calendar are written as they are sent to the database, in the time zone of
+ * the Calendar. Byte arrays, and stream parameters, which are read into memory up to a limit,
+ * are written as the hash of their content.
+ */
+class Parameters {
+    private static final byte UNSET = 0;
+    private static final byte NULL = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte INT = 5;
+    private static final byte LONG = 6;
+    private static final byte FLOAT = 7;
+    private static final byte DOUBLE = 8;
+    private static final byte BIG_DECIMAL = 9;
+    private static final byte STRING = 10;
+    private static final byte NSTRING = 11;
+    private static final byte BYTES = 12;
+    private static final byte DATE = 13;
+    private static final byte TIME = 14;
+    private static final byte TIMESTAMP = 15;
+    private static final byte URL = 16;
+    private static final byte OBJECT = 17;
+    private static final byte TYPED_OBJECT = 18;
+    private static final byte SCALED_OBJECT = 19;
+    private static final byte ASCII_STREAM = 20;
+    private static final byte BINARY_STREAM = 21;
+    private static final byte CHARACTER_STREAM = 22;
+    private static final byte NCHARACTER_STREAM = 23;
+    // A value which cannot be written in the query, the statement is not cached
+    private static final byte UNCACHEABLE = 24;
+
+    // Kinds of the values written in the query, by tag
+    private static final String[] KINDS = {"unset", "null", "bool", "int", "int", "int", "int", "float",
+            "double", "decimal", "string", "nstring", "bytes", "date", "time", "timestamp", "url", "object",
+            "typed", "scaled", "ascii", "binary", "chars", "nchars", "unset"};
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+
+    private byte[] tags;
+    // Values of the primitive parameters, SQL types of the null parameters, and target SQL types
+    // and scales of the objects
+    private long[] primitives;
+    // Values of the other parameters, content of the streams
+    private Object[] values;
+    // Calendars of the temporal parameters and type names of the null parameters
+    private Object[] extras;
+    // Values as they are written in the query when they are not written as the value itself
+    private String[] texts;
+    // Copy of the values taken at the last execution, null if they have changed since
+    private Parameters snapshot;
+
+    Parameters(int count) {
+        this.tags = new byte[count];
+        this.primitives = new long[count];
+        this.values = new Object[count];
+        this.extras = new Object[count];
+        this.texts = new String[count];
+    }
+
+    private Parameters(Parameters parameters) {
+        this.tags = parameters.tags.clone();
+        this.primitives = parameters.primitives.clone();
+        this.values = parameters.values.clone();
+        this.extras = parameters.extras.clone();
+        this.texts = parameters.texts.clone();
+    }
+
+    void setNull(int parameterIndex, int sqlType, String typeName) {
+        set(parameterIndex, NULL, sqlType, null, typeName, null);
+    }
+
+    void setBoolean(int parameterIndex, boolean x) {
+        set(parameterIndex, BOOLEAN, x ? 1 : 0, null, null, null);
+    }
+
+    void setByte(int parameterIndex, byte x) {
+        set(parameterIndex, BYTE, x, null, null, null);
+    }
+
+    void setShort(int parameterIndex, short x) {
+        set(parameterIndex, SHORT, x, null, null, null);
+    }
+
+    void setInt(int parameterIndex, int x) {
+        set(parameterIndex, INT, x, null, null, null);
+    }
+
+    void setLong(int parameterIndex, long x) {
+        set(parameterIndex, LONG, x, null, null, null);
+    }
+
+    void setFloat(int parameterIndex, float x) {
+        set(parameterIndex, FLOAT, Float.floatToRawIntBits(x), null, null, null);
+    }
+
+    void setDouble(int parameterIndex, double x) {
+        set(parameterIndex, DOUBLE, Double.doubleToRawLongBits(x), null, null, null);
+    }
+
+    void setBigDecimal(int parameterIndex, BigDecimal x) {
+        set(parameterIndex, BIG_DECIMAL, 0, x, null, null);
+    }
+
+    void setString(int parameterIndex, String x) {
+        set(parameterIndex, STRING, 0, x, null, null);
+    }
+
+    void setNString(int parameterIndex, String x) {
+        set(parameterIndex, NSTRING, 0, x, null, null);
+    }
+
+    void setBytes(int parameterIndex, byte[] x) {
+        set(parameterIndex, BYTES, 0, x, null, x != null ? hash(x) : null);
+    }
+
+    void setDate(int parameterIndex, Date x, Calendar cal) {
+        String text = x != null && cal != null ?
+                toZone(x.getTime(), 0, cal).toLocalDate().toString() : null;
+        set(parameterIndex, DATE, 0, x, cal, text);
+    }
+
+    void setTime(int parameterIndex, Time x, Calendar cal) {
+        String text = x != null && cal != null ?
+                TIME_FORMAT.format(toZone(x.getTime(), 0, cal).toLocalTime()) : null;
+        set(parameterIndex, TIME, 0, x, cal, text);
+    }
+
+    void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) {
+        String text = x != null && cal != null ?
+                toText(toZone(x.getTime(), x.getNanos(), cal).toLocalDateTime()) : null;
+        set(parameterIndex, TIMESTAMP, 0, x, cal, text);
+    }
+
+    void setURL(int parameterIndex, URL x) {
+        set(parameterIndex, URL, 0, x, null, null);
+    }
+
+    /**
+     * @param targetSqlType The SQL type the value is sent as, null if it is not specified
+     * @param scaleOrLength The scale or length of the value, null if it is not specified
+     * @return false if the value is not of a standard type and cannot be cached
+     */
+    boolean setObject(int parameterIndex, Object x, Integer targetSqlType, Integer scaleOrLength) {
+        String text = toText(x);
+        if(text == null) {
+            setUncacheable(parameterIndex);
+            return false;
+        }
+        if(targetSqlType == null) {
+            set(parameterIndex, OBJECT, 0, x, null, text);
+        } else if(scaleOrLength == null) {
+            set(parameterIndex, TYPED_OBJECT, targetSqlType, x, null, text);
+        } else {
+            set(parameterIndex, SCALED_OBJECT, ((long)scaleOrLength << 32) | (targetSqlType & 0xffffffffL), x, null, text);
+        }
+        return true;
+    }
+
+    InputStream setAsciiStream(int parameterIndex, InputStream x, long length, int maxBytes) throws SQLException {
+        return setStream(parameterIndex, ASCII_STREAM, x, length, maxBytes);
+    }
+
+    InputStream setBinaryStream(int parameterIndex, InputStream x, long length, int maxBytes) throws SQLException {
+        return setStream(parameterIndex, BINARY_STREAM, x, length, maxBytes);
+    }
+
+    Reader setCharacterStream(int parameterIndex, Reader x, long length, int maxChars) throws SQLException {
+        return setReader(parameterIndex, CHARACTER_STREAM, x, length, maxChars);
+    }
+
+    Reader setNCharacterStream(int parameterIndex, Reader x, long length, int maxChars) throws SQLException {
+        return setReader(parameterIndex, NCHARACTER_STREAM, x, length, maxChars);
+    }
+
+    /**
+     * Records a value which cannot be written in the query: the statement is not cached until
+     * the parameter is set again
+     */
+    void setUncacheable(int parameterIndex) {
+        set(parameterIndex, UNCACHEABLE, 0, null, null, null);
+    }
+
+    /**
+     * Reads a stream parameter into memory
+     * @param length The length of the stream, -1 if it is not specified
+     * @param maxBytes The maximum length of the streams read
+     * @return The stream to send to the database in place of the given one
+     */
+    private InputStream setStream(int parameterIndex, byte tag, InputStream x, long length, int maxBytes) throws SQLException {
+        if(x == null || length > maxBytes) {
+            setUncacheable(parameterIndex);
+            return x;
+        }
+        try {
+            byte[] buffer = new byte[length >= 0 ? (int)length : maxBytes + 1];
+            int read = 0;
+            int n;
+            while(read < buffer.length && (n = x.read(buffer, read, buffer.length - read)) != -1) {
+                read += n;
+            }
+            if(read > maxBytes) {
+                setUncacheable(parameterIndex);
+                PushbackInputStream stream = new PushbackInputStream(x, read);
+                stream.unread(buffer, 0, read);
+                return stream;
+            }
+            byte[] content = Arrays.copyOf(buffer, read);
+            set(parameterIndex, tag, 0, content, null, hash(content));
+            return new ByteArrayInputStream(content);
+        } catch (IOException e) {
+            throw new SQLException("Unable to read parameter " + parameterIndex, e);
+        }
+    }
+
+    /**
+     * Reads a character stream parameter into memory
+     * @param length The length of the stream, -1 if it is not specified
+     * @param maxChars The maximum length of the streams read
+     * @return The stream to send to the database in place of the given one
+     */
+    private Reader setReader(int parameterIndex, byte tag, Reader x, long length, int maxChars) throws SQLException {
+        if(x == null || length > maxChars) {
+            setUncacheable(parameterIndex);
+            return x;
+        }
+        try {
+            char[] buffer = new char[length >= 0 ? (int)length : maxChars + 1];
+            int read = 0;
+            int n;
+            while(read < buffer.length && (n = x.read(buffer, read, buffer.length - read)) != -1) {
+                read += n;
+            }
+            if(read > maxChars) {
+                setUncacheable(parameterIndex);
+                PushbackReader reader = new PushbackReader(x, read);
+                reader.unread(buffer, 0, read);
+                return reader;
+            }
+            String content = new String(buffer, 0, read);
+            set(parameterIndex, tag, 0, content, null, new Murmur3().putString(content).hashHex());
+            return new StringReader(content);
+        } catch (IOException e) {
+            throw new SQLException("Unable to read parameter " + parameterIndex, e);
+        }
+    }
+
+    private void set(int parameterIndex, byte tag, long primitive, Object value, Object extra, String text) {
+        int slot = parameterIndex - 1;
+        if(slot >= this.tags.length) {
+            int length = Math.max(slot + 1, 2 * this.tags.length);
+            this.tags = Arrays.copyOf(this.tags, length);
+            this.primitives = Arrays.copyOf(this.primitives, length);
+            this.values = Arrays.copyOf(this.values, length);
+            this.extras = Arrays.copyOf(this.extras, length);
+            this.texts = Arrays.copyOf(this.texts, length);
+        }
+        this.tags[slot] = tag;
+        this.primitives[slot] = primitive;
+        this.values[slot] = value;
+        this.extras[slot] = extra;
+        this.texts[slot] = text;
+        this.snapshot = null;
+    }
+
+    /**
+     * Removes all the parameter values
+     */
+    void clear() {
+        Arrays.fill(this.tags, UNSET);
+        Arrays.fill(this.values, null);
+        Arrays.fill(this.extras, null);
+        Arrays.fill(this.texts, null);
+        this.snapshot = null;
+    }
+
+    /**
+     * @param parameterCount The number of placeholders of the statement, the parameters written in
+     *                       the query
+     * @return false if a parameter value cannot be written in the query, or if a value is set for
+     * a parameter the statement has no placeholder for, since it would not be part of the query
+     */
+    boolean isCacheable(int parameterCount) {
+        for(int slot = 0; slot < this.tags.length; slot++) {
+            byte tag = this.tags[slot];
+            if(tag == UNCACHEABLE || (tag != UNSET && slot >= parameterCount)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a parameter value as it appears in the query the result is cached under
+     * @param index The index of the parameter, starting from 0
+     * @param sql The query being built
+     */
+    void appendTo(int index, StringBuilder sql) {
+        byte tag = index < this.tags.length ? this.tags[index] : UNSET;
+        long primitive = tag != UNSET ? this.primitives[index] : 0;
+        switch(tag) {
+            case UNSET:
+            case UNCACHEABLE:
+                appendToken(sql, KINDS[UNSET], "");
+                break;
+            case NULL:
+                appendToken(sql, KINDS[NULL], this.extras[index] != null ?
+                        primitive + "," + this.extras[index] : Long.toString(primitive));
+                break;
+            case BOOLEAN:
+                appendToken(sql, KINDS[tag], primitive != 0 ? "true" : "false");
+                break;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                sql.append('\0').append(KINDS[tag]).append(length(primitive)).append(':').append(primitive);
+                break;
+            case FLOAT:
+                appendToken(sql, KINDS[tag], Float.toString(Float.intBitsToFloat((int)primitive)));
+                break;
+            case DOUBLE:
+                appendToken(sql, KINDS[tag], Double.toString(Double.longBitsToDouble(primitive)));
+                break;
+            default:
+                Object value = this.values[index];
+                String text = this.texts[index] != null ? this.texts[index] : String.valueOf(value);
+                if(value == null) {
+                    // Null values set with other setters than setNull, with their SQL type if it is given
+                    appendToken(sql, KINDS[NULL], tag == TYPED_OBJECT || tag == SCALED_OBJECT ?
+                            Integer.toString((int)primitive) : KINDS[tag]);
+                } else if(tag == OBJECT) {
+                    appendToken(sql, kind(value), text);
+                } else if(tag == TYPED_OBJECT) {
+                    appendToken(sql, KINDS[tag], (int)primitive + "," + text);
+                } else if(tag == SCALED_OBJECT) {
+                    appendToken(sql, KINDS[tag], (int)primitive + "," + (int)(primitive >> 32) + "," + text);
+                } else {
+                    appendToken(sql, KINDS[tag], text);
+                }
+        }
+    }
+
+    /**
+     * Writes a parameter value into the hash of the key the result is cached under, without
+     * writing it as text: values are hashed the same way only if they are written the same way
+     * by {@link #appendTo(int, StringBuilder)}
+     * @param index The index of the parameter, starting from 0
+     * @param murmur3 The hash being computed
+     */
+    void hashTo(int index, Murmur3 murmur3) {
+        byte tag = index < this.tags.length ? this.tags[index] : UNSET;
+        long primitive = tag != UNSET ? this.primitives[index] : 0;
+        // The NUL byte cannot appear in the SQL around the parameters
+        murmur3.putByte(0);
+        switch(tag) {
+            case UNSET:
+            case UNCACHEABLE:
+                murmur3.putString(KINDS[UNSET]).putByte(0);
+                break;
+            case NULL:
+                hashNull(murmur3, (int)primitive, (String)this.extras[index]);
+                break;
+            case BOOLEAN:
+                murmur3.putString(KINDS[tag]).putByte(0).putByte(primitive != 0 ? 1 : 0);
+                break;
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                murmur3.putString(KINDS[tag]).putByte(0).putLong(primitive);
+                break;
+            default:
+                Object value = this.values[index];
+                String text = this.texts[index] != null ? this.texts[index] : String.valueOf(value);
+                if(value == null && (tag == TYPED_OBJECT || tag == SCALED_OBJECT)) {
+                    hashNull(murmur3, (int)primitive, null);
+                } else if(value == null) {
+                    murmur3.putString(KINDS[NULL]).putByte(0).putByte(0).putString(KINDS[tag]).putByte(0);
+                } else if(tag == OBJECT && isPrimitive(value)) {
+                    // Hashed as if set with the setter of its type
+                    murmur3.putString(kind(value)).putByte(0);
+                    if(value instanceof Boolean) {
+                        murmur3.putByte((Boolean)value ? 1 : 0);
+                    } else if(value instanceof Float) {
+                        murmur3.putLong(Float.floatToRawIntBits((Float)value));
+                    } else if(value instanceof Double) {
+                        murmur3.putLong(Double.doubleToRawLongBits((Double)value));
+                    } else {
+                        murmur3.putLong(((Number)value).longValue());
+                    }
+                } else {
+                    murmur3.putString(tag == OBJECT ? kind(value) : KINDS[tag]).putByte(0);
+                    if(tag == TYPED_OBJECT) {
+                        murmur3.putInt((int)primitive);
+                    } else if(tag == SCALED_OBJECT) {
+                        murmur3.putLong(primitive);
+                    }
+                    murmur3.putInt(text.length()).putString(text);
+                }
+        }
+    }
+
+    /**
+     * @return true if a value set with setObject has the type of a primitive setter
+     */
+    private static boolean isPrimitive(Object x) {
+        return x instanceof Boolean || x instanceof Byte || x instanceof Short || x instanceof Integer
+                || x instanceof Long || x instanceof Float || x instanceof Double;
+    }
+
+    private static void hashNull(Murmur3 murmur3, int sqlType, String typeName) {
+        murmur3.putString(KINDS[NULL]).putByte(0).putByte(1).putInt(sqlType);
+        if(typeName != null) {
+            murmur3.putInt(typeName.length()).putString(typeName);
+        } else {
+            murmur3.putInt(-1);
+        }
+    }
+
+    private static void appendToken(StringBuilder sql, String kind, String text) {
+        sql.append('\0').append(kind).append(text.length()).append(':').append(text);
+    }
+
+    /**
+     * @return The number of characters of a number written in decimal
+     */
+    private static int length(long x) {
+        if(x == Long.MIN_VALUE) {
+            return 20;
+        }
+        int length = x < 0 ? 2 : 1;
+        for(long y = Math.abs(x); y >= 10; y /= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * @param x A value set with setObject
+     * @return The kind of the value, as if it was set with the setter of its type
+     */
+    private static String kind(Object x) {
+        if(x instanceof String || x instanceof Character) {
+            return KINDS[STRING];
+        }
+        if(x instanceof Boolean) {
+            return KINDS[BOOLEAN];
+        }
+        if(x instanceof Byte || x instanceof Short || x instanceof Integer || x instanceof Long) {
+            return KINDS[LONG];
+        }
+        if(x instanceof Float) {
+            return KINDS[FLOAT];
+        }
+        if(x instanceof Double) {
+            return KINDS[DOUBLE];
+        }
+        if(x instanceof BigDecimal || x instanceof BigInteger) {
+            return KINDS[BIG_DECIMAL];
+        }
+        if(x instanceof byte[]) {
+            return KINDS[BYTES];
+        }
+        if(x instanceof Date) {
+            return KINDS[DATE];
+        }
+        if(x instanceof Time) {
+            return KINDS[TIME];
+        }
+        if(x instanceof Timestamp) {
+            return KINDS[TIMESTAMP];
+        }
+        if(x instanceof URL) {
+            return KINDS[URL];
+        }
+        return KINDS[OBJECT];
+    }
+
+    /**
+     * @return A copy of the current values, not affected by the values set afterwards
+     */
+    Parameters snapshot() {
+        if(this.snapshot == null) {
+            this.snapshot = new Parameters(this);
+        }
+        return this.snapshot;
+    }
+
+    /**
+     * Sets the values on a statement
+     * @param statement The statement to set the values on
+     * @throws SQLException
+     */
+    void bind(PreparedStatement statement) throws SQLException {
+        for(int slot = 0; slot < this.tags.length; slot++) {
+            int parameterIndex = slot + 1;
+            long primitive = this.primitives[slot];
+            Object value = this.values[slot];
+            Object extra = this.extras[slot];
+            switch(this.tags[slot]) {
+                case NULL:
+                    if(extra != null) {
+                        statement.setNull(parameterIndex, (int)primitive, (String)extra);
+                    } else {
+                        statement.setNull(parameterIndex, (int)primitive);
+                    }
+                    break;
+                case BOOLEAN:
+                    statement.setBoolean(parameterIndex, primitive != 0);
+                    break;
+                case BYTE:
+                    statement.setByte(parameterIndex, (byte)primitive);
+                    break;
+                case SHORT:
+                    statement.setShort(parameterIndex, (short)primitive);
+                    break;
+                case INT:
+                    statement.setInt(parameterIndex, (int)primitive);
+                    break;
+                case LONG:
+                    statement.setLong(parameterIndex, primitive);
+                    break;
+                case FLOAT:
+                    statement.setFloat(parameterIndex, Float.intBitsToFloat((int)primitive));
+                    break;
+                case DOUBLE:
+                    statement.setDouble(parameterIndex, Double.longBitsToDouble(primitive));
+                    break;
+                case BIG_DECIMAL:
+                    statement.setBigDecimal(parameterIndex, (BigDecimal)value);
+                    break;
+                case STRING:
+                    statement.setString(parameterIndex, (String)value);
+                    break;
+                case NSTRING:
+                    statement.setNString(parameterIndex, (String)value);
+                    break;
+                case BYTES:
+                    statement.setBytes(parameterIndex, (byte[])value);
+                    break;
+                case DATE:
+                    if(extra != null) {
+                        statement.setDate(parameterIndex, (Date)value, (Calendar)extra);
+                    } else {
+                        statement.setDate(parameterIndex, (Date)value);
+                    }
+                    break;
+                case TIME:
+                    if(extra != null) {
+                        statement.setTime(parameterIndex, (Time)value, (Calendar)extra);
+                    } else {
+                        statement.setTime(parameterIndex, (Time)value);
+                    }
+                    break;
+                case TIMESTAMP:
+                    if(extra != null) {
+                        statement.setTimestamp(parameterIndex, (Timestamp)value, (Calendar)extra);
+                    } else {
+                        statement.setTimestamp(parameterIndex, (Timestamp)value);
+                    }
+                    break;
+                case URL:
+                    statement.setURL(parameterIndex, (URL)value);
+                    break;
+                case OBJECT:
+                    statement.setObject(parameterIndex, value);
+                    break;
+                case TYPED_OBJECT:
+                    statement.setObject(parameterIndex, value, (int)primitive);
+                    break;
+                case SCALED_OBJECT:
+                    statement.setObject(parameterIndex, value, (int)primitive, (int)(primitive >> 32));
+                    break;
+                case ASCII_STREAM:
+                    statement.setAsciiStream(parameterIndex, new ByteArrayInputStream((byte[])value), ((byte[])value).length);
+                    break;
+                case BINARY_STREAM:
+                    statement.setBinaryStream(parameterIndex, new ByteArrayInputStream((byte[])value), ((byte[])value).length);
+                    break;
+                case CHARACTER_STREAM:
+                    statement.setCharacterStream(parameterIndex, new StringReader((String)value), ((String)value).length());
+                    break;
+                case NCHARACTER_STREAM:
+                    statement.setNCharacterStream(parameterIndex, new StringReader((String)value), ((String)value).length());
+                    break;
+                default:
+                    // Parameter not set
+            }
+        }
+    }
+
+    /**
+     * @param x A value set with setObject
+     * @return The value as written by the setter of its type, null if it is not of a standard type
+     */
+    static String toText(Object x) {
+        if(x == null) {
+            return "null";
+        }
+        if(x instanceof String || x instanceof Character || x instanceof Boolean || x instanceof Byte
+                || x instanceof Short || x instanceof Integer || x instanceof Long || x instanceof Float
+                || x instanceof Double || x instanceof BigDecimal || x instanceof BigInteger
+                || x instanceof Date || x instanceof Time || x instanceof Timestamp || x instanceof URL
+                || x instanceof UUID || x instanceof LocalDate || x instanceof OffsetDateTime
+                || x instanceof OffsetTime || x instanceof ZonedDateTime || x instanceof Instant) {
+            return x.toString();
+        }
+        if(x instanceof byte[]) {
+            return hash((byte[])x);
+        }
+        if(x instanceof java.util.Date) {
+            return new Timestamp(((java.util.Date)x).getTime()).toString();
+        }
+        if(x instanceof LocalDateTime) {
+            return toText((LocalDateTime)x);
+        }
+        if(x instanceof LocalTime) {
+            LocalTime time = (LocalTime)x;
+            return time.getNano() == 0 ? TIME_FORMAT.format(time) : TIME_FORMAT.format(time) + fraction(time.getNano());
+        }
+        return null;
+    }
+
+    /**
+     * @return The hash of the content of a byte array or stream, written in place of the content
+     */
+    private static String hash(byte[] content) {
+        return new Murmur3().putBytes(content).hashHex();
+    }
+
+    /**
+     * @param millis Milliseconds since the epoch
+     * @param nanos Nanoseconds of the second, 0 to keep the milliseconds
+     * @param cal The calendar of the time zone
+     * @return The instant in the time zone
+     */
+    private static ZonedDateTime toZone(long millis, int nanos, Calendar cal) {
+        ZoneId zone = cal.getTimeZone().toZoneId();
+        Instant instant = Instant.ofEpochMilli(millis);
+        return (nanos != 0 ? instant.with(ChronoField.NANO_OF_SECOND, nanos) : instant).atZone(zone);
+    }
+
+    /**
+     * @return The date and time in the format of Timestamp.toString
+     */
+    private static String toText(LocalDateTime dateTime) {
+        return dateTime.toLocalDate() + " " + TIME_FORMAT.format(dateTime) +
+                (dateTime.getNano() == 0 ? ".0" : fraction(dateTime.getNano()));
+    }
+
+    /**
+     * @return The fraction of a second, without trailing zeros
+     */
+    private static String fraction(int nanos) {
+        String fraction = Integer.toString(1000000000 + nanos).substring(1);
+        int end = fraction.length();
+        while(fraction.charAt(end - 1) == '0') {
+            end--;
+        }
+        return "." + fraction.substring(0, end);
+    }
+}
@@ -1,6 +1,11 @@
 package com.powerreviews.jdbc;
 
+import com.powerreviews.jdbc.redis.PreparedQuery;
 import com.powerreviews.jdbc.redis.RedisClient;
+import com.powerreviews.jdbc.redis.ReplayableQuery;
+import com.powerreviews.jdbc.util.Murmur3;
+import com.powerreviews.jdbc.util.SqlNormalizer;
+import com.powerreviews.jdbc.util.SqlTemplate;
 import com.powerreviews.jdbc.util.SqlUtil;
 
 import java.io.InputStream;
@@ -24,7 +29,6 @@ import java.sql.SQLWarning;
 import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
-import java.text.MessageFormat;
 import java.util.*;
 
 /**
@@ -35,14 +39,29 @@ public class PreparedStatementWrapper implements PreparedStatement {
     private PreparedStatement wrappedPreparedStatement;
     private RedisClient redisClient;
 
-    private String statementSql;
-    private SortedMap<Integer, Object> variables = new TreeMap<>();
-    private boolean cacheable = true;
+    private SqlTemplate template;
+    private Parameters parameters;
+    // The query run with the current parameter values
+    private PreparedQuery query = new CurrentQuery();
+    private String sql;
+    // true if the statement is a query which can be run through the cache by execute
+    private boolean readOnlyQuery;
+    // true if the last statement has been run through the cache, its result is then returned by
+    // getResultSet instead of the result of the wrapped statement
+    private boolean cachedResult;
+    private ResultSet resultSet;
+    // The statements added to the batch, whose tables are invalidated once it is executed
+    private final List<String> batch = new ArrayList<>();
 
     public PreparedStatementWrapper(Connection parentConnection, PreparedStatement wrappedPreparedStatement, String statementSql, RedisClient redisClient) {
         this.parentConnection = parentConnection;
         this.wrappedPreparedStatement = wrappedPreparedStatement;
-        this.statementSql = SqlUtil.tokenizeStatement(statementSql);
+        this.sql = statementSql;
+        // Only the statement is normalized, never the parameter values
+        this.template = SqlTemplate.of(redisClient.isNormalizeSql() ?
+                SqlNormalizer.normalize(statementSql) : statementSql);
+        this.parameters = new Parameters(this.template.getParameterCount());
+        this.readOnlyQuery = SqlUtil.isReadOnlyQuery(statementSql);
         this.redisClient = redisClient;
     }
 
@@ -78,46 +97,104 @@ public class PreparedStatementWrapper implements PreparedStatement {
     }
 
     public ResultSet executeQuery(String sql) throws SQLException {
-        return redisClient.executeQuery(this.wrappedPreparedStatement, sql);
+        return setResult(redisClient.executeQuery(this.wrappedPreparedStatement, sql));
     }
 
     public ResultSet executeQuery() throws SQLException {
-        // Compute the SQL for the prepared statement using the tokenized SQL string and the
-        // variables values
-        String query = this.cacheable ?
-                MessageFormat.format(this.statementSql, this.variables.values().toArray()) : null;
-        return redisClient.executeQuery(this.wrappedPreparedStatement, query);
+        if(!this.parameters.isCacheable(this.template.getParameterCount())) {
+            return setResult(redisClient.executeQuery(this.wrappedPreparedStatement, null, null));
+        }
+        return setResult(redisClient.executeQuery(this.wrappedPreparedStatement, this.query));
+    }
+
+    /**
+     * The query of the statement template with the current parameter values, written or hashed
+     * when the cache key is computed
+     */
+    private class CurrentQuery implements PreparedQuery {
+        @Override
+        public void appendTo(StringBuilder sql) {
+            sql.append(template.getSegment(0));
+            for(int i = 0; i < template.getParameterCount(); i++) {
+                parameters.appendTo(i, sql);
+                sql.append(template.getSegment(i + 1));
+            }
+        }
+
+        @Override
+        public void hashTo(Murmur3 murmur3) {
+            murmur3.putString(template.getSegment(0));
+            for(int i = 0; i < template.getParameterCount(); i++) {
+                parameters.hashTo(i, murmur3);
+                murmur3.putString(template.getSegment(i + 1));
+            }
+        }
+
+        @Override
+        public ReplayableQuery replay() {
+            // The parameters are set again when the statement is replayed to refresh its cached result
+            return ReplayableQuery.prepared(sql, Collections.singletonList(parameters.snapshot()::bind));
+        }
     }
 
     public boolean execute() throws SQLException {
-        return wrappedPreparedStatement.execute();
+        // Read only queries are run through the cache, as with executeQuery
+        if(this.readOnlyQuery) {
+            executeQuery();
+            return true;
+        }
+        clearResult();
+        boolean result = wrappedPreparedStatement.execute();
+        redisClient.invalidateModifiedTables(this.sql);
+        return result;
     }
 
     public boolean execute(String sql) throws SQLException {
-        return wrappedPreparedStatement.execute(sql);
+        clearResult();
+        boolean result = wrappedPreparedStatement.execute(sql);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
-        return wrappedPreparedStatement.execute(sql, autoGeneratedKeys);
+        clearResult();
+        boolean result = wrappedPreparedStatement.execute(sql, autoGeneratedKeys);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public boolean execute(String sql, int[] columnIndexes) throws SQLException {
-        return wrappedPreparedStatement.execute(sql, columnIndexes);
+        clearResult();
+        boolean result = wrappedPreparedStatement.execute(sql, columnIndexes);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public boolean execute(String sql, String[] columnNames) throws SQLException {
-        return wrappedPreparedStatement.execute(sql, columnNames);
+        clearResult();
+        boolean result = wrappedPreparedStatement.execute(sql, columnNames);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public ResultSet getResultSet() throws SQLException {
-        return wrappedPreparedStatement.getResultSet();
+        return this.cachedResult ? this.resultSet : wrappedPreparedStatement.getResultSet();
     }
 
     public int executeUpdate(String sql) throws SQLException {
-        return wrappedPreparedStatement.executeUpdate(sql);
+        clearResult();
+        int count = wrappedPreparedStatement.executeUpdate(sql);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public void close() throws SQLException {
+        // Closing the statement closes its current result, so that a result streamed from the
+        // database and not read to the end releases its fill lock
+        if(this.resultSet != null) {
+            this.resultSet.close();
+        }
+        clearResult();
         wrappedPreparedStatement.close();
     }
 
@@ -166,11 +243,12 @@ public class PreparedStatementWrapper implements PreparedStatement {
     }
 
     public int getUpdateCount() throws SQLException {
-        return wrappedPreparedStatement.getUpdateCount();
+        // A query has no update count
+        return this.cachedResult ? -1 : wrappedPreparedStatement.getUpdateCount();
     }
 
     public boolean getMoreResults() throws SQLException {
-        return wrappedPreparedStatement.getMoreResults();
+        return getMoreResults(CLOSE_CURRENT_RESULT);
     }
 
     public void setFetchDirection(int direction) throws SQLException {
@@ -199,14 +277,22 @@ public class PreparedStatementWrapper implements PreparedStatement {
 
     public void addBatch(String sql) throws SQLException {
         wrappedPreparedStatement.addBatch(sql);
+        this.batch.add(sql);
     }
 
     public void clearBatch() throws SQLException {
         wrappedPreparedStatement.clearBatch();
+        this.batch.clear();
     }
 
     public int[] executeBatch() throws SQLException {
-        return wrappedPreparedStatement.executeBatch();
+        clearResult();
+        // The batch is emptied once executed, whether it succeeds or not
+        List<String> sqls = new ArrayList<>(this.batch);
+        this.batch.clear();
+        int[] counts = wrappedPreparedStatement.executeBatch();
+        redisClient.invalidateModifiedTables(sqls);
+        return counts;
     }
 
     public Connection getConnection() throws SQLException {
@@ -214,7 +300,15 @@ public class PreparedStatementWrapper implements PreparedStatement {
     }
 
     public boolean getMoreResults(int current) throws SQLException {
-        return wrappedPreparedStatement.getMoreResults(current);
+        if(!this.cachedResult) {
+            return wrappedPreparedStatement.getMoreResults(current);
+        }
+        // A query has a single result
+        if(this.resultSet != null && current != KEEP_CURRENT_RESULT) {
+            this.resultSet.close();
+        }
+        this.resultSet = null;
+        return false;
     }
 
     public ResultSet getGeneratedKeys() throws SQLException {
@@ -222,15 +316,24 @@ public class PreparedStatementWrapper implements PreparedStatement {
     }
 
     public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
-        return wrappedPreparedStatement.executeUpdate(sql, autoGeneratedKeys);
+        clearResult();
+        int count = wrappedPreparedStatement.executeUpdate(sql, autoGeneratedKeys);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
-        return wrappedPreparedStatement.executeUpdate(sql, columnIndexes);
+        clearResult();
+        int count = wrappedPreparedStatement.executeUpdate(sql, columnIndexes);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public int executeUpdate(String sql, String[] columnNames) throws SQLException {
-        return wrappedPreparedStatement.executeUpdate(sql, columnNames);
+        clearResult();
+        int count = wrappedPreparedStatement.executeUpdate(sql, columnNames);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public int getResultSetHoldability() throws SQLException {
@@ -250,135 +353,140 @@ public class PreparedStatementWrapper implements PreparedStatement {
     }
 
     public int executeUpdate() throws SQLException {
-        return wrappedPreparedStatement.executeUpdate();
+        clearResult();
+        int count = wrappedPreparedStatement.executeUpdate();
+        redisClient.invalidateModifiedTables(this.sql);
+        return count;
     }
 
     public void setNull(int parameterIndex, int sqlType) throws SQLException {
-        this.variables.put(parameterIndex - 1, "null");
+        this.parameters.setNull(parameterIndex, sqlType, null);
         wrappedPreparedStatement.setNull(parameterIndex, sqlType);
     }
 
     public void setBoolean(int parameterIndex, boolean x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setBoolean(parameterIndex, x);
         wrappedPreparedStatement.setBoolean(parameterIndex, x);
     }
 
     public void setByte(int parameterIndex, byte x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setByte(parameterIndex, x);
         wrappedPreparedStatement.setByte(parameterIndex, x);
     }
 
     public void setShort(int parameterIndex, short x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setShort(parameterIndex, x);
         wrappedPreparedStatement.setShort(parameterIndex, x);
     }
 
     public void setInt(int parameterIndex, int x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setInt(parameterIndex, x);
         wrappedPreparedStatement.setInt(parameterIndex, x);
     }
 
     public void setLong(int parameterIndex, long x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setLong(parameterIndex, x);
         wrappedPreparedStatement.setLong(parameterIndex, x);
     }
 
     public void setFloat(int parameterIndex, float x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setFloat(parameterIndex, x);
         wrappedPreparedStatement.setFloat(parameterIndex, x);
     }
 
     public void setDouble(int parameterIndex, double x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setDouble(parameterIndex, x);
         wrappedPreparedStatement.setDouble(parameterIndex, x);
     }
 
     public void setBigDecimal(int parameterIndex, BigDecimal x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setBigDecimal(parameterIndex, x);
         wrappedPreparedStatement.setBigDecimal(parameterIndex, x);
     }
 
     public void setString(int parameterIndex, String x) throws SQLException {
-        this.variables.put(parameterIndex - 1, x);
+        this.parameters.setString(parameterIndex, x);
         wrappedPreparedStatement.setString(parameterIndex, x);
     }
 
     public void setBytes(int parameterIndex, byte[] x) throws SQLException {
-        this.variables.put(parameterIndex - 1, new String(x));
+        this.parameters.setBytes(parameterIndex, x);
         wrappedPreparedStatement.setBytes(parameterIndex, x);
     }
 
     public void setDate(int parameterIndex, Date x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setDate(parameterIndex, x, null);
         wrappedPreparedStatement.setDate(parameterIndex, x);
     }
 
     public void setTime(int parameterIndex, Time x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setTime(parameterIndex, x, null);
         wrappedPreparedStatement.setTime(parameterIndex, x);
     }
 
     public void setTimestamp(int parameterIndex, Timestamp x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setTimestamp(parameterIndex, x, null);
         wrappedPreparedStatement.setTimestamp(parameterIndex, x);
     }
 
     public void setAsciiStream(int parameterIndex, InputStream x, int length) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setAsciiStream(parameterIndex, x, length);
+        InputStream stream = this.parameters.setAsciiStream(parameterIndex, x, length, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setAsciiStream(parameterIndex, stream, length);
     }
 
     @SuppressWarnings("deprecation")
     public void setUnicodeStream(int parameterIndex, InputStream x, int length) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setUnicodeStream(parameterIndex, x, length);
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x, int length) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setBinaryStream(parameterIndex, x, length);
+        InputStream stream = this.parameters.setBinaryStream(parameterIndex, x, length, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setBinaryStream(parameterIndex, stream, length);
     }
 
     public void clearParameters() throws SQLException {
+        this.parameters.clear();
         wrappedPreparedStatement.clearParameters();
     }
 
     public void setObject(int parameterIndex, Object x, int targetSqlType) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setObject(parameterIndex, x, targetSqlType, null);
         wrappedPreparedStatement.setObject(parameterIndex, x, targetSqlType);
     }
 
     public void setObject(int parameterIndex, Object x) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setObject(parameterIndex, x, null, null);
         wrappedPreparedStatement.setObject(parameterIndex, x);
     }
 
     public void addBatch() throws SQLException {
         wrappedPreparedStatement.addBatch();
+        this.batch.add(this.sql);
     }
 
     public void setCharacterStream(int parameterIndex, Reader reader, int length) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setCharacterStream(parameterIndex, reader, length);
+        Reader stream = this.parameters.setCharacterStream(parameterIndex, reader, length, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setCharacterStream(parameterIndex, stream, length);
     }
 
     public void setRef(int parameterIndex, Ref x) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setRef(parameterIndex, x);
     }
 
     public void setBlob(int parameterIndex, Blob x) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setBlob(parameterIndex, x);
     }
 
     public void setClob(int parameterIndex, Clob x) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setClob(parameterIndex, x);
     }
 
     public void setArray(int parameterIndex, Array x) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setArray(parameterIndex, x);
     }
 
@@ -386,28 +494,28 @@ public class PreparedStatementWrapper implements PreparedStatement {
         return wrappedPreparedStatement.getMetaData();
     }
 
-    public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException { //TODO
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+    public void setDate(int parameterIndex, Date x, Calendar cal) throws SQLException {
+        this.parameters.setDate(parameterIndex, x, cal);
         wrappedPreparedStatement.setDate(parameterIndex, x, cal);
     }
 
-    public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException { //TODO
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+    public void setTime(int parameterIndex, Time x, Calendar cal) throws SQLException {
+        this.parameters.setTime(parameterIndex, x, cal);
         wrappedPreparedStatement.setTime(parameterIndex, x, cal);
     }
 
-    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException { //TODO
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+    public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal) throws SQLException {
+        this.parameters.setTimestamp(parameterIndex, x, cal);
         wrappedPreparedStatement.setTimestamp(parameterIndex, x, cal);
     }
 
     public void setNull(int parameterIndex, int sqlType, String typeName) throws SQLException {
-        this.variables.put(parameterIndex - 1, "null");
+        this.parameters.setNull(parameterIndex, sqlType, typeName);
         wrappedPreparedStatement.setNull(parameterIndex, sqlType, typeName);
     }
 
     public void setURL(int parameterIndex, URL x) throws SQLException {
-        this.variables.put(parameterIndex - 1, String.valueOf(x));
+        this.parameters.setURL(parameterIndex, x);
         wrappedPreparedStatement.setURL(parameterIndex, x);
     }
 
@@ -416,97 +524,117 @@ public class PreparedStatementWrapper implements PreparedStatement {
     }
 
     public void setRowId(int parameterIndex, RowId x) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setRowId(parameterIndex, x);
     }
 
     public void setNString(int parameterIndex, String value) throws SQLException {
-        this.variables.put(parameterIndex - 1, value);
+        this.parameters.setNString(parameterIndex, value);
         wrappedPreparedStatement.setNString(parameterIndex, value);
     }
 
     public void setNCharacterStream(int parameterIndex, Reader value, long length) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setNCharacterStream(parameterIndex, value, length);
+        Reader stream = this.parameters.setNCharacterStream(parameterIndex, value, length, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setNCharacterStream(parameterIndex, stream, length);
     }
 
     public void setNClob(int parameterIndex, NClob value) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setNClob(parameterIndex, value);
     }
 
     public void setClob(int parameterIndex, Reader reader, long length) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setClob(parameterIndex, reader, length);
     }
 
     public void setBlob(int parameterIndex, InputStream inputStream, long length) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setBlob(parameterIndex, inputStream, length);
     }
 
     public void setNClob(int parameterIndex, Reader reader, long length) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setNClob(parameterIndex, reader, length);
     }
 
     public void setSQLXML(int parameterIndex, SQLXML xmlObject) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setSQLXML(parameterIndex, xmlObject);
     }
 
     public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
         wrappedPreparedStatement.setObject(parameterIndex, x, targetSqlType, scaleOrLength);
     }
 
     public void setAsciiStream(int parameterIndex, InputStream x, long length) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setAsciiStream(parameterIndex, x, length);
+        InputStream stream = this.parameters.setAsciiStream(parameterIndex, x, length, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setAsciiStream(parameterIndex, stream, length);
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x, long length) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setBinaryStream(parameterIndex, x, length);
+        InputStream stream = this.parameters.setBinaryStream(parameterIndex, x, length, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setBinaryStream(parameterIndex, stream, length);
     }
 
     public void setCharacterStream(int parameterIndex, Reader reader, long length) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setCharacterStream(parameterIndex, reader, length);
+        Reader stream = this.parameters.setCharacterStream(parameterIndex, reader, length, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setCharacterStream(parameterIndex, stream, length);
     }
 
     public void setAsciiStream(int parameterIndex, InputStream x) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setAsciiStream(parameterIndex, x);
+        InputStream stream = this.parameters.setAsciiStream(parameterIndex, x, -1, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setAsciiStream(parameterIndex, stream);
     }
 
     public void setBinaryStream(int parameterIndex, InputStream x) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setBinaryStream(parameterIndex, x);
+        InputStream stream = this.parameters.setBinaryStream(parameterIndex, x, -1, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setBinaryStream(parameterIndex, stream);
     }
 
     public void setCharacterStream(int parameterIndex, Reader reader) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setCharacterStream(parameterIndex, reader);
+        Reader stream = this.parameters.setCharacterStream(parameterIndex, reader, -1, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setCharacterStream(parameterIndex, stream);
     }
 
     public void setNCharacterStream(int parameterIndex, Reader value) throws SQLException {
-        this.cacheable = false;
-        wrappedPreparedStatement.setNCharacterStream(parameterIndex, value);
+        Reader stream = this.parameters.setNCharacterStream(parameterIndex, value, -1, redisClient.getParameterStreamMaxBytes());
+        wrappedPreparedStatement.setNCharacterStream(parameterIndex, stream);
     }
 
     public void setClob(int parameterIndex, Reader reader) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setClob(parameterIndex, reader);
     }
 
     public void setBlob(int parameterIndex, InputStream inputStream) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setBlob(parameterIndex, inputStream);
     }
 
     public void setNClob(int parameterIndex, Reader reader) throws SQLException {
-        this.cacheable = false;
+        this.parameters.setUncacheable(parameterIndex);
         wrappedPreparedStatement.setNClob(parameterIndex, reader);
     }
+
+    /**
+     * Records the result of a query run through the cache
+     * @param resultSet The result of the query
+     * @return The result of the query
+     */
+    private ResultSet setResult(ResultSet resultSet) {
+        this.cachedResult = true;
+        this.resultSet = resultSet;
+        return resultSet;
+    }
+
+    /**
+     * Forgets the result of the last query run through the cache. The result is left open, as it
+     * may still be read.
+     */
+    private void clearResult() {
+        this.cachedResult = false;
+        this.resultSet = null;
+    }
 }
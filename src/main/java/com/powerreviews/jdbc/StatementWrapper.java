@@ -1,8 +1,11 @@
 package com.powerreviews.jdbc;
 
 import com.powerreviews.jdbc.redis.RedisClient;
+import com.powerreviews.jdbc.util.SqlUtil;
 
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Created by dado on 3/31/16.
@@ -11,6 +14,12 @@ public class StatementWrapper implements Statement {
     private Connection parentConnection;
     private Statement wrappedStatement;
     private RedisClient redisClient;
+    // true if the last statement has been run through the cache, its result is then returned by
+    // getResultSet instead of the result of the wrapped statement
+    private boolean cachedResult;
+    private ResultSet resultSet;
+    // The statements added to the batch, whose tables are invalidated once it is executed
+    private final List<String> batch = new ArrayList<>();
 
     public StatementWrapper(Connection parentConnection, Statement wrappedStatement, RedisClient redisClient) {
         this.parentConnection = parentConnection;
@@ -42,34 +51,60 @@ public class StatementWrapper implements Statement {
     public ResultSet executeQuery(String sql) throws SQLException {
         // Use the Redis client class to execute the query in order to retrieve the
         // result set from cache if already present
-        return redisClient.executeQuery(this.wrappedStatement, sql);
+        return setResult(redisClient.executeQuery(this.wrappedStatement, sql));
     }
 
     public boolean execute(String sql) throws SQLException {
-        return wrappedStatement.execute(sql);
+        // Read only queries are run through the cache, as with executeQuery
+        if(SqlUtil.isReadOnlyQuery(sql)) {
+            setResult(redisClient.executeQuery(this.wrappedStatement, sql));
+            return true;
+        }
+        clearResult();
+        boolean result = wrappedStatement.execute(sql);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public boolean execute(String sql, int autoGeneratedKeys) throws SQLException {
-        return wrappedStatement.execute(sql, autoGeneratedKeys);
+        clearResult();
+        boolean result = wrappedStatement.execute(sql, autoGeneratedKeys);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public boolean execute(String sql, int[] columnIndexes) throws SQLException {
-        return wrappedStatement.execute(sql, columnIndexes);
+        clearResult();
+        boolean result = wrappedStatement.execute(sql, columnIndexes);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public boolean execute(String sql, String[] columnNames) throws SQLException {
-        return wrappedStatement.execute(sql, columnNames);
+        clearResult();
+        boolean result = wrappedStatement.execute(sql, columnNames);
+        redisClient.invalidateModifiedTables(sql);
+        return result;
     }
 
     public ResultSet getResultSet() throws SQLException {
-        return wrappedStatement.getResultSet();
+        return this.cachedResult ? this.resultSet : wrappedStatement.getResultSet();
     }
 
     public int executeUpdate(String sql) throws SQLException {
-        return wrappedStatement.executeUpdate(sql);
+        clearResult();
+        int count = wrappedStatement.executeUpdate(sql);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public void close() throws SQLException {
+        // Closing the statement closes its current result, so that a result streamed from the
+        // database and not read to the end releases its fill lock
+        if(this.resultSet != null) {
+            this.resultSet.close();
+        }
+        clearResult();
         wrappedStatement.close();
     }
 
@@ -126,11 +161,12 @@ public class StatementWrapper implements Statement {
     }
 
     public int getUpdateCount() throws SQLException {
-        return wrappedStatement.getUpdateCount();
+        // A query has no update count
+        return this.cachedResult ? -1 : wrappedStatement.getUpdateCount();
     }
 
     public boolean getMoreResults() throws SQLException {
-        return wrappedStatement.getMoreResults();
+        return getMoreResults(CLOSE_CURRENT_RESULT);
     }
 
     public void setFetchDirection(int direction) throws SQLException {
@@ -159,14 +195,22 @@ public class StatementWrapper implements Statement {
 
     public void addBatch(String sql) throws SQLException {
         wrappedStatement.addBatch(sql);
+        this.batch.add(sql);
     }
 
     public void clearBatch() throws SQLException {
         wrappedStatement.clearBatch();
+        this.batch.clear();
     }
 
     public int[] executeBatch() throws SQLException {
-        return wrappedStatement.executeBatch();
+        clearResult();
+        // The batch is emptied once executed, whether it succeeds or not
+        List<String> sqls = new ArrayList<>(this.batch);
+        this.batch.clear();
+        int[] counts = wrappedStatement.executeBatch();
+        redisClient.invalidateModifiedTables(sqls);
+        return counts;
     }
 
     public Connection getConnection() throws SQLException {
@@ -174,7 +218,15 @@ public class StatementWrapper implements Statement {
     }
 
     public boolean getMoreResults(int current) throws SQLException {
-        return wrappedStatement.getMoreResults(current);
+        if(!this.cachedResult) {
+            return wrappedStatement.getMoreResults(current);
+        }
+        // A query has a single result
+        if(this.resultSet != null && current != KEEP_CURRENT_RESULT) {
+            this.resultSet.close();
+        }
+        this.resultSet = null;
+        return false;
     }
 
     public ResultSet getGeneratedKeys() throws SQLException {
@@ -182,15 +234,24 @@ public class StatementWrapper implements Statement {
     }
 
     public int executeUpdate(String sql, int autoGeneratedKeys) throws SQLException {
-        return wrappedStatement.executeUpdate(sql, autoGeneratedKeys);
+        clearResult();
+        int count = wrappedStatement.executeUpdate(sql, autoGeneratedKeys);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public int executeUpdate(String sql, int[] columnIndexes) throws SQLException {
-        return wrappedStatement.executeUpdate(sql, columnIndexes);
+        clearResult();
+        int count = wrappedStatement.executeUpdate(sql, columnIndexes);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public int executeUpdate(String sql, String[] columnNames) throws SQLException {
-        return wrappedStatement.executeUpdate(sql, columnNames);
+        clearResult();
+        int count = wrappedStatement.executeUpdate(sql, columnNames);
+        redisClient.invalidateModifiedTables(sql);
+        return count;
     }
 
     public int getResultSetHoldability() throws SQLException {
@@ -208,4 +269,24 @@ public class StatementWrapper implements Statement {
     public boolean isPoolable() throws SQLException {
         return wrappedStatement.isPoolable();
     }
+
+    /**
+     * Records the result of a query run through the cache
+     * @param resultSet The result of the query
+     * @return The result of the query
+     */
+    private ResultSet setResult(ResultSet resultSet) {
+        this.cachedResult = true;
+        this.resultSet = resultSet;
+        return resultSet;
+    }
+
+    /**
+     * Forgets the result of the last query run through the cache. The result is left open, as it
+     * may still be read.
+     */
+    private void clearResult() {
+        this.cachedResult = false;
+        this.resultSet = null;
+    }
 }
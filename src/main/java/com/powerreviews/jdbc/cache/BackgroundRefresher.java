@@ -0,0 +1,92 @@
+package com.powerreviews.jdbc.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes stale cached results in the background, on a bounded number of threads and with a
+ * bounded queue of pending refreshes. A key is refreshed at most once at a time: refreshes of a
+ * key that is already being refreshed, or that do not fit in the queue, are dropped, the key
+ * will be refreshed again the next time its stale result is read.
+ */
+public class BackgroundRefresher {
+    final private static Logger log = LoggerFactory.getLogger(BackgroundRefresher.class);
+
+    // Idle refresh threads are stopped after one minute
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    // Refreshers are shared by all the connections using the same Redis server
+    private static final ConcurrentMap<String, BackgroundRefresher> refreshers = new ConcurrentHashMap<>();
+
+    private final ThreadPoolExecutor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    BackgroundRefresher(String name, int threads, int queueSize) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "redshift-cache-refresh-" + name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Returns the refresher with the given name, creating it the first time it is requested
+     * @param name The refresher name, usually identifying the Redis server the results are cached in
+     * @param threads The maximum number of concurrent refreshes. Only used when the refresher is created.
+     * @param queueSize The maximum number of pending refreshes. Only used when the refresher is created.
+     * @return The shared refresher
+     */
+    public static BackgroundRefresher getBackgroundRefresher(String name, int threads, int queueSize) {
+        BackgroundRefresher refresher = refreshers.get(name);
+        if(refresher == null) {
+            refresher = refreshers.computeIfAbsent(name, key -> new BackgroundRefresher(key, threads, queueSize));
+        }
+        return refresher;
+    }
+
+    /**
+     * Schedules the refresh of a key, unless the key is already being refreshed
+     * @param key The cache key
+     * @param refresh Runs the query and caches its result
+     * @return true if the refresh has been scheduled
+     */
+    public boolean refresh(String key, Runnable refresh) {
+        if(!pending.add(key)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh.run();
+                } catch (RuntimeException e) {
+                    log.error("Unable to refresh cached result. Key: {}", key, e);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.debug("Too many pending refreshes, refresh dropped. Key: {}", key);
+            pending.remove(key);
+            return false;
+        }
+    }
+
+    int pendingCount() {
+        return pending.size();
+    }
+}
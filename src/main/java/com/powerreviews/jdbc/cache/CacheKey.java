@@ -0,0 +1,149 @@
+package com.powerreviews.jdbc.cache;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Key of a cached result set. The key is either the query itself or a fixed size hash of the
+ * query, in which case the query is also stored with the cached value so that hash collisions
+ * can be detected when the value is read.
+ * <p>
+ * The query of a hashed key can be given as a {@link Text}, which is only written when the query
+ * is needed, so that no text of the query is built when its result is found in the cache.
+ */
+public class CacheKey {
+    /**
+     * A query written on demand, such as a prepared statement with its current parameter values
+     */
+    public interface Text {
+        /**
+         * Writes the query
+         * @param sql The builder to append the query to
+         */
+        void appendTo(StringBuilder sql);
+    }
+
+    // Maximum number of characters kept by the builders reused to compare queries
+    private static final int MAX_REUSED_CHARS = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> builders = ThreadLocal.withInitial(StringBuilder::new);
+
+    private final Text text;
+    private volatile String sql;
+    private final String key;
+    private final byte[] redisKey;
+    private final boolean hashed;
+
+    private CacheKey(Text text, String sql, String key, boolean hashed) {
+        this.text = text;
+        this.sql = sql;
+        this.key = key;
+        this.redisKey = key.getBytes(StandardCharsets.UTF_8);
+        this.hashed = hashed;
+    }
+
+    /**
+     * @param sql The query
+     * @return A key made of the query itself
+     */
+    public static CacheKey raw(String sql) {
+        return new CacheKey(null, sql, sql, false);
+    }
+
+    /**
+     * @param sql The query
+     * @param prefix The prefix of the key
+     * @return A key made of the query itself under a prefix
+     */
+    public static CacheKey prefixed(String sql, String prefix) {
+        return new CacheKey(null, sql, prefix + sql, false);
+    }
+
+    /**
+     * @param sql The query
+     * @param key The hashed key of the query
+     * @return A key made of the hash of the query
+     */
+    public static CacheKey hashed(String sql, String key) {
+        return new CacheKey(null, sql, key, true);
+    }
+
+    /**
+     * @param text Writes the query. It must write the same query until the key is detached.
+     * @param key The hashed key of the query
+     * @return A key made of the hash of the query
+     * @see #detach()
+     */
+    public static CacheKey hashed(Text text, String key) {
+        return new CacheKey(text, null, key, true);
+    }
+
+    /**
+     * @return The query identified by this key
+     */
+    public String getSql() {
+        String sql = this.sql;
+        if(sql == null) {
+            StringBuilder builder = new StringBuilder();
+            this.text.appendTo(builder);
+            sql = builder.toString();
+            this.sql = sql;
+        }
+        return sql;
+    }
+
+    /**
+     * Writes the query now, so that the key can still be used once the statement it comes from
+     * has been reused with other parameter values
+     * @return This key
+     */
+    public CacheKey detach() {
+        getSql();
+        return this;
+    }
+
+    /**
+     * @param sql A query
+     * @return true if the query is the query identified by this key. The query of the key is
+     * compared as it is written, without building it.
+     */
+    public boolean matches(String sql) {
+        String keySql = this.sql;
+        if(keySql != null || sql == null) {
+            return sql != null && sql.equals(keySql);
+        }
+        StringBuilder builder = builders.get();
+        builder.setLength(0);
+        this.text.appendTo(builder);
+        boolean matches = sql.contentEquals(builder);
+        if(builder.length() > MAX_REUSED_CHARS) {
+            builders.remove();
+        }
+        return matches;
+    }
+
+    /**
+     * @return The key used by the process local caches
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The UTF-8 bytes of the key used in Redis
+     */
+    public byte[] getRedisKey() {
+        return redisKey;
+    }
+
+    /**
+     * @return true if the key is a hash of the query
+     */
+    public boolean isHashed() {
+        return hashed;
+    }
+
+    @Override
+    public String toString() {
+        return key;
+    }
+}
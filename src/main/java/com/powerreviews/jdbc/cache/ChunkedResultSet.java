@@ -0,0 +1,179 @@
+package com.powerreviews.jdbc.cache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Forward only ResultSet over a cached result stored in chunks of rows. The rows of a chunk are
+ * returned while the next chunk is loaded in the background, so that only the first chunk has
+ * to be loaded before the first row is returned. When all the prefetch threads are busy and their
+ * queue is full, the next chunk is loaded on the caller's thread once its rows are needed.
+ */
+public class ChunkedResultSet implements InvocationHandler {
+    // Prefetch threads are shared by all the result sets, and only kept while they are in use
+    private static final int PREFETCH_THREADS = 16;
+    private static final int PREFETCH_QUEUE_SIZE = 64;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final ThreadPoolExecutor prefetchExecutor;
+
+    static {
+        AtomicInteger threadCount = new AtomicInteger();
+        prefetchExecutor = new ThreadPoolExecutor(PREFETCH_THREADS, PREFETCH_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(PREFETCH_QUEUE_SIZE), runnable -> {
+                    Thread thread = new Thread(runnable, "redshift-cache-prefetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        prefetchExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Loads a chunk of rows
+     */
+    public interface ChunkLoader {
+        /**
+         * @param chunk The chunk index
+         * @return The rows of the chunk
+         * @throws SQLException If the chunk cannot be loaded
+         */
+        ResultSet load(int chunk) throws SQLException;
+    }
+
+    private final int chunkCount;
+    private final ChunkLoader loader;
+    private final Executor executor;
+    private ResultSet current;
+    private int chunk;
+    private int row;
+    private CompletableFuture<ResultSet> next;
+
+    private ChunkedResultSet(ResultSet first, int chunkCount, ChunkLoader loader, Executor executor) {
+        this.current = first;
+        this.chunkCount = chunkCount;
+        this.loader = loader;
+        this.executor = executor;
+        prefetch();
+    }
+
+    /**
+     * @param first The rows of the first chunk
+     * @param chunkCount The number of chunks
+     * @param loader Loads the other chunks
+     * @return A ResultSet returning the rows of all the chunks
+     */
+    public static ResultSet open(ResultSet first, int chunkCount, ChunkLoader loader) {
+        return open(first, chunkCount, loader, prefetchExecutor);
+    }
+
+    /**
+     * @param executor Loads the next chunk in the background. Chunks it rejects are loaded by the caller.
+     */
+    static ResultSet open(ResultSet first, int chunkCount, ChunkLoader loader, Executor executor) {
+        return (ResultSet)Proxy.newProxyInstance(ChunkedResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new ChunkedResultSet(first, chunkCount, loader, executor));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch(method.getName()) {
+            case "next":
+                boolean hasRow = next();
+                this.row = hasRow ? this.row + 1 : 0;
+                return hasRow;
+            case "getRow":
+                return this.row;
+            case "getType":
+                return ResultSet.TYPE_FORWARD_ONLY;
+            case "close":
+                if(this.next != null) {
+                    this.next.cancel(false);
+                    this.next = null;
+                }
+                return delegate(method, args);
+            case "previous":
+            case "first":
+            case "last":
+            case "beforeFirst":
+            case "afterLast":
+            case "absolute":
+            case "relative":
+                throw new SQLException("Operation not supported on a forward only result set: " + method.getName());
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "ChunkedResultSet[" + this.chunkCount + " chunks]";
+            default:
+                return delegate(method, args);
+        }
+    }
+
+    private boolean next() throws SQLException {
+        while(!this.current.next()) {
+            int nextChunk = this.chunk + 1;
+            if(nextChunk >= this.chunkCount) {
+                return false;
+            }
+            ResultSet loaded = this.next != null ? await(this.next) : this.loader.load(nextChunk);
+            this.current.close();
+            this.current = loaded;
+            this.chunk++;
+            prefetch();
+        }
+        return true;
+    }
+
+    private void prefetch() {
+        int nextChunk = this.chunk + 1;
+        if(nextChunk >= this.chunkCount) {
+            this.next = null;
+            return;
+        }
+        try {
+            this.next = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return this.loader.load(nextChunk);
+                } catch (SQLException e) {
+                    throw new CompletionException(e);
+                }
+            }, this.executor);
+        } catch (RejectedExecutionException e) {
+            // The prefetch threads are busy: the chunk is loaded when its rows are needed
+            this.next = null;
+        }
+    }
+
+    private static ResultSet await(CompletableFuture<ResultSet> next) throws SQLException {
+        try {
+            return next.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while loading cached rows", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            throw cause instanceof SQLException ? (SQLException)cause : new SQLException("Unable to load cached rows", cause);
+        }
+    }
+
+    private Object delegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(this.current, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.powerreviews.jdbc.cache;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Forward only ResultSet returning the rows read so far from a query result, followed by the rows
+ * the query result has left. Used when a result turns out to be too large to be cached after some of
+ * its rows have been read: the rows are read on the caller's thread, and closing the result set closes
+ * the query result.
+ */
+public class ConcatResultSet implements InvocationHandler {
+    private final ResultSet prefix;
+    private final ResultSet rest;
+    private ResultSet current;
+    private int row;
+
+    private ConcatResultSet(ResultSet prefix, ResultSet rest) {
+        this.prefix = prefix;
+        this.rest = rest;
+        this.current = prefix;
+    }
+
+    /**
+     * @param prefix The rows read so far, positioned before their first row
+     * @param rest The query result, positioned on the last row of the prefix
+     * @return A ResultSet returning the rows of the prefix, then the rows left in the query result
+     */
+    public static ResultSet open(ResultSet prefix, ResultSet rest) {
+        return (ResultSet)Proxy.newProxyInstance(ConcatResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                new ConcatResultSet(prefix, rest));
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch(method.getName()) {
+            case "next":
+                boolean hasRow = next();
+                this.row = hasRow ? this.row + 1 : 0;
+                return hasRow;
+            case "getRow":
+                return this.row;
+            case "getType":
+                return ResultSet.TYPE_FORWARD_ONLY;
+            case "isFirst":
+                return this.row == 1;
+            case "isLast":
+                // The query result is still positioned on the last row of the prefix
+                return this.current == this.prefix ? this.prefix.isLast() && this.rest.isLast() : this.rest.isLast();
+            case "isAfterLast":
+                return this.current == this.rest && this.rest.isAfterLast();
+            case "isClosed":
+                return this.rest.isClosed();
+            case "close":
+                try {
+                    this.prefix.close();
+                } finally {
+                    this.rest.close();
+                }
+                return null;
+            case "previous":
+            case "first":
+            case "last":
+            case "beforeFirst":
+            case "afterLast":
+            case "absolute":
+            case "relative":
+                throw new SQLException("Operation not supported on a forward only result set: " + method.getName());
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "ConcatResultSet[" + this.rest + "]";
+            default:
+                return delegate(method, args);
+        }
+    }
+
+    private boolean next() throws SQLException {
+        if(this.current == this.prefix) {
+            if(this.prefix.next()) {
+                return true;
+            }
+            this.current = this.rest;
+        }
+        return this.rest.next();
+    }
+
+    private Object delegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(this.current, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.powerreviews.jdbc.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process local cache of serialized result sets that sits in front of Redis. The cache is bounded
+ * by the total number of bytes it holds and uses a frequency aware (W-TinyLFU) admission and
+ * eviction policy, so that a burst of one-off queries does not push the hot queries out.
+ */
+public class NearCache {
+    // Approximate per entry overhead in bytes: the entry itself, the key String and the value array headers
+    private static final int ENTRY_OVERHEAD = 96;
+
+    // Near caches are shared by all the connections using the same Redis server
+    private static final ConcurrentMap<String, NearCache> nearCaches = new ConcurrentHashMap<>();
+
+    private final Cache<String, byte[]> cache;
+
+    NearCache(long maxBytes, Integer expirationSeconds) {
+        Caffeine<String, byte[]> builder = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String key, byte[] value) -> ENTRY_OVERHEAD + 2 * key.length() + value.length);
+        if(expirationSeconds != null) {
+            builder.expireAfterWrite(expirationSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    /**
+     * Returns the near cache with the given name, creating it the first time it is requested.
+     * The size and expiration are only used when the cache is created.
+     * @param name The cache name, usually identifying the Redis server the cache sits in front of
+     * @param maxBytes The maximum number of bytes held by the cache
+     * @param expirationSeconds The number of seconds an entry is kept after it has been added,
+     *                          null if entries should only be evicted because of size
+     * @return The shared near cache
+     */
+    public static NearCache getNearCache(String name, long maxBytes, Integer expirationSeconds) {
+        NearCache nearCache = nearCaches.get(name);
+        if(nearCache == null) {
+            nearCache = nearCaches.computeIfAbsent(name, key -> new NearCache(maxBytes, expirationSeconds));
+        }
+        return nearCache;
+    }
+
+    /**
+     * @param key The cache key
+     * @return The cached value, null if not present
+     */
+    public byte[] get(String key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Adds a value to the cache. The value might not be retained if it is less valuable than
+     * the entries it would evict.
+     * @param key The cache key
+     * @param value The value to cache
+     */
+    public void put(String key, byte[] value) {
+        cache.put(key, value);
+    }
+
+    /**
+     * Removes a value from the cache
+     * @param key The cache key
+     */
+    public void invalidate(String key) {
+        cache.invalidate(key);
+    }
+
+    void cleanUp() {
+        cache.cleanUp();
+    }
+}
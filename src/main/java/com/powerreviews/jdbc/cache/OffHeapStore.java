@@ -0,0 +1,270 @@
+package com.powerreviews.jdbc.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Process local store of serialized result sets kept outside of the Java heap, in direct
+ * ByteBuffers, so that the number of cached results does not affect garbage collection.
+ * <p>
+ * The store is split in segments, each one owning a direct buffer used as a circular log:
+ * values are appended at the write position and, when there is no more room, the oldest values
+ * are reclaimed. Values that have been read since they were written get a second chance and are
+ * kept as the newest values instead of being reclaimed (CLOCK eviction).
+ * <p>
+ * Values are handed to a {@link Reader} while the segment is locked for reading, so they can be
+ * decoded straight from the off-heap memory. Anything the reader keeps once it returns must be
+ * copied to the heap: the space of the value may be reused as soon as the lock is released.
+ */
+public class OffHeapStore {
+    // Segments are between 64MB and 1GB large, there are at most 16 of them unless the
+    // capacity requires more
+    private static final long MIN_SEGMENT_SIZE = 64L * 1024 * 1024;
+    private static final long MAX_SEGMENT_SIZE = 1024L * 1024 * 1024;
+    private static final int MAX_SEGMENTS = 16;
+
+    // Off-heap stores are shared by all the connections using the same Redis server
+    private static final ConcurrentMap<String, OffHeapStore> offHeapStores = new ConcurrentHashMap<>();
+
+    private final Segment[] segments;
+    private final long expirationNanos;
+
+    /**
+     * Decodes a value stored off heap
+     * @param <T> The type of the decoded value
+     */
+    public interface Reader<T> {
+        /**
+         * @param value A read only buffer positioned at the beginning of the value. The buffer
+         *              is only valid until this method returns.
+         * @return The decoded value
+         * @throws IOException If the value cannot be decoded
+         */
+        T read(ByteBuffer value) throws IOException;
+    }
+
+    OffHeapStore(long capacityBytes, Integer expirationSeconds) {
+        int segmentCount = (int)Math.max(1, Math.min(MAX_SEGMENTS, capacityBytes / MIN_SEGMENT_SIZE));
+        segmentCount = (int)Math.max(segmentCount, (capacityBytes + MAX_SEGMENT_SIZE - 1) / MAX_SEGMENT_SIZE);
+        this.segments = new Segment[segmentCount];
+        for(int i = 0; i < segmentCount; i++) {
+            this.segments[i] = new Segment((int)(capacityBytes / segmentCount));
+        }
+        this.expirationNanos = expirationSeconds != null ? TimeUnit.SECONDS.toNanos(expirationSeconds) : -1;
+    }
+
+    /**
+     * Returns the off-heap store with the given name, creating it the first time it is requested.
+     * The capacity and expiration are only used when the store is created.
+     * @param name The store name, usually identifying the Redis server the store sits in front of
+     * @param capacityMB The amount of off-heap memory used by the store, in megabytes
+     * @param expirationSeconds The number of seconds a value is kept after it has been added,
+     *                          null if values should only be evicted because of size
+     * @return The shared off-heap store
+     */
+    public static OffHeapStore getOffHeapStore(String name, int capacityMB, Integer expirationSeconds) {
+        OffHeapStore offHeapStore = offHeapStores.get(name);
+        if(offHeapStore == null) {
+            offHeapStore = offHeapStores.computeIfAbsent(name,
+                    key -> new OffHeapStore(capacityMB * 1024L * 1024L, expirationSeconds));
+        }
+        return offHeapStore;
+    }
+
+    /**
+     * Looks up a value and decodes it straight from the off-heap memory
+     * @param key The value key
+     * @param reader The reader used to decode the value
+     * @param <T> The type of the decoded value
+     * @return The decoded value, null if the value is not present or has expired
+     * @throws IOException If the reader is unable to decode the value
+     */
+    public <T> T get(String key, Reader<T> reader) throws IOException {
+        return segmentFor(key).get(key, reader);
+    }
+
+    /**
+     * Copies a value into the off-heap memory, evicting older values if needed. Values larger
+     * than a segment are not stored.
+     * @param key The value key
+     * @param value The value to store
+     * @return true if the value has been stored
+     */
+    public boolean put(String key, byte[] value) {
+        return segmentFor(key).put(key, value, this.expirationNanos >= 0, System.nanoTime() + this.expirationNanos);
+    }
+
+    /**
+     * Removes a value from the store
+     * @param key The value key
+     */
+    public void invalidate(String key) {
+        segmentFor(key).invalidate(key);
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return this.segments[(hash & 0x7fffffff) % this.segments.length];
+    }
+
+    private static class Entry {
+        final String key;
+        final int length;
+        final boolean expires;
+        final long expiresAt;
+        int offset;
+        boolean live = true;
+        volatile boolean accessed;
+
+        Entry(String key, int offset, int length, boolean expires, long expiresAt) {
+            this.key = key;
+            this.offset = offset;
+            this.length = length;
+            this.expires = expires;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return this.expires && now - this.expiresAt >= 0;
+        }
+    }
+
+    private static class Segment {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final ByteBuffer buffer;
+        private final int capacity;
+        private final Map<String, Entry> index = new HashMap<>();
+        // Entries in the same order as they are laid out in the buffer, oldest first
+        private final ArrayDeque<Entry> log = new ArrayDeque<>();
+        private final byte[] copyBuffer = new byte[8192];
+        private int writePosition;
+
+        Segment(int capacity) {
+            this.capacity = capacity;
+            this.buffer = ByteBuffer.allocateDirect(capacity);
+        }
+
+        <T> T get(String key, Reader<T> reader) throws IOException {
+            lock.readLock().lock();
+            try {
+                Entry entry = index.get(key);
+                if(entry == null || entry.isExpired(System.nanoTime())) {
+                    return null;
+                }
+                entry.accessed = true;
+                ByteBuffer value = this.buffer.asReadOnlyBuffer();
+                value.limit(entry.offset + entry.length).position(entry.offset);
+                return reader.read(value.slice());
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        boolean put(String key, byte[] value, boolean expires, long expiresAt) {
+            if(value.length > this.capacity) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                removeEntry(index.get(key));
+                reclaim(value.length);
+
+                Entry entry = new Entry(key, this.writePosition, value.length, expires, expiresAt);
+                ByteBuffer target = this.buffer.duplicate();
+                target.position(this.writePosition);
+                target.put(value);
+                this.writePosition += value.length;
+
+                index.put(key, entry);
+                log.addLast(entry);
+                return true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void invalidate(String key) {
+            lock.writeLock().lock();
+            try {
+                removeEntry(index.get(key));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeEntry(Entry entry) {
+            if(entry != null) {
+                // The space is reclaimed when the write position reaches the entry
+                entry.live = false;
+                index.remove(entry.key);
+            }
+        }
+
+        /**
+         * Makes room for length bytes at the write position, reclaiming the oldest entries
+         */
+        private void reclaim(int length) {
+            long now = System.nanoTime();
+            while(true) {
+                Entry oldest = log.peekFirst();
+                if(oldest == null) {
+                    if(this.capacity - this.writePosition < length) {
+                        this.writePosition = 0;
+                    }
+                    return;
+                }
+                if(oldest.offset >= this.writePosition) {
+                    // The free space goes from the write position to the oldest entry
+                    if(oldest.offset - this.writePosition >= length) {
+                        return;
+                    }
+                } else {
+                    // The oldest entry is behind the write position: the free space goes up to
+                    // the end of the buffer, wrap around if that is not enough
+                    if(this.capacity - this.writePosition >= length) {
+                        return;
+                    }
+                    this.writePosition = 0;
+                    continue;
+                }
+
+                log.removeFirst();
+                if(oldest.live && oldest.accessed && !oldest.isExpired(now)) {
+                    // Second chance: move the entry next to the write position and make it the newest
+                    move(oldest, this.writePosition);
+                    oldest.accessed = false;
+                    this.writePosition += oldest.length;
+                    log.addLast(oldest);
+                } else if(oldest.live) {
+                    removeEntry(oldest);
+                }
+            }
+        }
+
+        private void move(Entry entry, int offset) {
+            if(entry.offset != offset) {
+                // The target always precedes the source, so copying front to back is safe
+                ByteBuffer source = this.buffer.duplicate();
+                ByteBuffer target = this.buffer.duplicate();
+                int copied = 0;
+                while(copied < entry.length) {
+                    int chunk = Math.min(this.copyBuffer.length, entry.length - copied);
+                    source.position(entry.offset + copied);
+                    source.get(this.copyBuffer, 0, chunk);
+                    target.position(offset + copied);
+                    target.put(this.copyBuffer, 0, chunk);
+                    copied += chunk;
+                }
+                entry.offset = offset;
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.powerreviews.jdbc.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces concurrent cache misses on the same key: the first caller, the leader, runs the query
+ * while the other callers wait for the serialized result the leader publishes, instead of running
+ * the same query at the same time.
+ */
+public class SingleFlight {
+    final private static Logger log = LoggerFactory.getLogger(SingleFlight.class);
+
+    // Flights are shared by all the connections using the same Redis server
+    private static final ConcurrentMap<String, SingleFlight> singleFlights = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, CompletableFuture<byte[]>> flights = new ConcurrentHashMap<>();
+
+    SingleFlight() {
+    }
+
+    /**
+     * Returns the single flight registry with the given name, creating it the first time it is requested
+     * @param name The registry name, usually identifying the Redis server the results are cached in
+     * @return The shared single flight registry
+     */
+    public static SingleFlight getSingleFlight(String name) {
+        SingleFlight singleFlight = singleFlights.get(name);
+        if(singleFlight == null) {
+            singleFlight = singleFlights.computeIfAbsent(name, key -> new SingleFlight());
+        }
+        return singleFlight;
+    }
+
+    /**
+     * Tries to become the leader of the flight of a key
+     * @param key The cache key
+     * @param flight The future the caller will complete with the serialized result if it becomes the leader
+     * @return null if the caller is the leader, the future of the current leader otherwise
+     */
+    public CompletableFuture<byte[]> join(String key, CompletableFuture<byte[]> flight) {
+        return flights.putIfAbsent(key, flight);
+    }
+
+    /**
+     * Ends a flight. Waiters that have not received a result yet receive null. Must be called by
+     * the leader once the result is cached, or if the query failed.
+     * @param key The cache key
+     * @param flight The future passed to {@link #join(String, CompletableFuture)}
+     */
+    public void land(String key, CompletableFuture<byte[]> flight) {
+        flights.remove(key, flight);
+        flight.complete(null);
+    }
+
+    /**
+     * Waits for the result published by the leader of a flight
+     * @param flight The future of the leader
+     * @param timeoutMillis The maximum number of milliseconds to wait
+     * @return The serialized result, null if the leader did not publish one in time
+     */
+    public static byte[] await(CompletableFuture<byte[]> flight, long timeoutMillis) {
+        try {
+            return flight.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Timed out waiting for a concurrent execution of the same query");
+            return null;
+        } catch (ExecutionException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    int size() {
+        return flights.size();
+    }
+}
@@ -0,0 +1,143 @@
+package com.powerreviews.jdbc.cache;
+
+import com.powerreviews.jdbc.codec.ResultSetEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Pass-through ResultSet that hands the rows of a query result to the caller as they are read
+ * from the database, while adding them to an encoder. The encoded result is handed to a sink once
+ * the caller has read all the rows. The result is discarded as soon as it is known it will not be
+ * cached: when the encoded rows exceed the size or row budget, when the caller moves the cursor backwards
+ * or closes the result set before its end.
+ */
+public class TeeResultSet implements InvocationHandler {
+    final private static Logger log = LoggerFactory.getLogger(TeeResultSet.class);
+
+    /**
+     * Receives the outcome of a tee, exactly once
+     */
+    public interface Sink {
+        /**
+         * Called once all the rows have been read
+         * @param encoded The encoded result set
+         */
+        void complete(byte[] encoded);
+
+        /**
+         * Called if the result set will not be cached
+         */
+        void discard();
+    }
+
+    private final ResultSet resultSet;
+    private final long maxBytes;
+    private final int maxRows;
+    private final Sink sink;
+    private ResultSetEncoder encoder;
+
+    private TeeResultSet(ResultSet resultSet, ResultSetEncoder encoder, long maxBytes, int maxRows, Sink sink) {
+        this.resultSet = resultSet;
+        this.encoder = encoder;
+        this.maxBytes = maxBytes;
+        this.maxRows = maxRows;
+        this.sink = sink;
+    }
+
+    /**
+     * Wraps a result set positioned before its first row
+     * @param resultSet The query result
+     * @param maxBytes The maximum size of the encoded rows that are buffered
+     * @param maxRows The maximum number of rows that are buffered
+     * @param sink Receives the encoded result once all the rows have been read
+     * @return The wrapped result set
+     * @throws SQLException If the result set metadata cannot be read. The sink is not called.
+     */
+    public static ResultSet tee(ResultSet resultSet, long maxBytes, int maxRows, Sink sink) throws SQLException {
+        TeeResultSet tee = new TeeResultSet(resultSet, new ResultSetEncoder(resultSet.getMetaData()), maxBytes, maxRows, sink);
+        return (ResultSet)Proxy.newProxyInstance(TeeResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, tee);
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        switch(method.getName()) {
+            case "next":
+                boolean hasRow;
+                try {
+                    hasRow = (Boolean)delegate(method, args);
+                } catch (Throwable e) {
+                    discard();
+                    throw e;
+                }
+                if(this.encoder != null) {
+                    if(hasRow) {
+                        addRow();
+                    } else {
+                        byte[] encoded = this.encoder.toByteArray();
+                        this.encoder = null;
+                        this.sink.complete(encoded);
+                    }
+                }
+                return hasRow;
+            case "close":
+            case "previous":
+            case "first":
+            case "last":
+            case "beforeFirst":
+            case "afterLast":
+            case "absolute":
+            case "relative":
+                discard();
+                return delegate(method, args);
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            case "toString":
+                return "TeeResultSet[" + this.resultSet + "]";
+            default:
+                return delegate(method, args);
+        }
+    }
+
+    private void addRow() {
+        if(this.encoder.getRowCount() >= this.maxRows) {
+            log.debug("Result set has too many rows, it will not be cached. Rows read: {}", this.encoder.getRowCount() + 1);
+            discard();
+            return;
+        }
+        try {
+            this.encoder.addRow(this.resultSet);
+        } catch (SQLException e) {
+            log.error("Unable to encode row, result set will not be cached", e);
+            discard();
+            return;
+        }
+        if(this.encoder.size() > this.maxBytes) {
+            log.debug("Result set too large to be buffered, it will not be cached. Rows read: {}", this.encoder.getRowCount());
+            discard();
+        }
+    }
+
+    private void discard() {
+        if(this.encoder != null) {
+            this.encoder = null;
+            this.sink.discard();
+        }
+    }
+
+    private Object delegate(Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(this.resultSet, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.powerreviews.jdbc.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Envelope of the values stored in the cache. The envelope is made of the format magic and version,
+ * the compression algorithm applied to the body, the uncompressed body length, the time after which
+ * the value is stale, the query the value belongs to when the cache key is a hash of the query, and
+ * the body itself, so that values can be read without knowing how they were written.
+ */
+public class CachePayload {
+    static final byte[] MAGIC = {'R', 'C', 'P'};
+    public static final int FORMAT_VERSION = 3;
+
+    private final String sql;
+    private final Compression compression;
+    private final int length;
+    private final long staleAt;
+    private final ByteBuffer body;
+
+    private CachePayload(String sql, Compression compression, int length, long staleAt, ByteBuffer body) {
+        this.sql = sql;
+        this.compression = compression;
+        this.length = length;
+        this.staleAt = staleAt;
+        this.body = body;
+    }
+
+    /**
+     * Wraps a value that never becomes stale in a payload, compressing it if it is large enough
+     * @see #encode(String, byte[], Compression, Integer, long)
+     */
+    public static byte[] encode(String sql, byte[] body, Compression compression, Integer compressionThresholdBytes) {
+        return encode(sql, body, compression, compressionThresholdBytes, 0);
+    }
+
+    /**
+     * Wraps a value in a payload, compressing it if it is large enough
+     * @param sql The query the value belongs to, null if it does not need to be stored
+     * @param body The value to wrap
+     * @param compression The compression algorithm
+     * @param compressionThresholdBytes The minimum size of the values that are compressed, null to never
+     *                                  compress values
+     * @param staleAt The time, in milliseconds since the epoch, after which the value should be refreshed,
+     *                0 if it never becomes stale
+     * @return The payload
+     */
+    public static byte[] encode(String sql, byte[] body, Compression compression, Integer compressionThresholdBytes,
+                                long staleAt) {
+        Compression used = Compression.NONE;
+        byte[] storedBody = body;
+        if(compressionThresholdBytes != null && body.length >= compressionThresholdBytes && compression != Compression.NONE) {
+            byte[] compressed = compression.compress(body);
+            // Keep the value as is if compressing it does not help
+            if(compressed.length < body.length) {
+                used = compression;
+                storedBody = compressed;
+            }
+        }
+
+        CodecOutput out = new CodecOutput(storedBody.length + 16 + (sql != null ? 3 * sql.length() : 0));
+        out.writeBytes(MAGIC, 0, MAGIC.length);
+        out.writeByte(FORMAT_VERSION);
+        out.writeByte(used.id);
+        out.writeVarInt(body.length);
+        out.writeVarLong(staleAt);
+        out.writeString(sql != null ? sql : "");
+        out.writeBytes(storedBody, 0, storedBody.length);
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads the header of a payload. The body is only decompressed when {@link #getBody()} is called.
+     * @param payload The payload, from its current position to its limit
+     * @return The payload
+     * @throws IOException If the payload is not valid
+     */
+    public static CachePayload decode(ByteBuffer payload) throws IOException {
+        CodecInput in = new CodecInput(payload.duplicate());
+        for(byte magic : MAGIC) {
+            if(in.readByte() != magic) {
+                throw new IOException("Not a cached result");
+            }
+        }
+        int version = in.readByte();
+        if(version != FORMAT_VERSION) {
+            throw new IOException("Unsupported cached result version " + version);
+        }
+        Compression compression = Compression.forId(in.readByte());
+        int length = in.readVarInt();
+        long staleAt = in.readVarLong();
+        String sql = in.readString();
+        if(compression == Compression.NONE && in.buffer().remaining() != length) {
+            throw new IOException("Truncated cached result");
+        }
+        return new CachePayload(sql.isEmpty() ? null : sql, compression, length, staleAt, in.buffer());
+    }
+
+    /**
+     * @return The query the value belongs to, null if it has not been stored
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @param now The current time, in milliseconds since the epoch
+     * @return true if the value should be refreshed
+     */
+    public boolean isStale(long now) {
+        return staleAt != 0 && now >= staleAt;
+    }
+
+    /**
+     * @return A buffer holding the value. Uncompressed values are not copied and share the payload memory.
+     * @throws IOException If the value cannot be decompressed
+     */
+    public ByteBuffer getBody() throws IOException {
+        return compression.decompress(body, length);
+    }
+}
@@ -0,0 +1,1204 @@
+package com.powerreviews.jdbc.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Read only, scrollable ResultSet over a result set encoded by {@link ResultSetEncoder}. Only
+ * the header and the metadata are decoded when the result set is created: a column is decoded
+ * the first time one of its values is read, so the columns that are never read are never
+ * decoded. Columns of primitive types are decoded into primitive arrays, and getInt, getLong or
+ * getDouble do not box their values.
+ */
+public class CachedResultSet implements ResultSet {
+    private final ResultSetMetaData metaData;
+    private final ByteBuffer buffer;
+    private final int rowCount;
+    private final int[] columnOffsets;
+    private DecodedColumn[] columns;
+    private Map<String, Integer> columnIndexes;
+    // Index of the current row, -1 before the first row and rowCount after the last row
+    private int row = -1;
+    private boolean wasNull;
+    private int fetchSize;
+    private int fetchDirection = FETCH_FORWARD;
+
+    /**
+     * @param metaData The decoded metadata
+     * @param buffer The encoded result set, in a heap buffer that is not modified afterwards
+     * @param rowCount The number of rows
+     * @param columnOffsets The position of each column block in the buffer
+     */
+    CachedResultSet(ResultSetMetaData metaData, ByteBuffer buffer, int rowCount, int[] columnOffsets) {
+        this.metaData = metaData;
+        this.buffer = buffer;
+        this.rowCount = rowCount;
+        this.columnOffsets = columnOffsets;
+        this.columns = new DecodedColumn[columnOffsets.length];
+    }
+
+    /**
+     * @return The number of rows
+     */
+    public int size() {
+        return this.rowCount;
+    }
+
+    private DecodedColumn column(int columnIndex) throws SQLException {
+        checkOpen();
+        if(columnIndex < 1 || columnIndex > this.columns.length) {
+            throw new SQLException("Invalid column index: " + columnIndex);
+        }
+        if(this.row < 0 || this.row >= this.rowCount) {
+            throw new SQLException("Invalid cursor position");
+        }
+        DecodedColumn column = this.columns[columnIndex - 1];
+        if(column == null) {
+            ByteBuffer block = this.buffer.duplicate();
+            block.position(this.columnOffsets[columnIndex - 1]);
+            try {
+                column = ResultSetDecoder.readColumn(new CodecInput(block), this.rowCount);
+            } catch (IOException e) {
+                throw new SQLException("Unable to decode cached column " + columnIndex, e);
+            }
+            this.columns[columnIndex - 1] = column;
+        }
+        return column;
+    }
+
+    /**
+     * @return The column of the current value, null if the value is null
+     */
+    private DecodedColumn value(int columnIndex) throws SQLException {
+        DecodedColumn column = column(columnIndex);
+        this.wasNull = column.isNull(this.row);
+        return this.wasNull ? null : column;
+    }
+
+    private void checkOpen() throws SQLException {
+        if(this.columns == null) {
+            throw new SQLException("Result set is closed");
+        }
+    }
+
+    private boolean moveTo(int row) throws SQLException {
+        checkOpen();
+        this.row = Math.max(-1, Math.min(this.rowCount, row));
+        return this.row >= 0 && this.row < this.rowCount;
+    }
+
+    private static SQLException readOnly() {
+        return new SQLFeatureNotSupportedException("Cached result sets are read only");
+    }
+
+    /**
+     * Interprets a date or time, read in the default time zone, in the time zone of a calendar
+     */
+    private static long inCalendar(long millis, Calendar calendar) {
+        Calendar local = Calendar.getInstance();
+        local.setTimeInMillis(millis);
+        Calendar target = (Calendar)calendar.clone();
+        target.clear();
+        target.set(local.get(Calendar.YEAR), local.get(Calendar.MONTH), local.get(Calendar.DAY_OF_MONTH),
+                local.get(Calendar.HOUR_OF_DAY), local.get(Calendar.MINUTE), local.get(Calendar.SECOND));
+        target.set(Calendar.MILLISECOND, local.get(Calendar.MILLISECOND));
+        target.set(Calendar.ERA, local.get(Calendar.ERA));
+        return target.getTimeInMillis();
+    }
+
+    @Override
+    public boolean next() throws SQLException {
+        return moveTo(this.row + 1);
+    }
+
+    @Override
+    public boolean previous() throws SQLException {
+        return moveTo(this.row - 1);
+    }
+
+    @Override
+    public boolean first() throws SQLException {
+        return moveTo(0);
+    }
+
+    @Override
+    public boolean last() throws SQLException {
+        return moveTo(this.rowCount - 1);
+    }
+
+    @Override
+    public void beforeFirst() throws SQLException {
+        moveTo(-1);
+    }
+
+    @Override
+    public void afterLast() throws SQLException {
+        moveTo(this.rowCount);
+    }
+
+    @Override
+    public boolean absolute(int row) throws SQLException {
+        return moveTo(row > 0 ? row - 1 : row < 0 ? this.rowCount + row : -1);
+    }
+
+    @Override
+    public boolean relative(int rows) throws SQLException {
+        return moveTo(this.row + rows);
+    }
+
+    @Override
+    public boolean isBeforeFirst() throws SQLException {
+        checkOpen();
+        return this.rowCount > 0 && this.row < 0;
+    }
+
+    @Override
+    public boolean isAfterLast() throws SQLException {
+        checkOpen();
+        return this.rowCount > 0 && this.row >= this.rowCount;
+    }
+
+    @Override
+    public boolean isFirst() throws SQLException {
+        checkOpen();
+        return this.rowCount > 0 && this.row == 0;
+    }
+
+    @Override
+    public boolean isLast() throws SQLException {
+        checkOpen();
+        return this.rowCount > 0 && this.row == this.rowCount - 1;
+    }
+
+    @Override
+    public int getRow() throws SQLException {
+        checkOpen();
+        return this.row >= 0 && this.row < this.rowCount ? this.row + 1 : 0;
+    }
+
+    @Override
+    public void close() {
+        this.columns = null;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.columns == null;
+    }
+
+    @Override
+    public boolean wasNull() {
+        return this.wasNull;
+    }
+
+    @Override
+    public String getString(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getString(this.row) : null;
+    }
+
+    @Override
+    public boolean getBoolean(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null && column.getBoolean(this.row);
+    }
+
+    @Override
+    public byte getByte(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? (byte)column.getLong(this.row) : 0;
+    }
+
+    @Override
+    public short getShort(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? (short)column.getLong(this.row) : 0;
+    }
+
+    @Override
+    public int getInt(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? (int)column.getLong(this.row) : 0;
+    }
+
+    @Override
+    public long getLong(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getLong(this.row) : 0;
+    }
+
+    @Override
+    public float getFloat(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? (float)column.getDouble(this.row) : 0;
+    }
+
+    @Override
+    public double getDouble(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getDouble(this.row) : 0;
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getBigDecimal(this.row) : null;
+    }
+
+    @Override
+    @Deprecated
+    public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+        BigDecimal value = getBigDecimal(columnIndex);
+        return value != null ? value.setScale(scale, RoundingMode.HALF_UP) : null;
+    }
+
+    @Override
+    public byte[] getBytes(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getBytes(this.row) : null;
+    }
+
+    @Override
+    public Date getDate(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getDate(this.row) : null;
+    }
+
+    @Override
+    public Time getTime(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getTime(this.row) : null;
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getTimestamp(this.row) : null;
+    }
+
+    @Override
+    public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+        Date value = getDate(columnIndex);
+        return value != null && cal != null ? new Date(inCalendar(value.getTime(), cal)) : value;
+    }
+
+    @Override
+    public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+        Time value = getTime(columnIndex);
+        return value != null && cal != null ? new Time(inCalendar(value.getTime(), cal)) : value;
+    }
+
+    @Override
+    public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+        Timestamp value = getTimestamp(columnIndex);
+        if(value == null || cal == null) {
+            return value;
+        }
+        Timestamp timestamp = new Timestamp(inCalendar(value.getTime(), cal));
+        timestamp.setNanos(value.getNanos());
+        return timestamp;
+    }
+
+    @Override
+    public Object getObject(int columnIndex) throws SQLException {
+        DecodedColumn column = value(columnIndex);
+        return column != null ? column.getObject(this.row) : null;
+    }
+
+    @Override
+    public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+        return getObject(columnIndex);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+        if(type == null) {
+            throw new SQLException("Type must not be null");
+        }
+        DecodedColumn column = value(columnIndex);
+        if(column == null) {
+            return null;
+        }
+        Object value;
+        if(type == String.class) {
+            value = column.getString(this.row);
+        } else if(type == Integer.class) {
+            value = (int)column.getLong(this.row);
+        } else if(type == Long.class) {
+            value = column.getLong(this.row);
+        } else if(type == Short.class) {
+            value = (short)column.getLong(this.row);
+        } else if(type == Byte.class) {
+            value = (byte)column.getLong(this.row);
+        } else if(type == Double.class) {
+            value = column.getDouble(this.row);
+        } else if(type == Float.class) {
+            value = (float)column.getDouble(this.row);
+        } else if(type == Boolean.class) {
+            value = column.getBoolean(this.row);
+        } else if(type == BigDecimal.class) {
+            value = column.getBigDecimal(this.row);
+        } else if(type == Date.class) {
+            value = column.getDate(this.row);
+        } else if(type == Time.class) {
+            value = column.getTime(this.row);
+        } else if(type == Timestamp.class) {
+            value = column.getTimestamp(this.row);
+        } else if(type == byte[].class) {
+            value = column.getBytes(this.row);
+        } else {
+            value = column.getObject(this.row);
+            if(!type.isInstance(value)) {
+                throw new SQLException("Unable to convert value to " + type.getName() + ": " + value);
+            }
+        }
+        return (T)value;
+    }
+
+    @Override
+    public String getNString(int columnIndex) throws SQLException {
+        return getString(columnIndex);
+    }
+
+    @Override
+    public InputStream getAsciiStream(int columnIndex) throws SQLException {
+        String value = getString(columnIndex);
+        return value != null ? new ByteArrayInputStream(value.getBytes(StandardCharsets.US_ASCII)) : null;
+    }
+
+    @Override
+    @Deprecated
+    public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+        String value = getString(columnIndex);
+        return value != null ? new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_16BE)) : null;
+    }
+
+    @Override
+    public InputStream getBinaryStream(int columnIndex) throws SQLException {
+        byte[] value = getBytes(columnIndex);
+        return value != null ? new ByteArrayInputStream(value) : null;
+    }
+
+    @Override
+    public Reader getCharacterStream(int columnIndex) throws SQLException {
+        String value = getString(columnIndex);
+        return value != null ? new StringReader(value) : null;
+    }
+
+    @Override
+    public Reader getNCharacterStream(int columnIndex) throws SQLException {
+        return getCharacterStream(columnIndex);
+    }
+
+    @Override
+    public Ref getRef(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getRef");
+    }
+
+    @Override
+    public Blob getBlob(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getBlob");
+    }
+
+    @Override
+    public Clob getClob(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getClob");
+    }
+
+    @Override
+    public Array getArray(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getArray");
+    }
+
+    @Override
+    public URL getURL(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getURL");
+    }
+
+    @Override
+    public RowId getRowId(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getRowId");
+    }
+
+    @Override
+    public NClob getNClob(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getNClob");
+    }
+
+    @Override
+    public SQLXML getSQLXML(int columnIndex) throws SQLException {
+        throw new SQLFeatureNotSupportedException("getSQLXML");
+    }
+
+    @Override
+    public int findColumn(String columnLabel) throws SQLException {
+        checkOpen();
+        if(this.columnIndexes == null) {
+            // The first column with a label wins, column names are only used when no label matches
+            Map<String, Integer> columnIndexes = new HashMap<>();
+            for(int column = this.columns.length; column >= 1; column--) {
+                String name = this.metaData.getColumnName(column);
+                if(name != null) {
+                    columnIndexes.put(name.toUpperCase(Locale.ROOT), column);
+                }
+            }
+            for(int column = this.columns.length; column >= 1; column--) {
+                String label = this.metaData.getColumnLabel(column);
+                if(label != null) {
+                    columnIndexes.put(label.toUpperCase(Locale.ROOT), column);
+                }
+            }
+            this.columnIndexes = columnIndexes;
+        }
+        Integer column = columnLabel != null ? this.columnIndexes.get(columnLabel.toUpperCase(Locale.ROOT)) : null;
+        if(column == null) {
+            throw new SQLException("Invalid column name: " + columnLabel);
+        }
+        return column;
+    }
+
+    @Override
+    public String getString(String columnLabel) throws SQLException {
+        return getString(findColumn(columnLabel));
+    }
+
+    @Override
+    public boolean getBoolean(String columnLabel) throws SQLException {
+        return getBoolean(findColumn(columnLabel));
+    }
+
+    @Override
+    public byte getByte(String columnLabel) throws SQLException {
+        return getByte(findColumn(columnLabel));
+    }
+
+    @Override
+    public short getShort(String columnLabel) throws SQLException {
+        return getShort(findColumn(columnLabel));
+    }
+
+    @Override
+    public int getInt(String columnLabel) throws SQLException {
+        return getInt(findColumn(columnLabel));
+    }
+
+    @Override
+    public long getLong(String columnLabel) throws SQLException {
+        return getLong(findColumn(columnLabel));
+    }
+
+    @Override
+    public float getFloat(String columnLabel) throws SQLException {
+        return getFloat(findColumn(columnLabel));
+    }
+
+    @Override
+    public double getDouble(String columnLabel) throws SQLException {
+        return getDouble(findColumn(columnLabel));
+    }
+
+    @Override
+    public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel));
+    }
+
+    @Override
+    @Deprecated
+    public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+        return getBigDecimal(findColumn(columnLabel), scale);
+    }
+
+    @Override
+    public byte[] getBytes(String columnLabel) throws SQLException {
+        return getBytes(findColumn(columnLabel));
+    }
+
+    @Override
+    public Date getDate(String columnLabel) throws SQLException {
+        return getDate(findColumn(columnLabel));
+    }
+
+    @Override
+    public Time getTime(String columnLabel) throws SQLException {
+        return getTime(findColumn(columnLabel));
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel) throws SQLException {
+        return getTimestamp(findColumn(columnLabel));
+    }
+
+    @Override
+    public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+        return getDate(findColumn(columnLabel), cal);
+    }
+
+    @Override
+    public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+        return getTime(findColumn(columnLabel), cal);
+    }
+
+    @Override
+    public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+        return getTimestamp(findColumn(columnLabel), cal);
+    }
+
+    @Override
+    public Object getObject(String columnLabel) throws SQLException {
+        return getObject(findColumn(columnLabel));
+    }
+
+    @Override
+    public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+        return getObject(findColumn(columnLabel), map);
+    }
+
+    @Override
+    public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+        return getObject(findColumn(columnLabel), type);
+    }
+
+    @Override
+    public String getNString(String columnLabel) throws SQLException {
+        return getNString(findColumn(columnLabel));
+    }
+
+    @Override
+    public InputStream getAsciiStream(String columnLabel) throws SQLException {
+        return getAsciiStream(findColumn(columnLabel));
+    }
+
+    @Override
+    @Deprecated
+    public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+        return getUnicodeStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public InputStream getBinaryStream(String columnLabel) throws SQLException {
+        return getBinaryStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public Reader getCharacterStream(String columnLabel) throws SQLException {
+        return getCharacterStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public Reader getNCharacterStream(String columnLabel) throws SQLException {
+        return getNCharacterStream(findColumn(columnLabel));
+    }
+
+    @Override
+    public Ref getRef(String columnLabel) throws SQLException {
+        return getRef(findColumn(columnLabel));
+    }
+
+    @Override
+    public Blob getBlob(String columnLabel) throws SQLException {
+        return getBlob(findColumn(columnLabel));
+    }
+
+    @Override
+    public Clob getClob(String columnLabel) throws SQLException {
+        return getClob(findColumn(columnLabel));
+    }
+
+    @Override
+    public Array getArray(String columnLabel) throws SQLException {
+        return getArray(findColumn(columnLabel));
+    }
+
+    @Override
+    public URL getURL(String columnLabel) throws SQLException {
+        return getURL(findColumn(columnLabel));
+    }
+
+    @Override
+    public RowId getRowId(String columnLabel) throws SQLException {
+        return getRowId(findColumn(columnLabel));
+    }
+
+    @Override
+    public NClob getNClob(String columnLabel) throws SQLException {
+        return getNClob(findColumn(columnLabel));
+    }
+
+    @Override
+    public SQLXML getSQLXML(String columnLabel) throws SQLException {
+        return getSQLXML(findColumn(columnLabel));
+    }
+
+    @Override
+    public ResultSetMetaData getMetaData() throws SQLException {
+        checkOpen();
+        return this.metaData;
+    }
+
+    @Override
+    public Statement getStatement() {
+        return null;
+    }
+
+    @Override
+    public SQLWarning getWarnings() {
+        return null;
+    }
+
+    @Override
+    public void clearWarnings() {
+    }
+
+    @Override
+    public String getCursorName() throws SQLException {
+        throw new SQLFeatureNotSupportedException("getCursorName");
+    }
+
+    @Override
+    public void setFetchDirection(int direction) throws SQLException {
+        if(direction != FETCH_FORWARD && direction != FETCH_REVERSE && direction != FETCH_UNKNOWN) {
+            throw new SQLException("Invalid fetch direction: " + direction);
+        }
+        this.fetchDirection = direction;
+    }
+
+    @Override
+    public int getFetchDirection() {
+        return this.fetchDirection;
+    }
+
+    @Override
+    public void setFetchSize(int rows) throws SQLException {
+        if(rows < 0) {
+            throw new SQLException("Invalid fetch size: " + rows);
+        }
+        this.fetchSize = rows;
+    }
+
+    @Override
+    public int getFetchSize() {
+        return this.fetchSize;
+    }
+
+    @Override
+    public int getType() {
+        return TYPE_SCROLL_INSENSITIVE;
+    }
+
+    @Override
+    public int getConcurrency() {
+        return CONCUR_READ_ONLY;
+    }
+
+    @Override
+    public int getHoldability() {
+        return HOLD_CURSORS_OVER_COMMIT;
+    }
+
+    @Override
+    public boolean rowUpdated() {
+        return false;
+    }
+
+    @Override
+    public boolean rowInserted() {
+        return false;
+    }
+
+    @Override
+    public boolean rowDeleted() {
+        return false;
+    }
+
+    @Override
+    public void refreshRow() {
+        // The rows of a cached result set never change
+    }
+
+    @Override
+    public void insertRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void deleteRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void cancelRowUpdates() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void moveToInsertRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void moveToCurrentRow() throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNull(int columnIndex) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateByte(int columnIndex, byte x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateShort(int columnIndex, short x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateInt(int columnIndex, int x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateLong(int columnIndex, long x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateFloat(int columnIndex, float x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDouble(int columnIndex, double x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateString(int columnIndex, String x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDate(int columnIndex, Date x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTime(int columnIndex, Time x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(int columnIndex, Object x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRef(int columnIndex, Ref x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(int columnIndex, Blob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(int columnIndex, Clob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateArray(int columnIndex, Array x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRowId(int columnIndex, RowId x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNString(int columnIndex, String nString) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(int columnIndex, NClob nClob) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateSQLXML(int columnIndex, SQLXML xmlObject) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(int columnIndex, InputStream inputStream, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(int columnIndex, Reader reader, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(int columnIndex, Reader reader, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(int columnIndex, InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(int columnIndex, Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNull(String columnLabel) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateByte(String columnLabel, byte x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateShort(String columnLabel, short x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateInt(String columnLabel, int x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateLong(String columnLabel, long x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateFloat(String columnLabel, float x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDouble(String columnLabel, double x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateString(String columnLabel, String x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateDate(String columnLabel, Date x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTime(String columnLabel, Time x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(String columnLabel, Reader reader, int length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateObject(String columnLabel, Object x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRef(String columnLabel, Ref x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(String columnLabel, Blob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(String columnLabel, Clob x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateArray(String columnLabel, Array x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateRowId(String columnLabel, RowId x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNString(String columnLabel, String nString) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(String columnLabel, NClob nClob) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateSQLXML(String columnLabel, SQLXML xmlObject) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(String columnLabel, Reader reader, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNCharacterStream(String columnLabel, Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateCharacterStream(String columnLabel, Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateClob(String columnLabel, Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public void updateNClob(String columnLabel, Reader reader) throws SQLException {
+        throw readOnly();
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if(iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    @Override
+    public String toString() {
+        return "CachedResultSet[" + this.rowCount + " rows]";
+    }
+}
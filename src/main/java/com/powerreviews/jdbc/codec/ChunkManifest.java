@@ -0,0 +1,133 @@
+package com.powerreviews.jdbc.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Value stored under the key of a result set that has been split in chunks of rows, each stored
+ * under a key of its own. The manifest is made of the format magic and version, the time after
+ * which the result is stale, the number of chunks, the number of rows, the identifier of the
+ * chunk keys and the query the result belongs to when the cache key is a hash of the query.
+ * <p>
+ * The chunk keys include an identifier generated when the result is written, so that readers of
+ * a manifest never read the chunks of a result written later under the same key.
+ */
+public class ChunkManifest {
+    static final byte[] MAGIC = {'R', 'C', 'M'};
+    static final int FORMAT_VERSION = 1;
+
+    private final String sql;
+    private final long staleAt;
+    private final int chunkCount;
+    private final int rowCount;
+    private final String chunkId;
+
+    /**
+     * @param sql The query the result belongs to, null if it does not need to be stored
+     * @param staleAt The time, in milliseconds since the epoch, after which the result should be
+     *                refreshed, 0 if it never becomes stale
+     * @param chunkCount The number of chunks
+     * @param rowCount The number of rows
+     * @param chunkId The identifier of the chunk keys
+     */
+    public ChunkManifest(String sql, long staleAt, int chunkCount, int rowCount, String chunkId) {
+        this.sql = sql;
+        this.staleAt = staleAt;
+        this.chunkCount = chunkCount;
+        this.rowCount = rowCount;
+        this.chunkId = chunkId;
+    }
+
+    /**
+     * @param value A cached value
+     * @return true if the value is a manifest, false if it is a {@link CachePayload} or an unknown value
+     */
+    public static boolean isManifest(byte[] value) {
+        if(value.length < MAGIC.length) {
+            return false;
+        }
+        for(int i = 0; i < MAGIC.length; i++) {
+            if(value[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The serialized manifest
+     */
+    public byte[] encode() {
+        CodecOutput out = new CodecOutput(32 + chunkId.length() + (sql != null ? 3 * sql.length() : 0));
+        out.writeBytes(MAGIC, 0, MAGIC.length);
+        out.writeByte(FORMAT_VERSION);
+        out.writeVarLong(staleAt);
+        out.writeVarInt(chunkCount);
+        out.writeVarInt(rowCount);
+        out.writeString(chunkId);
+        out.writeString(sql != null ? sql : "");
+        return out.toByteArray();
+    }
+
+    /**
+     * @param value A serialized manifest
+     * @return The manifest
+     * @throws IOException If the value is not a valid manifest
+     */
+    public static ChunkManifest decode(ByteBuffer value) throws IOException {
+        CodecInput in = new CodecInput(value.duplicate());
+        for(byte magic : MAGIC) {
+            if(in.readByte() != magic) {
+                throw new IOException("Not a chunked result manifest");
+            }
+        }
+        int version = in.readByte();
+        if(version != FORMAT_VERSION) {
+            throw new IOException("Unsupported chunked result manifest version " + version);
+        }
+        long staleAt = in.readVarLong();
+        int chunkCount = in.readVarInt();
+        int rowCount = in.readVarInt();
+        String chunkId = in.readString();
+        String sql = in.readString();
+        return new ChunkManifest(sql.isEmpty() ? null : sql, staleAt, chunkCount, rowCount, chunkId);
+    }
+
+    /**
+     * @param key The key the manifest is stored under
+     * @param chunk The chunk index
+     * @return The key a chunk is stored under
+     */
+    public String getChunkKey(String key, int chunk) {
+        return key + ":" + chunkId + ":" + chunk;
+    }
+
+    /**
+     * @return The query the result belongs to, null if it has not been stored
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * @param now The current time, in milliseconds since the epoch
+     * @return true if the result should be refreshed
+     */
+    public boolean isStale(long now) {
+        return staleAt != 0 && now >= staleAt;
+    }
+
+    /**
+     * @return The number of chunks
+     */
+    public int getChunkCount() {
+        return chunkCount;
+    }
+
+    /**
+     * @return The number of rows
+     */
+    public int getRowCount() {
+        return rowCount;
+    }
+}
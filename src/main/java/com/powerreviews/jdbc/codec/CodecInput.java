@@ -0,0 +1,126 @@
+package com.powerreviews.jdbc.codec;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the primitive encodings written by {@link CodecOutput} from a ByteBuffer, which can be
+ * a heap buffer as well as a direct buffer.
+ */
+public class CodecInput {
+    private final ByteBuffer buffer;
+
+    public CodecInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public int readByte() throws IOException {
+        try {
+            return this.buffer.get() & 0xff;
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated cached result", e);
+        }
+    }
+
+    public int readVarInt() throws IOException {
+        int value = 0;
+        for(int shift = 0; shift < 35; shift += 7) {
+            int b = readByte();
+            value |= (b & 0x7f) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in cached result");
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for(int shift = 0; shift < 70; shift += 7) {
+            int b = readByte();
+            value |= (long)(b & 0x7f) << shift;
+            if((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in cached result");
+    }
+
+    public int readZigZagInt() throws IOException {
+        int value = readVarInt();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readZigZagLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public long readLong() throws IOException {
+        try {
+            return this.buffer.getLong();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated cached result", e);
+        }
+    }
+
+    public int readInt() throws IOException {
+        try {
+            return this.buffer.getInt();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated cached result", e);
+        }
+    }
+
+    public double readDouble() throws IOException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    public float readFloat() throws IOException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    public byte[] readByteArray() throws IOException {
+        byte[] value = new byte[checkLength(readVarInt())];
+        this.buffer.get(value);
+        return value;
+    }
+
+    public String readString() throws IOException {
+        int length = checkLength(readVarInt());
+        if(this.buffer.hasArray()) {
+            String value = new String(this.buffer.array(), this.buffer.arrayOffset() + this.buffer.position(),
+                    length, StandardCharsets.UTF_8);
+            this.buffer.position(this.buffer.position() + length);
+            return value;
+        }
+        byte[] value = new byte[length];
+        this.buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    public void skip(int length) throws IOException {
+        this.buffer.position(this.buffer.position() + checkLength(length));
+    }
+
+    public int position() {
+        return this.buffer.position();
+    }
+
+    public void position(int position) {
+        this.buffer.position(position);
+    }
+
+    public ByteBuffer buffer() {
+        return this.buffer;
+    }
+
+    private int checkLength(int length) throws IOException {
+        if(length < 0 || length > this.buffer.remaining()) {
+            throw new IOException("Truncated cached result");
+        }
+        return length;
+    }
+}
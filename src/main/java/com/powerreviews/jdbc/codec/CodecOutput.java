@@ -0,0 +1,128 @@
+package com.powerreviews.jdbc.codec;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the primitive encodings used by the result set codec: unsigned and
+ * zig-zag varints, big endian floating point numbers and length prefixed strings and byte arrays.
+ */
+public class CodecOutput {
+    private byte[] buffer;
+    private int size;
+
+    public CodecOutput() {
+        this(256);
+    }
+
+    public CodecOutput(int initialCapacity) {
+        this.buffer = new byte[Math.max(16, initialCapacity)];
+    }
+
+    public void writeByte(int value) {
+        ensureCapacity(1);
+        this.buffer[this.size++] = (byte)value;
+    }
+
+    public void writeBytes(byte[] value, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(value, offset, this.buffer, this.size, length);
+        this.size += length;
+    }
+
+    /**
+     * Writes a non negative int using 1 to 5 bytes
+     */
+    public void writeVarInt(int value) {
+        ensureCapacity(5);
+        while((value & ~0x7f) != 0) {
+            this.buffer[this.size++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.size++] = (byte)value;
+    }
+
+    /**
+     * Writes a non negative long using 1 to 10 bytes
+     */
+    public void writeVarLong(long value) {
+        ensureCapacity(10);
+        while((value & ~0x7fL) != 0) {
+            this.buffer[this.size++] = (byte)((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        this.buffer[this.size++] = (byte)value;
+    }
+
+    /**
+     * Writes an int so that values close to zero, negative or positive, use few bytes
+     */
+    public void writeZigZagInt(int value) {
+        writeVarInt((value << 1) ^ (value >> 31));
+    }
+
+    /**
+     * Writes a long so that values close to zero, negative or positive, use few bytes
+     */
+    public void writeZigZagLong(long value) {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    public void writeLong(long value) {
+        ensureCapacity(8);
+        for(int shift = 56; shift >= 0; shift -= 8) {
+            this.buffer[this.size++] = (byte)(value >>> shift);
+        }
+    }
+
+    public void writeInt(int value) {
+        ensureCapacity(4);
+        for(int shift = 24; shift >= 0; shift -= 8) {
+            this.buffer[this.size++] = (byte)(value >>> shift);
+        }
+    }
+
+    public void writeDouble(double value) {
+        writeLong(Double.doubleToLongBits(value));
+    }
+
+    public void writeFloat(float value) {
+        writeInt(Float.floatToIntBits(value));
+    }
+
+    /**
+     * Writes a length prefixed byte array
+     */
+    public void writeByteArray(byte[] value) {
+        writeVarInt(value.length);
+        writeBytes(value, 0, value.length);
+    }
+
+    /**
+     * Writes a length prefixed UTF-8 string. Null strings are not supported.
+     */
+    public void writeString(String value) {
+        writeByteArray(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Appends the content of another buffer
+     */
+    public void write(CodecOutput other) {
+        writeBytes(other.buffer, 0, other.size);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.size);
+    }
+
+    private void ensureCapacity(int length) {
+        if(this.size + length > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.size + length));
+        }
+    }
+}
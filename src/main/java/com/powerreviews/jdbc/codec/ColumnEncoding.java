@@ -0,0 +1,100 @@
+package com.powerreviews.jdbc.codec;
+
+import java.io.IOException;
+import java.sql.Types;
+
+/**
+ * Encodings used to store the values of a result set column. The identifier of each encoding is
+ * part of the serialized format and must never change.
+ */
+public enum ColumnEncoding {
+    // One byte per value
+    BOOLEAN(1),
+    // Zig-zag varints
+    INT(2),
+    LONG(3),
+    // Raw IEEE 754 values
+    FLOAT(4),
+    DOUBLE(5),
+    // Scale and unscaled value, as a zig-zag varint when it fits a long
+    DECIMAL(6),
+    // Dictionary of the distinct values and a varint index per value
+    DICTIONARY_STRING(7),
+    // Length prefixed UTF-8 values, used when most values are distinct
+    STRING(8),
+    // Milliseconds as zig-zag varint deltas from the previous value, plus nanoseconds for timestamps
+    DATE(9),
+    TIME(10),
+    TIMESTAMP(11),
+    // Length prefixed bytes
+    BYTES(12),
+    // Type tag followed by the value, used for columns of other types
+    OBJECT(13);
+
+    private static final ColumnEncoding[] byId = new ColumnEncoding[14];
+    static {
+        for(ColumnEncoding encoding : values()) {
+            byId[encoding.id] = encoding;
+        }
+    }
+
+    final int id;
+
+    ColumnEncoding(int id) {
+        this.id = id;
+    }
+
+    static ColumnEncoding forId(int id) throws IOException {
+        if(id <= 0 || id >= byId.length || byId[id] == null) {
+            throw new IOException("Unknown column encoding " + id);
+        }
+        return byId[id];
+    }
+
+    /**
+     * @param sqlType A column type, as defined in {@link Types}
+     * @return The encoding used for columns of the given type
+     */
+    static ColumnEncoding forSqlType(int sqlType) {
+        switch(sqlType) {
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return BOOLEAN;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return INT;
+            case Types.BIGINT:
+                return LONG;
+            case Types.REAL:
+                return FLOAT;
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return DOUBLE;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return DECIMAL;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return DICTIONARY_STRING;
+            case Types.DATE:
+                return DATE;
+            case Types.TIME:
+            case Types.TIME_WITH_TIMEZONE:
+                return TIME;
+            case Types.TIMESTAMP:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return TIMESTAMP;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return BYTES;
+            default:
+                return OBJECT;
+        }
+    }
+}
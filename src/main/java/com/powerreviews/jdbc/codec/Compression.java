@@ -0,0 +1,150 @@
+package com.powerreviews.jdbc.codec;
+
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compression algorithms that can be applied to cached payloads. The identifier of each algorithm
+ * is part of the serialized format and must never change.
+ */
+public enum Compression {
+    NONE(0) {
+        @Override
+        byte[] compress(byte[] value) {
+            return value;
+        }
+
+        @Override
+        ByteBuffer decompress(ByteBuffer value, int length) {
+            return value.slice();
+        }
+    },
+    // Built-in zlib compression: slower, better ratio
+    DEFLATE(1) {
+        @Override
+        byte[] compress(byte[] value) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(value);
+                deflater.finish();
+                CodecOutput out = new CodecOutput(value.length / 2);
+                byte[] chunk = new byte[8192];
+                while(!deflater.finished()) {
+                    int length = deflater.deflate(chunk);
+                    out.writeBytes(chunk, 0, length);
+                }
+                return out.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+
+        @Override
+        ByteBuffer decompress(ByteBuffer value, int length) throws IOException {
+            Inflater inflater = new Inflater();
+            try {
+                // Values outside of the heap are passed to the inflater a chunk at a time, rather than copied whole
+                ByteBuffer input = value.duplicate();
+                byte[] chunk = null;
+                if(input.hasArray()) {
+                    inflater.setInput(input.array(), input.arrayOffset() + input.position(), input.remaining());
+                    input.position(input.limit());
+                } else {
+                    chunk = new byte[Math.min(8192, input.remaining())];
+                }
+                byte[] output = new byte[length];
+                int inflated = 0;
+                while(inflated < length && !inflater.finished()) {
+                    if(inflater.needsInput() && input.hasRemaining()) {
+                        int chunkLength = Math.min(chunk.length, input.remaining());
+                        input.get(chunk, 0, chunkLength);
+                        inflater.setInput(chunk, 0, chunkLength);
+                    }
+                    int count = inflater.inflate(output, inflated, length - inflated);
+                    if(count == 0 && ((inflater.needsInput() && !input.hasRemaining()) || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflated += count;
+                }
+                if(inflated != length) {
+                    throw new IOException("Truncated cached result");
+                }
+                return ByteBuffer.wrap(output);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted cached result", e);
+            } finally {
+                inflater.end();
+            }
+        }
+    },
+    // LZ4 block compression: very fast, lower ratio
+    LZ4(2) {
+        @Override
+        byte[] compress(byte[] value) {
+            return LZ4Holder.factory.fastCompressor().compress(value);
+        }
+
+        @Override
+        ByteBuffer decompress(ByteBuffer value, int length) throws IOException {
+            ByteBuffer output = ByteBuffer.allocate(length);
+            try {
+                LZ4Holder.factory.fastDecompressor().decompress(value, value.position(), output, 0, length);
+            } catch (LZ4Exception e) {
+                throw new IOException("Corrupted cached result", e);
+            }
+            return output;
+        }
+    };
+
+    final int id;
+
+    Compression(int id) {
+        this.id = id;
+    }
+
+    /**
+     * Compresses a value
+     * @param value The value to compress
+     * @return The compressed value
+     */
+    abstract byte[] compress(byte[] value);
+
+    /**
+     * Decompresses a value
+     * @param value The compressed value, from its current position to its limit. The buffer
+     *              position is not modified.
+     * @param length The length of the decompressed value
+     * @return A buffer holding the decompressed value
+     * @throws IOException If the value cannot be decompressed
+     */
+    abstract ByteBuffer decompress(ByteBuffer value, int length) throws IOException;
+
+    /**
+     * @param name The algorithm name, case insensitive
+     * @return The compression algorithm with the given name
+     * @throws IllegalArgumentException If there is no algorithm with the given name
+     */
+    public static Compression forName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+
+    static Compression forId(int id) throws IOException {
+        for(Compression compression : values()) {
+            if(compression.id == id) {
+                return compression;
+            }
+        }
+        throw new IOException("Unknown compression " + id + " in cached result");
+    }
+
+    // Loaded on first use so that the LZ4 native library is only looked up when LZ4 is used
+    private static class LZ4Holder {
+        static final LZ4Factory factory = LZ4Factory.fastestInstance();
+    }
+}
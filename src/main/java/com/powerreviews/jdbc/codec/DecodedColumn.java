@@ -0,0 +1,364 @@
+package com.powerreviews.jdbc.codec;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * The decoded values of a result set column. Columns of primitive types keep their values in
+ * primitive arrays, so that they are only boxed when they are read as objects. Values are
+ * converted to the type requested by the caller when it differs from the column type.
+ */
+abstract class DecodedColumn {
+    private final byte[] nullBitmap;
+
+    DecodedColumn(byte[] nullBitmap) {
+        this.nullBitmap = nullBitmap;
+    }
+
+    /**
+     * @param row The row index, starting at 0
+     * @return true if the value of the row is null
+     */
+    boolean isNull(int row) {
+        return this.nullBitmap != null && (this.nullBitmap[row >> 3] & (1 << (row & 7))) != 0;
+    }
+
+    /**
+     * The value getters below must only be called for rows whose value is not null
+     */
+    abstract Object getObject(int row);
+
+    String getString(int row) {
+        return getObject(row).toString();
+    }
+
+    boolean getBoolean(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof Boolean) {
+            return (Boolean)value;
+        }
+        if(value instanceof Number) {
+            return ((Number)value).doubleValue() != 0;
+        }
+        String string = value.toString().trim();
+        return "true".equalsIgnoreCase(string) || "1".equals(string);
+    }
+
+    long getLong(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof Number) {
+            return ((Number)value).longValue();
+        }
+        if(value instanceof Boolean) {
+            return (Boolean)value ? 1 : 0;
+        }
+        try {
+            return new BigDecimal(value.toString().trim()).longValue();
+        } catch (NumberFormatException e) {
+            throw new SQLException("Unable to convert value to a number: " + value, e);
+        }
+    }
+
+    double getDouble(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof Number) {
+            return ((Number)value).doubleValue();
+        }
+        if(value instanceof Boolean) {
+            return (Boolean)value ? 1 : 0;
+        }
+        try {
+            return Double.parseDouble(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException("Unable to convert value to a number: " + value, e);
+        }
+    }
+
+    BigDecimal getBigDecimal(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof BigDecimal) {
+            return (BigDecimal)value;
+        }
+        if(value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number)value).longValue());
+        }
+        if(value instanceof Boolean) {
+            return (Boolean)value ? BigDecimal.ONE : BigDecimal.ZERO;
+        }
+        try {
+            return new BigDecimal(value.toString().trim());
+        } catch (NumberFormatException e) {
+            throw new SQLException("Unable to convert value to a number: " + value, e);
+        }
+    }
+
+    Date getDate(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof Date) {
+            return (Date)value;
+        }
+        if(value instanceof java.util.Date) {
+            return new Date(((java.util.Date)value).getTime());
+        }
+        try {
+            return Date.valueOf(value.toString().trim());
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Unable to convert value to a date: " + value, e);
+        }
+    }
+
+    Time getTime(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof Time) {
+            return (Time)value;
+        }
+        if(value instanceof java.util.Date) {
+            return new Time(((java.util.Date)value).getTime());
+        }
+        try {
+            return Time.valueOf(value.toString().trim());
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Unable to convert value to a time: " + value, e);
+        }
+    }
+
+    Timestamp getTimestamp(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof Timestamp) {
+            return (Timestamp)value;
+        }
+        if(value instanceof java.util.Date) {
+            return new Timestamp(((java.util.Date)value).getTime());
+        }
+        try {
+            return Timestamp.valueOf(value.toString().trim());
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Unable to convert value to a timestamp: " + value, e);
+        }
+    }
+
+    byte[] getBytes(int row) throws SQLException {
+        Object value = getObject(row);
+        if(value instanceof byte[]) {
+            return (byte[])value;
+        }
+        throw new SQLException("Unable to convert value to bytes: " + value);
+    }
+
+    static class BooleanColumn extends DecodedColumn {
+        private final boolean[] values;
+
+        BooleanColumn(byte[] nullBitmap, boolean[] values) {
+            super(nullBitmap);
+            this.values = values;
+        }
+
+        Object getObject(int row) {
+            return this.values[row];
+        }
+
+        String getString(int row) {
+            return Boolean.toString(this.values[row]);
+        }
+
+        boolean getBoolean(int row) {
+            return this.values[row];
+        }
+
+        long getLong(int row) {
+            return this.values[row] ? 1 : 0;
+        }
+
+        double getDouble(int row) {
+            return this.values[row] ? 1 : 0;
+        }
+    }
+
+    static class IntColumn extends DecodedColumn {
+        private final int[] values;
+
+        IntColumn(byte[] nullBitmap, int[] values) {
+            super(nullBitmap);
+            this.values = values;
+        }
+
+        Object getObject(int row) {
+            return this.values[row];
+        }
+
+        String getString(int row) {
+            return Integer.toString(this.values[row]);
+        }
+
+        boolean getBoolean(int row) {
+            return this.values[row] != 0;
+        }
+
+        long getLong(int row) {
+            return this.values[row];
+        }
+
+        double getDouble(int row) {
+            return this.values[row];
+        }
+
+        BigDecimal getBigDecimal(int row) {
+            return BigDecimal.valueOf(this.values[row]);
+        }
+    }
+
+    static class LongColumn extends DecodedColumn {
+        private final long[] values;
+
+        LongColumn(byte[] nullBitmap, long[] values) {
+            super(nullBitmap);
+            this.values = values;
+        }
+
+        Object getObject(int row) {
+            return this.values[row];
+        }
+
+        String getString(int row) {
+            return Long.toString(this.values[row]);
+        }
+
+        boolean getBoolean(int row) {
+            return this.values[row] != 0;
+        }
+
+        long getLong(int row) {
+            return this.values[row];
+        }
+
+        double getDouble(int row) {
+            return this.values[row];
+        }
+
+        BigDecimal getBigDecimal(int row) {
+            return BigDecimal.valueOf(this.values[row]);
+        }
+    }
+
+    static class FloatColumn extends DecodedColumn {
+        private final float[] values;
+
+        FloatColumn(byte[] nullBitmap, float[] values) {
+            super(nullBitmap);
+            this.values = values;
+        }
+
+        Object getObject(int row) {
+            return this.values[row];
+        }
+
+        String getString(int row) {
+            return Float.toString(this.values[row]);
+        }
+
+        boolean getBoolean(int row) {
+            return this.values[row] != 0;
+        }
+
+        long getLong(int row) {
+            return (long)this.values[row];
+        }
+
+        double getDouble(int row) {
+            return this.values[row];
+        }
+    }
+
+    static class DoubleColumn extends DecodedColumn {
+        private final double[] values;
+
+        DoubleColumn(byte[] nullBitmap, double[] values) {
+            super(nullBitmap);
+            this.values = values;
+        }
+
+        Object getObject(int row) {
+            return this.values[row];
+        }
+
+        String getString(int row) {
+            return Double.toString(this.values[row]);
+        }
+
+        boolean getBoolean(int row) {
+            return this.values[row] != 0;
+        }
+
+        long getLong(int row) {
+            return (long)this.values[row];
+        }
+
+        double getDouble(int row) {
+            return this.values[row];
+        }
+    }
+
+    /**
+     * Dates, times and timestamps, kept as milliseconds and only turned into objects when read
+     */
+    static class TemporalColumn extends DecodedColumn {
+        private final ColumnEncoding encoding;
+        private final long[] millis;
+        // Sub millisecond nanoseconds, only for timestamps
+        private final int[] nanos;
+
+        TemporalColumn(byte[] nullBitmap, ColumnEncoding encoding, long[] millis, int[] nanos) {
+            super(nullBitmap);
+            this.encoding = encoding;
+            this.millis = millis;
+            this.nanos = nanos;
+        }
+
+        Object getObject(int row) {
+            switch(this.encoding) {
+                case DATE:
+                    return new Date(this.millis[row]);
+                case TIME:
+                    return new Time(this.millis[row]);
+                default:
+                    return getTimestamp(row);
+            }
+        }
+
+        Date getDate(int row) {
+            return new Date(this.millis[row]);
+        }
+
+        Time getTime(int row) {
+            return new Time(this.millis[row]);
+        }
+
+        Timestamp getTimestamp(int row) {
+            Timestamp timestamp = new Timestamp(this.millis[row]);
+            if(this.nanos != null && this.nanos[row] != 0) {
+                timestamp.setNanos(timestamp.getNanos() + this.nanos[row]);
+            }
+            return timestamp;
+        }
+    }
+
+    /**
+     * Strings, decimals, bytes and values of other types. The values of dictionary encoded
+     * columns share the strings of the dictionary.
+     */
+    static class ObjectColumn extends DecodedColumn {
+        private final Object[] values;
+
+        ObjectColumn(byte[] nullBitmap, Object[] values) {
+            super(nullBitmap);
+            this.values = values;
+        }
+
+        Object getObject(int row) {
+            return this.values[row];
+        }
+    }
+}
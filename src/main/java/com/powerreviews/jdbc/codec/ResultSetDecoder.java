@@ -0,0 +1,295 @@
+package com.powerreviews.jdbc.codec;
+
+import javax.sql.rowset.RowSetMetaDataImpl;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * Decodes result sets encoded by {@link ResultSetEncoder}
+ */
+public class ResultSetDecoder {
+    private ResultSetDecoder() {
+    }
+
+    /**
+     * Decodes the header and metadata of an encoded result set. The column values are only
+     * decoded when they are first read, a column at a time.
+     * @param value The encoded result set, from its current position to its limit. Both heap
+     *              and direct buffers are supported. Values that are not in a writable heap buffer
+     *              are copied, so the buffer can be reused once this method returns.
+     * @return The decoded result set
+     * @throws IOException If the value is not a valid encoded result set
+     */
+    public static CachedResultSet decode(ByteBuffer value) throws IOException {
+        ByteBuffer buffer = value.duplicate();
+        if(!buffer.hasArray()) {
+            buffer = ByteBuffer.allocate(value.remaining());
+            buffer.put(value.duplicate());
+            buffer.flip();
+        }
+        CodecInput in = new CodecInput(buffer);
+        RowSetMetaDataImpl metaData = readHeader(in);
+        int columnCount = getColumnCount(metaData);
+        int rowCount = in.readVarInt();
+        readMetaData(in, metaData, columnCount);
+
+        // Only find where each column block starts, the blocks are decoded when they are read
+        int[] columnOffsets = new int[columnCount];
+        for(int column = 0; column < columnCount; column++) {
+            columnOffsets[column] = in.position();
+            ColumnEncoding.forId(in.readByte());
+            in.skip(in.readVarInt());
+        }
+        return new CachedResultSet(metaData, buffer, rowCount, columnOffsets);
+    }
+
+    /**
+     * Reads the format magic and version and the number of columns
+     */
+    static RowSetMetaDataImpl readHeader(CodecInput in) throws IOException {
+        for(byte magic : ResultSetEncoder.MAGIC) {
+            if(in.readByte() != magic) {
+                throw new IOException("Not an encoded result set");
+            }
+        }
+        int version = in.readByte();
+        if(version != ResultSetEncoder.FORMAT_VERSION) {
+            throw new IOException("Unsupported encoded result set version " + version);
+        }
+        RowSetMetaDataImpl metaData = new RowSetMetaDataImpl();
+        try {
+            metaData.setColumnCount(in.readVarInt());
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+        return metaData;
+    }
+
+    static void readMetaData(CodecInput in, RowSetMetaDataImpl metaData, int columnCount) throws IOException {
+        try {
+            for(int column = 1; column <= columnCount; column++) {
+                metaData.setColumnLabel(column, in.readString());
+                metaData.setColumnName(column, in.readString());
+                metaData.setColumnTypeName(column, in.readString());
+                metaData.setTableName(column, in.readString());
+                metaData.setSchemaName(column, in.readString());
+                metaData.setCatalogName(column, in.readString());
+                metaData.setColumnType(column, in.readZigZagInt());
+                metaData.setPrecision(column, Math.max(0, in.readZigZagInt()));
+                metaData.setScale(column, Math.max(0, in.readZigZagInt()));
+                metaData.setColumnDisplaySize(column, Math.max(0, in.readZigZagInt()));
+                metaData.setNullable(column, in.readZigZagInt());
+                int flags = in.readByte();
+                metaData.setSigned(column, (flags & ResultSetEncoder.FLAG_SIGNED) != 0);
+                metaData.setAutoIncrement(column, (flags & ResultSetEncoder.FLAG_AUTO_INCREMENT) != 0);
+                metaData.setCaseSensitive(column, (flags & ResultSetEncoder.FLAG_CASE_SENSITIVE) != 0);
+                metaData.setCurrency(column, (flags & ResultSetEncoder.FLAG_CURRENCY) != 0);
+                metaData.setSearchable(column, (flags & ResultSetEncoder.FLAG_SEARCHABLE) != 0);
+            }
+        } catch (SQLException e) {
+            throw new IOException("Invalid encoded result set metadata", e);
+        }
+    }
+
+    static int getColumnCount(RowSetMetaDataImpl metaData) throws IOException {
+        try {
+            return metaData.getColumnCount();
+        } catch (SQLException e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Reads a column block and decodes all its values
+     * @param in The encoded result set, positioned at the beginning of the column block
+     * @param rowCount The number of rows of the result set
+     * @return The decoded column
+     * @throws IOException If the column block is not valid
+     */
+    static DecodedColumn readColumn(CodecInput in, int rowCount) throws IOException {
+        ColumnEncoding encoding = ColumnEncoding.forId(in.readByte());
+        int blockLength = in.readVarInt();
+        int blockEnd = in.position() + blockLength;
+
+        DecodedColumn column;
+        try {
+            byte[] nullBitmap = null;
+            if(in.readByte() != 0) {
+                nullBitmap = new byte[(rowCount + 7) / 8];
+                in.buffer().get(nullBitmap);
+            }
+            column = readValues(in, encoding, nullBitmap, rowCount);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated cached result", e);
+        }
+
+        if(in.position() != blockEnd) {
+            throw new IOException("Corrupted column block in encoded result set");
+        }
+        return column;
+    }
+
+    private static DecodedColumn readValues(CodecInput in, ColumnEncoding encoding, byte[] nullBitmap, int rowCount)
+            throws IOException {
+        switch(encoding) {
+            case BOOLEAN: {
+                boolean[] values = new boolean[rowCount];
+                for(int row = 0; row < rowCount; row++) {
+                    if(!isNull(nullBitmap, row)) {
+                        values[row] = in.readByte() != 0;
+                    }
+                }
+                return new DecodedColumn.BooleanColumn(nullBitmap, values);
+            }
+            case INT: {
+                int[] values = new int[rowCount];
+                for(int row = 0; row < rowCount; row++) {
+                    if(!isNull(nullBitmap, row)) {
+                        values[row] = in.readZigZagInt();
+                    }
+                }
+                return new DecodedColumn.IntColumn(nullBitmap, values);
+            }
+            case LONG: {
+                long[] values = new long[rowCount];
+                for(int row = 0; row < rowCount; row++) {
+                    if(!isNull(nullBitmap, row)) {
+                        values[row] = in.readZigZagLong();
+                    }
+                }
+                return new DecodedColumn.LongColumn(nullBitmap, values);
+            }
+            case FLOAT: {
+                float[] values = new float[rowCount];
+                for(int row = 0; row < rowCount; row++) {
+                    if(!isNull(nullBitmap, row)) {
+                        values[row] = in.readFloat();
+                    }
+                }
+                return new DecodedColumn.FloatColumn(nullBitmap, values);
+            }
+            case DOUBLE: {
+                double[] values = new double[rowCount];
+                for(int row = 0; row < rowCount; row++) {
+                    if(!isNull(nullBitmap, row)) {
+                        values[row] = in.readDouble();
+                    }
+                }
+                return new DecodedColumn.DoubleColumn(nullBitmap, values);
+            }
+            case DATE:
+            case TIME:
+            case TIMESTAMP: {
+                long[] millis = new long[rowCount];
+                int[] nanos = encoding == ColumnEncoding.TIMESTAMP ? new int[rowCount] : null;
+                long previous = 0;
+                for(int row = 0; row < rowCount; row++) {
+                    if(!isNull(nullBitmap, row)) {
+                        previous += in.readZigZagLong();
+                        millis[row] = previous;
+                        if(nanos != null) {
+                            nanos[row] = in.readVarInt();
+                        }
+                    }
+                }
+                return new DecodedColumn.TemporalColumn(nullBitmap, encoding, millis, nanos);
+            }
+            default: {
+                String[] dictionary = null;
+                if(encoding == ColumnEncoding.DICTIONARY_STRING) {
+                    dictionary = new String[in.readVarInt()];
+                    for(int i = 0; i < dictionary.length; i++) {
+                        dictionary[i] = in.readString();
+                    }
+                }
+                Object[] values = new Object[rowCount];
+                for(int row = 0; row < rowCount; row++) {
+                    if(isNull(nullBitmap, row)) {
+                        continue;
+                    }
+                    switch(encoding) {
+                        case DECIMAL:
+                            values[row] = readDecimal(in);
+                            break;
+                        case DICTIONARY_STRING:
+                            values[row] = dictionary[in.readVarInt()];
+                            break;
+                        case STRING:
+                            values[row] = in.readString();
+                            break;
+                        case BYTES:
+                            values[row] = in.readByteArray();
+                            break;
+                        default:
+                            values[row] = readObject(in);
+                    }
+                }
+                return new DecodedColumn.ObjectColumn(nullBitmap, values);
+            }
+        }
+    }
+
+    private static boolean isNull(byte[] nullBitmap, int row) {
+        return nullBitmap != null && (nullBitmap[row >> 3] & (1 << (row & 7))) != 0;
+    }
+
+    static BigDecimal readDecimal(CodecInput in) throws IOException {
+        int header = in.readVarInt();
+        int zigZagScale = header >>> 1;
+        int scale = (zigZagScale >>> 1) ^ -(zigZagScale & 1);
+        if((header & 1) == 0) {
+            return BigDecimal.valueOf(in.readZigZagLong(), scale);
+        }
+        return new BigDecimal(new BigInteger(in.readByteArray()), scale);
+    }
+
+    static Timestamp readTimestamp(long millis, CodecInput in) throws IOException {
+        Timestamp timestamp = new Timestamp(millis);
+        int nanos = in.readVarInt();
+        if(nanos != 0) {
+            timestamp.setNanos(timestamp.getNanos() + nanos);
+        }
+        return timestamp;
+    }
+
+    static Object readObject(CodecInput in) throws IOException {
+        int tag = in.readByte();
+        switch(tag) {
+            case ResultSetEncoder.TAG_STRING:
+                return in.readString();
+            case ResultSetEncoder.TAG_INTEGER:
+                return in.readZigZagInt();
+            case ResultSetEncoder.TAG_LONG:
+                return in.readZigZagLong();
+            case ResultSetEncoder.TAG_DOUBLE:
+                return in.readDouble();
+            case ResultSetEncoder.TAG_FLOAT:
+                return in.readFloat();
+            case ResultSetEncoder.TAG_DECIMAL:
+                return readDecimal(in);
+            case ResultSetEncoder.TAG_BOOLEAN:
+                return in.readByte() != 0;
+            case ResultSetEncoder.TAG_DATE:
+                return new Date(in.readZigZagLong());
+            case ResultSetEncoder.TAG_TIME:
+                return new Time(in.readZigZagLong());
+            case ResultSetEncoder.TAG_TIMESTAMP:
+                return readTimestamp(in.readZigZagLong(), in);
+            case ResultSetEncoder.TAG_BYTES:
+                return in.readByteArray();
+            case ResultSetEncoder.TAG_SHORT:
+                return (short)in.readZigZagInt();
+            case ResultSetEncoder.TAG_BYTE:
+                return (byte)in.readZigZagInt();
+            default:
+                throw new IOException("Unknown value tag " + tag + " in encoded result set");
+        }
+    }
+}
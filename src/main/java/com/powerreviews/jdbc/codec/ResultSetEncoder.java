@@ -0,0 +1,572 @@
+package com.powerreviews.jdbc.codec;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes a result set in a compact, versioned, columnar binary format.
+ * <p>
+ * Rows are added one at a time and each column is accumulated in its own buffer, using an encoding
+ * chosen from the column type. The serialized form is made of:
+ * <ul>
+ *     <li>a header with the format magic and version, the number of columns and the number of rows</li>
+ *     <li>the result set metadata, written once</li>
+ *     <li>a block per column with the column encoding, the block length, a null bitmap and the
+ *     non null values. The block length allows readers to skip the columns they don't need.</li>
+ * </ul>
+ */
+public class ResultSetEncoder {
+    static final byte[] MAGIC = {'R', 'S', 'C'};
+    static final int FORMAT_VERSION = 1;
+
+    // Metadata flags
+    static final int FLAG_SIGNED = 1;
+    static final int FLAG_AUTO_INCREMENT = 1 << 1;
+    static final int FLAG_CASE_SENSITIVE = 1 << 2;
+    static final int FLAG_CURRENCY = 1 << 3;
+    static final int FLAG_SEARCHABLE = 1 << 4;
+
+    // Type tags of the OBJECT encoding
+    static final int TAG_STRING = 1;
+    static final int TAG_INTEGER = 2;
+    static final int TAG_LONG = 3;
+    static final int TAG_DOUBLE = 4;
+    static final int TAG_FLOAT = 5;
+    static final int TAG_DECIMAL = 6;
+    static final int TAG_BOOLEAN = 7;
+    static final int TAG_DATE = 8;
+    static final int TAG_TIME = 9;
+    static final int TAG_TIMESTAMP = 10;
+    static final int TAG_BYTES = 11;
+    static final int TAG_SHORT = 12;
+    static final int TAG_BYTE = 13;
+
+    private final CodecOutput metaData = new CodecOutput();
+    private final ColumnWriter[] columns;
+    private int rowCount;
+
+    /**
+     * Creates an encoder for result sets with the given metadata
+     * @param resultSetMetaData The metadata of the result set to encode
+     * @throws SQLException If the metadata cannot be read
+     */
+    public ResultSetEncoder(ResultSetMetaData resultSetMetaData) throws SQLException {
+        int columnCount = resultSetMetaData.getColumnCount();
+        this.columns = new ColumnWriter[columnCount];
+        for(int column = 1; column <= columnCount; column++) {
+            int sqlType = resultSetMetaData.getColumnType(column);
+            this.metaData.writeString(nullToEmpty(resultSetMetaData.getColumnLabel(column)));
+            this.metaData.writeString(nullToEmpty(resultSetMetaData.getColumnName(column)));
+            this.metaData.writeString(nullToEmpty(resultSetMetaData.getColumnTypeName(column)));
+            this.metaData.writeString(nullToEmpty(resultSetMetaData.getTableName(column)));
+            this.metaData.writeString(nullToEmpty(resultSetMetaData.getSchemaName(column)));
+            this.metaData.writeString(nullToEmpty(resultSetMetaData.getCatalogName(column)));
+            this.metaData.writeZigZagInt(sqlType);
+            this.metaData.writeZigZagInt(resultSetMetaData.getPrecision(column));
+            this.metaData.writeZigZagInt(resultSetMetaData.getScale(column));
+            this.metaData.writeZigZagInt(resultSetMetaData.getColumnDisplaySize(column));
+            this.metaData.writeZigZagInt(resultSetMetaData.isNullable(column));
+            this.metaData.writeByte((resultSetMetaData.isSigned(column) ? FLAG_SIGNED : 0) |
+                    (resultSetMetaData.isAutoIncrement(column) ? FLAG_AUTO_INCREMENT : 0) |
+                    (resultSetMetaData.isCaseSensitive(column) ? FLAG_CASE_SENSITIVE : 0) |
+                    (resultSetMetaData.isCurrency(column) ? FLAG_CURRENCY : 0) |
+                    (resultSetMetaData.isSearchable(column) ? FLAG_SEARCHABLE : 0));
+            this.columns[column - 1] = createWriter(ColumnEncoding.forSqlType(sqlType));
+        }
+    }
+
+    /**
+     * Encodes all the remaining rows of a result set
+     * @param resultSet The result set to encode
+     * @return The encoded result set
+     * @throws SQLException If the result set cannot be read
+     */
+    public static byte[] encode(ResultSet resultSet) throws SQLException {
+        ResultSetEncoder encoder = new ResultSetEncoder(resultSet.getMetaData());
+        while(resultSet.next()) {
+            encoder.addRow(resultSet);
+        }
+        return encoder.toByteArray();
+    }
+
+    /**
+     * Encodes the remaining rows of a result set, unless the encoded result set is too large. Encoding
+     * stops as soon as the rows encoded so far exceed the limit, so that no work is wasted on the
+     * rows that follow. The limit is compared with {@link #size()}, so a result set within a few bytes
+     * per column of the limit may be rejected.
+     * @param resultSet The result set to encode
+     * @param maxBytes The maximum size of the encoded result set
+     * @return The encoded result set, null if it would be larger than maxBytes
+     * @throws SQLException If the result set cannot be read
+     */
+    public static byte[] encode(ResultSet resultSet, long maxBytes) throws SQLException {
+        ResultSetEncoder encoder = new ResultSetEncoder(resultSet.getMetaData());
+        return encoder.addRows(resultSet, maxBytes, Integer.MAX_VALUE) ? encoder.toByteArray() : null;
+    }
+
+    /**
+     * Adds the remaining rows of a result set, until the rows added exceed one of the limits
+     * @param resultSet A result set with the same metadata used to create the encoder
+     * @param maxBytes The maximum size of the encoded result set, compared with {@link #size()}
+     * @param maxRows The maximum number of rows of the result set
+     * @return true if all the rows have been added, false if a limit has been exceeded. The result set
+     * is then positioned on the last row added, and the rows that follow have not been read.
+     * @throws SQLException If the result set cannot be read
+     */
+    public boolean addRows(ResultSet resultSet, long maxBytes, int maxRows) throws SQLException {
+        while(resultSet.next()) {
+            addRow(resultSet);
+            if(this.rowCount > maxRows || size() > maxBytes) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the current row of a result set
+     * @param resultSet A result set with the same metadata used to create the encoder
+     * @throws SQLException If the row cannot be read
+     */
+    public void addRow(ResultSet resultSet) throws SQLException {
+        for(int column = 0; column < this.columns.length; column++) {
+            this.columns[column].add(resultSet, column + 1);
+        }
+        this.rowCount++;
+    }
+
+    /**
+     * @return The number of rows added so far
+     */
+    public int getRowCount() {
+        return this.rowCount;
+    }
+
+    /**
+     * @return An estimate of the number of bytes of the encoded result set, given the rows added so far.
+     * The estimate is never smaller than the encoded result set.
+     */
+    public int size() {
+        int size = MAGIC.length + 11 + this.metaData.size();
+        for(ColumnWriter column : this.columns) {
+            size += column.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return The encoded result set
+     */
+    public byte[] toByteArray() {
+        CodecOutput out = new CodecOutput(size() + 16 * this.columns.length);
+        out.writeBytes(MAGIC, 0, MAGIC.length);
+        out.writeByte(FORMAT_VERSION);
+        out.writeVarInt(this.columns.length);
+        out.writeVarInt(this.rowCount);
+        out.write(this.metaData);
+        for(ColumnWriter column : this.columns) {
+            column.writeTo(out, this.rowCount);
+        }
+        return out.toByteArray();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static ColumnWriter createWriter(ColumnEncoding encoding) {
+        switch(encoding) {
+            case BOOLEAN: return new BooleanWriter();
+            case INT: return new IntWriter();
+            case LONG: return new LongWriter();
+            case FLOAT: return new FloatWriter();
+            case DOUBLE: return new DoubleWriter();
+            case DECIMAL: return new DecimalWriter();
+            case DICTIONARY_STRING: return new StringWriter();
+            case DATE: return new DateWriter();
+            case TIME: return new TimeWriter();
+            case TIMESTAMP: return new TimestampWriter();
+            case BYTES: return new BytesWriter();
+            default: return new ObjectWriter();
+        }
+    }
+
+    static void writeDecimal(CodecOutput out, BigDecimal value) {
+        BigInteger unscaled = value.unscaledValue();
+        int scale = value.scale();
+        boolean fitsLong = unscaled.bitLength() < 64;
+        out.writeVarInt((((scale << 1) ^ (scale >> 31)) << 1) | (fitsLong ? 0 : 1));
+        if(fitsLong) {
+            out.writeZigZagLong(unscaled.longValue());
+        } else {
+            out.writeByteArray(unscaled.toByteArray());
+        }
+    }
+
+    /**
+     * Accumulates the values of a column
+     */
+    private abstract static class ColumnWriter {
+        final ColumnEncoding encoding;
+        final CodecOutput values = new CodecOutput(64);
+        final BitSet nulls = new BitSet();
+        int rows;
+
+        ColumnWriter(ColumnEncoding encoding) {
+            this.encoding = encoding;
+        }
+
+        void add(ResultSet resultSet, int column) throws SQLException {
+            if(!addValue(resultSet, column)) {
+                this.nulls.set(this.rows);
+            }
+            this.rows++;
+        }
+
+        /**
+         * Reads and encodes a value
+         * @return false if the value is null
+         */
+        abstract boolean addValue(ResultSet resultSet, int column) throws SQLException;
+
+        int size() {
+            return 6 + (this.nulls.isEmpty() ? 0 : (this.rows + 7) / 8) + this.values.size();
+        }
+
+        void writeTo(CodecOutput out, int rowCount) {
+            byte[] nullBitmap = this.nulls.isEmpty() ? null : Arrays.copyOf(this.nulls.toByteArray(), (rowCount + 7) / 8);
+            out.writeByte(this.encoding.id);
+            out.writeVarInt(1 + (nullBitmap != null ? nullBitmap.length : 0) + this.values.size());
+            writeNulls(out, nullBitmap);
+            out.write(this.values);
+        }
+
+        void writeNulls(CodecOutput out, byte[] nullBitmap) {
+            if(nullBitmap != null) {
+                out.writeByte(1);
+                out.writeBytes(nullBitmap, 0, nullBitmap.length);
+            } else {
+                out.writeByte(0);
+            }
+        }
+    }
+
+    private static class BooleanWriter extends ColumnWriter {
+        BooleanWriter() {
+            super(ColumnEncoding.BOOLEAN);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            boolean value = resultSet.getBoolean(column);
+            if(resultSet.wasNull()) {
+                return false;
+            }
+            this.values.writeByte(value ? 1 : 0);
+            return true;
+        }
+    }
+
+    private static class IntWriter extends ColumnWriter {
+        IntWriter() {
+            super(ColumnEncoding.INT);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            int value = resultSet.getInt(column);
+            if(resultSet.wasNull()) {
+                return false;
+            }
+            this.values.writeZigZagInt(value);
+            return true;
+        }
+    }
+
+    private static class LongWriter extends ColumnWriter {
+        LongWriter() {
+            super(ColumnEncoding.LONG);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            long value = resultSet.getLong(column);
+            if(resultSet.wasNull()) {
+                return false;
+            }
+            this.values.writeZigZagLong(value);
+            return true;
+        }
+    }
+
+    private static class FloatWriter extends ColumnWriter {
+        FloatWriter() {
+            super(ColumnEncoding.FLOAT);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            float value = resultSet.getFloat(column);
+            if(resultSet.wasNull()) {
+                return false;
+            }
+            this.values.writeFloat(value);
+            return true;
+        }
+    }
+
+    private static class DoubleWriter extends ColumnWriter {
+        DoubleWriter() {
+            super(ColumnEncoding.DOUBLE);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            double value = resultSet.getDouble(column);
+            if(resultSet.wasNull()) {
+                return false;
+            }
+            this.values.writeDouble(value);
+            return true;
+        }
+    }
+
+    private static class DecimalWriter extends ColumnWriter {
+        DecimalWriter() {
+            super(ColumnEncoding.DECIMAL);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            BigDecimal value = resultSet.getBigDecimal(column);
+            if(value == null) {
+                return false;
+            }
+            writeDecimal(this.values, value);
+            return true;
+        }
+    }
+
+    private static class StringWriter extends ColumnWriter {
+        private final Map<String, Integer> dictionary = new HashMap<>();
+        private final CodecOutput dictionaryValues = new CodecOutput(64);
+        private int[] dictionaryOffsets = new int[16];
+        private int valueCount;
+        // Size of the values if they were written inline
+        private int plainSize;
+
+        StringWriter() {
+            super(ColumnEncoding.DICTIONARY_STRING);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            String value = resultSet.getString(column);
+            if(value == null) {
+                return false;
+            }
+            Integer index = this.dictionary.get(value);
+            if(index == null) {
+                index = this.dictionary.size();
+                this.dictionary.put(value, index);
+                if(index + 1 >= this.dictionaryOffsets.length) {
+                    this.dictionaryOffsets = Arrays.copyOf(this.dictionaryOffsets, this.dictionaryOffsets.length * 2);
+                }
+                this.dictionaryValues.writeString(value);
+                this.dictionaryOffsets[index + 1] = this.dictionaryValues.size();
+            }
+            this.values.writeVarInt(index);
+            this.valueCount++;
+            this.plainSize += this.dictionaryOffsets[index + 1] - this.dictionaryOffsets[index];
+            return true;
+        }
+
+        /**
+         * @return true if the values are written inline, false if they are written through the dictionary
+         */
+        private boolean isPlain() {
+            // Most values are distinct
+            return this.dictionary.size() * 2 > this.valueCount && this.valueCount > 16;
+        }
+
+        @Override
+        int size() {
+            // Sized for the encoding writeTo picks, with up to 5 bytes for the dictionary size
+            return super.size() - this.values.size() +
+                    (isPlain() ? this.plainSize : 5 + this.values.size() + this.dictionaryValues.size());
+        }
+
+        @Override
+        void writeTo(CodecOutput out, int rowCount) {
+            byte[] nullBitmap = this.nulls.isEmpty() ? null : Arrays.copyOf(this.nulls.toByteArray(), (rowCount + 7) / 8);
+            int nullsLength = 1 + (nullBitmap != null ? nullBitmap.length : 0);
+            if(isPlain()) {
+                // Most values are distinct: write them inline instead of going through the dictionary
+                CodecOutput plainValues = new CodecOutput(this.dictionaryValues.size() + this.valueCount);
+                byte[] dictionaryBytes = this.dictionaryValues.toByteArray();
+                CodecInput indexes = new CodecInput(ByteBuffer.wrap(this.values.toByteArray()));
+                try {
+                    for(int i = 0; i < this.valueCount; i++) {
+                        int index = indexes.readVarInt();
+                        plainValues.writeBytes(dictionaryBytes, this.dictionaryOffsets[index],
+                                this.dictionaryOffsets[index + 1] - this.dictionaryOffsets[index]);
+                    }
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+                out.writeByte(ColumnEncoding.STRING.id);
+                out.writeVarInt(nullsLength + plainValues.size());
+                writeNulls(out, nullBitmap);
+                out.write(plainValues);
+            } else {
+                CodecOutput dictionarySize = new CodecOutput(16);
+                dictionarySize.writeVarInt(this.dictionary.size());
+                out.writeByte(ColumnEncoding.DICTIONARY_STRING.id);
+                out.writeVarInt(nullsLength + dictionarySize.size() + this.dictionaryValues.size() + this.values.size());
+                writeNulls(out, nullBitmap);
+                out.write(dictionarySize);
+                out.write(this.dictionaryValues);
+                out.write(this.values);
+            }
+        }
+    }
+
+    private abstract static class TemporalWriter extends ColumnWriter {
+        private long previous;
+
+        TemporalWriter(ColumnEncoding encoding) {
+            super(encoding);
+        }
+
+        void writeMillis(long millis) {
+            this.values.writeZigZagLong(millis - this.previous);
+            this.previous = millis;
+        }
+    }
+
+    private static class DateWriter extends TemporalWriter {
+        DateWriter() {
+            super(ColumnEncoding.DATE);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            Date value = resultSet.getDate(column);
+            if(value == null) {
+                return false;
+            }
+            writeMillis(value.getTime());
+            return true;
+        }
+    }
+
+    private static class TimeWriter extends TemporalWriter {
+        TimeWriter() {
+            super(ColumnEncoding.TIME);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            Time value = resultSet.getTime(column);
+            if(value == null) {
+                return false;
+            }
+            writeMillis(value.getTime());
+            return true;
+        }
+    }
+
+    private static class TimestampWriter extends TemporalWriter {
+        TimestampWriter() {
+            super(ColumnEncoding.TIMESTAMP);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            Timestamp value = resultSet.getTimestamp(column);
+            if(value == null) {
+                return false;
+            }
+            writeMillis(value.getTime());
+            // The milliseconds are part of the time, only keep the sub millisecond nanoseconds
+            this.values.writeVarInt(value.getNanos() % 1000000);
+            return true;
+        }
+    }
+
+    private static class BytesWriter extends ColumnWriter {
+        BytesWriter() {
+            super(ColumnEncoding.BYTES);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            byte[] value = resultSet.getBytes(column);
+            if(value == null) {
+                return false;
+            }
+            this.values.writeByteArray(value);
+            return true;
+        }
+    }
+
+    private static class ObjectWriter extends ColumnWriter {
+        ObjectWriter() {
+            super(ColumnEncoding.OBJECT);
+        }
+
+        boolean addValue(ResultSet resultSet, int column) throws SQLException {
+            Object value = resultSet.getObject(column);
+            if(value == null) {
+                return false;
+            }
+            if(value instanceof String) {
+                this.values.writeByte(TAG_STRING);
+                this.values.writeString((String)value);
+            } else if(value instanceof Integer) {
+                this.values.writeByte(TAG_INTEGER);
+                this.values.writeZigZagInt((Integer)value);
+            } else if(value instanceof Long) {
+                this.values.writeByte(TAG_LONG);
+                this.values.writeZigZagLong((Long)value);
+            } else if(value instanceof Double) {
+                this.values.writeByte(TAG_DOUBLE);
+                this.values.writeDouble((Double)value);
+            } else if(value instanceof Float) {
+                this.values.writeByte(TAG_FLOAT);
+                this.values.writeFloat((Float)value);
+            } else if(value instanceof BigDecimal) {
+                this.values.writeByte(TAG_DECIMAL);
+                writeDecimal(this.values, (BigDecimal)value);
+            } else if(value instanceof Boolean) {
+                this.values.writeByte(TAG_BOOLEAN);
+                this.values.writeByte((Boolean)value ? 1 : 0);
+            } else if(value instanceof Date) {
+                this.values.writeByte(TAG_DATE);
+                this.values.writeZigZagLong(((Date)value).getTime());
+            } else if(value instanceof Time) {
+                this.values.writeByte(TAG_TIME);
+                this.values.writeZigZagLong(((Time)value).getTime());
+            } else if(value instanceof Timestamp) {
+                this.values.writeByte(TAG_TIMESTAMP);
+                this.values.writeZigZagLong(((Timestamp)value).getTime());
+                this.values.writeVarInt(((Timestamp)value).getNanos() % 1000000);
+            } else if(value instanceof byte[]) {
+                this.values.writeByte(TAG_BYTES);
+                this.values.writeByteArray((byte[])value);
+            } else if(value instanceof Short) {
+                this.values.writeByte(TAG_SHORT);
+                this.values.writeZigZagInt((Short)value);
+            } else if(value instanceof Byte) {
+                this.values.writeByte(TAG_BYTE);
+                this.values.writeZigZagInt((Byte)value);
+            } else {
+                // Types without a specific encoding are cached as strings
+                this.values.writeByte(TAG_STRING);
+                this.values.writeString(resultSet.getString(column));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.powerreviews.jdbc.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms of the cache, registered as MBeans under the
+ * com.powerreviews.jdbc:type=CacheMetrics name: one per driver instance, and a global one
+ * aggregating all the driver instances. Every metric recorded by the metrics of a driver
+ * instance is also recorded by the global metrics. Counters are striped, so that recording
+ * metrics adds no contention between the threads using the cache.
+ */
+public class CacheMetrics implements CacheMetricsMXBean {
+    final private static Logger log = LoggerFactory.getLogger(CacheMetrics.class);
+
+    private static final String OBJECT_NAME = "com.powerreviews.jdbc:type=CacheMetrics,name=";
+
+    private static final CacheMetrics global = register(new CacheMetrics(null), "global");
+    private static final AtomicInteger drivers = new AtomicInteger();
+
+    /**
+     * The stages of a query whose latency is measured
+     */
+    public enum Stage {
+        REDIS_GET, DECODE, EXECUTE, ENCODE, REDIS_SET
+    }
+
+    private final CacheMetrics parent;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypasses = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rejectedForSize = new LongAdder();
+    private final Histogram[] latencies = new Histogram[Stage.values().length];
+    private final Histogram payloadSize = new Histogram();
+
+    /**
+     * @param parent The metrics that also record the metrics recorded by these ones, may be null
+     */
+    public CacheMetrics(CacheMetrics parent) {
+        this.parent = parent;
+        for(int i = 0; i < this.latencies.length; i++) {
+            this.latencies[i] = new Histogram();
+        }
+    }
+
+    /**
+     * @return The metrics of all the driver instances
+     */
+    public static CacheMetrics getGlobal() {
+        return global;
+    }
+
+    /**
+     * Creates and registers the metrics of a new driver instance
+     * @return The metrics, also recorded by the global metrics
+     */
+    public static CacheMetrics newDriverMetrics() {
+        return register(new CacheMetrics(global), "driver-" + drivers.incrementAndGet());
+    }
+
+    private static CacheMetrics register(CacheMetrics metrics, String name) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(OBJECT_NAME + name));
+        } catch (JMException | SecurityException e) {
+            // The metrics are still recorded, they are just not visible through JMX
+            log.warn("Unable to register the cache metrics MBean {}", name, e);
+        }
+        return metrics;
+    }
+
+    public void hit() {
+        this.hits.increment();
+        if(this.parent != null) {
+            this.parent.hit();
+        }
+    }
+
+    public void miss() {
+        this.misses.increment();
+        if(this.parent != null) {
+            this.parent.miss();
+        }
+    }
+
+    public void bypass() {
+        this.bypasses.increment();
+        if(this.parent != null) {
+            this.parent.bypass();
+        }
+    }
+
+    public void error() {
+        this.errors.increment();
+        if(this.parent != null) {
+            this.parent.error();
+        }
+    }
+
+    public void rejectedForSize() {
+        this.rejectedForSize.increment();
+        if(this.parent != null) {
+            this.parent.rejectedForSize();
+        }
+    }
+
+    /**
+     * Records the latency of a stage
+     * @param stage The stage
+     * @param startNanos The value of System.nanoTime() when the stage started
+     */
+    public void time(Stage stage, long startNanos) {
+        record(stage, System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records the latency of a stage
+     * @param stage The stage
+     * @param nanos The duration of the stage in nanoseconds
+     */
+    public void record(Stage stage, long nanos) {
+        recordMicros(stage, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    private void recordMicros(Stage stage, long micros) {
+        this.latencies[stage.ordinal()].record(micros);
+        if(this.parent != null) {
+            this.parent.recordMicros(stage, micros);
+        }
+    }
+
+    /**
+     * @param bytes The size of a payload written to the cache
+     */
+    public void payload(long bytes) {
+        this.payloadSize.record(bytes);
+        if(this.parent != null) {
+            this.parent.payload(bytes);
+        }
+    }
+
+    @Override
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    @Override
+    public long getBypasses() {
+        return this.bypasses.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return this.errors.sum();
+    }
+
+    @Override
+    public long getRejectedForSize() {
+        return this.rejectedForSize.sum();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long hits = getHits();
+        long lookups = hits + getMisses();
+        return lookups > 0 ? (double)hits / lookups : 0;
+    }
+
+    /**
+     * @param stage A stage
+     * @return The latencies of the stage, in microseconds
+     */
+    public Histogram getLatency(Stage stage) {
+        return this.latencies[stage.ordinal()];
+    }
+
+    @Override
+    public Histogram.Snapshot getRedisGetLatency() {
+        return getLatency(Stage.REDIS_GET).getSnapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getDecodeLatency() {
+        return getLatency(Stage.DECODE).getSnapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getExecuteLatency() {
+        return getLatency(Stage.EXECUTE).getSnapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getEncodeLatency() {
+        return getLatency(Stage.ENCODE).getSnapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getRedisSetLatency() {
+        return getLatency(Stage.REDIS_SET).getSnapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getPayloadSize() {
+        return this.payloadSize.getSnapshot();
+    }
+}
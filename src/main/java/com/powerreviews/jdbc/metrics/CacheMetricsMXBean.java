@@ -0,0 +1,49 @@
+package com.powerreviews.jdbc.metrics;
+
+/**
+ * The JMX view of the cache metrics. Latencies are in microseconds and payload sizes in bytes.
+ */
+public interface CacheMetricsMXBean {
+    /**
+     * @return The number of queries whose result has been read from the cache
+     */
+    long getHits();
+
+    /**
+     * @return The number of queries that have been run because their result was not cached
+     */
+    long getMisses();
+
+    /**
+     * @return The number of queries that have been run without looking up the cache, e.g.
+     * because Redis is not configured or for the pool validation query
+     */
+    long getBypasses();
+
+    /**
+     * @return The number of failures to read from or write to the cache
+     */
+    long getErrors();
+
+    /**
+     * @return The number of results that have not been cached because they were too large
+     */
+    long getRejectedForSize();
+
+    /**
+     * @return The share of the cache lookups that were hits, between 0 and 1
+     */
+    double getHitRatio();
+
+    Histogram.Snapshot getRedisGetLatency();
+
+    Histogram.Snapshot getDecodeLatency();
+
+    Histogram.Snapshot getExecuteLatency();
+
+    Histogram.Snapshot getEncodeLatency();
+
+    Histogram.Snapshot getRedisSetLatency();
+
+    Histogram.Snapshot getPayloadSize();
+}
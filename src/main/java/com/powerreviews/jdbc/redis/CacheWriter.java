@@ -0,0 +1,186 @@
+package com.powerreviews.jdbc.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.Pool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Writes query results to Redis in the background. Results from all the connections using the
+ * same Redis server are queued in a bounded queue, and a single writer thread encodes them and
+ * writes them in batches, each batch in a single pipeline. Results that do not fit in the queue
+ * are dropped and will be cached the next time their query is run.
+ */
+public class CacheWriter {
+    final private static Logger log = LoggerFactory.getLogger(CacheWriter.class);
+
+    // Writers are shared by all the connections using the same Redis server
+    private static final ConcurrentMap<String, CacheWriter> cacheWriters = new ConcurrentHashMap<>();
+
+    // Maximum time pending writes are given to complete when the JVM shuts down
+    private static final long SHUTDOWN_FLUSH_TIMEOUT = 5000;
+
+    private final Pool<Jedis> jedisPool;
+    private final BlockingQueue<Write> queue;
+    private final int batchSize;
+
+    /**
+     * A pending write, or a flush marker if the key is null
+     */
+    private static class Write {
+        final byte[] key;
+        final Integer expiration;
+        final Callable<byte[]> value;
+        final CompletableFuture<Void> flushed;
+
+        Write(byte[] key, Integer expiration, Callable<byte[]> value, CompletableFuture<Void> flushed) {
+            this.key = key;
+            this.expiration = expiration;
+            this.value = value;
+            this.flushed = flushed;
+        }
+    }
+
+    CacheWriter(String name, Pool<Jedis> jedisPool, int queueSize, int batchSize) {
+        this.jedisPool = jedisPool;
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.batchSize = batchSize;
+
+        Thread writer = new Thread(this::run, "redshift-cache-writer-" + name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns the writer with the given name, creating it the first time it is requested. Pending
+     * writes of the writers are flushed when the JVM shuts down.
+     * @param name The writer name, usually identifying the Redis server the results are cached in
+     * @param jedisPool The pool of connections to the Redis server. Only used when the writer is created.
+     * @param queueSize The maximum number of pending writes. Only used when the writer is created.
+     * @param batchSize The maximum number of writes sent in a single pipeline. Only used when the writer is created.
+     * @return The shared writer
+     */
+    public static CacheWriter getCacheWriter(String name, Pool<Jedis> jedisPool, int queueSize, int batchSize) {
+        CacheWriter cacheWriter = cacheWriters.get(name);
+        if(cacheWriter == null) {
+            cacheWriter = cacheWriters.computeIfAbsent(name, key -> {
+                CacheWriter newCacheWriter = new CacheWriter(key, jedisPool, queueSize, batchSize);
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> newCacheWriter.flush(SHUTDOWN_FLUSH_TIMEOUT)));
+                return newCacheWriter;
+            });
+        }
+        return cacheWriter;
+    }
+
+    /**
+     * Queues a write
+     * @param key The Redis key
+     * @param expiration The expiration of the key in seconds, null if the key does not expire
+     * @param value Computes the value to write, on the writer thread. The key is not written if
+     *              it returns null or fails.
+     * @return true if the write has been queued, false if it has been dropped because the queue is full
+     */
+    public boolean write(byte[] key, Integer expiration, Callable<byte[]> value) {
+        if(!queue.offer(new Write(key, expiration, value, null))) {
+            log.debug("Too many pending writes, write dropped");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the writes queued so far to be sent to Redis
+     * @param timeoutMillis The maximum number of milliseconds to wait
+     * @return true if the writes have been sent in time
+     */
+    public boolean flush(long timeoutMillis) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        try {
+            if(!queue.offer(new Write(null, null, null, flushed), timeoutMillis, TimeUnit.MILLISECONDS)) {
+                return false;
+            }
+            flushed.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return true;
+        } catch (TimeoutException | ExecutionException e) {
+            log.debug("Pending writes not flushed in time");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private void run() {
+        List<Write> batch = new ArrayList<>(batchSize);
+        while(true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch, batchSize - 1);
+            writeBatch(batch);
+            for(Write write : batch) {
+                if(write.flushed != null) {
+                    write.flushed.complete(null);
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Write> batch) {
+        List<Write> writes = new ArrayList<>(batch.size());
+        List<byte[]> values = new ArrayList<>(batch.size());
+        for(Write write : batch) {
+            if(write.key == null) {
+                continue;
+            }
+            try {
+                byte[] value = write.value.call();
+                if(value != null) {
+                    writes.add(write);
+                    values.add(value);
+                }
+            } catch (Exception e) {
+                log.error("Unable to encode object", e);
+            }
+        }
+        if(writes.isEmpty()) {
+            return;
+        }
+
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            Pipeline pipeline = jedisClient.pipelined();
+            for(int i = 0; i < writes.size(); i++) {
+                Write write = writes.get(i);
+                if(write.expiration != null) {
+                    pipeline.setex(write.key, write.expiration, values.get(i));
+                } else {
+                    pipeline.set(write.key, values.get(i));
+                }
+            }
+            pipeline.sync();
+            log.debug("Cached {} objects", writes.size());
+        } catch (JedisConnectionException jce) {
+            log.error("Unable to cache objects", jce);
+        } catch (RuntimeException e) {
+            log.error("Unable to cache objects", e);
+        }
+    }
+}
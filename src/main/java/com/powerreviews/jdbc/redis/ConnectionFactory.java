@@ -0,0 +1,16 @@
+package com.powerreviews.jdbc.redis;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Opens new connections to the database, with the same URL and properties as the connection
+ * the cache is used by
+ */
+public interface ConnectionFactory {
+    /**
+     * @return A new connection, that the caller must close
+     * @throws SQLException
+     */
+    Connection connect() throws SQLException;
+}
@@ -0,0 +1,100 @@
+package com.powerreviews.jdbc.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.Pool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generation counters stored in Redis, folded into the cache keys so that incrementing a counter
+ * invalidates all the results cached under it at once: the results cached with the previous
+ * generation are no longer looked up and are left to expire. Counters are read from Redis at
+ * most once per refresh interval, and their last known value is used in between.
+ */
+public class GenerationCounter {
+    final private static Logger log = LoggerFactory.getLogger(GenerationCounter.class);
+
+    // Counters are shared by all the connections using the same Redis server
+    private static final ConcurrentMap<String, GenerationCounter> generationCounters = new ConcurrentHashMap<>();
+
+    private final Pool<Jedis> jedisPool;
+    private final long refreshNanos;
+    private final ConcurrentMap<String, Generation> generations = new ConcurrentHashMap<>();
+
+    private static class Generation {
+        final long value;
+        final long readAt;
+
+        Generation(long value, long readAt) {
+            this.value = value;
+            this.readAt = readAt;
+        }
+    }
+
+    GenerationCounter(Pool<Jedis> jedisPool, long refreshMillis) {
+        this.jedisPool = jedisPool;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+    }
+
+    /**
+     * Returns the counters with the given name, creating them the first time they are requested
+     * @param name The counters name, usually identifying the Redis server the counters are stored in
+     * @param jedisPool The pool of connections to the Redis server. Only used when the counters are created.
+     * @param refreshMillis How long the value of a counter is used before being read again from
+     *                      Redis. Only used when the counters are created.
+     * @return The shared counters
+     */
+    public static GenerationCounter getGenerationCounter(String name, Pool<Jedis> jedisPool, long refreshMillis) {
+        GenerationCounter generationCounter = generationCounters.get(name);
+        if(generationCounter == null) {
+            generationCounter = generationCounters.computeIfAbsent(name, key -> new GenerationCounter(jedisPool, refreshMillis));
+        }
+        return generationCounter;
+    }
+
+    /**
+     * @param key The Redis key of the counter
+     * @return The current generation, 0 if the counter has never been incremented. The last known
+     * generation is returned if the counter cannot be read from Redis.
+     */
+    public long get(String key) {
+        long now = System.nanoTime();
+        Generation generation = this.generations.get(key);
+        if(generation != null && now - generation.readAt < this.refreshNanos) {
+            return generation.value;
+        }
+        long value;
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            byte[] stored = jedisClient.get(key.getBytes(StandardCharsets.UTF_8));
+            value = stored != null ? Long.parseLong(new String(stored, StandardCharsets.UTF_8)) : 0;
+        } catch (JedisConnectionException jce) {
+            log.error("Unable to read generation from Redis. Key: {}", key);
+            value = generation != null ? generation.value : 0;
+        } catch (NumberFormatException e) {
+            log.error("Invalid generation in Redis. Key: {}", key);
+            value = generation != null ? generation.value : 0;
+        }
+        this.generations.put(key, new Generation(value, now));
+        return value;
+    }
+
+    /**
+     * Increments a counter in Redis, invalidating the results cached under it
+     * @param key The Redis key of the counter
+     * @return The new generation
+     */
+    public long increment(String key) {
+        long value;
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            value = jedisClient.incr(key.getBytes(StandardCharsets.UTF_8));
+        }
+        this.generations.put(key, new Generation(value, System.nanoTime()));
+        return value;
+    }
+}
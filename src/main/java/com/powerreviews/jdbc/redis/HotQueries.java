@@ -0,0 +1,246 @@
+package com.powerreviews.jdbc.redis;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.Pool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the queries run through the driver, with the number of times they have been run and
+ * how long the database took to run them, so that the most valuable queries can be run again to
+ * warm the cache once it has been invalidated. Executions are counted in memory and added to
+ * Redis periodically by a background thread: the hits of the queries in a sorted set, and each
+ * query with its last execution time in a hash of its own.
+ */
+public class HotQueries {
+    final private static Logger log = LoggerFactory.getLogger(HotQueries.class);
+
+    // Recorders are shared by all the connections using the same Redis server
+    private static final ConcurrentMap<String, HotQueries> recorders = new ConcurrentHashMap<>();
+
+    private static final String HOT_KEY = "hot";
+    private static final byte[] SQL_FIELD = "sql".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COST_FIELD = "cost".getBytes(StandardCharsets.UTF_8);
+    // Queries not run for a week are forgotten
+    private static final int QUERY_EXPIRATION = 7 * 24 * 3600;
+    // Maximum number of queries kept in Redis, the least run ones are dropped
+    static final int MAX_QUERIES = 1000;
+    // Maximum number of queries counted in memory between two flushes
+    private static final int MAX_PENDING_QUERIES = 10000;
+
+    private final Pool<Jedis> jedisPool;
+    private final ConcurrentMap<String, Query> queries = new ConcurrentHashMap<>();
+
+    private static class Query {
+        final String keyPrefix;
+        final String fingerprint;
+        final String sql;
+        final LongAdder hits = new LongAdder();
+        // Last execution time in milliseconds, -1 if the query has only been read from the cache
+        volatile long cost = -1;
+
+        Query(String keyPrefix, String fingerprint, String sql) {
+            this.keyPrefix = keyPrefix;
+            this.fingerprint = fingerprint;
+            this.sql = sql;
+        }
+    }
+
+    /**
+     * A recorded query, with its value for warming the cache
+     */
+    public static class HotQuery {
+        private final String sql;
+        private final long hits;
+        private final long cost;
+
+        HotQuery(String sql, long hits, long cost) {
+            this.sql = sql;
+            this.hits = hits;
+            this.cost = cost;
+        }
+
+        /**
+         * @return The query
+         */
+        public String getSql() {
+            return sql;
+        }
+
+        /**
+         * @return The number of times the query has been run, from the cache or not
+         */
+        public long getHits() {
+            return hits;
+        }
+
+        /**
+         * @return The last execution time of the query in milliseconds, 0 if unknown
+         */
+        public long getCost() {
+            return cost;
+        }
+
+        /**
+         * @return The database time saved by caching the query, queries of unknown cost being
+         * assumed to take one millisecond
+         */
+        public long getValue() {
+            return hits * Math.max(1, cost);
+        }
+    }
+
+    HotQueries(String name, Pool<Jedis> jedisPool, long flushMillis) {
+        this.jedisPool = jedisPool;
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redshift-cache-hot-queries-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the recorder with the given name, creating it the first time it is requested. The
+     * pending counts of the recorders are flushed when the JVM shuts down.
+     * @param name The recorder name, usually identifying the Redis server the queries are recorded in
+     * @param jedisPool The pool of connections to the Redis server. Only used when the recorder is created.
+     * @param flushMillis The interval between two additions of the counts to Redis. Only used when
+     *                    the recorder is created.
+     * @return The shared recorder
+     */
+    public static HotQueries getHotQueries(String name, Pool<Jedis> jedisPool, long flushMillis) {
+        HotQueries hotQueries = recorders.get(name);
+        if(hotQueries == null) {
+            hotQueries = recorders.computeIfAbsent(name, key -> {
+                HotQueries newHotQueries = new HotQueries(key, jedisPool, flushMillis);
+                Runtime.getRuntime().addShutdownHook(new Thread(newHotQueries::flush));
+                return newHotQueries;
+            });
+        }
+        return hotQueries;
+    }
+
+    /**
+     * Counts an execution of a query
+     * @param keyPrefix The prefix of the Redis keys the query is recorded under
+     * @param fingerprint Identifies the query, regardless of the generation it is cached with
+     * @param sql The query, as it can be run again
+     * @param cost The time the database took to run the query in milliseconds, -1 if the result
+     *             has been read from the cache
+     */
+    public void record(String keyPrefix, String fingerprint, String sql, long cost) {
+        String id = keyPrefix + fingerprint;
+        Query query = this.queries.get(id);
+        if(query == null) {
+            if(this.queries.size() >= MAX_PENDING_QUERIES) {
+                return;
+            }
+            query = this.queries.computeIfAbsent(id, key -> new Query(keyPrefix, fingerprint, sql));
+        }
+        query.hits.increment();
+        if(cost >= 0) {
+            query.cost = cost;
+        }
+    }
+
+    /**
+     * Adds the counts recorded since the last flush to Redis
+     */
+    public void flush() {
+        if(this.queries.isEmpty()) {
+            return;
+        }
+        Set<String> keyPrefixes = new HashSet<>();
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            Pipeline pipeline = jedisClient.pipelined();
+            Iterator<Query> pending = this.queries.values().iterator();
+            while(pending.hasNext()) {
+                Query query = pending.next();
+                // Queries run again while being flushed are counted in the next flush, executions
+                // counted at the same time may be lost: the counts are approximate
+                pending.remove();
+                long hits = query.hits.sumThenReset();
+                byte[] queryKey = getQueryKey(query.keyPrefix, query.fingerprint);
+                pipeline.zincrby(getHotKey(query.keyPrefix), hits, query.fingerprint.getBytes(StandardCharsets.UTF_8));
+                pipeline.hset(queryKey, SQL_FIELD, query.sql.getBytes(StandardCharsets.UTF_8));
+                if(query.cost >= 0) {
+                    pipeline.hset(queryKey, COST_FIELD, Long.toString(query.cost).getBytes(StandardCharsets.UTF_8));
+                }
+                pipeline.expire(queryKey, QUERY_EXPIRATION);
+                keyPrefixes.add(query.keyPrefix);
+            }
+            for(String keyPrefix : keyPrefixes) {
+                pipeline.zremrangeByRank(getHotKey(keyPrefix), 0, -MAX_QUERIES - 1);
+            }
+            pipeline.sync();
+        } catch (JedisConnectionException jce) {
+            log.error("Unable to record hot queries", jce);
+        } catch (RuntimeException e) {
+            log.error("Unable to record hot queries", e);
+        }
+    }
+
+    /**
+     * Reads the recorded queries
+     * @param jedisClient A connection to the Redis server the queries are recorded in
+     * @param keyPrefix The prefix of the Redis keys the queries are recorded under
+     * @param count The maximum number of queries to return
+     * @return The most valuable queries, in order of decreasing value
+     */
+    public static List<HotQuery> top(Jedis jedisClient, String keyPrefix, int count) {
+        Set<Tuple> fingerprints = jedisClient.zrevrangeWithScores(getHotKey(keyPrefix), 0, MAX_QUERIES - 1);
+        Pipeline pipeline = jedisClient.pipelined();
+        List<Response<List<byte[]>>> fields = new ArrayList<>(fingerprints.size());
+        for(Tuple fingerprint : fingerprints) {
+            fields.add(pipeline.hmget(getQueryKey(keyPrefix, fingerprint.getElement()), SQL_FIELD, COST_FIELD));
+        }
+        pipeline.sync();
+
+        List<HotQuery> hotQueries = new ArrayList<>(fingerprints.size());
+        int index = 0;
+        for(Tuple fingerprint : fingerprints) {
+            List<byte[]> values = fields.get(index++).get();
+            // The query may have expired
+            if(values == null || values.get(0) == null) {
+                continue;
+            }
+            long cost = 0;
+            if(values.get(1) != null) {
+                try {
+                    cost = Long.parseLong(new String(values.get(1), StandardCharsets.UTF_8));
+                } catch (NumberFormatException e) {
+                    log.error("Invalid hot query cost. Fingerprint: {}", fingerprint.getElement());
+                }
+            }
+            hotQueries.add(new HotQuery(new String(values.get(0), StandardCharsets.UTF_8), (long)fingerprint.getScore(), cost));
+        }
+        hotQueries.sort((first, second) -> Long.compare(second.getValue(), first.getValue()));
+        return hotQueries.size() > count ? new ArrayList<>(hotQueries.subList(0, count)) : hotQueries;
+    }
+
+    private static byte[] getHotKey(String keyPrefix) {
+        return (keyPrefix + HOT_KEY).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] getQueryKey(String keyPrefix, String fingerprint) {
+        return (keyPrefix + HOT_KEY + ":" + fingerprint).getBytes(StandardCharsets.UTF_8);
+    }
+}
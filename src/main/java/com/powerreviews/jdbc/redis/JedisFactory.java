@@ -1,16 +1,55 @@
 package com.powerreviews.jdbc.redis;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+import redis.clients.util.Pool;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Created by dado on 4/7/16.
  */
 public class JedisFactory {
-    public Jedis createJedisClient(String url, Integer port) {
+    // Connection pools are shared by all the RedisClient objects in the JVM that connect to
+    // the same Redis server, index and password
+    private static final ConcurrentMap<String, Pool<Jedis>> jedisPools = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the connection pool associated with the given Redis server, creating it the first
+     * time it is requested. The pool configuration is only used when the pool is created.
+     * @param url The Redis server URL
+     * @param port The Redis server port, null to use the default port
+     * @param index The Redis index to select, null to use the default index
+     * @param password The Redis password, null if no authentication is needed
+     * @param poolConfig The configuration used to create the pool
+     * @return The shared connection pool, null if no Redis URL has been specified
+     */
+    public Pool<Jedis> getJedisPool(String url, Integer port, Integer index, String password,
+                                    GenericObjectPoolConfig poolConfig) {
         if(StringUtils.isEmpty(url)) {
             return null;
         }
-        return port != null ? new Jedis(url, port) : new Jedis(url);
+        String poolKey = url + ":" + port + "/" + index + "/" + StringUtils.defaultString(password);
+        Pool<Jedis> jedisPool = jedisPools.get(poolKey);
+        if(jedisPool == null) {
+            jedisPool = jedisPools.computeIfAbsent(poolKey,
+                    key -> createJedisPool(url, port, index, password, poolConfig));
+        }
+        return jedisPool;
+    }
+
+    protected Pool<Jedis> createJedisPool(String url, Integer port, Integer index, String password,
+                                          GenericObjectPoolConfig poolConfig) {
+        // Index selection and authentication are done by the pool every time a new
+        // connection is created, not every time a connection is borrowed
+        return new JedisPool(poolConfig, url,
+                port != null ? port : Protocol.DEFAULT_PORT,
+                Protocol.DEFAULT_TIMEOUT,
+                StringUtils.isNotEmpty(password) ? password : null,
+                index != null ? index : Protocol.DEFAULT_DATABASE);
     }
 }
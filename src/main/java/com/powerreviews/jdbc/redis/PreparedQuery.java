@@ -0,0 +1,24 @@
+package com.powerreviews.jdbc.redis;
+
+import com.powerreviews.jdbc.cache.CacheKey;
+import com.powerreviews.jdbc.util.Murmur3;
+
+/**
+ * The query run by a prepared statement with its current parameter values. In hash mode, the
+ * statement and its values are hashed straight into the cache key, and the text of the query is
+ * only written when the result is cached or compared with a cached result.
+ */
+public interface PreparedQuery extends CacheKey.Text {
+    /**
+     * Writes the query into the hash of its cache key. Two queries are hashed the same way only if
+     * they are written the same way.
+     * @param murmur3 The hash of the key
+     */
+    void hashTo(Murmur3 murmur3);
+
+    /**
+     * @return The query with a copy of its current parameter values, to refresh its cached result
+     * on another connection
+     */
+    ReplayableQuery replay();
+}
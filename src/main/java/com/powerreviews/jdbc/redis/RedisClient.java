@@ -1,20 +1,57 @@
 package com.powerreviews.jdbc.redis;
 
-import com.sun.rowset.CachedRowSetImpl;
+import com.powerreviews.jdbc.cache.BackgroundRefresher;
+import com.powerreviews.jdbc.cache.CacheKey;
+import com.powerreviews.jdbc.cache.ChunkedResultSet;
+import com.powerreviews.jdbc.cache.ConcatResultSet;
+import com.powerreviews.jdbc.cache.NearCache;
+import com.powerreviews.jdbc.cache.OffHeapStore;
+import com.powerreviews.jdbc.cache.SingleFlight;
+import com.powerreviews.jdbc.cache.TeeResultSet;
+import com.powerreviews.jdbc.codec.CachePayload;
+import com.powerreviews.jdbc.codec.CachedResultSet;
+import com.powerreviews.jdbc.codec.ChunkManifest;
+import com.powerreviews.jdbc.codec.Compression;
+import com.powerreviews.jdbc.codec.ResultSetDecoder;
+import com.powerreviews.jdbc.codec.ResultSetEncoder;
+import com.powerreviews.jdbc.metrics.CacheMetrics;
+import com.powerreviews.jdbc.util.Murmur3;
+import com.powerreviews.jdbc.util.SqlNormalizer;
+import com.powerreviews.jdbc.util.SqlTables;
 import org.apache.commons.lang3.StringUtils;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.Pool;
 
-import javax.sql.rowset.CachedRowSet;
-import java.io.*;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -25,16 +62,96 @@ import org.slf4j.LoggerFactory;
 public class RedisClient {
     final private static Logger log = LoggerFactory.getLogger(RedisClient.class);
 
-    private Jedis jedisClient;
+    // By default near cache entries are kept for one minute, so that invalidating
+    // Redis is reflected on all the nodes shortly after
+    private static final int DEFAULT_L1_EXPIRATION = 60;
+
+    private static final String DEFAULT_KEY_PREFIX = "rsc:";
+
+    // The Redis connection pool is shared by all the connections using the same Redis server,
+    // and a cache operation waiting for a free Redis connection gives up after two seconds
+    private static final int DEFAULT_POOL_MAX_TOTAL = 64;
+    private static final long DEFAULT_POOL_MAX_WAIT = 2000;
+
+    private static final long DEFAULT_SINGLE_FLIGHT_TIMEOUT = 30000;
+
+    private static final long DEFAULT_FILL_LOCK_TTL = 30000;
+    private static final long DEFAULT_FILL_LOCK_WAIT = 10000;
+    private static final long DEFAULT_FILL_LOCK_POLL = 100;
+    private static final int DEFAULT_REFRESH_THREADS = 2;
+    private static final int DEFAULT_REFRESH_QUEUE_SIZE = 100;
+
+    private static final int DEFAULT_WRITE_BEHIND_QUEUE_SIZE = 1000;
+    private static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 100;
+    // Maximum time closing a connection waits for the pending writes
+    private static final long WRITE_BEHIND_FLUSH_TIMEOUT = 5000;
+
+    // Streamed results whose encoded rows exceed 16MB are not cached
+    private static final long DEFAULT_STREAM_BUFFER_MAX_KB = 16 * 1024;
+
+    // Prepared statements with stream parameters larger than 64KB are not cached
+    private static final int DEFAULT_PARAMETER_STREAM_MAX_KB = 64;
+
+    // Invalidations are seen by all the nodes within one second
+    private static final long DEFAULT_GENERATION_REFRESH = 1000;
+
+    private static final long DEFAULT_HOT_QUERY_FLUSH = 10000;
+
+    private static final Runnable NOTHING = () -> {};
+
+    private static final String LOCK_SUFFIX = ":lock";
+    private static final String GENERATION_KEY = "generation";
+    private static final String TAG_KEY = "tag:";
+    private static final byte[] NX = "NX".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PX = "PX".getBytes(StandardCharsets.UTF_8);
+    // Deletes the lock only if it is still held by the caller, and not by another client that took it after it expired
+    private static final byte[] UNLOCK_SCRIPT = ("if redis.call('get', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('del', KEYS[1]) else return 0 end").getBytes(StandardCharsets.UTF_8);
+
+    private Pool<Jedis> jedisPool;
     private String validationQuery;
     private Double redisObjectMaxSize;
     private Integer redisExpiration;
     private Integer redisIndex;
+    private Integer compressionThreshold;
+    private Compression compression;
+    private boolean hashKeys;
+    private String keyPrefix;
+    private String keyNamespace;
+    private boolean normalizeSql;
+    private int parameterStreamMaxBytes;
+    private NearCache nearCache;
+    private OffHeapStore offHeapStore;
+    private SingleFlight singleFlight;
+    private long singleFlightTimeout;
+    private boolean fillLock;
+    private long fillLockTtl;
+    private long fillLockWait;
+    private long fillLockPoll;
+    private Integer softExpiration;
+    private BackgroundRefresher refresher;
+    private ConnectionFactory connectionFactory;
+    private CacheWriter cacheWriter;
+    private boolean streamResults;
+    private Integer chunkRows;
+    private Integer maxCacheableRows;
+    private long streamBufferMaxBytes;
+    private GenerationCounter generationCounter;
+    private boolean generations;
+    private String schema;
+    private boolean tableTags;
+    private boolean invalidateOnUpdate;
+    private HotQueries hotQueries;
+    private CacheMetrics metrics = CacheMetrics.getGlobal();
+    // Streamed results that have not been read to the end or closed yet
+    private final Set<ResultSet> streams = ConcurrentHashMap.newKeySet();
 
     /**
-     * Creates a RedisClient object and initializes a connection with the Redis server
+     * Creates a RedisClient object that uses the connection pool shared by all the clients
+     * connecting to the same Redis server
      * @param url The JDBC connection URL
      * @param properties The JDBC connection properties
+     * @param jedisFactory The factory providing the shared Redis connection pools
      */
     public RedisClient(String url, Properties properties, JedisFactory jedisFactory) {
         Properties fullProperties = parseJdbcConnectionURL(url, properties);
@@ -62,28 +179,192 @@ public class RedisClient {
                                 Double.parseDouble((String)fullProperties.get("redisObjectMaxSizeKB")) : null;
         log.debug("Redis Object Max Size KB: {}", redisObjectMaxSize);
 
+        this.compressionThreshold = fullProperties.get("compressionThresholdBytes") != null ?
+                Integer.parseInt((String)fullProperties.get("compressionThresholdBytes")) : null;
+        log.debug("Compression Threshold bytes: {}", compressionThreshold);
+
+        this.compression = fullProperties.get("compressionCodec") != null ?
+                Compression.forName((String)fullProperties.get("compressionCodec")) : Compression.LZ4;
+        log.debug("Compression Codec: {}", compression);
+
+        String keyMode = fullProperties.get("keyMode") != null ? (String)fullProperties.get("keyMode") : "raw";
+        log.debug("Key Mode: {}", keyMode);
+        if(StringUtils.equalsIgnoreCase(keyMode, "hash")) {
+            this.hashKeys = true;
+        } else if(!StringUtils.equalsIgnoreCase(keyMode, "raw")) {
+            throw new IllegalArgumentException("Invalid keyMode " + keyMode + ", expected raw or hash");
+        }
+
+        this.keyPrefix = fullProperties.get("keyPrefix") != null ? (String)fullProperties.get("keyPrefix") : DEFAULT_KEY_PREFIX;
+        log.debug("Key Prefix: {}", keyPrefix);
+
+        // Hashed keys are scoped to the database, schema and user, and to the format of the cached values
+        this.keyNamespace = parseDatabase(url) + "\0" +
+                StringUtils.defaultString((String)fullProperties.get("currentSchema")) + "\0" +
+                StringUtils.defaultString((String)fullProperties.get("user")) + "\0" +
+                CachePayload.FORMAT_VERSION;
+        log.debug("Key Namespace: {}", keyNamespace);
+
+        this.schema = StringUtils.defaultString((String)fullProperties.get("currentSchema"));
+
+        this.normalizeSql = Boolean.parseBoolean((String)fullProperties.get("normalizeSql"));
+        log.debug("Normalize SQL: {}", normalizeSql);
+
+        int parameterStreamMaxKB = fullProperties.get("parameterStreamMaxKB") != null ?
+                Integer.parseInt((String)fullProperties.get("parameterStreamMaxKB")) : DEFAULT_PARAMETER_STREAM_MAX_KB;
+        log.debug("Parameter Stream Max KB: {}", parameterStreamMaxKB);
+        this.parameterStreamMaxBytes = parameterStreamMaxKB * 1024;
+
+        boolean singleFlight = Boolean.parseBoolean((String)fullProperties.get("singleFlight"));
+        log.debug("Single Flight: {}", singleFlight);
+
+        this.singleFlightTimeout = fullProperties.get("singleFlightTimeoutMs") != null ?
+                Long.parseLong((String)fullProperties.get("singleFlightTimeoutMs")) : DEFAULT_SINGLE_FLIGHT_TIMEOUT;
+        log.debug("Single Flight Timeout millis: {}", singleFlightTimeout);
+
+        this.fillLock = Boolean.parseBoolean((String)fullProperties.get("fillLock"));
+        log.debug("Fill Lock: {}", fillLock);
+
+        this.fillLockTtl = fullProperties.get("fillLockTtlMs") != null ?
+                Long.parseLong((String)fullProperties.get("fillLockTtlMs")) : DEFAULT_FILL_LOCK_TTL;
+        log.debug("Fill Lock TTL millis: {}", fillLockTtl);
+
+        this.fillLockWait = fullProperties.get("fillLockWaitMs") != null ?
+                Long.parseLong((String)fullProperties.get("fillLockWaitMs")) : DEFAULT_FILL_LOCK_WAIT;
+        log.debug("Fill Lock Wait millis: {}", fillLockWait);
+
+        this.fillLockPoll = fullProperties.get("fillLockPollMs") != null ?
+                Long.parseLong((String)fullProperties.get("fillLockPollMs")) : DEFAULT_FILL_LOCK_POLL;
+        log.debug("Fill Lock Poll millis: {}", fillLockPoll);
+
+        // Between the soft expiration and the Redis expiration, cached results are served while
+        // they are refreshed in the background
+        this.softExpiration = fullProperties.get("softExpirationSeconds") != null ?
+                Integer.parseInt((String)fullProperties.get("softExpirationSeconds")) : null;
+        log.debug("Soft Expiration seconds: {}", softExpiration);
+
+        int refreshThreads = fullProperties.get("refreshThreads") != null ?
+                Integer.parseInt((String)fullProperties.get("refreshThreads")) : DEFAULT_REFRESH_THREADS;
+        log.debug("Refresh Threads: {}", refreshThreads);
+
+        int refreshQueueSize = fullProperties.get("refreshQueueSize") != null ?
+                Integer.parseInt((String)fullProperties.get("refreshQueueSize")) : DEFAULT_REFRESH_QUEUE_SIZE;
+        log.debug("Refresh Queue Size: {}", refreshQueueSize);
+
+        boolean writeBehind = Boolean.parseBoolean((String)fullProperties.get("writeBehind"));
+        log.debug("Write Behind: {}", writeBehind);
+
+        int writeBehindQueueSize = fullProperties.get("writeBehindQueueSize") != null ?
+                Integer.parseInt((String)fullProperties.get("writeBehindQueueSize")) : DEFAULT_WRITE_BEHIND_QUEUE_SIZE;
+        log.debug("Write Behind Queue Size: {}", writeBehindQueueSize);
+
+        int writeBehindBatchSize = fullProperties.get("writeBehindBatchSize") != null ?
+                Integer.parseInt((String)fullProperties.get("writeBehindBatchSize")) : DEFAULT_WRITE_BEHIND_BATCH_SIZE;
+        log.debug("Write Behind Batch Size: {}", writeBehindBatchSize);
+
+        this.streamResults = Boolean.parseBoolean((String)fullProperties.get("streamResults"));
+        log.debug("Stream Results: {}", streamResults);
+
+        long streamBufferMaxKB = fullProperties.get("streamBufferMaxKB") != null ?
+                Long.parseLong((String)fullProperties.get("streamBufferMaxKB")) : DEFAULT_STREAM_BUFFER_MAX_KB;
+        log.debug("Stream Buffer Max KB: {}", streamBufferMaxKB);
+        this.streamBufferMaxBytes = streamBufferMaxKB * 1024;
+
+        this.chunkRows = fullProperties.get("chunkRows") != null ?
+                Integer.parseInt((String)fullProperties.get("chunkRows")) : null;
+        log.debug("Chunk Rows: {}", chunkRows);
+
+        this.maxCacheableRows = fullProperties.get("maxCacheableRows") != null ?
+                Integer.parseInt((String)fullProperties.get("maxCacheableRows")) : null;
+        log.debug("Max Cacheable Rows: {}", maxCacheableRows);
+
+        this.generations = Boolean.parseBoolean((String)fullProperties.get("generations"));
+        log.debug("Generations: {}", generations);
+
+        long generationRefresh = fullProperties.get("generationRefreshMs") != null ?
+                Long.parseLong((String)fullProperties.get("generationRefreshMs")) : DEFAULT_GENERATION_REFRESH;
+        log.debug("Generation Refresh millis: {}", generationRefresh);
+
+        this.tableTags = Boolean.parseBoolean((String)fullProperties.get("tableTags"));
+        log.debug("Table Tags: {}", tableTags);
+
+        this.invalidateOnUpdate = Boolean.parseBoolean((String)fullProperties.get("invalidateOnUpdate"));
+        log.debug("Invalidate On Update: {}", invalidateOnUpdate);
+
+        boolean recordHotQueries = Boolean.parseBoolean((String)fullProperties.get("recordHotQueries"));
+        log.debug("Record Hot Queries: {}", recordHotQueries);
+
+        long hotQueryFlush = fullProperties.get("hotQueryFlushMs") != null ?
+                Long.parseLong((String)fullProperties.get("hotQueryFlushMs")) : DEFAULT_HOT_QUERY_FLUSH;
+        log.debug("Hot Query Flush millis: {}", hotQueryFlush);
+
         this.validationQuery = (String)fullProperties.get("poolValidationQuery");
         log.debug("Pool Validation Query: {}", validationQuery);
 
-        // Try to connect to Redis
-        try {
-            this.jedisClient = jedisFactory.createJedisClient(redisUrl, redisPort);
+        // Get the connection pool properties. They are only used when the pool
+        // for this Redis server is created
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(fullProperties.get("redisPoolMaxTotal") != null ?
+                Integer.parseInt((String)fullProperties.get("redisPoolMaxTotal")) : DEFAULT_POOL_MAX_TOTAL);
+        if(fullProperties.get("redisPoolMaxIdle") != null) {
+            poolConfig.setMaxIdle(Integer.parseInt((String)fullProperties.get("redisPoolMaxIdle")));
+        }
+        if(fullProperties.get("redisPoolMinIdle") != null) {
+            poolConfig.setMinIdle(Integer.parseInt((String)fullProperties.get("redisPoolMinIdle")));
+        }
+        poolConfig.setMaxWaitMillis(fullProperties.get("redisPoolMaxWaitMillis") != null ?
+                Long.parseLong((String)fullProperties.get("redisPoolMaxWaitMillis")) : DEFAULT_POOL_MAX_WAIT);
+        log.debug("Redis Pool Max Total: {}, Max Idle: {}, Min Idle: {}, Max Wait millis: {}",
+                poolConfig.getMaxTotal(), poolConfig.getMaxIdle(), poolConfig.getMinIdle(), poolConfig.getMaxWaitMillis());
 
-            if (this.jedisClient != null) {
-                //Select the correct index if specified
-                if(this.redisIndex != null) {
-                    this.jedisClient.select(this.redisIndex);
-                }
-                // Authenticate if needed
-                if(StringUtils.isNotEmpty(redisPassword)) {
-                    this.jedisClient.auth(redisPassword);
-                }
-                // Make sure we are connected to the Redis server
-                this.jedisClient.info();
-            }
-        } catch(JedisConnectionException jce) {
-            log.error("Unable to connect to Redis server:", jce);
-            this.jedisClient = null;
+        // Get the shared connection pool. Connections are created lazily,
+        // so no round trip to Redis is needed here
+        this.jedisPool = jedisFactory.getJedisPool(redisUrl, redisPort, redisIndex, redisPassword, poolConfig);
+
+        // Get the near cache properties. The near cache is shared by all the clients using
+        // the same Redis server and the properties are only used when it is created
+        Long l1MaxBytes = fullProperties.get("l1MaxBytes") != null ?
+                Long.parseLong((String)fullProperties.get("l1MaxBytes")) : null;
+        log.debug("L1 Max Bytes: {}", l1MaxBytes);
+
+        Integer l1Expiration = fullProperties.get("l1ExpirationSeconds") != null ?
+                Integer.parseInt((String)fullProperties.get("l1ExpirationSeconds")) : DEFAULT_L1_EXPIRATION;
+        log.debug("L1 Expiration seconds: {}", l1Expiration);
+
+        // The process local structures are shared by all the clients using the same Redis server
+        String cacheName = redisUrl + ":" + redisPort + "/" + redisIndex;
+        if(this.jedisPool != null && l1MaxBytes != null && l1MaxBytes > 0) {
+            this.nearCache = NearCache.getNearCache(cacheName, l1MaxBytes, l1Expiration);
+        }
+
+        // The off-heap store uses the same expiration as the near cache
+        Integer offHeapCacheMB = fullProperties.get("offHeapCacheMB") != null ?
+                Integer.parseInt((String)fullProperties.get("offHeapCacheMB")) : null;
+        log.debug("Off-heap Cache MB: {}", offHeapCacheMB);
+
+        if(this.jedisPool != null && offHeapCacheMB != null && offHeapCacheMB > 0) {
+            this.offHeapStore = OffHeapStore.getOffHeapStore(cacheName, offHeapCacheMB, l1Expiration);
+        }
+
+        if(this.jedisPool != null && singleFlight) {
+            this.singleFlight = SingleFlight.getSingleFlight(cacheName);
+        }
+
+        if(this.jedisPool != null && this.softExpiration != null) {
+            this.refresher = BackgroundRefresher.getBackgroundRefresher(cacheName, refreshThreads, refreshQueueSize);
+        }
+
+        // The counters are also used to invalidate results by clients that don't fold them in their keys
+        if(this.jedisPool != null) {
+            this.generationCounter = GenerationCounter.getGenerationCounter(cacheName, this.jedisPool, generationRefresh);
+        }
+
+        if(this.jedisPool != null && recordHotQueries) {
+            this.hotQueries = HotQueries.getHotQueries(cacheName, this.jedisPool, hotQueryFlush);
+        }
+
+        if(this.jedisPool != null && writeBehind) {
+            this.cacheWriter = CacheWriter.getCacheWriter(cacheName, this.jedisPool, writeBehindQueueSize, writeBehindBatchSize);
         }
     }
 
@@ -99,186 +380,1201 @@ public class RedisClient {
         // If this the connection validation query, simply run it
         if(StringUtils.isNotEmpty(this.validationQuery)) {
             if(StringUtils.equalsIgnoreCase(sql, this.validationQuery)) {
+                this.metrics.bypass();
                 return wrappedStatement.executeQuery(sql);
             }
         }
 
-        // Check if the query has already been cached
-        CachedRowSet cachedRowSet = getCachedRowSet(sql);
-        if(cachedRowSet != null) {
-            return cachedRowSet;
+        CacheKey key = getCacheKey(this.normalizeSql ? SqlNormalizer.normalize(sql) : sql);
+        if(this.hotQueries == null || key == null) {
+            return executeQuery(key, () -> wrappedStatement.executeQuery(sql), () -> ReplayableQuery.statement(sql));
         }
 
-        // If the query has not been cached, execute the query
-        ResultSet resultSet = wrappedStatement.executeQuery(sql);
+        // Only plain statements are recorded, as they can be run again from their text
+        long[] cost = {-1};
+        ResultSet resultSet = executeQuery(key, () -> {
+            long start = System.nanoTime();
+            ResultSet executed = wrappedStatement.executeQuery(sql);
+            cost[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            return executed;
+        }, () -> ReplayableQuery.statement(sql));
+        this.hotQueries.record(this.keyPrefix, getFingerprint(key), sql, cost[0]);
+        return resultSet;
+    }
 
-        // Cache the result
-        cachedRowSet = cacheRowSet(sql, resultSet);
+    /**
+     * Runs a query and caches its result, unless its result is already cached. The query is not
+     * recorded as a hot query.
+     * @param wrappedStatement The wrapped Statement that will run the query if needed
+     * @param sql The SQL query to run
+     * @return true if the query has been run, false if its result was already cached
+     * @throws SQLException
+     */
+    public boolean warm(Statement wrappedStatement, String sql) throws SQLException {
+        CacheKey key = getCacheKey(this.normalizeSql ? SqlNormalizer.normalize(sql) : sql);
+        // A stale result is run again, rather than refreshed in the background
+        if(key == null || this.jedisPool == null || getCachedRowSet(key, null) != null) {
+            return false;
+        }
+        try(ResultSet resultSet = fill(key, () -> wrappedStatement.executeQuery(sql), null, null)) {
+            // Streamed results are only cached once they have been read to the end
+            while(resultSet.next()) {
+                // Nothing to do
+            }
+        }
+        return true;
+    }
 
-        return cachedRowSet;
+    /**
+     * Reads the queries recorded by the clients of the Redis server, in order to warm the cache
+     * @param count The maximum number of queries to return
+     * @return The queries that saved the most database time, in order of decreasing value
+     * @throws IllegalStateException If the client is not connected to Redis
+     */
+    public List<HotQueries.HotQuery> getHotQueries(int count) {
+        Pool<Jedis> pool = this.jedisPool;
+        if(pool == null) {
+            throw new IllegalStateException("Not connected to Redis");
+        }
+        try(Jedis jedisClient = pool.getResource()) {
+            return HotQueries.top(jedisClient, this.keyPrefix, count);
+        }
+    }
+
+    /**
+     * @return The hash identifying the query of a key in the hot queries, regardless of the
+     * generation it is cached with
+     */
+    private String getFingerprint(CacheKey key) {
+        return new Murmur3()
+                .putString(this.keyNamespace)
+                .putByte(0)
+                .putString(key.getSql())
+                .hashHex();
     }
 
     /**
      * Executes a prepared statement if has not been cached in Redis yet and caches the
      * result if possible
      * @param wrappedStatement The wrapped Statement that will run the query if needed
-     * @param sql The SQL query to execute
+     * @param sql The SQL query to execute, with the parameter values. The query is used as is:
+     *            when SQL normalization is enabled, the statement template should be normalized
+     *            before the parameter values are added.
      * @return A ResultSet containing the query result
      * @throws SQLException
      */
     public ResultSet executeQuery(PreparedStatement wrappedStatement, String sql) throws SQLException {
+        return executeQuery(wrappedStatement, sql, null);
+    }
+
+    /**
+     * Executes a prepared statement if has not been cached in Redis yet and caches the
+     * result if possible
+     * @param wrappedStatement The wrapped Statement that will run the query if needed
+     * @param sql The SQL query to execute, with the parameter values
+     * @param replay Runs the statement on another connection to refresh a stale result, null if
+     *               stale results cannot be refreshed in the background
+     * @return A ResultSet containing the query result
+     * @throws SQLException
+     * @see #executeQuery(PreparedStatement, String)
+     */
+    public ResultSet executeQuery(PreparedStatement wrappedStatement, String sql, ReplayableQuery replay) throws SQLException {
+        return executeQuery(getCacheKey(sql), wrappedStatement::executeQuery, replay != null ? () -> replay : null);
+    }
+
+    /**
+     * Executes a prepared statement if has not been cached in Redis yet and caches the
+     * result if possible. In hash mode, the query is hashed into its key without being written,
+     * and it is only written once it is not found in the cache. The parameter values are only
+     * copied to refresh a stale result.
+     * @param wrappedStatement The wrapped Statement that will run the query if needed
+     * @param query The query run by the statement, with its current parameter values
+     * @return A ResultSet containing the query result
+     * @throws SQLException
+     */
+    public ResultSet executeQuery(PreparedStatement wrappedStatement, PreparedQuery query) throws SQLException {
+        return executeQuery(getCacheKey(query), wrappedStatement::executeQuery, query::replay);
+    }
+
+    /**
+     * Runs a query
+     */
+    private interface Query {
+        ResultSet execute() throws SQLException;
+    }
+
+    /**
+     * Returns the cached result of a query or executes the query and caches its result. When
+     * single flight is enabled, concurrent executions of the same query are coalesced: only the
+     * first caller runs the query and the others wait for its result.
+     * @param key The cache key of the query
+     * @param query Runs the query if it has not been cached
+     * @param replay Runs the query on another connection if its cached result is stale, null if
+     *               stale results are treated as missing
+     * @return A ResultSet containing the query result
+     * @throws SQLException
+     */
+    private ResultSet executeQuery(CacheKey key, Query query, Supplier<ReplayableQuery> replay) throws SQLException {
         // Check if the query has already been cached
-        CachedRowSet cachedRowSet = getCachedRowSet(sql);
+        ResultSet cachedRowSet = getCachedRowSet(key, replay);
         if(cachedRowSet != null) {
+            this.metrics.hit();
             return cachedRowSet;
         }
 
-        // If the query has not been cached, execute the query
-        ResultSet resultSet = wrappedStatement.executeQuery();
+        if(this.singleFlight == null || key == null) {
+            // If the query has not been cached, execute the query and cache the result
+            return fill(key, query, replay, null);
+        }
 
-        // Cache the result
-        cachedRowSet = cacheRowSet(sql, resultSet);
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        CompletableFuture<byte[]> leader = this.singleFlight.join(key.getKey(), flight);
+        if(leader == null) {
+            // The flight lands as soon as the result is returned. A streamed result is only cached
+            // once the caller reads it to the end, which may never happen: the waiters then read
+            // the cache again instead of waiting for it.
+            try {
+                return fill(key, query, replay, flight);
+            } finally {
+                this.singleFlight.land(key.getKey(), flight);
+            }
+        }
 
-        return cachedRowSet;
+        // The same query is already running: wait for its result, every waiter decodes its own copy
+        log.debug("Waiting for a concurrent execution of the query. Key: {}", key);
+        byte[] redisResultSet = SingleFlight.await(leader, this.singleFlightTimeout);
+        if(redisResultSet != null) {
+            cachedRowSet = readRowSet(key, redisResultSet, replay);
+            if(cachedRowSet != null) {
+                this.metrics.hit();
+                return cachedRowSet;
+            }
+        }
+
+        // The other execution failed or took too long: check the cache again before running the query
+        cachedRowSet = getCachedRowSet(key, replay);
+        if(cachedRowSet != null) {
+            this.metrics.hit();
+            return cachedRowSet;
+        }
+        return fill(key, query, replay, null);
     }
 
     /**
-     * Closes the connection with the Redis server
+     * Executes a query that has not been cached and caches its result. When the fill lock is
+     * enabled, only the client holding the lock of the key runs the query, the other clients wait
+     * for the result to be cached and only run the query if it is not cached in time.
+     * @param key The cache key of the query
+     * @param query Runs the query
+     * @param replay Runs the query on another connection if the result cached by another client is
+     *               already stale, may be null
+     * @param flight If not null, completed with the serialized result set for the callers waiting
+     *               for the same query in this JVM
+     * @return A ResultSet containing the query result
+     * @throws SQLException
      */
-    public void close() {
-        if(this.jedisClient != null && this.jedisClient.isConnected()) {
+    private ResultSet fill(CacheKey key, Query query, Supplier<ReplayableQuery> replay, CompletableFuture<byte[]> flight) throws SQLException {
+        if(!this.fillLock || key == null || this.jedisPool == null) {
+            return executeAndCache(key, query, flight, NOTHING);
+        }
+
+        byte[] lockKey = (key.getKey() + LOCK_SUFFIX).getBytes(StandardCharsets.UTF_8);
+        byte[] token = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+        if(lock(lockKey, token)) {
+            return executeAndCache(key, query, flight, () -> unlock(lockKey, token));
+        }
+
+        // Another client is running the query: wait for its result to be cached
+        ResultSet cachedRowSet = awaitCachedRowSet(key, replay);
+        if(cachedRowSet != null) {
+            this.metrics.hit();
+            return cachedRowSet;
+        }
+
+        log.debug("Query result not cached in time by another client, running the query. Key: {}", key);
+        return executeAndCache(key, query, flight, NOTHING);
+    }
+
+    /**
+     * Waits for another client to cache the result of a query
+     * @param key The cache key of the query
+     * @param replay Runs the query to refresh the result if it is stale, may be null
+     * @return The cached result, null if it has not been cached in time
+     */
+    private ResultSet awaitCachedRowSet(CacheKey key, Supplier<ReplayableQuery> replay) {
+        log.debug("Waiting for another client to cache the query result. Key: {}", key);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.fillLockWait);
+        while(System.nanoTime() - deadline < 0) {
             try {
-                this.jedisClient.close();
-            } catch(JedisConnectionException jce) {
-                log.error("Unable to close connection with Redis server:", jce);
+                Thread.sleep(Math.min(this.fillLockPoll,
+                        Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()))));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            ResultSet cachedRowSet = getCachedRowSet(key, replay);
+            if(cachedRowSet != null) {
+                return cachedRowSet;
             }
         }
+        return null;
     }
 
     /**
-     * Checks if a query has been cached in Redis and returns the associated result
-     * if present, null otherwise
-     * @param sql A SQL query
-     * @return A CachedRowSet if the query has already been cached in Redis, null otherwise
+     * Executes a query and caches its result. When streaming is enabled, the rows are returned
+     * to the caller as they are read and the result is only cached once the caller has read it
+     * to the end. A streamed result that is still being read when this client is closed is not cached.
+     * @param key The cache key of the query
+     * @param query Runs the query
+     * @param flight If not null, completed with the serialized result set for the callers waiting
+     *               for the same query in this JVM. Streamed results are not published to the waiters.
+     * @param done Run once the result is cached, or once it is known it will not be
+     * @return A ResultSet containing the query result
+     * @throws SQLException
      */
-    private CachedRowSet getCachedRowSet(String sql) {
-        // Don't attempt to look for cached result
-        // if we are not connected to Redis or we are running the pool connection validation query
-        if(this.jedisClient == null ||
-                StringUtils.isEmpty(sql) ||
-                StringUtils.equalsIgnoreCase(this.validationQuery, sql)) {
-            return null;
+    private ResultSet executeAndCache(CacheKey key, Query query, CompletableFuture<byte[]> flight, Runnable done) throws SQLException {
+        if(this.jedisPool == null || key == null) {
+            this.metrics.bypass();
+        } else {
+            this.metrics.miss();
+            // The result may be cached once the statement has been reused
+            key.detach();
+        }
+        ResultSet resultSet;
+        try {
+            long start = System.nanoTime();
+            resultSet = query.execute();
+            this.metrics.time(CacheMetrics.Stage.EXECUTE, start);
+            if(this.streamResults && this.jedisPool != null && key != null) {
+                ResultSet[] stream = new ResultSet[1];
+                stream[0] = TeeResultSet.tee(resultSet, Math.min(this.streamBufferMaxBytes, maxEncodedBytes()),
+                        this.maxCacheableRows != null ? this.maxCacheableRows : Integer.MAX_VALUE, new TeeResultSet.Sink() {
+                    @Override
+                    public void complete(byte[] encoded) {
+                        streams.remove(stream[0]);
+                        try {
+                            cacheEncodedRowSet(key, encoded);
+                        } finally {
+                            done.run();
+                        }
+                    }
+
+                    @Override
+                    public void discard() {
+                        streams.remove(stream[0]);
+                        log.debug("Streamed result set not cached. Key: {}", key.getSql());
+                        done.run();
+                    }
+                });
+                this.streams.add(stream[0]);
+                return stream[0];
+            }
+        } catch (SQLException | RuntimeException e) {
+            done.run();
+            throw e;
         }
 
-        // Verify if the the query has been cached
-        byte[] redisResultSet = null;
         try {
-            redisResultSet = this.jedisClient.get(sql.getBytes());
-            if(redisResultSet != null) {
-                // Update the object expiration if specified
-                if(this.redisExpiration != null) {
-                    this.jedisClient.expire(sql.getBytes(), this.redisExpiration);
+            return cacheRowSet(key, resultSet, flight);
+        } finally {
+            done.run();
+        }
+    }
+
+    /**
+     * Tries to take the fill lock of a key
+     * @return true if the lock has been taken, or if Redis could not be reached
+     */
+    private boolean lock(byte[] lockKey, byte[] token) {
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            return jedisClient.set(lockKey, token, NX, PX, this.fillLockTtl) != null;
+        } catch (JedisConnectionException jce) {
+            log.error("Unable to take the fill lock", jce);
+            this.metrics.error();
+            return true;
+        }
+    }
+
+    /**
+     * Releases the fill lock of a key, if it is still held with the given token
+     */
+    private void unlock(byte[] lockKey, byte[] token) {
+        // The client may have been closed while a streamed result was being read
+        Pool<Jedis> pool = this.jedisPool;
+        if(pool == null) {
+            return;
+        }
+        try(Jedis jedisClient = pool.getResource()) {
+            jedisClient.eval(UNLOCK_SCRIPT, Collections.singletonList(lockKey), Collections.singletonList(token));
+        } catch (JedisConnectionException jce) {
+            log.error("Unable to release the fill lock", jce);
+            this.metrics.error();
+        }
+    }
+
+    /**
+     * Schedules the background refresh of a stale cached result. When the fill lock is enabled,
+     * the result is only refreshed by the client holding the lock of the key.
+     * @param key The cache key of the query
+     * @param replay Runs the query on a new connection
+     * @return true if the refresh has been scheduled
+     */
+    private boolean refresh(CacheKey key, ReplayableQuery replay) {
+        return this.refresher.refresh(key.getKey(), () -> {
+            byte[] lockKey = (key.getKey() + LOCK_SUFFIX).getBytes(StandardCharsets.UTF_8);
+            byte[] token = UUID.randomUUID().toString().getBytes(StandardCharsets.UTF_8);
+            if(this.fillLock && !lock(lockKey, token)) {
+                log.debug("Cached result already being refreshed by another client. Key: {}", key.getSql());
+                return;
+            }
+            log.debug("Refreshing stale cached result. Key: {}", key.getSql());
+            try(Connection connection = this.connectionFactory.connect()) {
+                cacheRowSet(key, replay.execute(connection), null);
+            } catch (SQLException e) {
+                log.error("Unable to refresh cached result. Key: {}", key.getSql(), e);
+            } finally {
+                if(this.fillLock) {
+                    unlock(lockKey, token);
                 }
             }
-        } catch(JedisConnectionException jce) {
-            log.error("Error retrieving object from Redis. Key: {}", sql);
+        });
+    }
+
+    /**
+     * Sets the factory of the connections used to refresh stale cached results in the background.
+     * Without it, stale results are treated as missing.
+     * @param connectionFactory Opens connections with the same URL and properties as the connection
+     *                          using this client
+     */
+    public void setConnectionFactory(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    /**
+     * Sets the metrics recorded by this client. Without it, only the global metrics are recorded.
+     * @param metrics The metrics of the driver instance using this client
+     */
+    public void setMetrics(CacheMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return true if queries should be normalized before being used as cache keys
+     */
+    public boolean isNormalizeSql() {
+        return normalizeSql;
+    }
+
+    /**
+     * @return The maximum size of the stream parameters of a prepared statement read to compute
+     * its cache key. Statements with larger streams are not cached.
+     */
+    public int getParameterStreamMaxBytes() {
+        return parameterStreamMaxBytes;
+    }
+
+    /**
+     * Releases the resources held by this client, after waiting for the pending background writes.
+     * Streamed results that have not been read to the end are closed, which releases their fill locks.
+     * The Redis connection pool is shared with the other clients and is not closed.
+     */
+    public void close() {
+        for(ResultSet stream : new ArrayList<>(this.streams)) {
+            try {
+                stream.close();
+            } catch (SQLException e) {
+                log.debug("Unable to close streamed result set", e);
+            }
+        }
+        if(this.cacheWriter != null) {
+            this.cacheWriter.flush(WRITE_BEHIND_FLUSH_TIMEOUT);
+        }
+        this.jedisPool = null;
+    }
+
+    /**
+     * Builds the cache key of a query. In hash mode the key is the hash of the cache namespace
+     * and of the query, under the configured prefix.
+     * @param sql A SQL query
+     * @return The cache key, null if the query is empty
+     */
+    CacheKey getCacheKey(String sql) {
+        if(StringUtils.isEmpty(sql)) {
             return null;
         }
-        if(redisResultSet != null) {
-            log.debug("Query result set found in Redis. Key: {}", sql);
-            ByteArrayInputStream bis = null;
-            ObjectInput in = null;
-            try {
-                bis = new ByteArrayInputStream(redisResultSet);
-                in = new ObjectInputStream(bis);
-                return (CachedRowSet) in.readObject();
-            } catch (IOException | ClassNotFoundException e) {
+        String generation = this.generations && this.generationCounter != null ? getGeneration() : null;
+        if(!this.hashKeys) {
+            return generation != null ? CacheKey.prefixed(sql, this.keyPrefix + "g" + generation + ":") : CacheKey.raw(sql);
+        }
+        Murmur3 murmur3 = new Murmur3()
+                .putString(this.keyNamespace)
+                .putByte(0);
+        if(generation != null) {
+            murmur3.putString(generation).putByte(0);
+        }
+        String hash = murmur3
+                .putString(sql)
+                .hashHex();
+        return CacheKey.hashed(sql, this.keyPrefix + hash);
+    }
 
-            } finally {
-                if(bis != null) {
-                    try {
-                        bis.close();
-                    } catch (IOException e) {
+    /**
+     * Builds the cache key of a prepared statement. In hash mode the statement and its parameter
+     * values are hashed without writing the query, and the query is only written when it is needed.
+     * @param query The query of the statement with its current parameter values
+     * @return The cache key
+     */
+    CacheKey getCacheKey(PreparedQuery query) {
+        if(!this.hashKeys) {
+            StringBuilder sql = new StringBuilder();
+            query.appendTo(sql);
+            return getCacheKey(sql.toString());
+        }
+        String generation = this.generations && this.generationCounter != null ? getGeneration() : null;
+        Murmur3 murmur3 = new Murmur3()
+                .putString(this.keyNamespace)
+                .putByte(0);
+        if(generation != null) {
+            murmur3.putString(generation).putByte(0);
+        }
+        query.hashTo(murmur3);
+        return CacheKey.hashed(query, this.keyPrefix + murmur3.hashHex());
+    }
+
+    /**
+     * @return The global generation and the generation of the schema of the connection
+     */
+    private String getGeneration() {
+        return this.generationCounter.get(getGenerationKey(null)) + "." +
+                this.generationCounter.get(getGenerationKey(this.schema));
+    }
+
+    private String getGenerationKey(String schema) {
+        return schema != null ? this.keyPrefix + GENERATION_KEY + ":" + schema : this.keyPrefix + GENERATION_KEY;
+    }
 
+    /**
+     * Invalidates cached results by incrementing a generation counter. The results cached with
+     * the previous generation are no longer returned and expire from Redis with their
+     * expiration. Clients using the counter see the new generation after at most the
+     * generation refresh interval.
+     * @param schema The schema whose results are invalidated, null to invalidate all the results
+     * @return The new generation
+     * @throws IllegalStateException If the client is not connected to Redis
+     */
+    public long invalidate(String schema) {
+        if(this.generationCounter == null) {
+            throw new IllegalStateException("Not connected to Redis");
+        }
+        long generation = this.generationCounter.increment(getGenerationKey(schema));
+        log.info("Cached results invalidated. Schema: {}, generation: {}", schema, generation);
+        return generation;
+    }
+
+    /**
+     * Deletes the cached results that have been read from the given tables, using the tags
+     * recorded when the results were cached with table tags enabled. The results are also
+     * removed from the process local caches of this node, the other nodes keep them until
+     * they expire from their near cache.
+     * @param tables The names of the tables, with or without their schema
+     * @return The number of deleted results
+     * @throws IllegalStateException If the client is not connected to Redis
+     */
+    public long invalidateTables(Collection<String> tables) {
+        Pool<Jedis> pool = this.jedisPool;
+        if(pool == null) {
+            throw new IllegalStateException("Not connected to Redis");
+        }
+        Set<String> tableNames = new LinkedHashSet<>();
+        for(String table : tables) {
+            String tableName = SqlTables.tableName(table);
+            if(tableName != null) {
+                tableNames.add(tableName);
+            }
+        }
+        if(tableNames.isEmpty()) {
+            return 0;
+        }
+        try(Jedis jedisClient = pool.getResource()) {
+            Pipeline pipeline = jedisClient.pipelined();
+            List<Response<Set<byte[]>>> tagged = new ArrayList<>();
+            for(String tableName : tableNames) {
+                tagged.add(pipeline.smembers(getTagKey(tableName)));
+            }
+            pipeline.sync();
+
+            // Only the members read are removed from the tags, so that results cached in the
+            // meantime keep their tags. The results are read with them, to find the chunks of the
+            // results stored in chunks.
+            Set<String> keys = new LinkedHashSet<>();
+            Map<String, Response<byte[]>> values = new LinkedHashMap<>();
+            pipeline = jedisClient.pipelined();
+            int table = 0;
+            for(String tableName : tableNames) {
+                Set<byte[]> members = tagged.get(table++).get();
+                if(members == null || members.isEmpty()) {
+                    continue;
+                }
+                for(byte[] member : members) {
+                    String key = new String(member, StandardCharsets.UTF_8);
+                    if(keys.add(key)) {
+                        values.put(key, pipeline.get(member));
                     }
                 }
-                if(in != null) {
-                    try {
-                        in.close();
-                    } catch (IOException e) {
+                pipeline.srem(getTagKey(tableName), members.toArray(new byte[members.size()][]));
+            }
+            if(keys.isEmpty()) {
+                return 0;
+            }
+            pipeline.sync();
 
-                    }
+            pipeline = jedisClient.pipelined();
+            List<byte[]> chunkKeys = getChunkKeys(values);
+            if(!chunkKeys.isEmpty()) {
+                pipeline.del(chunkKeys.toArray(new byte[chunkKeys.size()][]));
+            }
+            byte[][] redisKeys = new byte[keys.size()][];
+            int index = 0;
+            for(String key : keys) {
+                redisKeys[index++] = key.getBytes(StandardCharsets.UTF_8);
+                if(this.nearCache != null) {
+                    this.nearCache.invalidate(key);
+                }
+                if(this.offHeapStore != null) {
+                    this.offHeapStore.invalidate(key);
+                }
+            }
+            Response<Long> deleted = pipeline.del(redisKeys);
+            pipeline.sync();
+            log.info("Cached results invalidated. Tables: {}, results: {}", tableNames, deleted.get());
+            return deleted.get();
+        }
+    }
+
+    /**
+     * @param values The values read from Redis, by key
+     * @return The keys of the chunks of the values that are manifests of results stored in chunks
+     */
+    private static List<byte[]> getChunkKeys(Map<String, Response<byte[]>> values) {
+        List<byte[]> chunkKeys = new ArrayList<>();
+        for(Map.Entry<String, Response<byte[]>> entry : values.entrySet()) {
+            byte[] value = entry.getValue().get();
+            if(value == null || !ChunkManifest.isManifest(value)) {
+                continue;
+            }
+            ChunkManifest manifest;
+            try {
+                manifest = ChunkManifest.decode(ByteBuffer.wrap(value));
+            } catch (IOException e) {
+                log.error("Unable to read cached object", e);
+                continue;
+            }
+            for(int chunk = 0; chunk < manifest.getChunkCount(); chunk++) {
+                chunkKeys.add(manifest.getChunkKey(entry.getKey(), chunk).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return chunkKeys;
+    }
+
+    /**
+     * Deletes the cached results that have been read from the tables modified by a statement,
+     * if invalidation on update is enabled. Failures are logged and otherwise ignored.
+     * @param sql A statement executed through the driver
+     */
+    public void invalidateModifiedTables(String sql) {
+        invalidateModifiedTables(Collections.singletonList(sql));
+    }
+
+    /**
+     * Deletes the cached results that have been read from the tables modified by a batch of
+     * statements, if invalidation on update is enabled. Failures are logged and otherwise ignored.
+     * @param sqls The statements of a batch executed through the driver
+     */
+    public void invalidateModifiedTables(Collection<String> sqls) {
+        if(!this.invalidateOnUpdate || this.jedisPool == null) {
+            return;
+        }
+        // The tables of the whole batch are invalidated in a single call
+        Set<String> tables = new LinkedHashSet<>();
+        for(String sql : sqls) {
+            tables.addAll(SqlTables.modifiedTables(sql));
+        }
+        if(tables.isEmpty()) {
+            return;
+        }
+        try {
+            invalidateTables(tables);
+        } catch (JedisConnectionException jce) {
+            log.error("Unable to invalidate cached results", jce);
+            this.metrics.error();
+        }
+    }
+
+    private byte[] getTagKey(String table) {
+        return (this.keyPrefix + TAG_KEY + table).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds the key of a cached result to the tags of the tables its query reads from. The tags
+     * expire with the results, their expiration being extended each time a result is added.
+     * @param pipeline The pipeline the result is written with
+     * @param key The cache key of the query
+     */
+    private void tag(Pipeline pipeline, CacheKey key) {
+        for(String table : SqlTables.referencedTables(key.getSql())) {
+            byte[] tagKey = getTagKey(table);
+            pipeline.sadd(tagKey, key.getRedisKey());
+            if(this.redisExpiration != null) {
+                pipeline.expire(tagKey, this.redisExpiration);
+            }
+        }
+    }
+
+    /**
+     * Tags a result written in the background, before it is written
+     * @param key The cache key of the query
+     */
+    private void tagRowSet(CacheKey key) {
+        // The client may have been closed before the write
+        Pool<Jedis> pool = this.jedisPool;
+        if(!this.tableTags || pool == null) {
+            return;
+        }
+        try(Jedis jedisClient = pool.getResource()) {
+            Pipeline pipeline = jedisClient.pipelined();
+            tag(pipeline, key);
+            pipeline.sync();
+        }
+    }
+
+    /**
+     * Checks if a query has been cached in the near cache or in Redis and returns the
+     * associated result if present, null otherwise
+     * @param key The cache key of a SQL query
+     * @param replay Runs the query to refresh the result if it is stale. If null, stale results are
+     *               treated as missing.
+     * @return A ResultSet if the query has already been cached in Redis, null otherwise
+     */
+    private ResultSet getCachedRowSet(CacheKey key, Supplier<ReplayableQuery> replay) {
+        // Don't attempt to look for cached result
+        // if we are not connected to Redis or we are running the pool connection validation query
+        if(this.jedisPool == null ||
+                key == null ||
+                (StringUtils.isNotEmpty(this.validationQuery) && StringUtils.equalsIgnoreCase(this.validationQuery, key.getSql()))) {
+            return null;
+        }
+
+        // Verify if the query has been cached in the near cache first, in the off-heap store
+        // next and finally in Redis
+        byte[] redisResultSet = this.nearCache != null ? this.nearCache.get(key.getKey()) : null;
+        if(redisResultSet != null) {
+            log.debug("Query result set found in near cache. Key: {}", key);
+            return readRowSet(key, redisResultSet, replay);
+        }
+        if(this.offHeapStore != null) {
+            try {
+                // Values are decompressed or copied to the heap before the store releases their memory
+                ResultSet cachedRowSet = this.offHeapStore.get(key.getKey(), value -> decodeRowSet(key, value, replay));
+                if(cachedRowSet != null) {
+                    log.debug("Query result set found in off-heap store. Key: {}", key);
+                    return cachedRowSet;
                 }
+            } catch (IOException e) {
+                log.error("Unable to read object from off-heap store. Key: {}", key.getSql(), e);
+                this.metrics.error();
+            }
+        }
+        long start = System.nanoTime();
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            if(this.redisExpiration != null) {
+                // Read the object and update its expiration in a single round trip. Expiring a
+                // key that does not exist has no effect.
+                Pipeline pipeline = jedisClient.pipelined();
+                Response<byte[]> response = pipeline.get(key.getRedisKey());
+                pipeline.expire(key.getRedisKey(), this.redisExpiration);
+                pipeline.sync();
+                redisResultSet = response.get();
+            } else {
+                redisResultSet = jedisClient.get(key.getRedisKey());
+            }
+            this.metrics.time(CacheMetrics.Stage.REDIS_GET, start);
+        } catch(JedisConnectionException jce) {
+            log.error("Error retrieving object from Redis. Key: {}", key.getSql());
+            this.metrics.error();
+            return null;
+        }
+        if(redisResultSet != null && ChunkManifest.isManifest(redisResultSet)) {
+            log.debug("Chunked query result set found in Redis. Key: {}", key);
+            return readChunks(key, redisResultSet, replay);
+        }
+        if(redisResultSet != null) {
+            log.debug("Query result set found in Redis. Key: {}", key);
+            ResultSet cachedRowSet = readRowSet(key, redisResultSet, replay);
+            if(cachedRowSet != null) {
+                cacheLocally(key, redisResultSet);
             }
+            return cachedRowSet;
         }
 
-        log.debug("Query result set not found in Redis. Key: {}", sql);
+        log.debug("Query result set not found in Redis. Key: {}", key.getSql());
         return null;
     }
 
     /**
      * Tries to cache the result set associated with a SQL query
-     * @param sql The SQL query to use as cache key
+     * @param key The cache key of the SQL query
      * @param resultSet The result set to cache
-     * @return A CachedRowSet object containing the ResultSet
+     * @param flight If not null, completed with the serialized result set for the callers waiting
+     *               for the same query
+     * @return A ResultSet containing the query result
      * @throws SQLException
      */
-    private CachedRowSet cacheRowSet(String sql, ResultSet resultSet) throws SQLException {
-        // Transform the result set and try caching it into Redis
-        CachedRowSet cachedRowSet = new CachedRowSetImpl();
-        cachedRowSet.populate(resultSet);
-
+    private ResultSet cacheRowSet(CacheKey key, ResultSet resultSet, CompletableFuture<byte[]> flight) throws SQLException {
         // Don't attempt to cache the result if we are not connected to Redis
-        if(this.jedisClient == null ||
-                StringUtils.isEmpty(sql)) {
-            log.debug("Not connected to Redis: result set will not be cached. Key {}", sql);
+        boolean connected = this.jedisPool != null && key != null;
+        if(!connected) {
+            log.debug("Not connected to Redis: result set will not be cached. Key {}", key != null ? key.getSql() : null);
+        }
+
+        // Read the rows in the format they are cached in, and return them from there. Encoding stops
+        // as soon as the result has too many rows or is too large to be cached, except for the
+        // results waiters depend on, as waiters get the result even if it cannot be cached.
+        boolean capped = connected && flight == null;
+        long start = System.nanoTime();
+        ResultSetEncoder encoder = new ResultSetEncoder(resultSet.getMetaData());
+        boolean complete = encoder.addRows(resultSet, capped ? maxEncodedBytes() : Long.MAX_VALUE,
+                capped && this.maxCacheableRows != null ? this.maxCacheableRows : Integer.MAX_VALUE);
+        byte[] encoded = encoder.toByteArray();
+        long encodeNanos = System.nanoTime() - start;
+        CachedResultSet cachedRowSet;
+        try {
+            cachedRowSet = ResultSetDecoder.decode(ByteBuffer.wrap(encoded));
+        } catch (IOException e) {
+            throw new SQLException("Unable to read result set", e);
+        }
+
+        if(!complete) {
+            // The rows read so far are returned from their encoded copy, the other rows from the query result
+            log.debug("Object not cached because it is too large or has too many rows. Key: {}", key.getSql());
+            this.metrics.rejectedForSize();
+            this.metrics.record(CacheMetrics.Stage.ENCODE, encodeNanos);
+            return ConcatResultSet.open(cachedRowSet, resultSet);
+        }
+        if(!connected) {
             return cachedRowSet;
         }
 
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput out = null;
+        // Only the results waiters depend on may have too many rows at this point. Don't spend any
+        // time caching them.
+        boolean admitted = this.maxCacheableRows == null || cachedRowSet.size() <= this.maxCacheableRows;
+        if(!admitted) {
+            log.debug("Object not cached because it has too many rows: {}. Key: {}", cachedRowSet.size(), key.getSql());
+            this.metrics.rejectedForSize();
+        }
+
         try {
-            out = new ObjectOutputStream(bos);
-            out.writeObject(cachedRowSet);
-            byte[] redisValue = bos.toByteArray();
-
-            log.debug("Object size: {}KB", ((double)redisValue.length/1024));
-            // Only cache the result if no Redis object max size has been specified or
-            // the result set size is less than the object size limit
-            if(this.redisObjectMaxSize == null ||
-                    ((double)redisValue.length/1024) <= this.redisObjectMaxSize) {
-                log.debug("Caching object with key \"{}\"", sql);
-                this.jedisClient.set(sql.getBytes(), redisValue);
-                // Set the object expiration if specified
-                if(this.redisExpiration != null) {
-                    this.jedisClient.expire(sql.getBytes(), this.redisExpiration);
+            if(admitted && this.chunkRows != null && cachedRowSet.size() > this.chunkRows) {
+                // Callers waiting for the same query read the chunks from the cache once the flight lands
+                try {
+                    cacheChunks(key, cachedRowSet, encodeNanos);
+                } finally {
+                    cachedRowSet.beforeFirst();
                 }
-            } else {
-                log.debug("Object not cached because size is too large. Key: {}", sql);
+                return cachedRowSet;
             }
-        } catch (IOException e) {
+
+            if(this.cacheWriter != null && flight == null) {
+                // Compress and write the result in the background
+                this.cacheWriter.write(key.getRedisKey(), this.redisExpiration, () -> {
+                    long payloadStart = System.nanoTime();
+                    byte[] redisValue = encodePayload(key, encoded);
+                    this.metrics.record(CacheMetrics.Stage.ENCODE, encodeNanos + System.nanoTime() - payloadStart);
+                    if(!isCacheable(key, redisValue)) {
+                        return null;
+                    }
+                    tagRowSet(key);
+                    cacheLocally(key, redisValue);
+                    return redisValue;
+                });
+                return cachedRowSet;
+            }
+
+            // Waiters get the result even if it is too large to be cached
+            long payloadStart = System.nanoTime();
+            byte[] redisValue = encodePayload(key, encoded);
+            this.metrics.record(CacheMetrics.Stage.ENCODE, encodeNanos + System.nanoTime() - payloadStart);
+            if(flight != null) {
+                flight.complete(redisValue);
+            }
+
+            if(admitted && isCacheable(key, redisValue)) {
+                storeRowSet(key, redisValue);
+            }
+        } catch (SQLException e) {
             log.error("Unable to cache object", e);
+            this.metrics.error();
             // Nothing to do, return the result set without caching
         } catch (JedisConnectionException jce) {
             log.error("Unable to cache object", jce);
+            this.metrics.error();
             // Nothing to do, return the result set without caching
-        } finally {
-            if(out != null) {
-                try {
-                    out.close();
-                } catch (IOException e) {
+        }
+        return cachedRowSet;
+    }
 
-                }
+    /**
+     * Caches a result set in chunks of rows, under a manifest stored with the key of the query
+     * @param key The cache key of the query
+     * @param cachedRowSet The result set, positioned before its first row
+     * @param encodeNanos The time spent encoding the result set before it is encoded in chunks
+     * @throws SQLException
+     */
+    private void cacheChunks(CacheKey key, CachedResultSet cachedRowSet, long encodeNanos) throws SQLException {
+        long start = System.nanoTime();
+        List<byte[]> chunks = new ArrayList<>();
+        ResultSetEncoder encoder = null;
+        while(cachedRowSet.next()) {
+            if(encoder == null) {
+                encoder = new ResultSetEncoder(cachedRowSet.getMetaData());
             }
+            encoder.addRow(cachedRowSet);
+            if(encoder.getRowCount() == this.chunkRows) {
+                chunks.add(CachePayload.encode(null, encoder.toByteArray(), this.compression, this.compressionThreshold));
+                encoder = null;
+            }
+        }
+        if(encoder != null) {
+            chunks.add(CachePayload.encode(null, encoder.toByteArray(), this.compression, this.compressionThreshold));
+        }
+        this.metrics.record(CacheMetrics.Stage.ENCODE, encodeNanos + System.nanoTime() - start);
+        for(byte[] chunk : chunks) {
+            if(!isCacheable(key, chunk)) {
+                return;
+            }
+        }
+
+        ChunkManifest manifest = new ChunkManifest(key.isHashed() ? key.getSql() : null, staleAt(), chunks.size(),
+                cachedRowSet.size(), Long.toHexString(ThreadLocalRandom.current().nextLong()));
+        byte[] manifestValue = manifest.encode();
+        log.debug("Caching object with key \"{}\" in {} chunks", key, chunks.size());
+        // The chunks are written before the manifest, so that readers never find a manifest without its chunks
+        if(this.cacheWriter != null) {
+            for(int chunk = 0; chunk < chunks.size(); chunk++) {
+                byte[] chunkValue = chunks.get(chunk);
+                this.cacheWriter.write(getChunkKey(key, manifest, chunk), this.redisExpiration, () -> chunkValue);
+            }
+            this.cacheWriter.write(key.getRedisKey(), this.redisExpiration, () -> {
+                tagRowSet(key);
+                return manifestValue;
+            });
+            return;
+        }
+        start = System.nanoTime();
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            Pipeline pipeline = jedisClient.pipelined();
+            for(int chunk = 0; chunk < chunks.size(); chunk++) {
+                store(pipeline, getChunkKey(key, manifest, chunk), chunks.get(chunk));
+            }
+            if(this.tableTags) {
+                tag(pipeline, key);
+            }
+            store(pipeline, key.getRedisKey(), manifestValue);
+            pipeline.sync();
+        }
+        this.metrics.time(CacheMetrics.Stage.REDIS_SET, start);
+    }
+
+    private void store(Pipeline pipeline, byte[] key, byte[] value) {
+        if(this.redisExpiration != null) {
+            pipeline.setex(key, this.redisExpiration, value);
+        } else {
+            pipeline.set(key, value);
+        }
+    }
+
+    /**
+     * Caches a result set encoded while it was streamed to the caller
+     * @param key The cache key of the query
+     * @param encoded The encoded result set
+     */
+    private void cacheEncodedRowSet(CacheKey key, byte[] encoded) {
+        long start = System.nanoTime();
+        byte[] redisValue = encodePayload(key, encoded);
+        this.metrics.time(CacheMetrics.Stage.ENCODE, start);
+        // The client may have been closed while the result set was being read
+        if(this.jedisPool != null && isCacheable(key, redisValue)) {
             try {
-                bos.close();
-            } catch (IOException e) {
+                storeRowSet(key, redisValue);
+            } catch (JedisConnectionException jce) {
+                log.error("Unable to cache object", jce);
+                this.metrics.error();
+            }
+        }
+    }
 
+    /**
+     * Adds an encoded result set to the process local caches and to Redis, in the background
+     * when write-behind is enabled
+     * @param key The cache key of the query
+     * @param redisValue The encoded result set
+     */
+    private void storeRowSet(CacheKey key, byte[] redisValue) {
+        log.debug("Caching object with key \"{}\"", key);
+        cacheLocally(key, redisValue);
+        if(this.cacheWriter != null) {
+            this.cacheWriter.write(key.getRedisKey(), this.redisExpiration, () -> {
+                tagRowSet(key);
+                return redisValue;
+            });
+            return;
+        }
+        long start = System.nanoTime();
+        try(Jedis jedisClient = this.jedisPool.getResource()) {
+            if(this.tableTags) {
+                // The result is tagged in the same round trip, before it is written
+                Pipeline pipeline = jedisClient.pipelined();
+                tag(pipeline, key);
+                store(pipeline, key.getRedisKey(), redisValue);
+                pipeline.sync();
+            } else if(this.redisExpiration != null) {
+                // Set the object expiration with the object itself, so that
+                // the object is never left without an expiration
+                jedisClient.setex(key.getRedisKey(), this.redisExpiration, redisValue);
+            } else {
+                jedisClient.set(key.getRedisKey(), redisValue);
             }
         }
+        this.metrics.time(CacheMetrics.Stage.REDIS_SET, start);
+    }
+
+    /**
+     * @return The maximum size of the encoded result sets that can be cached. Encoded result sets
+     * can only be compared to the object size limit before they are compressed if they are not compressed.
+     */
+    private long maxEncodedBytes() {
+        boolean compressed = this.compressionThreshold != null && this.compression != Compression.NONE;
+        return this.redisObjectMaxSize != null && !compressed ? (long)(this.redisObjectMaxSize * 1024) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Wraps an encoded result set in the envelope stored in the cache
+     * @param key The cache key of the query
+     * @param encoded The encoded result set
+     * @return The cached value
+     */
+    private byte[] encodePayload(CacheKey key, byte[] encoded) {
+        return CachePayload.encode(key.isHashed() ? key.getSql() : null,
+                encoded, this.compression, this.compressionThreshold, staleAt());
+    }
+
+    /**
+     * @return The time after which a result cached now becomes stale, 0 if results do not become stale
+     */
+    private long staleAt() {
+        return this.softExpiration != null ?
+                System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(this.softExpiration) : 0;
+    }
+
+    /**
+     * Only cache the result if no Redis object max size has been specified or
+     * the result set size, after compression, is less than the object size limit
+     * @param key The cache key of the query
+     * @param redisValue The encoded result set
+     * @return true if the result set can be cached
+     */
+    private boolean isCacheable(CacheKey key, byte[] redisValue) {
+        log.debug("Object size: {}KB", ((double)redisValue.length/1024));
+        this.metrics.payload(redisValue.length);
+        if(this.redisObjectMaxSize == null ||
+                ((double)redisValue.length/1024) <= this.redisObjectMaxSize) {
+            return true;
+        }
+        log.debug("Object not cached because size is too large. Key: {}", key.getSql());
+        this.metrics.rejectedForSize();
+        return false;
+    }
+
+    /**
+     * Adds a serialized result set to the near cache and to the off-heap store, if enabled
+     * @param key The cache key
+     * @param value The serialized result set
+     */
+    private void cacheLocally(CacheKey key, byte[] value) {
+        if(this.nearCache != null) {
+            this.nearCache.put(key.getKey(), value);
+        }
+        if(this.offHeapStore != null) {
+            this.offHeapStore.put(key.getKey(), value);
+        }
+    }
+
+    /**
+     * Decodes a cached result set
+     * @param key The cache key the result set has been read from
+     * @param value The encoded result set
+     * @param replay Runs the query to refresh the result if it is stale, null if it cannot be refreshed
+     * @return The decoded result set, null if it cannot be decoded, for instance because it has
+     * been cached by a previous version of the driver, if it belongs to another query, or if it is
+     * stale and cannot be refreshed in the background
+     */
+    private CachedResultSet readRowSet(CacheKey key, byte[] value, Supplier<ReplayableQuery> replay) {
+        try {
+            return decodeRowSet(key, ByteBuffer.wrap(value), replay);
+        } catch (IOException e) {
+            log.error("Unable to read cached object", e);
+            this.metrics.error();
+            return null;
+        }
+    }
+
+    private CachedResultSet decodeRowSet(CacheKey key, ByteBuffer value, Supplier<ReplayableQuery> replay) throws IOException {
+        long start = System.nanoTime();
+        CachePayload payload = CachePayload.decode(value);
+        if(key.isHashed() && !key.matches(payload.getSql())) {
+            log.warn("Cached result set belongs to another query with the same hash. Key: {}", key);
+            return null;
+        }
+        if(payload.isStale(System.currentTimeMillis()) && !refreshStale(key, replay)) {
+            return null;
+        }
+        CachedResultSet cachedRowSet = ResultSetDecoder.decode(payload.getBody());
+        this.metrics.time(CacheMetrics.Stage.DECODE, start);
         return cachedRowSet;
     }
 
+    /**
+     * Schedules the background refresh of a stale cached result
+     * @param key The cache key of the query
+     * @param replay Runs the query on a new connection, may be null
+     * @return true if the stale result can be returned, false if it should be treated as missing
+     * because it cannot be refreshed in the background
+     */
+    private boolean refreshStale(CacheKey key, Supplier<ReplayableQuery> replay) {
+        if(replay == null || this.refresher == null || this.connectionFactory == null) {
+            log.debug("Cached result set is stale and cannot be refreshed in the background. Key: {}", key);
+            return false;
+        }
+        // Serve the stale result, a refresh already pending for the key is enough. The query and
+        // its parameter values are copied, as the statement may be reused before the refresh runs.
+        refresh(key.detach(), replay.get());
+        return true;
+    }
+
+    /**
+     * Reads a result set stored in chunks. The first chunk is read, and the other chunks are checked
+     * to still be in Redis, in a single round trip. The other chunks are read while the rows of
+     * the previous chunks are returned.
+     * @param key The cache key of the query
+     * @param value The manifest of the chunks
+     * @param replay Runs the query to refresh the result if it is stale, may be null
+     * @return The result set, null if it cannot be read, if it belongs to another query, if one of
+     * its chunks is missing or if it is stale and cannot be refreshed in the background
+     */
+    private ResultSet readChunks(CacheKey key, byte[] value, Supplier<ReplayableQuery> replay) {
+        ChunkManifest manifest;
+        try {
+            manifest = ChunkManifest.decode(ByteBuffer.wrap(value));
+        } catch (IOException e) {
+            log.error("Unable to read cached object", e);
+            this.metrics.error();
+            return null;
+        }
+        if(key.isHashed() && !key.matches(manifest.getSql())) {
+            log.warn("Cached result set belongs to another query with the same hash. Key: {}", key);
+            return null;
+        }
+        if(manifest.isStale(System.currentTimeMillis()) && !refreshStale(key, replay)) {
+            return null;
+        }
+
+        // The chunks are read from the pool the manifest has been read from, even if this client is closed meanwhile
+        Pool<Jedis> chunkPool = this.jedisPool;
+        byte[] firstChunk;
+        try(Jedis jedisClient = chunkPool.getResource()) {
+            Pipeline pipeline = jedisClient.pipelined();
+            Response<byte[]> first = null;
+            List<Response<?>> present = new ArrayList<>(manifest.getChunkCount());
+            for(int chunk = 0; chunk < manifest.getChunkCount(); chunk++) {
+                byte[] chunkKey = getChunkKey(key, manifest, chunk);
+                if(chunk == 0) {
+                    first = pipeline.get(chunkKey);
+                }
+                // The chunks expire with the manifest
+                present.add(this.redisExpiration != null ?
+                        pipeline.expire(chunkKey, this.redisExpiration) : pipeline.exists(chunkKey));
+            }
+            pipeline.sync();
+            for(Response<?> response : present) {
+                // EXPIRE returns 1 and EXISTS true when the key exists
+                Object exists = response.get();
+                if(!Long.valueOf(1).equals(exists) && !Boolean.TRUE.equals(exists)) {
+                    log.debug("Chunk of cached result set not found in Redis. Key: {}", key.getSql());
+                    return null;
+                }
+            }
+            firstChunk = first != null ? first.get() : null;
+        } catch (JedisConnectionException jce) {
+            log.error("Error retrieving object from Redis. Key: {}", key.getSql());
+            this.metrics.error();
+            return null;
+        }
+
+        try {
+            return ChunkedResultSet.open(decodeChunk(firstChunk), manifest.getChunkCount(),
+                    chunk -> loadChunk(chunkPool, key, manifest, chunk));
+        } catch (IOException e) {
+            log.error("Unable to read cached object", e);
+            this.metrics.error();
+            return null;
+        }
+    }
+
+    /**
+     * Reads a chunk of a chunked result set
+     * @throws SQLException If the chunk is no longer in Redis or cannot be read
+     */
+    private ResultSet loadChunk(Pool<Jedis> chunkPool, CacheKey key, ChunkManifest manifest, int chunk) throws SQLException {
+        byte[] value;
+        try(Jedis jedisClient = chunkPool.getResource()) {
+            value = jedisClient.get(getChunkKey(key, manifest, chunk));
+        } catch (JedisConnectionException jce) {
+            throw new SQLException("Unable to read cached rows. Key: " + key, jce);
+        }
+        try {
+            return decodeChunk(value);
+        } catch (IOException e) {
+            throw new SQLException("Unable to read cached rows. Key: " + key, e);
+        }
+    }
+
+    private static ResultSet decodeChunk(byte[] value) throws IOException {
+        if(value == null) {
+            throw new IOException("Chunk of cached result set no longer in Redis");
+        }
+        return ResultSetDecoder.decode(CachePayload.decode(ByteBuffer.wrap(value)).getBody());
+    }
+
+    private static byte[] getChunkKey(CacheKey key, ChunkManifest manifest, int chunk) {
+        return manifest.getChunkKey(key.getKey(), chunk).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Extracts the database name from a JDBC connection URL, e.g. "dev" from
+     * jdbc:redshiftcached://host:5439/dev?redisUrl=localhost
+     * @param url The JDBC connection URL
+     * @return The database name, an empty string if the URL does not contain it
+     */
+    private String parseDatabase(String url) {
+        int hostStart = url.indexOf("//");
+        int paramsStart = StringUtils.indexOfAny(url, "?;");
+        int end = paramsStart != -1 ? paramsStart : url.length();
+        int pathStart = hostStart != -1 ? url.indexOf('/', hostStart + 2) : -1;
+        if(pathStart == -1 || pathStart > end) {
+            return "";
+        }
+        return url.substring(pathStart + 1, end);
+    }
+
     /**
      * Extracts the JDBC connection properties specified in the JDBC connection URL and
      * adds them to the properties specified in the JDBC connection properties object
@@ -0,0 +1,71 @@
+package com.powerreviews.jdbc.redis;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A query that can be run again on another connection, to refresh its cached result in the background
+ */
+public class ReplayableQuery {
+    /**
+     * Sets the value of a parameter of a prepared statement
+     */
+    public interface Binding {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    private final String sql;
+    private final List<Binding> bindings;
+
+    private ReplayableQuery(String sql, List<Binding> bindings) {
+        this.sql = sql;
+        this.bindings = bindings;
+    }
+
+    /**
+     * @param sql The SQL query
+     * @return A query run with a plain statement
+     */
+    public static ReplayableQuery statement(String sql) {
+        return new ReplayableQuery(sql, null);
+    }
+
+    /**
+     * @param sql The SQL statement, with its parameter placeholders
+     * @param bindings The parameter values. They are copied, so that the statement they come
+     *                 from can be reused.
+     * @return A query run with a prepared statement
+     */
+    public static ReplayableQuery prepared(String sql, Collection<Binding> bindings) {
+        return new ReplayableQuery(sql, new ArrayList<>(bindings));
+    }
+
+    /**
+     * Runs the query. The statement is closed with the connection.
+     * @param connection The connection to run the query on
+     * @return The query result
+     * @throws SQLException
+     */
+    public ResultSet execute(Connection connection) throws SQLException {
+        if(bindings == null) {
+            return connection.createStatement().executeQuery(sql);
+        }
+        PreparedStatement statement = connection.prepareStatement(sql);
+        for(Binding binding : bindings) {
+            binding.bind(statement);
+        }
+        return statement.executeQuery();
+    }
+
+    /**
+     * @return The SQL query
+     */
+    public String getSql() {
+        return sql;
+    }
+}
@@ -0,0 +1,206 @@
+package com.powerreviews.jdbc.util;
+
+/**
+ * Streaming implementation of the 128 bit, x64 variant of the MurmurHash3 hash function. The hash
+ * is fast and well distributed but is not cryptographic: it must not be used where collisions can
+ * be crafted on purpose. The result is the same as Guava's {@code Hashing.murmur3_128(seed)}.
+ * <p>
+ * Instances are not thread safe and can be reused by calling {@link #reset()}.
+ */
+public class Murmur3 {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final int seed;
+    private final byte[] block = new byte[16];
+    private int blockLength;
+    private long length;
+    private long h1;
+    private long h2;
+
+    public Murmur3() {
+        this(0);
+    }
+
+    public Murmur3(int seed) {
+        this.seed = seed;
+        reset();
+    }
+
+    /**
+     * Discards all the bytes added so far
+     * @return This hasher
+     */
+    public Murmur3 reset() {
+        this.h1 = this.seed;
+        this.h2 = this.seed;
+        this.blockLength = 0;
+        this.length = 0;
+        return this;
+    }
+
+    public Murmur3 putByte(int value) {
+        this.block[this.blockLength++] = (byte)value;
+        if(this.blockLength == 16) {
+            mix(getLong(this.block, 0), getLong(this.block, 8));
+            this.blockLength = 0;
+        }
+        this.length++;
+        return this;
+    }
+
+    public Murmur3 putBytes(byte[] value, int offset, int length) {
+        int end = offset + length;
+        // Fill the current block first, then hash whole blocks straight from the input
+        while(this.blockLength != 0 && offset < end) {
+            putByte(value[offset++]);
+        }
+        while(end - offset >= 16) {
+            mix(getLong(value, offset), getLong(value, offset + 8));
+            offset += 16;
+            this.length += 16;
+        }
+        while(offset < end) {
+            putByte(value[offset++]);
+        }
+        return this;
+    }
+
+    public Murmur3 putBytes(byte[] value) {
+        return putBytes(value, 0, value.length);
+    }
+
+    public Murmur3 putInt(int value) {
+        return putByte(value).putByte(value >>> 8).putByte(value >>> 16).putByte(value >>> 24);
+    }
+
+    public Murmur3 putLong(long value) {
+        return putInt((int)value).putInt((int)(value >>> 32));
+    }
+
+    /**
+     * Adds the UTF-8 bytes of a string, without creating an intermediate byte array
+     * @param value The string to add
+     * @return This hasher
+     */
+    public Murmur3 putString(CharSequence value) {
+        int length = value.length();
+        for(int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if(c < 0x80) {
+                putByte(c);
+            } else if(c < 0x800) {
+                putByte(0xc0 | (c >>> 6));
+                putByte(0x80 | (c & 0x3f));
+            } else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                putByte(0xf0 | (codePoint >>> 18));
+                putByte(0x80 | ((codePoint >>> 12) & 0x3f));
+                putByte(0x80 | ((codePoint >>> 6) & 0x3f));
+                putByte(0x80 | (codePoint & 0x3f));
+            } else if(Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced like String.getBytes() does
+                putByte('?');
+            } else {
+                putByte(0xe0 | (c >>> 12));
+                putByte(0x80 | ((c >>> 6) & 0x3f));
+                putByte(0x80 | (c & 0x3f));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Computes the hash of the bytes added so far. The hasher must be reset before being reused.
+     * @return The 16 bytes of the hash
+     */
+    public byte[] hash() {
+        long h1 = this.h1;
+        long h2 = this.h2;
+        if(this.blockLength > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for(int i = this.blockLength - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (this.block[i] & 0xffL);
+            }
+            for(int i = Math.min(this.blockLength, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (this.block[i] & 0xffL);
+            }
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+
+        h1 ^= this.length;
+        h2 ^= this.length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] hash = new byte[16];
+        for(int i = 0; i < 8; i++) {
+            hash[i] = (byte)(h1 >>> (8 * i));
+            hash[i + 8] = (byte)(h2 >>> (8 * i));
+        }
+        return hash;
+    }
+
+    /**
+     * @return The hash of the bytes added so far as a 32 characters lowercase hexadecimal string
+     */
+    public String hashHex() {
+        byte[] hash = hash();
+        char[] hex = new char[hash.length * 2];
+        for(int i = 0; i < hash.length; i++) {
+            hex[2 * i] = HEX_DIGITS[(hash[i] >>> 4) & 0xf];
+            hex[2 * i + 1] = HEX_DIGITS[hash[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private void mix(long k1, long k2) {
+        this.h1 ^= mixK1(k1);
+        this.h1 = Long.rotateLeft(this.h1, 27);
+        this.h1 += this.h2;
+        this.h1 = this.h1 * 5 + 0x52dce729;
+
+        this.h2 ^= mixK2(k2);
+        this.h2 = Long.rotateLeft(this.h2, 31);
+        this.h2 += this.h1;
+        this.h2 = this.h2 * 5 + 0x38495ab5;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        k1 *= C2;
+        return k1;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        k2 *= C1;
+        return k2;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for(int i = 7; i >= 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xffL);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,188 @@
+package com.powerreviews.jdbc.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Normalizes SQL statements so that statements that only differ in whitespace, comments or
+ * keyword case are cached under the same key. The statement is scanned once: whitespace runs
+ * are collapsed to a single space, comments are removed and keywords are lowercased, while
+ * quoted literals, quoted identifiers and all the other words are kept as they are.
+ * Statements with a backslash in a plain '...' literal are not normalized.
+ * <p>
+ * Normalized statements are memoized, so normalizing the same statement again is a lookup.
+ */
+public class SqlNormalizer {
+    // Maximum number of characters of the memoized statements, inputs and outputs
+    private static final long MEMOIZED_CHARS = 8L * 1024 * 1024;
+
+    private static final Cache<String, String> normalized = Caffeine.newBuilder()
+            .maximumWeight(MEMOIZED_CHARS)
+            .weigher((String sql, String normalizedSql) -> sql.length() + normalizedSql.length())
+            .build();
+
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "all", "and", "any", "array", "as", "asc", "between", "both", "by", "case", "cast", "collate",
+            "column", "constraint", "create", "cross", "current_date", "current_time", "current_timestamp",
+            "current_user", "default", "delete", "desc", "distinct", "do", "else", "end", "except", "exists",
+            "false", "fetch", "filter", "first", "following", "for", "from", "full", "group", "having",
+            "ilike", "in", "inner", "insert", "intersect", "interval", "into", "is", "isnull", "join",
+            "last", "lateral", "leading", "left", "like", "limit", "localtime", "localtimestamp", "minus",
+            "natural", "not", "notnull", "null", "nulls", "offset", "on", "only", "or", "order", "outer",
+            "over", "partition", "preceding", "qualify", "range", "recursive", "right", "rows", "select",
+            "session_user", "set", "similar", "some", "sysdate", "table", "then", "top", "trailing", "true",
+            "unbounded", "union", "update", "user", "using", "values", "when", "where", "window", "with",
+            "within"));
+
+    private SqlNormalizer() {
+    }
+
+    /**
+     * @param sql A SQL statement
+     * @return The normalized statement, null if the statement is null
+     */
+    public static String normalize(String sql) {
+        if(sql == null) {
+            return null;
+        }
+        return normalized.get(sql, SqlNormalizer::scan);
+    }
+
+    static String scan(String sql) {
+        int length = sql.length();
+        StringBuilder out = new StringBuilder(length);
+        boolean pendingSpace = false;
+        int i = 0;
+        while(i < length) {
+            char c = sql.charAt(i);
+            int end;
+            if(Character.isWhitespace(c)) {
+                pendingSpace = true;
+                i++;
+                continue;
+            } else if(c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                // Line comment
+                end = sql.indexOf('\n', i);
+                i = end != -1 ? end + 1 : length;
+                pendingSpace = true;
+                continue;
+            } else if(c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i = skipBlockComment(sql, i);
+                pendingSpace = true;
+                continue;
+            }
+
+            if(pendingSpace && out.length() > 0) {
+                out.append(' ');
+            }
+            pendingSpace = false;
+
+            if(c == '\'') {
+                end = skipQuoted(sql, i, '\'', true);
+                if(SqlTables.hasBackslash(sql, i, end)) {
+                    // The end of the literal depends on whether the server treats backslashes as
+                    // escapes: the statement is kept as it is rather than risk removing a part of it
+                    return sql;
+                }
+            } else if(c == '"') {
+                end = skipQuoted(sql, i, '"', false);
+            } else if((c == 'e' || c == 'E') && i + 1 < length && sql.charAt(i + 1) == '\'') {
+                // Literal with backslash escapes
+                end = skipQuoted(sql, i + 1, '\'', true);
+            } else if(c == '$' && (end = skipDollarQuoted(sql, i)) != -1) {
+                // Dollar quoted literal, end already set
+            } else if(isWordPart(c)) {
+                end = i + 1;
+                while(end < length && isWordPart(sql.charAt(end))) {
+                    end++;
+                }
+                String word = sql.substring(i, end);
+                String lowerCase = word.toLowerCase(Locale.ROOT);
+                out.append(KEYWORDS.contains(lowerCase) ? lowerCase : word);
+                i = end;
+                continue;
+            } else {
+                end = i + 1;
+            }
+            out.append(sql, i, end);
+            i = end;
+        }
+        return out.toString();
+    }
+
+    static boolean isWordPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    /**
+     * @return The index following the closing quote, the end of the statement if there is none
+     */
+    static int skipQuoted(String sql, int start, char quote, boolean backslashEscapes) {
+        int i = start + 1;
+        while(i < sql.length()) {
+            char c = sql.charAt(i);
+            if(backslashEscapes && c == '\\') {
+                i += 2;
+            } else if(c == quote) {
+                // A doubled quote is an escaped quote
+                if(i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+
+    /**
+     * @return The index following a $tag$...$tag$ literal starting at start, -1 if there is no
+     * such literal at start
+     */
+    static int skipDollarQuoted(String sql, int start) {
+        int tagEnd = start + 1;
+        while(tagEnd < sql.length() && sql.charAt(tagEnd) != '$') {
+            char c = sql.charAt(tagEnd);
+            if(!(Character.isLetter(c) || c == '_' || (tagEnd > start + 1 && Character.isDigit(c)))) {
+                return -1;
+            }
+            tagEnd++;
+        }
+        if(tagEnd >= sql.length()) {
+            return -1;
+        }
+        String tag = sql.substring(start, tagEnd + 1);
+        int close = sql.indexOf(tag, tagEnd + 1);
+        return close != -1 ? close + tag.length() : sql.length();
+    }
+
+    /**
+     * @return The index following the end of the, possibly nested, block comment starting at start
+     */
+    static int skipBlockComment(String sql, int start) {
+        int depth = 0;
+        int i = start;
+        while(i < sql.length()) {
+            if(sql.startsWith("/*", i)) {
+                depth++;
+                i += 2;
+            } else if(sql.startsWith("*/", i)) {
+                depth--;
+                i += 2;
+                if(depth == 0) {
+                    return i;
+                }
+            } else {
+                i++;
+            }
+        }
+        return sql.length();
+    }
+}
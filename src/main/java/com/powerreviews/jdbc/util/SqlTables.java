@@ -0,0 +1,257 @@
+package com.powerreviews.jdbc.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Extracts the names of the tables a SQL statement depends on, so that cached results can be
+ * tagged with the tables they were read from and invalidated when these tables are modified.
+ * <p>
+ * This is a lightweight scanner, not a SQL parser: the tables read by a query are the names
+ * following FROM and JOIN, and the tables modified by a statement are the targets of INSERT,
+ * UPDATE, DELETE, TRUNCATE, COPY, MERGE, ALTER TABLE and DROP TABLE. Literals and comments are
+ * skipped. Names are returned without their schema, unquoted names in lower case, so that
+ * results may be tagged with more tables than they actually depend on, e.g. with the name of a
+ * common table expression, but never with less.
+ */
+public class SqlTables {
+    // Token standing for a string literal
+    private static final String LITERAL = "'";
+    // A plain literal containing a backslash, whose end depends on whether the server treats
+    // backslashes as escapes
+    static final String ESCAPED_LITERAL = "\\'";
+
+    // Words following a table name which are not an alias
+    private static final Set<String> NOT_ALIASES = new HashSet<>(Arrays.asList(
+            "cross", "except", "fetch", "full", "group", "having", "inner", "intersect", "join", "left",
+            "limit", "minus", "natural", "offset", "on", "order", "outer", "qualify", "right", "union",
+            "using", "where", "window"));
+
+    // Functions using FROM between their arguments
+    private static final Set<String> FROM_FUNCTIONS = new HashSet<>(Arrays.asList(
+            "extract", "overlay", "position", "substring", "trim"));
+
+    private SqlTables() {
+    }
+
+    /**
+     * @param sql A SQL statement
+     * @return The tables read by the statement, empty if there are none or the statement is null
+     */
+    public static Set<String> referencedTables(String sql) {
+        Set<String> tables = new LinkedHashSet<>();
+        if(sql == null) {
+            return tables;
+        }
+        List<String> tokens = tokenize(sql);
+        // Name of the function each open parenthesis follows, null for other parentheses
+        List<String> parentheses = new ArrayList<>();
+        for(int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if("(".equals(token)) {
+                parentheses.add(i > 0 && FROM_FUNCTIONS.contains(tokens.get(i - 1)) ? tokens.get(i - 1) : null);
+            } else if(")".equals(token)) {
+                if(!parentheses.isEmpty()) {
+                    parentheses.remove(parentheses.size() - 1);
+                }
+            } else if("from".equals(token)) {
+                if(parentheses.isEmpty() || parentheses.get(parentheses.size() - 1) == null) {
+                    readTables(tokens, i + 1, true, tables);
+                }
+            } else if("join".equals(token)) {
+                readTables(tokens, i + 1, false, tables);
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * @param sql One or more SQL statements, separated by semicolons
+     * @return The tables modified by the statements, empty if there are none or the statements are null
+     */
+    public static Set<String> modifiedTables(String sql) {
+        Set<String> tables = new LinkedHashSet<>();
+        if(sql == null) {
+            return tables;
+        }
+        List<String> tokens = tokenize(sql);
+        int start = 0;
+        while(start < tokens.size()) {
+            int end = start;
+            while(end < tokens.size() && !";".equals(tokens.get(end))) {
+                end++;
+            }
+            readModifiedTables(tokens.subList(start, end), tables);
+            start = end + 1;
+        }
+        return tables;
+    }
+
+    /**
+     * @param name A table name, possibly qualified with its schema and quoted
+     * @return The name as returned for the tables of a statement, null if it is not a table name
+     */
+    public static String tableName(String name) {
+        if(name == null) {
+            return null;
+        }
+        Set<String> tables = new LinkedHashSet<>();
+        readTables(tokenize(name), 0, false, tables);
+        return tables.isEmpty() ? null : tables.iterator().next();
+    }
+
+    private static void readModifiedTables(List<String> tokens, Set<String> tables) {
+        if(tokens.isEmpty()) {
+            return;
+        }
+        int i = 1;
+        switch(tokens.get(0)) {
+            case "insert":
+            case "merge":
+                i = skip(tokens, i, "into");
+                break;
+            case "delete":
+                i = skip(tokens, i, "from");
+                break;
+            case "truncate":
+                i = skip(tokens, i, "table");
+                break;
+            case "update":
+                i = skip(tokens, i, "only");
+                break;
+            case "copy":
+                break;
+            case "alter":
+                if(!"table".equals(get(tokens, i))) {
+                    return;
+                }
+                i++;
+                break;
+            case "drop":
+                if(!"table".equals(get(tokens, i))) {
+                    return;
+                }
+                i++;
+                if("if".equals(get(tokens, i)) && "exists".equals(get(tokens, i + 1))) {
+                    i += 2;
+                }
+                readTables(tokens, i, true, tables);
+                return;
+            default:
+                return;
+        }
+        readTables(tokens, i, false, tables);
+    }
+
+    /**
+     * Reads the table names starting at the given token, with their aliases
+     * @param list true to read a comma separated list of tables
+     */
+    private static void readTables(List<String> tokens, int i, boolean list, Set<String> tables) {
+        while(i < tokens.size()) {
+            i = skip(tokens, i, "only");
+            String name = null;
+            while(isName(get(tokens, i))) {
+                name = tokens.get(i++);
+                if(!".".equals(get(tokens, i))) {
+                    break;
+                }
+                i++;
+            }
+            // Subqueries and table functions are not tables
+            if(name == null || "(".equals(get(tokens, i))) {
+                return;
+            }
+            tables.add(name.startsWith("\"") ? name.substring(1, name.length() - 1).replace("\"\"", "\"") : name);
+            if("as".equals(get(tokens, i))) {
+                i += 2;
+            } else if(isName(get(tokens, i)) && !NOT_ALIASES.contains(get(tokens, i))) {
+                i++;
+            }
+            if(!list || !",".equals(get(tokens, i))) {
+                return;
+            }
+            i++;
+        }
+    }
+
+    private static boolean isName(String token) {
+        return token != null && (token.startsWith("\"") || SqlNormalizer.isWordPart(token.charAt(0)))
+                && !Character.isDigit(token.charAt(0));
+    }
+
+    private static String get(List<String> tokens, int i) {
+        return i < tokens.size() ? tokens.get(i) : null;
+    }
+
+    private static int skip(List<String> tokens, int i, String word) {
+        return word.equals(get(tokens, i)) ? i + 1 : i;
+    }
+
+    /**
+     * @return true if the characters from start to end contain a backslash
+     */
+    static boolean hasBackslash(String sql, int start, int end) {
+        for(int i = start; i < end; i++) {
+            if(sql.charAt(i) == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The words, lowercased, quoted identifiers and punctuation of the statement. Literals
+     * are replaced by a single token and comments are dropped.
+     */
+    static List<String> tokenize(String sql) {
+        List<String> tokens = new ArrayList<>();
+        int length = sql.length();
+        int i = 0;
+        while(i < length) {
+            char c = sql.charAt(i);
+            int end;
+            if(Character.isWhitespace(c)) {
+                i++;
+                continue;
+            } else if(c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                end = sql.indexOf('\n', i);
+                i = end != -1 ? end + 1 : length;
+                continue;
+            } else if(c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                i = SqlNormalizer.skipBlockComment(sql, i);
+                continue;
+            }
+
+            if(c == '\'') {
+                // Backslashes escape quotes in plain literals too, as they do for Redshift
+                end = SqlNormalizer.skipQuoted(sql, i, '\'', true);
+                tokens.add(hasBackslash(sql, i, end) ? ESCAPED_LITERAL : LITERAL);
+            } else if(c == '"') {
+                end = SqlNormalizer.skipQuoted(sql, i, '"', false);
+                tokens.add(sql.substring(i, end));
+            } else if((c == 'e' || c == 'E') && i + 1 < length && sql.charAt(i + 1) == '\'') {
+                end = SqlNormalizer.skipQuoted(sql, i + 1, '\'', true);
+                tokens.add(LITERAL);
+            } else if(c == '$' && (end = SqlNormalizer.skipDollarQuoted(sql, i)) != -1) {
+                tokens.add(LITERAL);
+            } else if(SqlNormalizer.isWordPart(c)) {
+                end = i + 1;
+                while(end < length && SqlNormalizer.isWordPart(sql.charAt(end))) {
+                    end++;
+                }
+                tokens.add(sql.substring(i, end).toLowerCase(Locale.ROOT));
+            } else {
+                end = i + 1;
+                tokens.add(String.valueOf(c));
+            }
+            i = end;
+        }
+        return tokens;
+    }
+}
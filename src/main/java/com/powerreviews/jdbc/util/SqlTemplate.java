@@ -0,0 +1,134 @@
+package com.powerreviews.jdbc.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A SQL statement split at its "?" parameter placeholders, so that the query run with given
+ * parameter values is built by appending the segments and the values in turn. The statement is
+ * scanned once, and question marks inside literals, quoted identifiers and comments are not
+ * placeholders. Literals are delimited as the Redshift driver does, with backslash escapes.
+ * <p>
+ * Templates are immutable and memoized, so preparing the same statement again is a lookup.
+ */
+public class SqlTemplate {
+    // Maximum number of characters of the memoized statements
+    private static final long MEMOIZED_CHARS = 8L * 1024 * 1024;
+
+    private static final Cache<String, SqlTemplate> templates = Caffeine.newBuilder()
+            .maximumWeight(MEMOIZED_CHARS)
+            .weigher((String sql, SqlTemplate template) -> sql.length())
+            .build();
+
+    // The statement parts before, between and after the placeholders
+    private final String[] segments;
+    // Length of the statement without its placeholders
+    private final int length;
+
+    private SqlTemplate(String[] segments) {
+        this.segments = segments;
+        int length = 0;
+        for(String segment : segments) {
+            length += segment.length();
+        }
+        this.length = length;
+    }
+
+    /**
+     * @param sql A SQL statement
+     * @return The template of the statement
+     */
+    public static SqlTemplate of(String sql) {
+        return templates.get(sql, SqlTemplate::parse);
+    }
+
+    static SqlTemplate parse(String sql) {
+        List<String> segments = new ArrayList<>();
+        int length = sql.length();
+        int segmentStart = 0;
+        int i = 0;
+        while(i < length) {
+            char c = sql.charAt(i);
+            int end;
+            if(c == '?') {
+                segments.add(sql.substring(segmentStart, i));
+                segmentStart = i + 1;
+                end = i + 1;
+            } else if(c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+                // Line comment
+                end = sql.indexOf('\n', i);
+                end = end != -1 ? end + 1 : length;
+            } else if(c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+                end = SqlNormalizer.skipBlockComment(sql, i);
+            } else if(c == '\'') {
+                // Backslashes escape quotes in plain literals too, as they do for Redshift and its
+                // driver, which would otherwise not send the placeholders following \'
+                end = SqlNormalizer.skipQuoted(sql, i, '\'', true);
+            } else if(c == '"') {
+                end = SqlNormalizer.skipQuoted(sql, i, '"', false);
+            } else if((c == 'e' || c == 'E') && i + 1 < length && sql.charAt(i + 1) == '\'') {
+                // Literal with backslash escapes
+                end = SqlNormalizer.skipQuoted(sql, i + 1, '\'', true);
+            } else if(c == '$' && (end = SqlNormalizer.skipDollarQuoted(sql, i)) != -1) {
+                // Dollar quoted literal, end already set
+            } else if(SqlNormalizer.isWordPart(c)) {
+                end = i + 1;
+                while(end < length && SqlNormalizer.isWordPart(sql.charAt(end))) {
+                    end++;
+                }
+            } else {
+                end = i + 1;
+            }
+            i = end;
+        }
+        segments.add(sql.substring(segmentStart));
+        return new SqlTemplate(segments.toArray(new String[segments.size()]));
+    }
+
+    /**
+     * @return The number of parameter placeholders of the statement
+     */
+    public int getParameterCount() {
+        return this.segments.length - 1;
+    }
+
+    /**
+     * @param index The index of the segment, from 0 to the number of parameters
+     * @return The part of the statement preceding the parameter with the same index, or following
+     * the last parameter
+     */
+    public String getSegment(int index) {
+        return this.segments[index];
+    }
+
+    /**
+     * Builds the statement with its placeholders replaced by the given values
+     * @param values The parameter values, in order. Missing parameters are written as "{index}",
+     *               index starting from 0.
+     * @return The statement
+     */
+    public String format(Object[] values) {
+        StringBuilder sql = new StringBuilder(this.length + 16 * getParameterCount());
+        sql.append(this.segments[0]);
+        for(int i = 1; i < this.segments.length; i++) {
+            if(i - 1 < values.length) {
+                sql.append(values[i - 1]);
+            } else {
+                sql.append('{').append(i - 1).append('}');
+            }
+            sql.append(this.segments[i]);
+        }
+        return sql.toString();
+    }
+
+    /**
+     * @return The statement with placeholders of type "{POS}", POS starting from 0
+     */
+    @Override
+    public String toString() {
+        return format(new Object[0]);
+    }
+}
@@ -1,24 +1,82 @@
 package com.powerreviews.jdbc.util;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * Created by dado on 4/7/16.
  */
 public class SqlUtil {
+    // Maximum number of characters of the memoized statements
+    private static final long MEMOIZED_CHARS = 8L * 1024 * 1024;
+
+    private static final Cache<String, Boolean> readOnlyQueries = Caffeine.newBuilder()
+            .maximumWeight(MEMOIZED_CHARS)
+            .weigher((String sql, Boolean readOnly) -> sql.length())
+            .build();
+
+    // Words of the statements writing data or changing the schema, e.g. SELECT INTO
+    private static final Set<String> WRITE_WORDS = new HashSet<>(Arrays.asList(
+            "alter", "analyze", "call", "copy", "create", "delete", "drop", "grant", "insert", "into",
+            "lock", "merge", "revoke", "set", "truncate", "unload", "update", "vacuum"));
+
     /**
      * Given an SQL statement containing "?" placeholders, this function replaces question marks
      * with a placeholder of type "{POS}" where "POS" is the position of the question mark starting
      * from 0. I.e. the first question mark will be replaced with "{0}", the second with "{1}", etc.
-     * NOTICE: this method does NOT work if question marks are used as literals in the query.
+     * Question marks inside literals, quoted identifiers and comments are not replaced.
      * @param statement The query
      * @return The tokenized query
      */
     public static String tokenizeStatement(String statement) {
-        String modifiedSql = statement;
-        int variableCount = 0;
-        while(modifiedSql.contains("?")) {
-            modifiedSql = modifiedSql.replaceFirst("\\?", "{" + variableCount + "}");
-            variableCount++;
+        return SqlTemplate.of(statement).toString();
+    }
+
+    /**
+     * Tells whether a statement is a single SELECT or WITH query that does not write data, and
+     * can therefore be run through the cache. Statements are classified conservatively: queries
+     * using a word of the statements writing data outside of literals and quoted identifiers,
+     * e.g. SELECT INTO, are not read only, as are queries with a backslash in a plain literal.
+     * Classifications are memoized.
+     * @param sql A SQL statement
+     * @return true if the statement is a read only query, false if it is not or is null
+     */
+    public static boolean isReadOnlyQuery(String sql) {
+        if(sql == null) {
+            return false;
+        }
+        return readOnlyQueries.get(sql, SqlUtil::classify);
+    }
+
+    private static boolean classify(String sql) {
+        List<String> tokens = SqlTables.tokenize(sql);
+        // A backslash in a plain literal makes its end depend on the server settings, the text
+        // following it may be another statement
+        if(tokens.contains(SqlTables.ESCAPED_LITERAL)) {
+            return false;
+        }
+        int i = 0;
+        while(i < tokens.size() && "(".equals(tokens.get(i))) {
+            i++;
+        }
+        if(i == tokens.size() || !("select".equals(tokens.get(i)) || "with".equals(tokens.get(i)))) {
+            return false;
+        }
+        boolean ended = false;
+        for(; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            if(";".equals(token)) {
+                ended = true;
+            } else if(ended || WRITE_WORDS.contains(token)) {
+                // A second statement, or a statement writing data
+                return false;
+            }
         }
-        return modifiedSql;
+        return true;
     }
 }
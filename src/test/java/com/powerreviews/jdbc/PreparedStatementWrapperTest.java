@@ -1,16 +1,32 @@
 package com.powerreviews.jdbc;
 
+import com.powerreviews.jdbc.redis.PreparedQuery;
 import com.powerreviews.jdbc.redis.RedisClient;
+import com.powerreviews.jdbc.redis.ReplayableQuery;
+import com.powerreviews.jdbc.util.Murmur3;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 
 import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.math.BigDecimal;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.sql.*;
 import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.*;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.*;
 
 /**
@@ -25,6 +41,7 @@ public class PreparedStatementWrapperTest {
         PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
         RedisClient redisClientMock = mock(RedisClient.class);
 
+        List<String> queries = recordQueries(redisClientMock);
         String sql = "? ? something ? ? ? ? ? ? ? ? ? ? ? ? ? ? ?";
 
         PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
@@ -52,17 +69,53 @@ public class PreparedStatementWrapperTest {
 
         preparedStatementWrapper.executeQuery();
 
-        StringBuilder expectedSql = new StringBuilder("null null something true 10 1 2 3 4.4 5.5 6.6 test bytes ")
-                .append(date.toString())
-                .append(" ")
-                .append(time.toString())
-                .append(" ")
-                .append(timestamp.toString())
-                .append(" ")
-                .append("http://www.powerreviews.com")
-                .append(" ")
-                .append("nstring");
-        verify(redisClientMock).executeQuery(preparedStatementMock, expectedSql.toString());
+        String expectedSql = token("null", "12") + " " + token("null", "12,typeName") + " something " +
+                token("bool", "true") + " " + token("int", "10") + " " + token("int", "1") + " " + token("int", "2") + " " +
+                token("int", "3") + " " + token("float", "4.4") + " " + token("double", "5.5") + " " +
+                token("decimal", "6.6") + " " + token("string", "test") + " " +
+                token("bytes", new Murmur3().putBytes("bytes".getBytes()).hashHex()) + " " +
+                token("date", date) + " " + token("time", time) + " " + token("timestamp", timestamp) + " " +
+                token("url", "http://www.powerreviews.com") + " " + token("nstring", "nstring");
+        assertEquals(Collections.singletonList(expectedSql), queries);
+    }
+
+    @Test
+    public void testDistinctValues() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+
+        List<String> hashes = new ArrayList<>();
+        List<String> queries = recordQueries(redisClientMock, hashes, new ArrayList<>());
+        String sql = "select something from somewhere where foo = ? and bar = ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setNull(1, Types.VARCHAR);
+        preparedStatementWrapper.setString(2, "x");
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setString(1, "null");
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setNull(1, Types.INTEGER);
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setString(1, "a and bar = b");
+        preparedStatementWrapper.setString(2, "c");
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setString(1, "a");
+        preparedStatementWrapper.setString(2, "b and bar = c");
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setBytes(1, new byte[] {(byte)0xc3});
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setBytes(1, new byte[] {(byte)0xc4});
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setObject(1, 1, Types.INTEGER);
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setObject(1, 1, Types.VARCHAR);
+        preparedStatementWrapper.executeQuery();
+
+        // Values of different kinds or SQL types, values containing the text around the parameters
+        // and bytes which are not valid characters are all written and hashed differently
+        assertEquals(9, new HashSet<>(queries).size());
+        assertEquals(9, new HashSet<>(hashes).size());
     }
 
     @Test
@@ -77,6 +130,313 @@ public class PreparedStatementWrapperTest {
         preparedStatementWrapper.setAsciiStream(1, new ByteArrayInputStream("test".getBytes()));
         preparedStatementWrapper.executeQuery();
 
-        verify(redisClientMock).executeQuery(preparedStatementMock, null);
+        verify(redisClientMock).executeQuery(preparedStatementMock, null, null);
+    }
+
+    @Test
+    public void testParameterWithoutPlaceholder() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        List<String> queries = recordQueries(redisClientMock);
+
+        String sql = "select something from somewhere where foo = ?";
+
+        // A value the statement has no placeholder for would not be part of the key
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setInt(1, 1);
+        preparedStatementWrapper.setInt(2, 2);
+        preparedStatementWrapper.executeQuery();
+
+        verify(redisClientMock).executeQuery(preparedStatementMock, null, null);
+        assertTrue(queries.isEmpty());
+        verify(preparedStatementMock).setInt(2, 2);
+    }
+
+    @Test
+    public void testObjects() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+
+        List<String> hashes = new ArrayList<>();
+        List<String> queries = recordQueries(redisClientMock, hashes, new ArrayList<>());
+        String sql = "? ? ? ? ? ? ? ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setObject(1, 42);
+        preparedStatementWrapper.setObject(2, "test", Types.VARCHAR);
+        preparedStatementWrapper.setObject(3, new BigDecimal("1.50"), Types.DECIMAL, 2);
+        preparedStatementWrapper.setObject(4, null);
+        preparedStatementWrapper.setObject(5, LocalDate.of(2016, 4, 8));
+        preparedStatementWrapper.setObject(6, LocalDateTime.of(2016, 4, 8, 10, 5, 0, 120000000));
+        preparedStatementWrapper.setObject(7, LocalTime.of(10, 5));
+        preparedStatementWrapper.setObject(8, Instant.ofEpochSecond(1460109900));
+        preparedStatementWrapper.executeQuery();
+
+        // Values are written as with the setters of their types
+        String values = " " + token("typed", "12,test") + " " + token("scaled", "3,2,1.50") + " " +
+                token("null", "object") + " " + token("object", "2016-04-08") + " " +
+                token("object", "2016-04-08 10:05:00.12") + " " + token("object", "10:05:00") + " " +
+                token("object", "2016-04-08T10:05:00Z");
+        assertEquals(token("int", "42") + values, queries.get(0));
+
+        // A value of another type prevents caching until the parameter is set again
+        preparedStatementWrapper.setObject(1, new StringBuilder("test"));
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setObject(1, 43L);
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setInt(1, 43);
+        preparedStatementWrapper.executeQuery();
+
+        verify(redisClientMock).executeQuery(preparedStatementMock, null, null);
+        assertEquals(Arrays.asList(token("int", "42") + values, token("int", "43") + values, token("int", "43") + values), queries);
+        // Values are also hashed as with the setters of their types
+        assertEquals(hashes.get(1), hashes.get(2));
+    }
+
+    @Test
+    public void testCalendar() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+
+        List<String> queries = recordQueries(redisClientMock);
+        String sql = "? ? ?";
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        Calendar tokyo = Calendar.getInstance(TimeZone.getTimeZone("Asia/Tokyo"));
+        long millis = Instant.parse("2016-04-08T20:05:30.250Z").toEpochMilli();
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setDate(1, new Date(millis), utc);
+        preparedStatementWrapper.setTime(2, new Time(millis), utc);
+        preparedStatementWrapper.setTimestamp(3, new Timestamp(millis), utc);
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setDate(1, new Date(millis), tokyo);
+        preparedStatementWrapper.setTime(2, new Time(millis), tokyo);
+        preparedStatementWrapper.setTimestamp(3, new Timestamp(millis), tokyo);
+        preparedStatementWrapper.executeQuery();
+
+        // Values are written in the time zone of the calendar
+        assertEquals(Arrays.asList(
+                token("date", "2016-04-08") + " " + token("time", "20:05:30") + " " + token("timestamp", "2016-04-08 20:05:30.25"),
+                token("date", "2016-04-09") + " " + token("time", "05:05:30") + " " + token("timestamp", "2016-04-09 05:05:30.25")), queries);
+        verify(preparedStatementMock).setTimestamp(3, new Timestamp(millis), tokyo);
+    }
+
+    @Test
+    public void testStreams() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        when(redisClientMock.getParameterStreamMaxBytes()).thenReturn(8);
+        List<ReplayableQuery> replays = new ArrayList<>();
+        List<String> queries = recordQueries(redisClientMock, new ArrayList<>(), replays);
+
+        String sql = "select something from somewhere where foo = ? and bar = ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setBinaryStream(1, new ByteArrayInputStream("test".getBytes()));
+        preparedStatementWrapper.setCharacterStream(2, new StringReader("test"), 4);
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setBinaryStream(1, new ByteArrayInputStream("test2".getBytes()));
+        preparedStatementWrapper.executeQuery();
+
+        // Streams are written as the hash of their content
+        assertEquals(2, queries.size());
+        assertTrue(queries.get(0).matches("select something from somewhere where foo = \\u0000binary32:\\w{32} and bar = \\u0000chars32:\\w{32}"));
+        assertNotEquals(queries.get(0), queries.get(1));
+
+        // Streams larger than the limit are not cached, and are passed on whole
+        preparedStatementWrapper.setBinaryStream(1, new ByteArrayInputStream("larger than the limit".getBytes()));
+        preparedStatementWrapper.executeQuery();
+
+        verify(redisClientMock).executeQuery(preparedStatementMock, null, null);
+        ArgumentCaptor<InputStream> streamCaptor = ArgumentCaptor.forClass(InputStream.class);
+        verify(preparedStatementMock, times(3)).setBinaryStream(eq(1), streamCaptor.capture());
+        assertEquals("larger than the limit", new Scanner(streamCaptor.getValue()).useDelimiter("\\A").next());
+
+        // The content is sent again when the statement is replayed
+        Connection refreshConnectionMock = mock(Connection.class);
+        PreparedStatement refreshStatementMock = mock(PreparedStatement.class);
+        when(refreshConnectionMock.prepareStatement(sql)).thenReturn(refreshStatementMock);
+        replays.get(0).execute(refreshConnectionMock);
+
+        verify(refreshStatementMock).setBinaryStream(eq(1), any(InputStream.class), eq(4));
+        verify(refreshStatementMock).setCharacterStream(eq(2), any(Reader.class), eq(4));
+    }
+
+    @Test
+    public void testExecuteQuery() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        ResultSet resultSetMock = mock(ResultSet.class);
+        when(redisClientMock.executeQuery(eq(preparedStatementMock), any(PreparedQuery.class))).thenReturn(resultSetMock);
+
+        String sql = "select something from somewhere where foo = ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setInt(1, 1);
+
+        // Queries run with execute are run through the cache
+        assertTrue(preparedStatementWrapper.execute());
+        assertEquals(resultSetMock, preparedStatementWrapper.getResultSet());
+        assertEquals(-1, preparedStatementWrapper.getUpdateCount());
+        assertFalse(preparedStatementWrapper.getMoreResults());
+        assertNull(preparedStatementWrapper.getResultSet());
+        assertEquals(-1, preparedStatementWrapper.getUpdateCount());
+
+        verify(resultSetMock).close();
+        verify(preparedStatementMock, never()).execute();
+        verify(preparedStatementMock, never()).getResultSet();
+    }
+
+    @Test
+    public void testUpdateInvalidatesTables() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        when(preparedStatementMock.executeUpdate()).thenReturn(3);
+
+        String sql = "delete from somewhere where foo = ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setInt(1, 1);
+        assertEquals(3, preparedStatementWrapper.executeUpdate());
+
+        verify(redisClientMock).invalidateModifiedTables(sql);
+
+        // Statements run or batched by their text invalidate their tables as well
+        String update = "update elsewhere set foo = 1";
+        preparedStatementWrapper.executeUpdate(update);
+        verify(redisClientMock).invalidateModifiedTables(update);
+        preparedStatementWrapper.addBatch();
+        preparedStatementWrapper.addBatch(update);
+        preparedStatementWrapper.executeBatch();
+        verify(redisClientMock).invalidateModifiedTables(Arrays.asList(sql, update));
+    }
+
+    @Test
+    public void testNormalizedStatement() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        when(redisClientMock.isNormalizeSql()).thenReturn(true);
+        List<String> queries = recordQueries(redisClientMock);
+
+        String sql = "SELECT something\n  FROM somewhere -- comment\n WHERE foo = ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setString(1, "A  B -- C");
+        preparedStatementWrapper.executeQuery();
+
+        // Parameter values are not normalized
+        assertEquals(Collections.singletonList("select something from somewhere where foo = " + token("string", "A  B -- C")), queries);
+    }
+
+    @Test
+    public void testQuestionMarkLiteral() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+
+        List<String> queries = recordQueries(redisClientMock);
+        String sql = "select 'why?' from somewhere where foo = ? and bar = 'it''s'";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setInt(1, 1);
+        preparedStatementWrapper.executeQuery();
+
+        assertEquals(Collections.singletonList("select 'why?' from somewhere where foo = " + token("int", "1") + " and bar = 'it''s'"), queries);
+    }
+
+    @Test
+    public void testReuse() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+
+        List<String> queries = recordQueries(redisClientMock);
+        String sql = "select something from somewhere where foo = ? and bar = ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setLong(1, Long.MAX_VALUE);
+        preparedStatementWrapper.setDouble(2, 0.1);
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.setLong(1, -1L);
+        preparedStatementWrapper.executeQuery();
+        preparedStatementWrapper.clearParameters();
+        preparedStatementWrapper.setString(2, null);
+        preparedStatementWrapper.executeQuery();
+
+        assertEquals(Arrays.asList(
+                "select something from somewhere where foo = " + token("int", Long.MAX_VALUE) + " and bar = " + token("double", "0.1"),
+                "select something from somewhere where foo = " + token("int", "-1") + " and bar = " + token("double", "0.1"),
+                "select something from somewhere where foo = " + token("unset", "") + " and bar = " + token("null", "string")), queries);
+    }
+
+    @Test
+    public void testReplay() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        PreparedStatement preparedStatementMock = mock(PreparedStatement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+
+        List<ReplayableQuery> replays = new ArrayList<>();
+        List<String> queries = recordQueries(redisClientMock, new ArrayList<>(), replays);
+        String sql = "select something from somewhere where foo = ? and bar = ?";
+
+        PreparedStatementWrapper preparedStatementWrapper = new PreparedStatementWrapper(connectionMock, preparedStatementMock, sql, redisClientMock);
+        preparedStatementWrapper.setInt(1, 42);
+        preparedStatementWrapper.setString(2, "test");
+        preparedStatementWrapper.executeQuery();
+        // Reusing the statement does not change the query to replay
+        preparedStatementWrapper.setInt(1, 43);
+
+        assertEquals(Collections.singletonList("select something from somewhere where foo = " + token("int", "42") + " and bar = " + token("string", "test")), queries);
+
+        // The statement is replayed on another connection with the same parameter values
+        Connection refreshConnectionMock = mock(Connection.class);
+        PreparedStatement refreshStatementMock = mock(PreparedStatement.class);
+        when(refreshConnectionMock.prepareStatement(sql)).thenReturn(refreshStatementMock);
+        replays.get(0).execute(refreshConnectionMock);
+
+        verify(refreshStatementMock).setInt(1, 42);
+        verify(refreshStatementMock).setString(2, "test");
+        verify(refreshStatementMock).executeQuery();
+    }
+
+    /**
+     * Records the queries run through the cache as they are when they are run, since the query
+     * passed to the client is written from the current parameter values
+     * @param hashes Receives the hash of each query
+     * @param replays Receives the replay of each query, as taken when a stale result is refreshed
+     * @return The queries
+     */
+    private static List<String> recordQueries(RedisClient redisClientMock, List<String> hashes, List<ReplayableQuery> replays) throws SQLException {
+        List<String> queries = new ArrayList<>();
+        when(redisClientMock.executeQuery(any(PreparedStatement.class), any(PreparedQuery.class))).thenAnswer(invocation -> {
+            PreparedQuery query = (PreparedQuery)invocation.getArguments()[1];
+            StringBuilder sql = new StringBuilder();
+            query.appendTo(sql);
+            queries.add(sql.toString());
+            Murmur3 murmur3 = new Murmur3();
+            query.hashTo(murmur3);
+            hashes.add(murmur3.hashHex());
+            replays.add(query.replay());
+            return null;
+        });
+        return queries;
+    }
+
+    private static List<String> recordQueries(RedisClient redisClientMock) throws SQLException {
+        return recordQueries(redisClientMock, new ArrayList<>(), new ArrayList<>());
+    }
+
+    /**
+     * @return A parameter value as it is written in the query the result is cached under
+     */
+    private static String token(String kind, Object text) {
+        return "\0" + kind + text.toString().length() + ":" + text;
     }
 }
@@ -0,0 +1,88 @@
+package com.powerreviews.jdbc;
+
+import com.powerreviews.jdbc.redis.RedisClient;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.*;
+
+public class StatementWrapperTest {
+    @Test
+    public void testExecute() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        Statement statementMock = mock(Statement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        ResultSet resultSetMock = mock(ResultSet.class);
+        String query = "select something from somewhere";
+        String update = "update somewhere set something = 1";
+        when(redisClientMock.executeQuery(statementMock, query)).thenReturn(resultSetMock);
+        when(statementMock.execute(update)).thenReturn(false);
+        when(statementMock.getUpdateCount()).thenReturn(3);
+
+        StatementWrapper statementWrapper = new StatementWrapper(connectionMock, statementMock, redisClientMock);
+
+        // Queries are run through the cache
+        assertTrue(statementWrapper.execute(query));
+        assertEquals(resultSetMock, statementWrapper.getResultSet());
+        assertEquals(-1, statementWrapper.getUpdateCount());
+        assertFalse(statementWrapper.getMoreResults(Statement.KEEP_CURRENT_RESULT));
+        assertNull(statementWrapper.getResultSet());
+        verify(resultSetMock, never()).close();
+
+        // Other statements are run by the wrapped statement
+        assertFalse(statementWrapper.execute(update));
+        assertEquals(3, statementWrapper.getUpdateCount());
+        verify(statementMock, never()).execute(query);
+        verify(redisClientMock).invalidateModifiedTables(update);
+    }
+
+    @Test
+    public void testExecuteBatchInvalidatesTables() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        Statement statementMock = mock(Statement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        String insert = "insert into somewhere values (1)";
+        String delete = "delete from elsewhere";
+        when(statementMock.executeBatch()).thenReturn(new int[]{1, 2});
+
+        StatementWrapper statementWrapper = new StatementWrapper(connectionMock, statementMock, redisClientMock);
+        statementWrapper.addBatch("update cleared set something = 1");
+        statementWrapper.clearBatch();
+        statementWrapper.addBatch(insert);
+        statementWrapper.addBatch(delete);
+        statementWrapper.executeBatch();
+        verify(redisClientMock).invalidateModifiedTables(Arrays.asList(insert, delete));
+
+        // The batch is emptied once executed
+        statementWrapper.executeBatch();
+        verify(redisClientMock).invalidateModifiedTables(Collections.<String>emptyList());
+    }
+
+    @Test
+    public void testCloseClosesResult() throws SQLException {
+        Connection connectionMock = mock(Connection.class);
+        Statement statementMock = mock(Statement.class);
+        RedisClient redisClientMock = mock(RedisClient.class);
+        ResultSet resultSetMock = mock(ResultSet.class);
+        String query = "select something from somewhere";
+        when(redisClientMock.executeQuery(statementMock, query)).thenReturn(resultSetMock);
+
+        StatementWrapper statementWrapper = new StatementWrapper(connectionMock, statementMock, redisClientMock);
+        statementWrapper.executeQuery(query);
+
+        // A result streamed from the database is released even if it has not been read to the end
+        statementWrapper.close();
+        verify(resultSetMock).close();
+        verify(statementMock).close();
+    }
+}
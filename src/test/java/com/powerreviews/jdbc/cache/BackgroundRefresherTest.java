@@ -0,0 +1,72 @@
+package com.powerreviews.jdbc.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BackgroundRefresherTest {
+
+    @Test
+    public void testRefreshOncePerKey() throws InterruptedException {
+        BackgroundRefresher refresher = new BackgroundRefresher("test", 1, 10);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        AtomicInteger refreshes = new AtomicInteger();
+        Runnable refresh = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            refreshes.incrementAndGet();
+            done.countDown();
+        };
+
+        assertTrue(refresher.refresh("key", refresh));
+        assertFalse(refresher.refresh("key", refresh));
+        assertTrue(refresher.refresh("otherKey", refresh));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(2, refreshes.get());
+    }
+
+    @Test
+    public void testBoundedQueue() throws InterruptedException {
+        BackgroundRefresher refresher = new BackgroundRefresher("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Runnable refresh = () -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+
+        // One refresh running, one queued, the next one is dropped
+        assertTrue(refresher.refresh("key1", refresh));
+        assertTrue(refresher.refresh("key2", refresh));
+        assertFalse(refresher.refresh("key3", refresh));
+        assertEquals(2, refresher.pendingCount());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while(refresher.pendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, refresher.pendingCount());
+        assertTrue(refresher.refresh("key3", () -> {}));
+    }
+
+    @Test
+    public void testSharedByName() {
+        assertSame(BackgroundRefresher.getBackgroundRefresher("refreshHost", 1, 1),
+                BackgroundRefresher.getBackgroundRefresher("refreshHost", 2, 2));
+        assertNotSame(BackgroundRefresher.getBackgroundRefresher("refreshHost", 1, 1),
+                BackgroundRefresher.getBackgroundRefresher("otherRefreshHost", 1, 1));
+    }
+}
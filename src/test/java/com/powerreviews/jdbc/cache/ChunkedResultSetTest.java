@@ -0,0 +1,85 @@
+package com.powerreviews.jdbc.cache;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.powerreviews.jdbc.codec.ResultSetDecoder;
+import com.powerreviews.jdbc.codec.ResultSetEncoder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.Assert.*;
+
+public class ChunkedResultSetTest {
+
+    private static ResultSet chunk(int firstRow, int rows) {
+        MockResultSet resultSet = new MockResultSet("chunkRS");
+        Integer[] columnA = new Integer[rows];
+        for(int i = 0; i < rows; i++) {
+            columnA[i] = firstRow + i;
+        }
+        resultSet.addColumn("columnA", columnA);
+        try {
+            return ResultSetDecoder.decode(ByteBuffer.wrap(ResultSetEncoder.encode(resultSet)));
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testReadAllChunks() throws SQLException {
+        ResultSet resultSet = ChunkedResultSet.open(chunk(1, 2), 3, chunk -> chunk(chunk * 2 + 1, chunk == 2 ? 1 : 2));
+
+        for(int row = 1; row <= 5; row++) {
+            assertTrue(resultSet.next());
+            assertEquals(row, resultSet.getInt("columnA"));
+            assertEquals(row, resultSet.getRow());
+        }
+        assertFalse(resultSet.next());
+        assertEquals(0, resultSet.getRow());
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+        resultSet.close();
+    }
+
+    @Test
+    public void testMissingChunk() throws SQLException {
+        ResultSet resultSet = ChunkedResultSet.open(chunk(1, 1), 2, chunk -> {
+            throw new SQLException("Chunk " + chunk + " not found");
+        });
+
+        assertTrue(resultSet.next());
+        try {
+            resultSet.next();
+            fail();
+        } catch (SQLException e) {
+            assertEquals("Chunk 1 not found", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testLoadOnCallerThreadWhenPrefetchRejected() throws SQLException {
+        Thread caller = Thread.currentThread();
+        ResultSet resultSet = ChunkedResultSet.open(chunk(1, 1), 3, chunk -> {
+            assertSame(caller, Thread.currentThread());
+            return chunk(chunk + 1, 1);
+        }, runnable -> {
+            throw new RejectedExecutionException("Prefetch threads busy");
+        });
+
+        for(int row = 1; row <= 3; row++) {
+            assertTrue(resultSet.next());
+            assertEquals(row, resultSet.getInt("columnA"));
+        }
+        assertFalse(resultSet.next());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testForwardOnly() throws SQLException {
+        ResultSet resultSet = ChunkedResultSet.open(chunk(1, 2), 1, chunk -> null);
+        assertTrue(resultSet.next());
+        resultSet.beforeFirst();
+    }
+}
@@ -0,0 +1,67 @@
+package com.powerreviews.jdbc.cache;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+public class ConcatResultSetTest {
+
+    private static MockResultSet rows(int firstRow, int rows) {
+        MockResultSet resultSet = new MockResultSet("concatRS");
+        Integer[] columnA = new Integer[rows];
+        for(int i = 0; i < rows; i++) {
+            columnA[i] = firstRow + i;
+        }
+        resultSet.addColumn("columnA", columnA);
+        return resultSet;
+    }
+
+    @Test
+    public void testReadPrefixThenRest() throws SQLException {
+        MockResultSet prefix = rows(1, 2);
+        MockResultSet rest = rows(1, 4);
+        // The query result is positioned on the last row of the prefix
+        rest.next();
+        rest.next();
+        ResultSet resultSet = ConcatResultSet.open(prefix, rest);
+
+        for(int row = 1; row <= 4; row++) {
+            assertTrue(resultSet.next());
+            assertEquals(row, resultSet.getInt("columnA"));
+            assertEquals(row, resultSet.getRow());
+            assertEquals(row == 1, resultSet.isFirst());
+            assertEquals(row == 4, resultSet.isLast());
+            assertFalse(resultSet.isAfterLast());
+        }
+        assertFalse(resultSet.next());
+        assertTrue(resultSet.isAfterLast());
+        assertEquals(0, resultSet.getRow());
+        assertEquals(ResultSet.TYPE_FORWARD_ONLY, resultSet.getType());
+    }
+
+    @Test
+    public void testCloseClosesBoth() throws SQLException {
+        MockResultSet prefix = rows(1, 2);
+        MockResultSet rest = rows(1, 3);
+        rest.next();
+        rest.next();
+        ResultSet resultSet = ConcatResultSet.open(prefix, rest);
+
+        assertTrue(resultSet.next());
+        resultSet.close();
+        assertTrue(prefix.isClosed());
+        assertTrue(rest.isClosed());
+        assertTrue(resultSet.isClosed());
+    }
+
+    @Test(expected = SQLException.class)
+    public void testForwardOnly() throws SQLException {
+        ResultSet resultSet = ConcatResultSet.open(rows(1, 1), rows(1, 1));
+        assertTrue(resultSet.next());
+        resultSet.beforeFirst();
+    }
+}
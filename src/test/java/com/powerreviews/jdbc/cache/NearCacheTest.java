@@ -0,0 +1,38 @@
+package com.powerreviews.jdbc.cache;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NearCacheTest {
+
+    @Test
+    public void testGetPut() {
+        NearCache nearCache = new NearCache(1024 * 1024, null);
+
+        assertNull(nearCache.get("select 1"));
+        nearCache.put("select 1", new byte[]{1, 2, 3});
+        assertArrayEquals(new byte[]{1, 2, 3}, nearCache.get("select 1"));
+
+        nearCache.invalidate("select 1");
+        assertNull(nearCache.get("select 1"));
+    }
+
+    @Test
+    public void testByteBudget() {
+        NearCache nearCache = new NearCache(1024, null);
+
+        nearCache.put("select 1", new byte[2048]);
+        nearCache.cleanUp();
+
+        assertNull(nearCache.get("select 1"));
+    }
+
+    @Test
+    public void testSharedByName() {
+        NearCache nearCache = NearCache.getNearCache("sharedNearCache", 1024, 60);
+
+        assertSame(nearCache, NearCache.getNearCache("sharedNearCache", 2048, 120));
+        assertNotSame(nearCache, NearCache.getNearCache("otherNearCache", 1024, 60));
+    }
+}
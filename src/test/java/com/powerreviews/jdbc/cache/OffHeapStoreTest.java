@@ -0,0 +1,94 @@
+package com.powerreviews.jdbc.cache;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class OffHeapStoreTest {
+    private static final OffHeapStore.Reader<byte[]> COPY = value -> {
+        byte[] bytes = new byte[value.remaining()];
+        value.get(bytes);
+        return bytes;
+    };
+
+    @Test
+    public void testGetPut() throws IOException {
+        OffHeapStore offHeapStore = new OffHeapStore(1024 * 1024, null);
+
+        assertNull(offHeapStore.get("select 1", COPY));
+        assertTrue(offHeapStore.put("select 1", new byte[]{1, 2, 3}));
+        assertArrayEquals(new byte[]{1, 2, 3}, offHeapStore.get("select 1", COPY));
+
+        assertTrue(offHeapStore.put("select 1", new byte[]{4, 5}));
+        assertArrayEquals(new byte[]{4, 5}, offHeapStore.get("select 1", COPY));
+
+        offHeapStore.invalidate("select 1");
+        assertNull(offHeapStore.get("select 1", COPY));
+    }
+
+    @Test
+    public void testReadOnlyValue() throws IOException {
+        OffHeapStore offHeapStore = new OffHeapStore(1024, null);
+        offHeapStore.put("select 1", new byte[]{1, 2, 3});
+
+        ByteBuffer value = offHeapStore.get("select 1", buffer -> buffer);
+        assertTrue(value.isReadOnly());
+        assertEquals(3, value.remaining());
+    }
+
+    @Test
+    public void testTooLarge() throws IOException {
+        OffHeapStore offHeapStore = new OffHeapStore(1024, null);
+
+        assertFalse(offHeapStore.put("select 1", new byte[2048]));
+        assertNull(offHeapStore.get("select 1", COPY));
+    }
+
+    @Test
+    public void testEvictsOldest() throws IOException {
+        OffHeapStore offHeapStore = new OffHeapStore(1000, null);
+        for(int i = 0; i < 10; i++) {
+            offHeapStore.put("select " + i, filled(300, i));
+        }
+
+        // Only the last three values fit
+        for(int i = 0; i < 7; i++) {
+            assertNull(offHeapStore.get("select " + i, COPY));
+        }
+        for(int i = 7; i < 10; i++) {
+            assertArrayEquals(filled(300, i), offHeapStore.get("select " + i, COPY));
+        }
+    }
+
+    @Test
+    public void testSecondChance() throws IOException {
+        OffHeapStore offHeapStore = new OffHeapStore(1000, null);
+        offHeapStore.put("hot", filled(300, 100));
+        for(int i = 0; i < 10; i++) {
+            offHeapStore.get("hot", COPY);
+            offHeapStore.put("select " + i, filled(300, i));
+        }
+
+        // The value read between writes survives, the others are evicted oldest first
+        assertArrayEquals(filled(300, 100), offHeapStore.get("hot", COPY));
+        assertArrayEquals(filled(300, 9), offHeapStore.get("select 9", COPY));
+        assertNull(offHeapStore.get("select 0", COPY));
+    }
+
+    @Test
+    public void testExpiration() throws IOException {
+        OffHeapStore offHeapStore = new OffHeapStore(1024, 0);
+        offHeapStore.put("select 1", new byte[]{1});
+
+        assertNull(offHeapStore.get("select 1", COPY));
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] bytes = new byte[length];
+        java.util.Arrays.fill(bytes, (byte)value);
+        return bytes;
+    }
+}
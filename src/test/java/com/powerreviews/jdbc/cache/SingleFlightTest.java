@@ -0,0 +1,48 @@
+package com.powerreviews.jdbc.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.Assert.*;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testJoinAndLand() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+
+        assertNull(singleFlight.join("key", flight));
+        assertSame(flight, singleFlight.join("key", new CompletableFuture<>()));
+        assertNull(singleFlight.join("otherKey", new CompletableFuture<>()));
+
+        flight.complete(new byte[]{1});
+        singleFlight.land("key", flight);
+
+        assertArrayEquals(new byte[]{1}, SingleFlight.await(flight, 0));
+        assertNull(singleFlight.join("key", new CompletableFuture<>()));
+    }
+
+    @Test
+    public void testLandWithoutResult() {
+        SingleFlight singleFlight = new SingleFlight();
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        singleFlight.join("key", flight);
+        singleFlight.land("key", flight);
+
+        assertNull(SingleFlight.await(flight, 1000));
+        assertEquals(0, singleFlight.size());
+    }
+
+    @Test
+    public void testAwaitTimeout() {
+        assertNull(SingleFlight.await(new CompletableFuture<>(), 10));
+    }
+
+    @Test
+    public void testSharedByName() {
+        assertSame(SingleFlight.getSingleFlight("flightHost"), SingleFlight.getSingleFlight("flightHost"));
+        assertNotSame(SingleFlight.getSingleFlight("flightHost"), SingleFlight.getSingleFlight("otherFlightHost"));
+    }
+}
@@ -0,0 +1,137 @@
+package com.powerreviews.jdbc.cache;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.powerreviews.jdbc.codec.ResultSetDecoder;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TeeResultSetTest {
+
+    private static class RecordingSink implements TeeResultSet.Sink {
+        final List<byte[]> completed = new ArrayList<>();
+        int discarded;
+
+        @Override
+        public void complete(byte[] encoded) {
+            completed.add(encoded);
+        }
+
+        @Override
+        public void discard() {
+            discarded++;
+        }
+    }
+
+    private static MockResultSet resultSet(int rows) {
+        MockResultSet resultSet = new MockResultSet("teeRS");
+        Integer[] columnA = new Integer[rows];
+        String[] columnB = new String[rows];
+        for(int i = 0; i < rows; i++) {
+            columnA[i] = i + 1;
+            columnB[i] = "record" + (i + 1);
+        }
+        resultSet.addColumn("columnA", columnA);
+        resultSet.addColumn("columnB", columnB);
+        return resultSet;
+    }
+
+    @Test
+    public void testReadToEnd() throws SQLException, IOException {
+        RecordingSink sink = new RecordingSink();
+        ResultSet tee = TeeResultSet.tee(resultSet(3), 1024 * 1024, Integer.MAX_VALUE, sink);
+
+        int rowNumber = 1;
+        while(tee.next()) {
+            assertEquals(rowNumber, tee.getInt(1));
+            assertEquals("record" + rowNumber, tee.getString(2));
+            // The result is only complete once the end has been reached
+            assertTrue(sink.completed.isEmpty());
+            rowNumber++;
+        }
+        assertFalse(tee.next());
+        tee.close();
+
+        assertEquals(1, sink.completed.size());
+        assertEquals(0, sink.discarded);
+        ResultSet cached = ResultSetDecoder.decode(ByteBuffer.wrap(sink.completed.get(0)));
+        for(int row = 1; row <= 3; row++) {
+            assertTrue(cached.next());
+            assertEquals(row, cached.getInt(1));
+            assertEquals("record" + row, cached.getString(2));
+        }
+        assertFalse(cached.next());
+    }
+
+    @Test
+    public void testClosedBeforeEnd() throws SQLException {
+        RecordingSink sink = new RecordingSink();
+        ResultSet tee = TeeResultSet.tee(resultSet(3), 1024 * 1024, Integer.MAX_VALUE, sink);
+
+        assertTrue(tee.next());
+        tee.close();
+        tee.close();
+
+        assertTrue(sink.completed.isEmpty());
+        assertEquals(1, sink.discarded);
+        assertTrue(tee.isClosed());
+    }
+
+    @Test
+    public void testBufferLimit() throws SQLException {
+        RecordingSink sink = new RecordingSink();
+        ResultSet tee = TeeResultSet.tee(resultSet(1000), 1024, Integer.MAX_VALUE, sink);
+
+        // The caller still gets all the rows, the result is discarded as soon as it is too large
+        int rows = 0;
+        int discardedAt = 0;
+        while(tee.next()) {
+            rows++;
+            if(sink.discarded == 1 && discardedAt == 0) {
+                discardedAt = rows;
+            }
+        }
+
+        assertEquals(1000, rows);
+        assertTrue(discardedAt > 0 && discardedAt < 1000);
+        assertTrue(sink.completed.isEmpty());
+        assertEquals(1, sink.discarded);
+    }
+
+    @Test
+    public void testRowLimit() throws SQLException {
+        RecordingSink sink = new RecordingSink();
+        ResultSet tee = TeeResultSet.tee(resultSet(3), 1024 * 1024, 2, sink);
+
+        assertTrue(tee.next());
+        assertTrue(tee.next());
+        assertEquals(0, sink.discarded);
+        assertTrue(tee.next());
+        assertEquals(1, sink.discarded);
+        assertFalse(tee.next());
+        assertTrue(sink.completed.isEmpty());
+    }
+
+    @Test
+    public void testMoveBackwards() throws SQLException {
+        RecordingSink sink = new RecordingSink();
+        ResultSet tee = TeeResultSet.tee(resultSet(3), 1024 * 1024, Integer.MAX_VALUE, sink);
+
+        assertTrue(tee.next());
+        assertTrue(tee.next());
+        tee.beforeFirst();
+        while(tee.next()) {
+            // Read again from the first row
+        }
+
+        assertTrue(sink.completed.isEmpty());
+        assertEquals(1, sink.discarded);
+    }
+}
@@ -0,0 +1,134 @@
+package com.powerreviews.jdbc.codec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class CachePayloadTest {
+
+    private static byte[] compressibleValue() {
+        byte[] value = new byte[10000];
+        for(int i = 0; i < value.length; i++) {
+            value[i] = (byte)("record" + (i % 10)).charAt(i % 7);
+        }
+        return value;
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.remaining()];
+        buffer.duplicate().get(array);
+        return array;
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        byte[] value = compressibleValue();
+        for(Compression compression : Compression.values()) {
+            byte[] payload = CachePayload.encode(null, value, compression, 1024);
+            if(compression != Compression.NONE) {
+                assertTrue(compression.name(), payload.length < value.length / 2);
+            }
+            assertArrayEquals(compression.name(), value, toArray(CachePayload.decode(ByteBuffer.wrap(payload)).getBody()));
+        }
+    }
+
+    @Test
+    public void testBelowThreshold() throws IOException {
+        byte[] value = compressibleValue();
+        byte[] payload = CachePayload.encode(null, value, Compression.LZ4, value.length + 1);
+
+        assertEquals(Compression.NONE.id, payload[CachePayload.MAGIC.length + 1]);
+        assertArrayEquals(value, toArray(CachePayload.decode(ByteBuffer.wrap(payload)).getBody()));
+        assertArrayEquals(value, toArray(CachePayload.decode(ByteBuffer.wrap(CachePayload.encode(null, value, Compression.LZ4, null))).getBody()));
+    }
+
+    @Test
+    public void testIncompressibleValue() throws IOException {
+        byte[] value = new byte[4096];
+        new Random(42).nextBytes(value);
+        byte[] payload = CachePayload.encode(null, value, Compression.DEFLATE, 0);
+
+        assertEquals(Compression.NONE.id, payload[CachePayload.MAGIC.length + 1]);
+        assertArrayEquals(value, toArray(CachePayload.decode(ByteBuffer.wrap(payload)).getBody()));
+    }
+
+    @Test
+    public void testDecodeDirectBuffer() throws IOException {
+        byte[] value = compressibleValue();
+        for(Compression compression : Compression.values()) {
+            byte[] payload = CachePayload.encode(null, value, compression, 0);
+            ByteBuffer direct = ByteBuffer.allocateDirect(payload.length);
+            direct.put(payload).flip();
+
+            assertArrayEquals(compression.name(), value, toArray(CachePayload.decode(direct).getBody()));
+        }
+    }
+
+    @Test
+    public void testDecodeLargeDirectBuffer() throws IOException {
+        // The compressed value is larger than the chunks it is decompressed from
+        byte[] value = new byte[200000];
+        Random random = new Random(42);
+        for(int i = 0; i < value.length; i++) {
+            value[i] = (byte)('a' + random.nextInt(4));
+        }
+        byte[] payload = CachePayload.encode(null, value, Compression.DEFLATE, 0);
+        assertTrue(payload.length > 3 * 8192);
+        ByteBuffer direct = ByteBuffer.allocateDirect(payload.length);
+        direct.put(payload).flip();
+
+        assertArrayEquals(value, toArray(CachePayload.decode(direct).getBody()));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeTruncatedDirectBuffer() throws IOException {
+        byte[] payload = CachePayload.encode(null, compressibleValue(), Compression.DEFLATE, 0);
+        ByteBuffer direct = ByteBuffer.allocateDirect(payload.length / 2);
+        direct.put(payload, 0, payload.length / 2).flip();
+        CachePayload.decode(direct).getBody();
+    }
+
+    @Test
+    public void testSql() throws IOException {
+        byte[] value = compressibleValue();
+        CachePayload payload = CachePayload.decode(ByteBuffer.wrap(CachePayload.encode("select 1", value, Compression.LZ4, 0)));
+
+        assertEquals("select 1", payload.getSql());
+        assertArrayEquals(value, toArray(payload.getBody()));
+        assertNull(CachePayload.decode(ByteBuffer.wrap(CachePayload.encode(null, value, Compression.LZ4, 0))).getSql());
+    }
+
+    @Test
+    public void testStaleAt() throws IOException {
+        byte[] value = compressibleValue();
+        CachePayload payload = CachePayload.decode(ByteBuffer.wrap(CachePayload.encode(null, value, Compression.LZ4, 0, 1000L)));
+
+        assertFalse(payload.isStale(999L));
+        assertTrue(payload.isStale(1000L));
+        assertArrayEquals(value, toArray(payload.getBody()));
+        assertFalse(CachePayload.decode(ByteBuffer.wrap(CachePayload.encode(null, value, Compression.LZ4, 0))).isStale(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testForName() {
+        assertEquals(Compression.LZ4, Compression.forName("lz4"));
+        assertEquals(Compression.DEFLATE, Compression.forName("Deflate"));
+        assertEquals(Compression.NONE, Compression.forName("none"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeUnknownFormat() throws IOException {
+        CachePayload.decode(ByteBuffer.wrap(new byte[]{(byte)0xac, (byte)0xed, 0, 5})).getBody();
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeTruncated() throws IOException {
+        byte[] payload = CachePayload.encode(null, compressibleValue(), Compression.DEFLATE, 0);
+        CachePayload.decode(ByteBuffer.wrap(Arrays.copyOf(payload, payload.length / 2))).getBody();
+    }
+}
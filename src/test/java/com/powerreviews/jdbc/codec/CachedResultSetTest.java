@@ -0,0 +1,132 @@
+package com.powerreviews.jdbc.codec;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.MockResultSetMetaData;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+
+import static org.junit.Assert.*;
+
+public class CachedResultSetTest {
+
+    private static CachedResultSet cachedResultSet(Object[] ids, Object[] names) throws SQLException, IOException {
+        MockResultSet resultSet = new MockResultSet("cachedRS");
+        resultSet.addColumn("id", ids);
+        resultSet.addColumn("name", names);
+        MockResultSetMetaData metaData = new MockResultSetMetaData();
+        metaData.setColumnCount(2);
+        metaData.setColumnType(1, Types.INTEGER);
+        metaData.setColumnLabel(1, "id");
+        metaData.setColumnType(2, Types.VARCHAR);
+        metaData.setColumnLabel(2, "name");
+        resultSet.setResultSetMetaData(metaData);
+        return ResultSetDecoder.decode(ByteBuffer.wrap(ResultSetEncoder.encode(resultSet)));
+    }
+
+    @Test
+    public void testScroll() throws SQLException, IOException {
+        CachedResultSet resultSet = cachedResultSet(new Object[]{1, 2, 3}, new Object[]{"a", "b", "c"});
+        assertEquals(3, resultSet.size());
+        assertEquals(ResultSet.TYPE_SCROLL_INSENSITIVE, resultSet.getType());
+        assertEquals(ResultSet.CONCUR_READ_ONLY, resultSet.getConcurrency());
+
+        assertTrue(resultSet.isBeforeFirst());
+        assertTrue(resultSet.last());
+        assertEquals(3, resultSet.getRow());
+        assertTrue(resultSet.isLast());
+        assertEquals("c", resultSet.getString(2));
+        assertTrue(resultSet.previous());
+        assertEquals(2, resultSet.getInt(1));
+        assertTrue(resultSet.absolute(-3));
+        assertTrue(resultSet.isFirst());
+        assertEquals("a", resultSet.getString("NAME"));
+        assertFalse(resultSet.relative(5));
+        assertTrue(resultSet.isAfterLast());
+        assertEquals(0, resultSet.getRow());
+        assertTrue(resultSet.absolute(2));
+        assertEquals(2, resultSet.getInt("id"));
+        resultSet.beforeFirst();
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getRow());
+    }
+
+    @Test
+    public void testNullsAndConversions() throws SQLException, IOException {
+        CachedResultSet resultSet = cachedResultSet(new Object[]{null, 42}, new Object[]{"7", null});
+
+        assertTrue(resultSet.next());
+        assertEquals(0, resultSet.getInt(1));
+        assertTrue(resultSet.wasNull());
+        assertNull(resultSet.getObject(1, Integer.class));
+        assertEquals(7, resultSet.getInt(2));
+        assertFalse(resultSet.wasNull());
+        assertEquals(7L, (long)resultSet.getObject(2, Long.class));
+
+        assertTrue(resultSet.next());
+        assertEquals("42", resultSet.getString(1));
+        assertEquals(42.0d, resultSet.getDouble(1), 0);
+        assertEquals(new BigDecimal(42), resultSet.getBigDecimal(1));
+        assertEquals(42, resultSet.getObject(1));
+        assertNull(resultSet.getString(2));
+        assertTrue(resultSet.wasNull());
+    }
+
+    @Test
+    public void testColumnsAreDecodedWhenRead() throws SQLException, IOException {
+        MockResultSet source = new MockResultSet("lazyRS");
+        source.addColumn("columnA", new Integer[]{1, 2});
+        source.addColumn("columnB", new Integer[]{3, 4});
+        byte[] encoded = ResultSetEncoder.encode(source);
+        // Corrupt the values of the last column
+        encoded[encoded.length - 2] |= 0x80;
+
+        ResultSet resultSet = ResultSetDecoder.decode(ByteBuffer.wrap(encoded));
+        assertTrue(resultSet.next());
+        assertEquals(1, resultSet.getInt(1));
+        try {
+            resultSet.getInt(2);
+            fail("Corrupted column decoded");
+        } catch (SQLException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void testInvalidAccess() throws SQLException, IOException {
+        CachedResultSet resultSet = cachedResultSet(new Object[]{1}, new Object[]{"a"});
+        try {
+            resultSet.getInt(1);
+            fail("Value read before the first row");
+        } catch (SQLException e) {
+            // Expected
+        }
+        assertTrue(resultSet.next());
+        try {
+            resultSet.getInt("missing");
+            fail("Value read from a missing column");
+        } catch (SQLException e) {
+            // Expected
+        }
+        try {
+            resultSet.updateInt(1, 2);
+            fail("Cached result set updated");
+        } catch (SQLFeatureNotSupportedException e) {
+            // Expected
+        }
+        resultSet.close();
+        assertTrue(resultSet.isClosed());
+        try {
+            resultSet.next();
+            fail("Closed result set read");
+        } catch (SQLException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.powerreviews.jdbc.codec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class ChunkManifestTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        byte[] value = new ChunkManifest("select 1", 1000L, 3, 250, "abc").encode();
+
+        assertTrue(ChunkManifest.isManifest(value));
+        ChunkManifest manifest = ChunkManifest.decode(ByteBuffer.wrap(value));
+        assertEquals("select 1", manifest.getSql());
+        assertEquals(3, manifest.getChunkCount());
+        assertEquals(250, manifest.getRowCount());
+        assertEquals("key:abc:2", manifest.getChunkKey("key", 2));
+        assertFalse(manifest.isStale(999L));
+        assertTrue(manifest.isStale(1000L));
+
+        assertNull(ChunkManifest.decode(ByteBuffer.wrap(new ChunkManifest(null, 0, 1, 1, "abc").encode())).getSql());
+    }
+
+    @Test
+    public void testNotManifest() {
+        assertFalse(ChunkManifest.isManifest(CachePayload.encode(null, new byte[]{1, 2, 3}, Compression.NONE, null)));
+        assertFalse(ChunkManifest.isManifest(new byte[]{'R', 'C'}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodePayload() throws IOException {
+        ChunkManifest.decode(ByteBuffer.wrap(CachePayload.encode(null, new byte[]{1, 2, 3}, Compression.NONE, null)));
+    }
+}
@@ -0,0 +1,222 @@
+package com.powerreviews.jdbc.codec;
+
+import com.mockrunner.mock.jdbc.MockResultSet;
+import com.mockrunner.mock.jdbc.MockResultSetMetaData;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ResultSetCodecTest {
+
+    @Test
+    public void testRoundTripTypes() throws SQLException, IOException {
+        Timestamp timestamp = new Timestamp(1459468800123L);
+        timestamp.setNanos(123456789);
+
+        MockResultSet resultSet = new MockResultSet("codecRS");
+        resultSet.addColumn("intColumn", new Object[]{1, null, -3});
+        resultSet.addColumn("longColumn", new Object[]{Long.MAX_VALUE, 2L, null});
+        resultSet.addColumn("doubleColumn", new Object[]{1.5d, null, -2.25d});
+        resultSet.addColumn("decimalColumn", new Object[]{new BigDecimal("12.345"),
+                new BigDecimal("123456789012345678901234567890.12"), null});
+        resultSet.addColumn("stringColumn", new Object[]{"a", "b", "a"});
+        resultSet.addColumn("booleanColumn", new Object[]{true, false, null});
+        resultSet.addColumn("dateColumn", new Object[]{new Date(1459468800000L), null, new Date(1459382400000L)});
+        resultSet.addColumn("timeColumn", new Object[]{new Time(3600000L), new Time(7200000L), null});
+        resultSet.addColumn("timestampColumn", new Object[]{timestamp, null, new Timestamp(0L)});
+        resultSet.addColumn("bytesColumn", new Object[]{new byte[]{1, 2, 3}, null, new byte[0]});
+        resultSet.addColumn("objectColumn", new Object[]{"text", 42, null});
+
+        MockResultSetMetaData metaData = new MockResultSetMetaData();
+        metaData.setColumnCount(11);
+        int[] types = {Types.INTEGER, Types.BIGINT, Types.DOUBLE, Types.NUMERIC, Types.VARCHAR, Types.BOOLEAN,
+                Types.DATE, Types.TIME, Types.TIMESTAMP, Types.VARBINARY, Types.OTHER};
+        for(int column = 1; column <= types.length; column++) {
+            metaData.setColumnType(column, types[column - 1]);
+            metaData.setColumnLabel(column, "label" + column);
+            metaData.setColumnName(column, "name" + column);
+            metaData.setNullable(column, ResultSetMetaData.columnNullable);
+        }
+        metaData.setPrecision(4, 38);
+        metaData.setScale(4, 2);
+        resultSet.setResultSetMetaData(metaData);
+
+        ResultSet decoded = ResultSetDecoder.decode(ByteBuffer.wrap(ResultSetEncoder.encode(resultSet)));
+
+        ResultSetMetaData decodedMetaData = decoded.getMetaData();
+        assertEquals(11, decodedMetaData.getColumnCount());
+        assertEquals("label1", decodedMetaData.getColumnLabel(1));
+        assertEquals("name5", decodedMetaData.getColumnName(5));
+        assertEquals(Types.NUMERIC, decodedMetaData.getColumnType(4));
+        assertEquals(38, decodedMetaData.getPrecision(4));
+        assertEquals(2, decodedMetaData.getScale(4));
+
+        assertTrue(decoded.next());
+        assertEquals(1, decoded.getInt(1));
+        assertEquals(Long.MAX_VALUE, decoded.getLong(2));
+        assertEquals(1.5d, decoded.getDouble(3), 0);
+        assertEquals(new BigDecimal("12.345"), decoded.getBigDecimal(4));
+        assertEquals("a", decoded.getString(5));
+        assertTrue(decoded.getBoolean(6));
+        assertEquals(new Date(1459468800000L), decoded.getDate(7));
+        assertEquals(new Time(3600000L), decoded.getTime(8));
+        assertEquals(timestamp, decoded.getTimestamp(9));
+        assertArrayEquals(new byte[]{1, 2, 3}, decoded.getBytes(10));
+        assertEquals("text", decoded.getObject(11));
+
+        assertTrue(decoded.next());
+        assertNull(decoded.getObject(1));
+        assertEquals(2L, decoded.getLong(2));
+        assertNull(decoded.getObject(3));
+        assertEquals(new BigDecimal("123456789012345678901234567890.12"), decoded.getBigDecimal(4));
+        assertEquals("b", decoded.getString(5));
+        assertFalse(decoded.getBoolean(6));
+        assertNull(decoded.getDate(7));
+        assertEquals(new Time(7200000L), decoded.getTime(8));
+        assertNull(decoded.getTimestamp(9));
+        assertNull(decoded.getBytes(10));
+        assertEquals(42, decoded.getObject(11));
+
+        assertTrue(decoded.next());
+        assertEquals(-3, decoded.getInt(1));
+        assertNull(decoded.getObject(2));
+        assertEquals(-2.25d, decoded.getDouble(3), 0);
+        assertNull(decoded.getBigDecimal(4));
+        assertEquals("a", decoded.getString(5));
+        assertNull(decoded.getObject(6));
+        assertEquals(new Date(1459382400000L), decoded.getDate(7));
+        assertNull(decoded.getTime(8));
+        assertEquals(new Timestamp(0L), decoded.getTimestamp(9));
+        assertArrayEquals(new byte[0], decoded.getBytes(10));
+        assertNull(decoded.getObject(11));
+
+        assertFalse(decoded.next());
+    }
+
+    @Test
+    public void testDistinctStringsAreNotDictionaryEncoded() throws SQLException, IOException {
+        String[] values = new String[100];
+        String[] repeated = new String[100];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = "value" + i;
+            repeated[i] = "value" + (i % 3);
+        }
+        MockResultSet resultSet = new MockResultSet("stringRS");
+        resultSet.addColumn("distinct", values);
+        resultSet.addColumn("repeated", repeated);
+        MockResultSetMetaData metaData = new MockResultSetMetaData();
+        metaData.setColumnCount(2);
+        metaData.setColumnType(1, Types.VARCHAR);
+        metaData.setColumnType(2, Types.VARCHAR);
+        resultSet.setResultSetMetaData(metaData);
+
+        byte[] encoded = ResultSetEncoder.encode(resultSet);
+
+        ResultSet decoded = ResultSetDecoder.decode(ByteBuffer.wrap(encoded));
+        for(int i = 0; i < values.length; i++) {
+            assertTrue(decoded.next());
+            assertEquals(values[i], decoded.getString(1));
+            assertEquals(repeated[i], decoded.getString(2));
+        }
+        assertFalse(decoded.next());
+        // Distinct values are written inline while the repeated column only stores its 3 values once
+        // and then one byte per row
+        assertTrue(encoded.length < 100 * ("valueNN".length() + 1) + 100 + 3 * 7 + 100);
+    }
+
+    @Test
+    public void testSizeIsUpperBound() throws SQLException {
+        // Short values repeated twice are dictionary encoded, with 2 byte indexes past the first 128
+        // values making the dictionary larger than the values written inline
+        String[] values = new String[2000];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = Integer.toString(i % 1000, 36);
+        }
+        MockResultSet resultSet = new MockResultSet("sizeRS");
+        resultSet.addColumn("columnA", values);
+        MockResultSetMetaData metaData = new MockResultSetMetaData();
+        metaData.setColumnCount(1);
+        metaData.setColumnType(1, Types.VARCHAR);
+        resultSet.setResultSetMetaData(metaData);
+
+        ResultSetEncoder encoder = new ResultSetEncoder(resultSet.getMetaData());
+        while(resultSet.next()) {
+            encoder.addRow(resultSet);
+            if(resultSet.getRow() % 100 == 0) {
+                assertTrue(encoder.size() >= encoder.toByteArray().length);
+            }
+        }
+        assertTrue(encoder.size() >= encoder.toByteArray().length);
+    }
+
+    @Test
+    public void testEncodeSizeLimit() throws SQLException {
+        MockResultSet resultSet = new MockResultSet("limitRS");
+        String[] values = new String[1000];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = "record" + i;
+        }
+        resultSet.addColumn("columnA", values);
+
+        byte[] encoded = ResultSetEncoder.encode(resultSet);
+        resultSet.beforeFirst();
+        assertArrayEquals(encoded, ResultSetEncoder.encode(resultSet, encoded.length + 64));
+
+        // Encoding stops as soon as the limit is crossed
+        resultSet.beforeFirst();
+        assertNull(ResultSetEncoder.encode(resultSet, 1024));
+        assertTrue(resultSet.getRow() < 1000);
+
+        // The encoder keeps the rows read before a limit is crossed
+        resultSet.beforeFirst();
+        ResultSetEncoder encoder = new ResultSetEncoder(resultSet.getMetaData());
+        assertFalse(encoder.addRows(resultSet, Long.MAX_VALUE, 10));
+        assertEquals(11, encoder.getRowCount());
+        assertEquals(11, resultSet.getRow());
+    }
+
+    @Test
+    public void testDecodeDirectBuffer() throws SQLException, IOException {
+        MockResultSet resultSet = new MockResultSet("directRS");
+        resultSet.addColumn("columnA", new Integer[]{1, 2});
+        resultSet.addColumn("columnB", new String[]{"record1", "record2"});
+
+        byte[] encoded = ResultSetEncoder.encode(resultSet);
+        ByteBuffer direct = ByteBuffer.allocateDirect(encoded.length);
+        direct.put(encoded).flip();
+
+        ResultSet decoded = ResultSetDecoder.decode(direct);
+        assertTrue(decoded.next());
+        assertEquals("record1", decoded.getString(2));
+        assertTrue(decoded.next());
+        assertEquals("record2", decoded.getString(2));
+        assertFalse(decoded.next());
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeUnknownFormat() throws IOException {
+        // Values cached with Java serialization start with the serialization stream magic
+        ResultSetDecoder.decode(ByteBuffer.wrap(new byte[]{(byte)0xac, (byte)0xed, 0, 5}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testDecodeTruncated() throws SQLException, IOException {
+        MockResultSet resultSet = new MockResultSet("truncatedRS");
+        resultSet.addColumn("columnA", new Integer[]{1, 2});
+        byte[] encoded = ResultSetEncoder.encode(resultSet);
+
+        ResultSetDecoder.decode(ByteBuffer.wrap(Arrays.copyOf(encoded, encoded.length - 1)));
+    }
+}
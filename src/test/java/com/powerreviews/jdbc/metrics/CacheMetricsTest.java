@@ -0,0 +1,58 @@
+package com.powerreviews.jdbc.metrics;
+
+import org.junit.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CacheMetricsTest {
+
+    @Test
+    public void testMetricsAreRecordedByTheParent() {
+        CacheMetrics parent = new CacheMetrics(null);
+        CacheMetrics metrics = new CacheMetrics(parent);
+        metrics.hit();
+        metrics.hit();
+        metrics.hit();
+        metrics.miss();
+        metrics.rejectedForSize();
+        metrics.record(CacheMetrics.Stage.REDIS_GET, TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.payload(1024);
+
+        for(CacheMetrics recorded : new CacheMetrics[]{metrics, parent}) {
+            assertEquals(3, recorded.getHits());
+            assertEquals(1, recorded.getMisses());
+            assertEquals(0.75, recorded.getHitRatio(), 0);
+            assertEquals(1, recorded.getRejectedForSize());
+            assertEquals(1, recorded.getRedisGetLatency().getCount());
+            assertEquals(2000, recorded.getRedisGetLatency().getMax());
+            assertEquals(1024, recorded.getPayloadSize().getMax());
+        }
+        assertEquals(0, new CacheMetrics(parent).getHits());
+    }
+
+    @Test
+    public void testDriverMetricsAreRegistered() throws Exception {
+        CacheMetrics metrics = CacheMetrics.newDriverMetrics();
+        long globalHits = CacheMetrics.getGlobal().getHits();
+        metrics.hit();
+        assertEquals(globalHits + 1, CacheMetrics.getGlobal().getHits());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        assertNotNull(server.getAttribute(new ObjectName("com.powerreviews.jdbc:type=CacheMetrics,name=global"), "Hits"));
+        boolean registered = false;
+        for(ObjectName name : server.queryNames(new ObjectName("com.powerreviews.jdbc:type=CacheMetrics,name=driver-*"), null)) {
+            if((Long)server.getAttribute(name, "Hits") == 1) {
+                CompositeData latency = (CompositeData)server.getAttribute(name, "ExecuteLatency");
+                assertEquals(0L, latency.get("count"));
+                registered = true;
+            }
+        }
+        assertTrue(registered);
+    }
+}
@@ -0,0 +1,37 @@
+package com.powerreviews.jdbc.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for(long value : new long[]{0, 1, 7, 8, 9, 15, 16, 17, 1000, 123456789, Long.MAX_VALUE}) {
+            int bucket = Histogram.bucket(value);
+            assertTrue(value <= Histogram.highestValue(bucket));
+            assertTrue(bucket == 0 || value > Histogram.highestValue(bucket - 1));
+        }
+        // The relative error is below 12.5%
+        assertTrue(Histogram.highestValue(Histogram.bucket(1000)) < 1125);
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.getPercentile(99));
+        for(int i = 1; i <= 100; i++) {
+            histogram.record(i * 10);
+        }
+        assertEquals(500, histogram.getPercentile(50), 500 / 8);
+        assertEquals(990, histogram.getPercentile(99), 990 / 8);
+        assertEquals(1000, histogram.getPercentile(100));
+
+        Histogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals(505, snapshot.getMean(), 0);
+        assertEquals(1000, snapshot.getMax());
+        assertTrue(snapshot.getP50() <= snapshot.getP90() && snapshot.getP90() <= snapshot.getP99());
+    }
+}
@@ -0,0 +1,77 @@
+package com.powerreviews.jdbc.redis;
+
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.util.Pool;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class CacheWriterTest {
+
+    @SuppressWarnings("unchecked")
+    private static Pool<Jedis> mockPool(Pipeline pipelineMock) {
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.pipelined()).thenReturn(pipelineMock);
+        Pool<Jedis> jedisPoolMock = mock(Pool.class);
+        when(jedisPoolMock.getResource()).thenReturn(jedisClientMock);
+        return jedisPoolMock;
+    }
+
+    @Test
+    public void testBatchedWrites() throws InterruptedException {
+        Pipeline pipelineMock = mock(Pipeline.class);
+        CacheWriter cacheWriter = new CacheWriter("test", mockPool(pipelineMock), 10, 10);
+
+        // Hold the writer until all the other writes are queued, so that they are sent in the same batch
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(cacheWriter.write("first".getBytes(), null, () -> {
+            taken.countDown();
+            release.await();
+            return new byte[]{1};
+        }));
+        taken.await();
+        assertTrue(cacheWriter.write("second".getBytes(), 60, () -> new byte[]{2}));
+        assertTrue(cacheWriter.write("skipped".getBytes(), 60, () -> null));
+        assertTrue(cacheWriter.write("failed".getBytes(), 60, () -> {
+            throw new IllegalStateException();
+        }));
+        release.countDown();
+
+        assertTrue(cacheWriter.flush(5000));
+        verify(pipelineMock).set("first".getBytes(), new byte[]{1});
+        verify(pipelineMock).setex("second".getBytes(), 60, new byte[]{2});
+        verify(pipelineMock, never()).setex(eq("skipped".getBytes()), anyInt(), any(byte[].class));
+        verify(pipelineMock, never()).setex(eq("failed".getBytes()), anyInt(), any(byte[].class));
+        verify(pipelineMock, times(2)).sync();
+    }
+
+    @Test
+    public void testDropOnOverflow() throws InterruptedException {
+        Pipeline pipelineMock = mock(Pipeline.class);
+        CacheWriter cacheWriter = new CacheWriter("test", mockPool(pipelineMock), 1, 10);
+
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        cacheWriter.write("running".getBytes(), null, () -> {
+            taken.countDown();
+            release.await();
+            return new byte[]{1};
+        });
+        taken.await();
+
+        // The writer is busy: one write fits in the queue, the next one is dropped
+        assertTrue(cacheWriter.write("queued".getBytes(), null, () -> new byte[]{2}));
+        assertFalse(cacheWriter.write("dropped".getBytes(), null, () -> new byte[]{3}));
+        release.countDown();
+
+        assertTrue(cacheWriter.flush(5000));
+        verify(pipelineMock).set("running".getBytes(), new byte[]{1});
+        verify(pipelineMock).set("queued".getBytes(), new byte[]{2});
+        verify(pipelineMock, never()).set(eq("dropped".getBytes()), any(byte[].class));
+    }
+}
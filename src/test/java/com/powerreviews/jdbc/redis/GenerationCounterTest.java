@@ -0,0 +1,54 @@
+package com.powerreviews.jdbc.redis;
+
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.Pool;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class GenerationCounterTest {
+
+    @SuppressWarnings("unchecked")
+    private static Pool<Jedis> mockPool(Jedis jedisClientMock) {
+        Pool<Jedis> jedisPoolMock = mock(Pool.class);
+        when(jedisPoolMock.getResource()).thenReturn(jedisClientMock);
+        return jedisPoolMock;
+    }
+
+    @Test
+    public void testGenerationIsReadOncePerRefresh() {
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get("gen".getBytes())).thenReturn(null, "3".getBytes());
+        GenerationCounter generationCounter = new GenerationCounter(mockPool(jedisClientMock), 60000);
+
+        assertEquals(0, generationCounter.get("gen"));
+        assertEquals(0, generationCounter.get("gen"));
+        verify(jedisClientMock, times(1)).get("gen".getBytes());
+    }
+
+    @Test
+    public void testGenerationIsRefreshed() {
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get("gen".getBytes())).thenReturn("2".getBytes(), "3".getBytes())
+                .thenThrow(new JedisConnectionException("down"));
+        GenerationCounter generationCounter = new GenerationCounter(mockPool(jedisClientMock), 0);
+
+        assertEquals(2, generationCounter.get("gen"));
+        assertEquals(3, generationCounter.get("gen"));
+        // The last known generation is used while Redis cannot be reached
+        assertEquals(3, generationCounter.get("gen"));
+    }
+
+    @Test
+    public void testIncrement() {
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.incr("gen".getBytes())).thenReturn(5L);
+        GenerationCounter generationCounter = new GenerationCounter(mockPool(jedisClientMock), 60000);
+
+        assertEquals(5, generationCounter.increment("gen"));
+        assertEquals(5, generationCounter.get("gen"));
+        verify(jedisClientMock, never()).get(any(byte[].class));
+    }
+}
@@ -0,0 +1,79 @@
+package com.powerreviews.jdbc.redis;
+
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.Tuple;
+import redis.clients.util.Pool;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+public class HotQueriesTest {
+
+    @SuppressWarnings("unchecked")
+    private static Pool<Jedis> mockPool(Jedis jedisClientMock) {
+        Pool<Jedis> jedisPoolMock = mock(Pool.class);
+        when(jedisPoolMock.getResource()).thenReturn(jedisClientMock);
+        return jedisPoolMock;
+    }
+
+    @Test
+    public void testFlush() {
+        Jedis jedisClientMock = mock(Jedis.class);
+        Pipeline pipelineMock = mock(Pipeline.class);
+        when(jedisClientMock.pipelined()).thenReturn(pipelineMock);
+        HotQueries hotQueries = new HotQueries("flushTest", mockPool(jedisClientMock), 3600000);
+
+        hotQueries.record("rsc:", "f1", "select 1", 250);
+        hotQueries.record("rsc:", "f1", "select 1", -1);
+        hotQueries.record("rsc:", "f2", "select 2", -1);
+        hotQueries.flush();
+
+        verify(pipelineMock).zincrby("rsc:hot".getBytes(), 2, "f1".getBytes());
+        verify(pipelineMock).hset("rsc:hot:f1".getBytes(), "sql".getBytes(), "select 1".getBytes());
+        verify(pipelineMock).hset("rsc:hot:f1".getBytes(), "cost".getBytes(), "250".getBytes());
+        verify(pipelineMock).zincrby("rsc:hot".getBytes(), 1, "f2".getBytes());
+        verify(pipelineMock, never()).hset("rsc:hot:f2".getBytes(), "cost".getBytes(), "-1".getBytes());
+        verify(pipelineMock).zremrangeByRank("rsc:hot".getBytes(), 0, -HotQueries.MAX_QUERIES - 1);
+        verify(pipelineMock).sync();
+
+        // Nothing is sent until queries are run again
+        hotQueries.flush();
+        verify(pipelineMock, times(1)).sync();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testTopQueriesAreOrderedByValue() {
+        Jedis jedisClientMock = mock(Jedis.class);
+        Pipeline pipelineMock = mock(Pipeline.class);
+        when(jedisClientMock.pipelined()).thenReturn(pipelineMock);
+        when(jedisClientMock.zrevrangeWithScores("rsc:hot".getBytes(), 0, HotQueries.MAX_QUERIES - 1))
+                .thenReturn(new LinkedHashSet<>(Arrays.asList(new Tuple("frequent", 100d),
+                        new Tuple("slow", 10d), new Tuple("expired", 5d))));
+        Response<List<byte[]>> frequentMock = mock(Response.class);
+        when(frequentMock.get()).thenReturn(Arrays.asList("select frequent".getBytes(), "5".getBytes()));
+        when(pipelineMock.hmget("rsc:hot:frequent".getBytes(), "sql".getBytes(), "cost".getBytes())).thenReturn(frequentMock);
+        Response<List<byte[]>> slowMock = mock(Response.class);
+        when(slowMock.get()).thenReturn(Arrays.asList("select slow".getBytes(), "60000".getBytes()));
+        when(pipelineMock.hmget("rsc:hot:slow".getBytes(), "sql".getBytes(), "cost".getBytes())).thenReturn(slowMock);
+        Response<List<byte[]>> expiredMock = mock(Response.class);
+        when(expiredMock.get()).thenReturn(Arrays.asList(null, null));
+        when(pipelineMock.hmget("rsc:hot:expired".getBytes(), "sql".getBytes(), "cost".getBytes())).thenReturn(expiredMock);
+
+        List<HotQueries.HotQuery> top = HotQueries.top(jedisClientMock, "rsc:", 10);
+        assertEquals(2, top.size());
+        assertEquals("select slow", top.get(0).getSql());
+        assertEquals(600000, top.get(0).getValue());
+        assertEquals("select frequent", top.get(1).getSql());
+        assertEquals(100, top.get(1).getHits());
+
+        assertEquals(1, HotQueries.top(jedisClientMock, "rsc:", 1).size());
+    }
+}
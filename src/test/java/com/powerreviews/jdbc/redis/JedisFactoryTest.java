@@ -0,0 +1,36 @@
+package com.powerreviews.jdbc.redis;
+
+import org.junit.Test;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.util.Pool;
+
+import static org.junit.Assert.*;
+
+public class JedisFactoryTest {
+
+    @Test
+    public void testNoUrl() {
+        assertNull(new JedisFactory().getJedisPool(null, 1234, null, null, new JedisPoolConfig()));
+    }
+
+    @Test
+    public void testPoolIsShared() {
+        Pool<Jedis> pool1 = new JedisFactory().getJedisPool("sharedHost", 1234, 1, "secret", new JedisPoolConfig());
+        Pool<Jedis> pool2 = new JedisFactory().getJedisPool("sharedHost", 1234, 1, "secret", new JedisPoolConfig());
+
+        assertNotNull(pool1);
+        assertSame(pool1, pool2);
+    }
+
+    @Test
+    public void testPoolPerServerIndexAndPassword() {
+        JedisFactory jedisFactory = new JedisFactory();
+        Pool<Jedis> pool = jedisFactory.getJedisPool("otherHost", 1234, 1, "secret", new JedisPoolConfig());
+
+        assertNotSame(pool, jedisFactory.getJedisPool("otherHost2", 1234, 1, "secret", new JedisPoolConfig()));
+        assertNotSame(pool, jedisFactory.getJedisPool("otherHost", 4321, 1, "secret", new JedisPoolConfig()));
+        assertNotSame(pool, jedisFactory.getJedisPool("otherHost", 1234, 2, "secret", new JedisPoolConfig()));
+        assertNotSame(pool, jedisFactory.getJedisPool("otherHost", 1234, 1, "other", new JedisPoolConfig()));
+    }
+}
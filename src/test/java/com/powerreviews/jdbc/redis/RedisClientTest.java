@@ -2,21 +2,45 @@ package com.powerreviews.jdbc.redis;
 
 import static org.junit.Assert.*;
 import com.mockrunner.mock.jdbc.MockResultSet;
-import com.sun.rowset.CachedRowSetImpl;
+import com.powerreviews.jdbc.cache.SingleFlight;
+import com.powerreviews.jdbc.codec.CachePayload;
+import com.powerreviews.jdbc.codec.CachedResultSet;
+import com.powerreviews.jdbc.codec.ChunkManifest;
+import com.powerreviews.jdbc.codec.Compression;
+import com.powerreviews.jdbc.codec.ResultSetDecoder;
+import com.powerreviews.jdbc.codec.ResultSetEncoder;
+import com.powerreviews.jdbc.metrics.CacheMetrics;
+import com.powerreviews.jdbc.util.Murmur3;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
 import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.util.Pool;
 
-import javax.sql.rowset.CachedRowSet;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.mockito.Mockito.*;
 
@@ -29,12 +53,12 @@ public class RedisClientTest {
     public void testConstructorNoHost() {
         String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb";
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(null);
+        JedisFactory jedisFactoryMock = mockJedisFactory(null);
 
         new RedisClient(jdbcUrl, null, jedisFactoryMock);
 
-        verify(jedisFactoryMock).createJedisClient(null, null);
+        verify(jedisFactoryMock).getJedisPool(eq((String)null), eq((Integer)null), eq((Integer)null),
+                eq((String)null), any(GenericObjectPoolConfig.class));
     }
 
     @Test
@@ -43,14 +67,13 @@ public class RedisClientTest {
 
         Jedis jedisClientMock = mock(Jedis.class);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         new RedisClient(jdbcUrl, null, jedisFactoryMock);
 
-        verify(jedisFactoryMock).createJedisClient("redisHost", null);
-        verify(jedisClientMock, never()).auth(anyString());
-        verify(jedisClientMock).info();
+        verify(jedisFactoryMock).getJedisPool(eq("redisHost"), eq((Integer)null), eq((Integer)null),
+                eq((String)null), any(GenericObjectPoolConfig.class));
+        verifyZeroInteractions(jedisClientMock);
     }
 
     @Test
@@ -59,14 +82,13 @@ public class RedisClientTest {
 
         Jedis jedisClientMock = mock(Jedis.class);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         new RedisClient(jdbcUrl, null, jedisFactoryMock);
 
-        verify(jedisFactoryMock).createJedisClient("redisHost", 1234);
-        verify(jedisClientMock, never()).auth(anyString());
-        verify(jedisClientMock).info();
+        verify(jedisFactoryMock).getJedisPool(eq("redisHost"), eq(1234), eq((Integer)null),
+                eq((String)null), any(GenericObjectPoolConfig.class));
+        verifyZeroInteractions(jedisClientMock);
     }
 
     @Test
@@ -75,14 +97,13 @@ public class RedisClientTest {
 
         Jedis jedisClientMock = mock(Jedis.class);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         new RedisClient(jdbcUrl, null, jedisFactoryMock);
 
-        verify(jedisFactoryMock).createJedisClient("redisHost", 1234);
-        verify(jedisClientMock).auth("test");
-        verify(jedisClientMock).info();
+        verify(jedisFactoryMock).getJedisPool(eq("redisHost"), eq(1234), eq((Integer)null),
+                eq("test"), any(GenericObjectPoolConfig.class));
+        verifyZeroInteractions(jedisClientMock);
     }
 
     @Test
@@ -91,14 +112,13 @@ public class RedisClientTest {
 
         Jedis jedisClientMock = mock(Jedis.class);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         new RedisClient(jdbcUrl, null, jedisFactoryMock);
 
-        verify(jedisFactoryMock).createJedisClient("redisHost", null);
-        verify(jedisClientMock).select(3);
-        verify(jedisClientMock).info();
+        verify(jedisFactoryMock).getJedisPool(eq("redisHost"), eq((Integer)null), eq(3),
+                eq((String)null), any(GenericObjectPoolConfig.class));
+        verifyZeroInteractions(jedisClientMock);
     }
 
     @Test
@@ -107,8 +127,7 @@ public class RedisClientTest {
 
         Jedis jedisClientMock = mock(Jedis.class);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         Properties properties = new Properties();
         properties.put("redisUrl", "redisHostPROPERTIES");
@@ -116,9 +135,43 @@ public class RedisClientTest {
 
         new RedisClient(jdbcUrl, properties, jedisFactoryMock);
 
-        verify(jedisFactoryMock).createJedisClient("redisHostURL", 1234);
-        verify(jedisClientMock, never()).auth(anyString());
-        verify(jedisClientMock).info();
+        verify(jedisFactoryMock).getJedisPool(eq("redisHostURL"), eq(1234), eq((Integer)null),
+                eq((String)null), any(GenericObjectPoolConfig.class));
+        verifyZeroInteractions(jedisClientMock);
+    }
+
+    @Test
+    public void testConstructorPoolConfig() {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost" +
+                "&redisPoolMaxTotal=32&redisPoolMaxIdle=16&redisPoolMinIdle=4&redisPoolMaxWaitMillis=250";
+
+        JedisFactory jedisFactoryMock = mockJedisFactory(mock(Jedis.class));
+
+        new RedisClient(jdbcUrl, null, jedisFactoryMock);
+
+        ArgumentCaptor<GenericObjectPoolConfig> poolConfig = ArgumentCaptor.forClass(GenericObjectPoolConfig.class);
+        verify(jedisFactoryMock).getJedisPool(eq("redisHost"), eq((Integer)null), eq((Integer)null),
+                eq((String)null), poolConfig.capture());
+        assertEquals(32, poolConfig.getValue().getMaxTotal());
+        assertEquals(16, poolConfig.getValue().getMaxIdle());
+        assertEquals(4, poolConfig.getValue().getMinIdle());
+        assertEquals(250, poolConfig.getValue().getMaxWaitMillis());
+    }
+
+    @Test
+    public void testConstructorDefaultPoolConfig() {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost";
+
+        JedisFactory jedisFactoryMock = mockJedisFactory(mock(Jedis.class));
+
+        new RedisClient(jdbcUrl, null, jedisFactoryMock);
+
+        // The shared pool never makes a caller wait indefinitely for a Redis connection
+        ArgumentCaptor<GenericObjectPoolConfig> poolConfig = ArgumentCaptor.forClass(GenericObjectPoolConfig.class);
+        verify(jedisFactoryMock).getJedisPool(eq("redisHost"), eq((Integer)null), eq((Integer)null),
+                eq((String)null), poolConfig.capture());
+        assertEquals(64, poolConfig.getValue().getMaxTotal());
+        assertEquals(2000, poolConfig.getValue().getMaxWaitMillis());
     }
 
     @Test
@@ -129,8 +182,7 @@ public class RedisClientTest {
         Jedis jedisClientMock = mock(Jedis.class);
         when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
         resultSetMock.addColumn("columnA", new Integer[]{1, 2});
@@ -155,7 +207,7 @@ public class RedisClientTest {
     }
 
     @Test
-    public void testExecuteCachedQueryStatement() throws SQLException, IOException {
+    public void testExecuteCachedQueryStatement() throws SQLException {
         String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost";
         String sql = "select * from test";
 
@@ -163,17 +215,10 @@ public class RedisClientTest {
         resultSetMock.addColumn("columnA", new Integer[]{1, 2});
         resultSetMock.addColumn("columnB", new String[]{"record1", "record2"});
 
-        CachedRowSet cachedRowSet = new CachedRowSetImpl();
-        cachedRowSet.populate(resultSetMock);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput out = new ObjectOutputStream(bos);
-        out.writeObject(cachedRowSet);
-
         Jedis jedisClientMock = mock(Jedis.class);
-        when(jedisClientMock.get(sql.getBytes())).thenReturn(bos.toByteArray());
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(CachePayload.encode(null, ResultSetEncoder.encode(resultSetMock), Compression.NONE, null));
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         Statement statementMock = mock(Statement.class);
 
@@ -192,6 +237,297 @@ public class RedisClientTest {
         }
     }
 
+    @Test
+    public void testExecuteHashedKey() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&keyMode=hash&keyPrefix=test:";
+        String sql = "select * from test";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+        resultSetMock.addColumn("columnB", new String[]{"record1", "record2"});
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        redisClient.executeQuery(statementMock, sql);
+
+        ArgumentCaptor<byte[]> keyCaptor = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<byte[]> valueCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(jedisClientMock).set(keyCaptor.capture(), valueCaptor.capture());
+        String key = new String(keyCaptor.getValue());
+        assertTrue(key.matches("test:[0-9a-f]{32}"));
+        verify(jedisClientMock).get(keyCaptor.getValue());
+
+        // The same query is read back from the hashed key
+        when(jedisClientMock.get(keyCaptor.getValue())).thenReturn(valueCaptor.getValue());
+        ResultSet result = redisClient.executeQuery(statementMock, sql);
+        verify(statementMock, times(1)).executeQuery(sql);
+        assertTrue(result.next());
+        assertEquals("record1", result.getString(2));
+    }
+
+    @Test
+    public void testExecuteHashedKeyNamespace() {
+        JedisFactory jedisFactoryMock = mockJedisFactory(mock(Jedis.class));
+        String sql = "select * from test";
+
+        Properties properties = new Properties();
+        properties.setProperty("user", "user1");
+        String key = new RedisClient("jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=redisHost&keyMode=hash",
+                properties, jedisFactoryMock).getCacheKey(sql).getKey();
+
+        assertTrue(key.startsWith("rsc:"));
+        assertEquals(key, new RedisClient("jdbc:redshiftcached://otherHost:5439/db1?redisUrl=redisHost&keyMode=hash",
+                properties, jedisFactoryMock).getCacheKey(sql).getKey());
+        assertNotEquals(key, new RedisClient("jdbc:redshiftcached://redshiftHost:5439/db2?redisUrl=redisHost&keyMode=hash",
+                properties, jedisFactoryMock).getCacheKey(sql).getKey());
+        assertNotEquals(key, new RedisClient("jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=redisHost&keyMode=hash&user=user2",
+                properties, jedisFactoryMock).getCacheKey(sql).getKey());
+        assertNotEquals(key, new RedisClient("jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=redisHost&keyMode=hash&currentSchema=s1",
+                properties, jedisFactoryMock).getCacheKey(sql).getKey());
+        assertEquals(sql, new RedisClient("jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=redisHost",
+                properties, jedisFactoryMock).getCacheKey(sql).getKey());
+    }
+
+    @Test
+    public void testInvalidateGeneration() {
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.incr("rsc:generation".getBytes())).thenReturn(1L);
+        when(jedisClientMock.incr("rsc:generation:s1".getBytes())).thenReturn(1L);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+        String sql = "select * from test";
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=generationHost&generations=true&currentSchema=s1";
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        RedisClient hashedClient = new RedisClient(jdbcUrl + "&keyMode=hash", null, jedisFactoryMock);
+        assertEquals("rsc:g0.0:" + sql, redisClient.getCacheKey(sql).getKey());
+        String hashedKey = hashedClient.getCacheKey(sql).getKey();
+
+        assertEquals(1, redisClient.invalidate("s1"));
+        assertEquals("rsc:g0.1:" + sql, redisClient.getCacheKey(sql).getKey());
+        assertNotEquals(hashedKey, hashedClient.getCacheKey(sql).getKey());
+        assertEquals(1, redisClient.invalidate(null));
+        assertEquals("rsc:g1.1:" + sql, redisClient.getCacheKey(sql).getKey());
+
+        // Clients without generations keep their keys
+        assertEquals(sql, new RedisClient("jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=generationHost",
+                null, jedisFactoryMock).getCacheKey(sql).getKey());
+    }
+
+    @Test
+    public void testTableTags() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=tagHost&tableTags=true&redisExpiration=60";
+        String sql = "select * from sales s join public.Stores t on s.store_id = t.id";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        Pipeline pipelineMock = mockPipeline(jedisClientMock, sql.getBytes(), null);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        redisClient.executeQuery(statementMock, sql);
+
+        // The result is tagged before it is written
+        InOrder inOrder = inOrder(pipelineMock);
+        inOrder.verify(pipelineMock).sadd("rsc:tag:sales".getBytes(), sql.getBytes());
+        inOrder.verify(pipelineMock).expire("rsc:tag:sales".getBytes(), 60);
+        inOrder.verify(pipelineMock).sadd("rsc:tag:stores".getBytes(), sql.getBytes());
+        inOrder.verify(pipelineMock).setex(eq(sql.getBytes()), eq(60), any(byte[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testInvalidateTables() {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=tagHost&invalidateOnUpdate=true";
+        byte[] key1 = "select * from sales".getBytes();
+        byte[] key2 = "select * from sales join stores using (id)".getBytes();
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        Pipeline pipelineMock = mock(Pipeline.class);
+        when(jedisClientMock.pipelined()).thenReturn(pipelineMock);
+        Response<Set<byte[]>> salesMock = mock(Response.class);
+        when(salesMock.get()).thenReturn(new LinkedHashSet<>(Arrays.asList(key1, key2)));
+        when(pipelineMock.smembers("rsc:tag:sales".getBytes())).thenReturn(salesMock);
+        Response<Set<byte[]>> storesMock = mock(Response.class);
+        when(storesMock.get()).thenReturn(new LinkedHashSet<>(Collections.singletonList(key2)));
+        when(pipelineMock.smembers("rsc:tag:stores".getBytes())).thenReturn(storesMock);
+        // The second result is stored in chunks, deleted with their manifest
+        Response<byte[]> valueMock = mock(Response.class);
+        when(pipelineMock.get(key1)).thenReturn(valueMock);
+        Response<byte[]> manifestMock = mock(Response.class);
+        when(manifestMock.get()).thenReturn(new ChunkManifest(null, 0, 2, 10, "c1").encode());
+        when(pipelineMock.get(key2)).thenReturn(manifestMock);
+        Response<Long> deletedMock = mock(Response.class);
+        when(deletedMock.get()).thenReturn(2L);
+        when(pipelineMock.del(key1, key2)).thenReturn(deletedMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        assertEquals(2, redisClient.invalidateTables(Arrays.asList("public.Sales", "stores")));
+        verify(pipelineMock).srem("rsc:tag:sales".getBytes(), key1, key2);
+        verify(pipelineMock).srem("rsc:tag:stores".getBytes(), key2);
+        verify(pipelineMock).del((new String(key2) + ":c1:0").getBytes(), (new String(key2) + ":c1:1").getBytes());
+        verify(pipelineMock).del(key1, key2);
+
+        // Statements modifying the tables invalidate them, queries don't
+        redisClient.invalidateModifiedTables("select * from sales");
+        verify(pipelineMock, times(1)).smembers("rsc:tag:sales".getBytes());
+        redisClient.invalidateModifiedTables("delete from sales where id = 1");
+        verify(pipelineMock, times(2)).smembers("rsc:tag:sales".getBytes());
+    }
+
+    @Test
+    public void testWarm() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=warmHost&recordHotQueries=true";
+        String cachedSql = "select * from cached";
+        String sql = "select * from test";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        MockResultSet cachedResultSetMock = new MockResultSet("cachedRS");
+        cachedResultSetMock.addColumn("columnA", new Integer[]{3});
+        when(jedisClientMock.get(cachedSql.getBytes())).thenReturn(
+                CachePayload.encode(null, ResultSetEncoder.encode(cachedResultSetMock), Compression.NONE, null));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        assertFalse(redisClient.warm(statementMock, cachedSql));
+        assertTrue(redisClient.warm(statementMock, sql));
+        verify(statementMock, never()).executeQuery(cachedSql);
+        verify(jedisClientMock).set(eq(sql.getBytes()), any(byte[].class));
+    }
+
+    @Test
+    public void testWarmStaleResult() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=warmStaleHost&softExpirationSeconds=60";
+        String sql = "select * from test";
+
+        MockResultSet staleResultSetMock = new MockResultSet("myMockRS");
+        staleResultSetMock.addColumn("columnA", new Integer[]{1});
+        MockResultSet freshResultSetMock = new MockResultSet("myMockRS");
+        freshResultSetMock.addColumn("columnA", new Integer[]{2});
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(freshResultSetMock);
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(
+                CachePayload.encode(null, ResultSetEncoder.encode(staleResultSetMock), Compression.NONE, null, 1));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        // A stale result is not treated as cached, even if it could be refreshed in the background
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        redisClient.setConnectionFactory(() -> mock(Connection.class));
+        assertTrue(redisClient.warm(statementMock, sql));
+        verify(statementMock).executeQuery(sql);
+        verify(jedisClientMock).set(eq(sql.getBytes()), any(byte[].class));
+    }
+
+    @Test
+    public void testMetrics() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:5439/db1?redisUrl=metricsHost&redisObjectMaxSizeKB=1";
+        String sql = "select * from test";
+        String largeSql = "select * from large";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+        MockResultSet largeResultSetMock = new MockResultSet("largeRS");
+        String[] values = new String[1000];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = "value" + i;
+        }
+        largeResultSetMock.addColumn("columnA", values);
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+        when(statementMock.executeQuery(largeSql)).thenReturn(largeResultSetMock);
+
+        MockResultSet cachedResultSetMock = new MockResultSet("cachedRS");
+        cachedResultSetMock.addColumn("columnA", new Integer[]{1});
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(null,
+                CachePayload.encode(null, ResultSetEncoder.encode(cachedResultSetMock), Compression.NONE, null));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        CacheMetrics metrics = new CacheMetrics(null);
+        redisClient.setMetrics(metrics);
+        redisClient.executeQuery(statementMock, sql);
+        redisClient.executeQuery(statementMock, sql);
+        redisClient.executeQuery(statementMock, largeSql);
+
+        assertEquals(1, metrics.getHits());
+        assertEquals(2, metrics.getMisses());
+        assertEquals(1, metrics.getRejectedForSize());
+        assertEquals(3, metrics.getRedisGetLatency().getCount());
+        assertEquals(1, metrics.getDecodeLatency().getCount());
+        assertEquals(2, metrics.getExecuteLatency().getCount());
+        assertEquals(2, metrics.getEncodeLatency().getCount());
+        assertEquals(1, metrics.getRedisSetLatency().getCount());
+        // The large result stops being encoded before its payload is built
+        assertEquals(1, metrics.getPayloadSize().getCount());
+    }
+
+    @Test
+    public void testExecuteHashedKeyCollision() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&keyMode=hash";
+        String sql = "select * from test";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        // The value stored under the key belongs to another query
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        byte[] key = redisClient.getCacheKey(sql).getRedisKey();
+        when(jedisClientMock.get(key)).thenReturn(CachePayload.encode("select * from other",
+                ResultSetEncoder.encode(new MockResultSet("otherRS")), Compression.NONE, null));
+
+        redisClient.executeQuery(statementMock, sql);
+
+        verify(statementMock).executeQuery(sql);
+        verify(jedisClientMock).set(eq(key), any(byte[].class));
+    }
+
+    @Test
+    public void testExecuteNormalizedQueryStatement() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&normalizeSql=true";
+        String sql = "SELECT *\n  FROM test -- all the records";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        assertTrue(redisClient.isNormalizeSql());
+        redisClient.executeQuery(statementMock, sql);
+
+        // The original query is executed, the normalized query is the key
+        verify(statementMock).executeQuery(sql);
+        verify(jedisClientMock).get("select * from test".getBytes());
+        verify(jedisClientMock).set(eq("select * from test".getBytes()), any(byte[].class));
+    }
+
     @Test
     public void testExecuteNonCachedQueryStatementSizeLimit() throws SQLException {
         String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&redisObjectMaxSizeKB=10";
@@ -200,13 +536,12 @@ public class RedisClientTest {
         Jedis jedisClientMock = mock(Jedis.class);
         when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
-        Integer[] columnA = new Integer[100];
-        String[] columnB = new String[100];
-        for(int i = 0; i < 100; i++) {
+        Integer[] columnA = new Integer[1000];
+        String[] columnB = new String[1000];
+        for(int i = 0; i < 1000; i++) {
             columnA[i] = i + 1;
             columnB[i] = "record" + (i + 1);
         }
@@ -222,6 +557,94 @@ public class RedisClientTest {
         verify(statementMock).executeQuery(sql);
         verify(jedisClientMock, never()).set(any(byte[].class), any(byte[].class));
         assertNotNull(result);
+
+        // Encoding stopped once the result was too large, the other rows are read from the query result
+        int rowNumber = 1;
+        while(result.next()) {
+            assertEquals(rowNumber, result.getInt(1));
+            assertEquals("record" + rowNumber, result.getString(2));
+            rowNumber++;
+        }
+        assertEquals(1001, rowNumber);
+    }
+
+    @Test
+    public void testExecuteNonCachedQueryStatementRowLimit() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&maxCacheableRows=100";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
+
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        Integer[] columnA = new Integer[101];
+        for(int i = 0; i < columnA.length; i++) {
+            columnA[i] = i + 1;
+        }
+        resultSetMock.addColumn("columnA", columnA);
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        ResultSet result = redisClient.executeQuery(statementMock, sql);
+
+        verify(statementMock).executeQuery(sql);
+        verify(jedisClientMock, never()).set(any(byte[].class), any(byte[].class));
+        int rowNumber = 1;
+        while(result.next()) {
+            assertEquals(rowNumber, result.getInt(1));
+            rowNumber++;
+        }
+        assertEquals(102, rowNumber);
+    }
+
+    @Test
+    public void testExecuteNonCachedQueryStatementCompressedSizeLimit() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&redisObjectMaxSizeKB=10" +
+                "&compressionThresholdBytes=1024&compressionCodec=deflate";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
+
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        Integer[] columnA = new Integer[1000];
+        String[] columnB = new String[1000];
+        for(int i = 0; i < 1000; i++) {
+            columnA[i] = i + 1;
+            columnB[i] = "record" + (i + 1);
+        }
+        resultSetMock.addColumn("columnA", columnA);
+        resultSetMock.addColumn("columnB", columnB);
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        ResultSet result = redisClient.executeQuery(statementMock, sql);
+
+        // The same result set is too large to be cached uncompressed
+        ArgumentCaptor<byte[]> valueCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(jedisClientMock).set(eq(sql.getBytes()), valueCaptor.capture());
+        assertTrue(valueCaptor.getValue().length <= 10 * 1024);
+        assertNotNull(result);
+
+        // The cached value is transparently decompressed
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(valueCaptor.getValue());
+        ResultSet cachedResult = redisClient.executeQuery(statementMock, sql);
+        verify(statementMock, times(1)).executeQuery(sql);
+        int rowNumber = 1;
+        while(cachedResult.next()) {
+            assertEquals(rowNumber, cachedResult.getInt(1));
+            assertEquals("record" + rowNumber, cachedResult.getString(2));
+            rowNumber++;
+        }
+        assertEquals(1001, rowNumber);
     }
 
     @Test
@@ -230,15 +653,14 @@ public class RedisClientTest {
         String sql = "select * from test";
 
         Jedis jedisClientMock = mock(Jedis.class);
-        when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
+        Pipeline pipelineMock = mockPipeline(jedisClientMock, sql.getBytes(), null);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
-        Integer[] columnA = new Integer[100];
-        String[] columnB = new String[100];
-        for(int i = 0; i < 100; i++) {
+        Integer[] columnA = new Integer[1000];
+        String[] columnB = new String[1000];
+        for(int i = 0; i < 1000; i++) {
             columnA[i] = i + 1;
             columnB[i] = "record" + (i + 1);
         }
@@ -252,11 +674,511 @@ public class RedisClientTest {
         ResultSet result = redisClient.executeQuery(statementMock, sql);
 
         verify(statementMock).executeQuery(sql);
-        verify(jedisClientMock).set(any(byte[].class), any(byte[].class));
-        verify(jedisClientMock).expire(sql.getBytes(), 60);
+        verify(pipelineMock).expire(sql.getBytes(), 60);
+        // The object is written with its expiration
+        verify(jedisClientMock).setex(eq(sql.getBytes()), eq(60), any(byte[].class));
+        verify(jedisClientMock, never()).set(any(byte[].class), any(byte[].class));
+        verify(jedisClientMock, never()).expire(any(byte[].class), anyInt());
         assertNotNull(result);
     }
 
+    @Test
+    public void testExecuteCachedQueryWithExpiration() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&redisExpiration=60";
+        String sql = "select * from test";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        // The object is read and its expiration updated in a single round trip
+        Jedis jedisClientMock = mock(Jedis.class);
+        Pipeline pipelineMock = mockPipeline(jedisClientMock, sql.getBytes(),
+                CachePayload.encode(null, ResultSetEncoder.encode(resultSetMock), Compression.NONE, null));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        Statement statementMock = mock(Statement.class);
+
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        verify(statementMock, never()).executeQuery(anyString());
+        verify(pipelineMock).expire(sql.getBytes(), 60);
+        verify(pipelineMock).sync();
+        verify(jedisClientMock, never()).get(any(byte[].class));
+        verify(jedisClientMock, never()).expire(any(byte[].class), anyInt());
+        assertTrue(result.next());
+        assertEquals(1, result.getInt(1));
+    }
+
+    @Test
+    public void testExecuteNearCache() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=nearCacheHost&l1MaxBytes=1048576";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
+
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+        resultSetMock.addColumn("columnB", new String[]{"record1", "record2"});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        // The second query is served by the near cache shared by the two clients
+        verify(statementMock, times(1)).executeQuery(sql);
+        verify(jedisClientMock, times(1)).get(sql.getBytes());
+        verify(jedisClientMock, times(1)).set(any(byte[].class), any(byte[].class));
+        assertNotNull(result);
+
+        int rowNumber = 1;
+        while(result.next()) {
+            assertEquals(rowNumber, result.getInt(1));
+            assertEquals("record" + rowNumber, result.getString(2));
+            rowNumber++;
+        }
+        assertEquals(3, rowNumber);
+    }
+
+    @Test
+    public void testExecuteOffHeapStore() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=offHeapHost&offHeapCacheMB=1";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
+
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+        resultSetMock.addColumn("columnB", new String[]{"record1", "record2"});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        // The second query is served by the off-heap store shared by the two clients
+        verify(statementMock, times(1)).executeQuery(sql);
+        verify(jedisClientMock, times(1)).get(sql.getBytes());
+        verify(jedisClientMock, times(1)).set(any(byte[].class), any(byte[].class));
+        assertNotNull(result);
+
+        int rowNumber = 1;
+        while(result.next()) {
+            assertEquals(rowNumber, result.getInt(1));
+            assertEquals("record" + rowNumber, result.getString(2));
+            rowNumber++;
+        }
+        assertEquals(3, rowNumber);
+    }
+
+    @Test
+    public void testExecuteSingleFlight() throws Exception {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=singleFlightHost&singleFlight=true";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        // The first execution blocks until the second caller is waiting for it
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return resultSetMock;
+        });
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ResultSet> leader = executor.submit(() -> redisClient.executeQuery(statementMock, sql));
+            started.await();
+            Thread[] waiterThread = new Thread[1];
+            Future<ResultSet> waiter = executor.submit(() -> {
+                waiterThread[0] = Thread.currentThread();
+                return redisClient.executeQuery(statementMock, sql);
+            });
+            while(waiterThread[0] == null || waiterThread[0].getState() != Thread.State.TIMED_WAITING) {
+                Thread.sleep(5);
+            }
+            release.countDown();
+
+            ResultSet leaderResult = leader.get();
+            ResultSet waiterResult = waiter.get();
+
+            verify(statementMock, times(1)).executeQuery(sql);
+            assertNotSame(leaderResult, waiterResult);
+            for(ResultSet result : new ResultSet[]{leaderResult, waiterResult}) {
+                assertTrue(result.next());
+                assertEquals(1, result.getInt(1));
+                assertTrue(result.next());
+                assertEquals(2, result.getInt(1));
+                assertFalse(result.next());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExecuteFillLock() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&fillLock=true&fillLockTtlMs=5000";
+        String sql = "select * from test";
+        byte[] lockKey = (sql + ":lock").getBytes();
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.set(eq(lockKey), any(byte[].class), eq("NX".getBytes()), eq("PX".getBytes()), eq(5000L)))
+                .thenReturn("OK");
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        // The lock is released with the token it has been taken with
+        ArgumentCaptor<byte[]> tokenCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(jedisClientMock).set(eq(lockKey), tokenCaptor.capture(), eq("NX".getBytes()), eq("PX".getBytes()), eq(5000L));
+        verify(statementMock).executeQuery(sql);
+        verify(jedisClientMock).set(eq(sql.getBytes()), any(byte[].class));
+        ArgumentCaptor<List> keysCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List> argsCaptor = ArgumentCaptor.forClass(List.class);
+        verify(jedisClientMock).eval(any(byte[].class), keysCaptor.capture(), argsCaptor.capture());
+        assertArrayEquals(lockKey, (byte[])keysCaptor.getValue().get(0));
+        assertArrayEquals(tokenCaptor.getValue(), (byte[])argsCaptor.getValue().get(0));
+    }
+
+    @Test
+    public void testExecuteFillLockWaitsForResult() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&fillLock=true&fillLockPollMs=1";
+        String sql = "select * from test";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        // The lock is held by another client, that caches the result while this client is waiting
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.set(any(byte[].class), any(byte[].class), any(byte[].class), any(byte[].class), anyLong()))
+                .thenReturn(null);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(null, null,
+                CachePayload.encode(null, ResultSetEncoder.encode(resultSetMock), Compression.NONE, null));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        Statement statementMock = mock(Statement.class);
+
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        verify(statementMock, never()).executeQuery(anyString());
+        verify(jedisClientMock, times(3)).get(sql.getBytes());
+        verify(jedisClientMock, never()).eval(any(byte[].class), anyListOf(byte[].class), anyListOf(byte[].class));
+        assertTrue(result.next());
+        assertEquals(1, result.getInt(1));
+    }
+
+    @Test
+    public void testExecuteFillLockWaitTimeout() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&fillLock=true" +
+                "&fillLockWaitMs=20&fillLockPollMs=5";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.set(any(byte[].class), any(byte[].class), any(byte[].class), any(byte[].class), anyLong()))
+                .thenReturn(null);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        // The result has not been cached in time by the lock holder
+        verify(statementMock).executeQuery(sql);
+        verify(jedisClientMock).set(eq(sql.getBytes()), any(byte[].class));
+    }
+
+    @Test
+    public void testExecuteStaleResult() throws SQLException, IOException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=staleHost&softExpirationSeconds=60";
+        String sql = "select * from test";
+
+        MockResultSet staleResultSetMock = new MockResultSet("myMockRS");
+        staleResultSetMock.addColumn("columnA", new Integer[]{1});
+
+        // The cached result became stale at the beginning of the epoch
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(
+                CachePayload.encode(null, ResultSetEncoder.encode(staleResultSetMock), Compression.NONE, null, 1));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet freshResultSetMock = new MockResultSet("myMockRS");
+        freshResultSetMock.addColumn("columnA", new Integer[]{2});
+
+        Statement refreshStatementMock = mock(Statement.class);
+        when(refreshStatementMock.executeQuery(sql)).thenReturn(freshResultSetMock);
+        Connection refreshConnectionMock = mock(Connection.class);
+        when(refreshConnectionMock.createStatement()).thenReturn(refreshStatementMock);
+
+        Statement statementMock = mock(Statement.class);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        redisClient.setConnectionFactory(() -> refreshConnectionMock);
+        ResultSet result = redisClient.executeQuery(statementMock, sql);
+
+        // The stale result is returned while it is refreshed on another connection
+        assertTrue(result.next());
+        assertEquals(1, result.getInt(1));
+        verify(statementMock, never()).executeQuery(anyString());
+
+        ArgumentCaptor<byte[]> valueCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(jedisClientMock, timeout(5000)).set(eq(sql.getBytes()), valueCaptor.capture());
+        verify(refreshConnectionMock, timeout(5000)).close();
+        CachePayload refreshed = CachePayload.decode(ByteBuffer.wrap(valueCaptor.getValue()));
+        assertFalse(refreshed.isStale(System.currentTimeMillis()));
+        ResultSet refreshedResult = ResultSetDecoder.decode(refreshed.getBody());
+        assertTrue(refreshedResult.next());
+        assertEquals(2, refreshedResult.getInt(1));
+    }
+
+    @Test
+    public void testExecuteStaleResultWithoutConnectionFactory() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=staleHost&softExpirationSeconds=60";
+        String sql = "select * from test";
+
+        MockResultSet staleResultSetMock = new MockResultSet("myMockRS");
+        staleResultSetMock.addColumn("columnA", new Integer[]{1});
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(
+                CachePayload.encode(null, ResultSetEncoder.encode(staleResultSetMock), Compression.NONE, null, 1));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet freshResultSetMock = new MockResultSet("myMockRS");
+        freshResultSetMock.addColumn("columnA", new Integer[]{2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(freshResultSetMock);
+
+        // The stale result cannot be refreshed in the background, the query is run
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        assertTrue(result.next());
+        assertEquals(2, result.getInt(1));
+        verify(statementMock).executeQuery(sql);
+    }
+
+    @Test
+    public void testExecuteWriteBehind() throws SQLException, IOException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=writeBehindHost&writeBehind=true";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        Pipeline pipelineMock = mock(Pipeline.class);
+        when(jedisClientMock.pipelined()).thenReturn(pipelineMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        ResultSet result = redisClient.executeQuery(statementMock, sql);
+
+        // The result is returned before it is cached, and reading it does not affect the cached copy
+        assertTrue(result.next());
+        assertEquals(1, result.getInt(1));
+        verify(jedisClientMock, never()).set(any(byte[].class), any(byte[].class));
+
+        // Closing the client waits for the pending writes
+        redisClient.close();
+        ArgumentCaptor<byte[]> valueCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(pipelineMock).set(eq(sql.getBytes()), valueCaptor.capture());
+        ResultSet cachedResult = ResultSetDecoder.decode(CachePayload.decode(ByteBuffer.wrap(valueCaptor.getValue())).getBody());
+        assertTrue(cachedResult.next());
+        assertEquals(1, cachedResult.getInt(1));
+        assertTrue(cachedResult.next());
+        assertEquals(2, cachedResult.getInt(1));
+        assertFalse(cachedResult.next());
+    }
+
+    @Test
+    public void testExecuteStreamedResult() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&streamResults=true";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+
+        // The rows are read from the query result, which is only cached once it has been read to the end
+        assertFalse(result instanceof CachedResultSet);
+        assertTrue(result.next());
+        assertEquals(1, result.getInt(1));
+        assertTrue(result.next());
+        assertEquals(2, result.getInt(1));
+        verify(jedisClientMock, never()).set(any(byte[].class), any(byte[].class));
+        assertFalse(result.next());
+        verify(jedisClientMock).set(eq(sql.getBytes()), any(byte[].class));
+    }
+
+    @Test
+    public void testExecuteStreamedResultNotReadToEnd() throws SQLException, InterruptedException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=streamHost&streamResults=true" +
+                "&singleFlight=true&singleFlightTimeoutMs=5000&fillLock=true";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.set(any(byte[].class), any(byte[].class), any(byte[].class), any(byte[].class), anyLong()))
+                .thenReturn("OK");
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+        assertTrue(result.next());
+
+        // The fill lock is held while the result is being read, the flight landed once the result was returned
+        verify(jedisClientMock, never()).eval(any(byte[].class), anyListOf(byte[].class), anyListOf(byte[].class));
+        CompletableFuture<byte[]> flight = new CompletableFuture<>();
+        assertNull(SingleFlight.getSingleFlight("streamHost:null/null").join(sql, flight));
+        SingleFlight.getSingleFlight("streamHost:null/null").land(sql, flight);
+
+        result.close();
+        verify(jedisClientMock, never()).set(eq(sql.getBytes()), any(byte[].class));
+        verify(jedisClientMock).eval(any(byte[].class), anyListOf(byte[].class), anyListOf(byte[].class));
+    }
+
+    @Test
+    public void testExecuteStreamedResultAbandoned() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=abandonedHost&streamResults=true" +
+                "&singleFlight=true&singleFlightTimeoutMs=5000&fillLock=true";
+        String sql = "select * from test";
+
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.set(any(byte[].class), any(byte[].class), any(byte[].class), any(byte[].class), anyLong()))
+                .thenReturn("OK");
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet firstResultSetMock = new MockResultSet("myMockRS");
+        firstResultSetMock.addColumn("columnA", new Integer[]{1, 2});
+        MockResultSet secondResultSetMock = new MockResultSet("myMockRS");
+        secondResultSetMock.addColumn("columnA", new Integer[]{1, 2});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(firstResultSetMock, secondResultSetMock);
+
+        // The first result is read partially and never closed
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        ResultSet abandoned = redisClient.executeQuery(statementMock, sql);
+        assertTrue(abandoned.next());
+
+        // The next execution of the same query does not wait for the abandoned one
+        long start = System.nanoTime();
+        ResultSet result = redisClient.executeQuery(statementMock, sql);
+        assertTrue(System.nanoTime() - start < 5000L * 1000 * 1000);
+        verify(statementMock, times(2)).executeQuery(sql);
+        assertTrue(result.next());
+        assertEquals(1, result.getInt(1));
+        assertTrue(result.next());
+        assertFalse(result.next());
+
+        // Closing the client releases the fill lock of the abandoned result, without caching it
+        verify(jedisClientMock, times(1)).eval(any(byte[].class), anyListOf(byte[].class), anyListOf(byte[].class));
+        redisClient.close();
+        verify(jedisClientMock, times(2)).eval(any(byte[].class), anyListOf(byte[].class), anyListOf(byte[].class));
+        verify(jedisClientMock, times(1)).set(eq(sql.getBytes()), any(byte[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testExecuteChunkedResult() throws SQLException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&chunkRows=2";
+        String sql = "select * from test";
+
+        // Redis content, shared by the client writing the result and the client reading it
+        Map<String, byte[]> redis = new HashMap<>();
+        Pipeline pipelineMock = mock(Pipeline.class);
+        when(pipelineMock.set(any(byte[].class), any(byte[].class))).thenAnswer(invocation -> {
+            redis.put(new String((byte[])invocation.getArguments()[0]), (byte[])invocation.getArguments()[1]);
+            return null;
+        });
+        when(pipelineMock.get(any(byte[].class))).thenAnswer(invocation -> {
+            Response<byte[]> responseMock = mock(Response.class);
+            when(responseMock.get()).thenReturn(redis.get(new String((byte[])invocation.getArguments()[0])));
+            return responseMock;
+        });
+        when(pipelineMock.exists(any(byte[].class))).thenAnswer(invocation -> {
+            Response<Boolean> responseMock = mock(Response.class);
+            when(responseMock.get()).thenReturn(redis.containsKey(new String((byte[])invocation.getArguments()[0])));
+            return responseMock;
+        });
+        Jedis jedisClientMock = mock(Jedis.class);
+        when(jedisClientMock.pipelined()).thenReturn(pipelineMock);
+        when(jedisClientMock.get(any(byte[].class))).thenAnswer(invocation -> redis.get(new String((byte[])invocation.getArguments()[0])));
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1, 2, 3, 4, 5});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
+
+        ResultSet result = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+        assertEquals(5, ((CachedResultSet)result).size());
+
+        // The result is stored in 3 chunks, written before the manifest in a single pipeline
+        assertEquals(4, redis.size());
+        ArgumentCaptor<byte[]> keyCaptor = ArgumentCaptor.forClass(byte[].class);
+        InOrder inOrder = inOrder(pipelineMock);
+        inOrder.verify(pipelineMock, times(4)).set(keyCaptor.capture(), any(byte[].class));
+        inOrder.verify(pipelineMock).sync();
+        assertArrayEquals(sql.getBytes(), keyCaptor.getAllValues().get(3));
+        verify(jedisClientMock, never()).set(any(byte[].class), any(byte[].class));
+
+        ResultSet cachedResult = new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+        verify(statementMock, times(1)).executeQuery(sql);
+        for(int row = 1; row <= 5; row++) {
+            assertTrue(cachedResult.next());
+            assertEquals(row, cachedResult.getInt(1));
+        }
+        assertFalse(cachedResult.next());
+
+        // A missing chunk makes the whole result a miss
+        redis.keySet().removeIf(key -> key.endsWith(":2"));
+        new RedisClient(jdbcUrl, null, jedisFactoryMock).executeQuery(statementMock, sql);
+        verify(statementMock, times(2)).executeQuery(sql);
+    }
+
     @Test
     public void testExecuteValidationQuery() throws SQLException {
         String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost&poolValidationQuery=SELECT%201";
@@ -265,8 +1187,7 @@ public class RedisClientTest {
         Jedis jedisClientMock = mock(Jedis.class);
         when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
         resultSetMock.addColumn("columnA", new Integer[]{1});
@@ -290,8 +1211,7 @@ public class RedisClientTest {
         String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost";
         String sql = "select * from test";
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(null);
+        JedisFactory jedisFactoryMock = mockJedisFactory(null);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
         resultSetMock.addColumn("columnA", new Integer[]{1, 2});
@@ -323,8 +1243,7 @@ public class RedisClientTest {
 
         when(jedisClientMock.get(sql.getBytes())).thenThrow(new JedisConnectionException(""));
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
         resultSetMock.addColumn("columnA", new Integer[]{1, 2});
@@ -357,8 +1276,7 @@ public class RedisClientTest {
         when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
         when(jedisClientMock.set(any(byte[].class), any(byte[].class))).thenThrow(new JedisConnectionException(""));
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
         resultSetMock.addColumn("columnA", new Integer[]{1, 2});
@@ -390,8 +1308,7 @@ public class RedisClientTest {
         Jedis jedisClientMock = mock(Jedis.class);
         when(jedisClientMock.get(sql.getBytes())).thenReturn(null);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         MockResultSet resultSetMock = new MockResultSet("myMockRS");
         resultSetMock.addColumn("columnA", new Integer[]{1, 2});
@@ -416,7 +1333,7 @@ public class RedisClientTest {
     }
 
     @Test
-    public void testExecuteCachedPreparedStatement() throws SQLException, IOException {
+    public void testExecuteCachedPreparedStatement() throws SQLException {
         String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost";
         String sql = "select * from test";
 
@@ -424,17 +1341,10 @@ public class RedisClientTest {
         resultSetMock.addColumn("columnA", new Integer[]{1, 2});
         resultSetMock.addColumn("columnB", new String[]{"record1", "record2"});
 
-        CachedRowSet cachedRowSet = new CachedRowSetImpl();
-        cachedRowSet.populate(resultSetMock);
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput out = new ObjectOutputStream(bos);
-        out.writeObject(cachedRowSet);
-
         Jedis jedisClientMock = mock(Jedis.class);
-        when(jedisClientMock.get(sql.getBytes())).thenReturn(bos.toByteArray());
+        when(jedisClientMock.get(sql.getBytes())).thenReturn(CachePayload.encode(null, ResultSetEncoder.encode(resultSetMock), Compression.NONE, null));
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
         PreparedStatement statementMock = mock(PreparedStatement.class);
 
@@ -454,34 +1364,127 @@ public class RedisClientTest {
     }
 
     @Test
-    public void testCloseConnected() {
-        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost";
+    public void testExecuteHashedPreparedQuery() throws SQLException, IOException {
+        String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=preparedHost&keyMode=hash&softExpirationSeconds=60";
+        String sql = "select * from test where id = ";
+
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1});
 
         Jedis jedisClientMock = mock(Jedis.class);
-        when(jedisClientMock.isConnected()).thenReturn(true);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        PreparedStatement statementMock = mock(PreparedStatement.class);
+        when(statementMock.executeQuery()).thenReturn(resultSetMock);
 
-        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
-        redisClient.close();
+        // A statement whose parameter value can be changed, counting the copies of its value
+        int[] value = {1};
+        int[] replays = {0};
+        PreparedQuery query = new PreparedQuery() {
+            @Override
+            public void appendTo(StringBuilder text) {
+                text.append(sql).append(value[0]);
+            }
+
+            @Override
+            public void hashTo(Murmur3 murmur3) {
+                murmur3.putString(sql).putByte(0).putInt(value[0]);
+            }
+
+            @Override
+            public ReplayableQuery replay() {
+                replays[0]++;
+                return ReplayableQuery.statement(sql + value[0]);
+            }
+        };
+
+        Statement refreshStatementMock = mock(Statement.class);
+        when(refreshStatementMock.executeQuery(anyString())).thenReturn(new MockResultSet("refreshedRS"));
+        Connection refreshConnectionMock = mock(Connection.class);
+        when(refreshConnectionMock.createStatement()).thenReturn(refreshStatementMock);
 
-        verify(jedisClientMock).close();
+        RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        redisClient.setConnectionFactory(() -> refreshConnectionMock);
+        redisClient.executeQuery(statementMock, query);
+
+        // The result is cached under the hash of the statement and its value, with the query written out
+        ArgumentCaptor<byte[]> keyCaptor = ArgumentCaptor.forClass(byte[].class);
+        ArgumentCaptor<byte[]> valueCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(jedisClientMock).set(keyCaptor.capture(), valueCaptor.capture());
+        assertTrue(new String(keyCaptor.getValue()).matches(".*[0-9a-f]{32}"));
+        assertEquals(sql + 1, CachePayload.decode(ByteBuffer.wrap(valueCaptor.getValue())).getSql());
+
+        // The result is found again, and the value is only copied to refresh a stale result
+        when(jedisClientMock.get(keyCaptor.getValue())).thenReturn(valueCaptor.getValue());
+        assertTrue(redisClient.executeQuery(statementMock, query).next());
+        verify(statementMock, times(1)).executeQuery();
+        assertEquals(0, replays[0]);
+
+        MockResultSet staleResultSetMock = new MockResultSet("staleRS");
+        staleResultSetMock.addColumn("columnA", new Integer[]{1});
+        when(jedisClientMock.get(keyCaptor.getValue())).thenReturn(
+                CachePayload.encode(sql + 1, ResultSetEncoder.encode(staleResultSetMock), Compression.NONE, null, 1));
+        redisClient.executeQuery(statementMock, query);
+        verify(statementMock, times(1)).executeQuery();
+        assertEquals(1, replays[0]);
+        verify(refreshStatementMock, timeout(5000)).executeQuery(sql + 1);
+
+        // Another value has another key, and a value cached under it for another query is ignored
+        value[0] = 2;
+        byte[] otherKey = redisClient.getCacheKey(query).getRedisKey();
+        assertFalse(Arrays.equals(keyCaptor.getValue(), otherKey));
+        when(jedisClientMock.get(otherKey)).thenReturn(valueCaptor.getValue());
+        redisClient.executeQuery(statementMock, query);
+        verify(statementMock, times(2)).executeQuery();
     }
 
     @Test
-    public void testCloseNotConnected() {
+    public void testCloseKeepsSharedPoolOpen() throws SQLException {
         String jdbcUrl = "jdbc:redshiftcached://redshiftHost:redshiftPort/redshiftDb?redisUrl=redisHost";
+        String sql = "select * from test";
 
         Jedis jedisClientMock = mock(Jedis.class);
-        when(jedisClientMock.isConnected()).thenReturn(false);
+        JedisFactory jedisFactoryMock = mockJedisFactory(jedisClientMock);
+        Pool<Jedis> jedisPoolMock = jedisFactoryMock.getJedisPool("redisHost", null, null, null, null);
 
-        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
-        when(jedisFactoryMock.createJedisClient(anyString(), anyInt())).thenReturn(jedisClientMock);
+        MockResultSet resultSetMock = new MockResultSet("myMockRS");
+        resultSetMock.addColumn("columnA", new Integer[]{1});
+
+        Statement statementMock = mock(Statement.class);
+        when(statementMock.executeQuery(sql)).thenReturn(resultSetMock);
 
         RedisClient redisClient = new RedisClient(jdbcUrl, null, jedisFactoryMock);
+        redisClient.executeQuery(statementMock, sql);
         redisClient.close();
 
-        verify(jedisClientMock, never()).close();
+        // Every borrowed connection has been returned and the pool is still open
+        verify(jedisPoolMock, times(2)).getResource();
+        verify(jedisClientMock, times(2)).close();
+        verify(jedisPoolMock, never()).close();
+        verify(jedisPoolMock, never()).destroy();
+    }
+
+    @SuppressWarnings("unchecked")
+    private JedisFactory mockJedisFactory(Jedis jedisClient) {
+        Pool<Jedis> jedisPoolMock = null;
+        if(jedisClient != null) {
+            jedisPoolMock = mock(Pool.class);
+            when(jedisPoolMock.getResource()).thenReturn(jedisClient);
+        }
+
+        JedisFactory jedisFactoryMock = mock(JedisFactory.class);
+        when(jedisFactoryMock.getJedisPool(anyString(), anyInt(), anyInt(), anyString(), any(GenericObjectPoolConfig.class)))
+                .thenReturn(jedisPoolMock);
+        return jedisFactoryMock;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Pipeline mockPipeline(Jedis jedisClient, byte[] key, byte[] value) {
+        Response<byte[]> responseMock = mock(Response.class);
+        when(responseMock.get()).thenReturn(value);
+        Pipeline pipelineMock = mock(Pipeline.class);
+        when(pipelineMock.get(key)).thenReturn(responseMock);
+        when(jedisClient.pipelined()).thenReturn(pipelineMock);
+        return pipelineMock;
     }
 }
@@ -0,0 +1,43 @@
+package com.powerreviews.jdbc.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+public class Murmur3Test {
+
+    @Test
+    public void testKnownHashes() {
+        assertEquals("00000000000000000000000000000000", new Murmur3().hashHex());
+        assertEquals("6c1b07bc7bbc4be347939ac4a93c437a",
+                new Murmur3().putString("The quick brown fox jumps over the lazy dog").hashHex());
+        assertEquals("d7d50bfe93cf0d748f5c70ecf46c54c4",
+                new Murmur3(42).putString("The quick brown fox jumps over the lazy dog").hashHex());
+        assertEquals("75c0a58587ae24ebca283131b368fb73", new Murmur3().putString("0123456789abcdef0").hashHex());
+    }
+
+    @Test
+    public void testStreaming() {
+        String value = "select * from reviews where product = 'caf\u00e9 \u20ac \ud83d\ude00' and id > 1000";
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        String expected = new Murmur3().putBytes(bytes).hashHex();
+
+        assertEquals(expected, new Murmur3().putString(value).hashHex());
+        for(int split = 0; split <= bytes.length; split++) {
+            Murmur3 hasher = new Murmur3();
+            hasher.putBytes(bytes, 0, split).putBytes(bytes, split, bytes.length - split);
+            assertEquals(expected, hasher.hashHex());
+        }
+    }
+
+    @Test
+    public void testReset() {
+        Murmur3 hasher = new Murmur3();
+        String hash = hasher.putString("select 1").hashHex();
+
+        assertEquals(hash, hasher.reset().putString("select 1").hashHex());
+        assertNotEquals(hash, hasher.reset().putString("select 2").hashHex());
+    }
+}
@@ -0,0 +1,54 @@
+package com.powerreviews.jdbc.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SqlNormalizerTest {
+
+    @Test
+    public void testWhitespaceAndKeywords() {
+        assertEquals("select a, B from Reviews where x = 1 order by a",
+                SqlNormalizer.normalize("  SELECT a,\tB\n  FROM   Reviews\r\n WHERE x = 1\nOrder By a  "));
+    }
+
+    @Test
+    public void testComments() {
+        assertEquals("select a from t where b = 2",
+                SqlNormalizer.normalize("select a -- the a column\nfrom t /* the /* nested */ table */ where b = 2 --"));
+        assertEquals("select a from t", SqlNormalizer.normalize("select a/* comment */from t"));
+    }
+
+    @Test
+    public void testLiteralsAreKept() {
+        assertEquals("select 'SELECT  --x /* y */' from \"My  Table\" where a = 'it''s'",
+                SqlNormalizer.normalize("SELECT 'SELECT  --x /* y */'  FROM \"My  Table\" WHERE a = 'it''s'"));
+        assertEquals("select E'It\\'s  FROM' from t",
+                SqlNormalizer.normalize("SELECT E'It\\'s  FROM' FROM t"));
+        assertEquals("select $tag$ SELECT  'x' $tag$, $$ A  B $$ from t",
+                SqlNormalizer.normalize("SELECT $tag$ SELECT  'x' $tag$, $$ A  B $$ FROM t"));
+    }
+
+    @Test
+    public void testBackslashInLiteral() {
+        // The -- is inside the literal when backslashes escape quotes, outside of it otherwise
+        String sql1 = "select 'a\\' -- ' as x, secret from t1";
+        String sql2 = "select 'a\\' -- ' as x, other from t2";
+        assertEquals(sql1, SqlNormalizer.normalize(sql1));
+        assertEquals(sql2, SqlNormalizer.normalize(sql2));
+        assertEquals("select E'a\\' -- ' as x from t", SqlNormalizer.normalize("SELECT E'a\\' -- ' AS x  FROM t"));
+    }
+
+    @Test
+    public void testPlaceholdersAreKept() {
+        assertEquals("select a from t where b = ? and c in (?, ?)",
+                SqlNormalizer.normalize("SELECT a FROM t\nWHERE b = ? AND c IN (?, ?)"));
+    }
+
+    @Test
+    public void testMemoization() {
+        String sql = "SELECT   memoized FROM t";
+        assertSame(SqlNormalizer.normalize(sql), SqlNormalizer.normalize(new String(sql)));
+        assertNull(SqlNormalizer.normalize(null));
+    }
+}
@@ -0,0 +1,57 @@
+package com.powerreviews.jdbc.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class SqlTablesTest {
+
+    private static Set<String> tables(String... names) {
+        return new LinkedHashSet<>(Arrays.asList(names));
+    }
+
+    @Test
+    public void testReferencedTables() {
+        assertEquals(tables("reviews"), SqlTables.referencedTables("SELECT * FROM Reviews WHERE id = 1"));
+        assertEquals(tables("reviews", "products", "merchants"),
+                SqlTables.referencedTables("select r.id from public.reviews r, products AS p " +
+                        "left join \"merchants\" m on m.id = p.merchant_id where r.product_id = p.id"));
+        assertEquals(tables("My Table"), SqlTables.referencedTables("select a from \"My Table\" t"));
+        assertEquals(tables("orders", "items"),
+                SqlTables.referencedTables("select * from (select * from orders) o join items using (id)"));
+    }
+
+    @Test
+    public void testNotTables() {
+        assertEquals(tables("events"), SqlTables.referencedTables(
+                "select extract(year from created), trim(both 'x' from name), 'from literal' " +
+                        "from events -- from comment\n/* join other */"));
+        assertEquals(Collections.emptySet(), SqlTables.referencedTables("select 1"));
+        assertEquals(Collections.emptySet(), SqlTables.referencedTables("select * from generate_series(1, 10)"));
+        assertEquals(Collections.emptySet(), SqlTables.referencedTables(null));
+    }
+
+    @Test
+    public void testModifiedTables() {
+        assertEquals(tables("reviews"), SqlTables.modifiedTables("INSERT INTO public.reviews SELECT * FROM staging"));
+        assertEquals(tables("reviews", "products", "orders", "items"), SqlTables.modifiedTables(
+                "update reviews set a = 1; delete from products where id = 2; truncate table orders; copy items from 's3://x'"));
+        assertEquals(tables("a", "b"), SqlTables.modifiedTables("drop table if exists a, b"));
+        assertEquals(tables("a"), SqlTables.modifiedTables("alter table a append from staging"));
+        assertEquals(Collections.emptySet(), SqlTables.modifiedTables("select * from reviews"));
+        assertEquals(Collections.emptySet(), SqlTables.modifiedTables("create table a (id int)"));
+        assertEquals(tables("t"), SqlTables.modifiedTables("select 'x\\'' ; delete from t --'"));
+    }
+
+    @Test
+    public void testTableName() {
+        assertEquals("reviews", SqlTables.tableName("Public.Reviews"));
+        assertEquals("My Table", SqlTables.tableName("\"My Table\""));
+        assertNull(SqlTables.tableName("(select 1)"));
+    }
+}
@@ -0,0 +1,57 @@
+package com.powerreviews.jdbc.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlTemplateTest {
+    @Test
+    public void testParse() {
+        SqlTemplate template = SqlTemplate.parse("select * from foo where a = ? and b in (?, ?)");
+
+        Assert.assertEquals(3, template.getParameterCount());
+        Assert.assertEquals("select * from foo where a = ", template.getSegment(0));
+        Assert.assertEquals(" and b in (", template.getSegment(1));
+        Assert.assertEquals(", ", template.getSegment(2));
+        Assert.assertEquals(")", template.getSegment(3));
+    }
+
+    @Test
+    public void testQuestionMarksInLiterals() {
+        String sql = "select '?', \"what?\", E'it\\'s ?', $$?$$, $tag$ ? $tag$ -- why?\n" +
+                "from foo /* where? /* nested? */ */ where a = ?";
+
+        SqlTemplate template = SqlTemplate.parse(sql);
+
+        Assert.assertEquals(1, template.getParameterCount());
+        Assert.assertEquals(sql.substring(0, sql.length() - 1), template.getSegment(0));
+        Assert.assertEquals("", template.getSegment(1));
+    }
+
+    @Test
+    public void testBackslashInLiteral() {
+        // As for the driver, the backslash escapes the quote and the literal ends after Brien
+        SqlTemplate template = SqlTemplate.parse("select * from t where name = 'O\\'Brien' and id = ? and note = 'a\\\\'");
+
+        Assert.assertEquals(1, template.getParameterCount());
+        Assert.assertEquals("select * from t where name = 'O\\'Brien' and id = ", template.getSegment(0));
+        Assert.assertEquals(" and note = 'a\\\\'", template.getSegment(1));
+    }
+
+    @Test
+    public void testFormat() {
+        SqlTemplate template = SqlTemplate.parse("select * from foo where a = ? and b = '{x}' and c = ?");
+
+        Assert.assertEquals("select * from foo where a = 1 and b = '{x}' and c = null",
+                template.format(new Object[]{"1", null}));
+        Assert.assertEquals("select * from foo where a = 1 and b = '{x}' and c = {1}",
+                template.format(new Object[]{"1"}));
+        Assert.assertEquals("select 1", SqlTemplate.parse("select 1").format(new Object[0]));
+    }
+
+    @Test
+    public void testMemoized() {
+        String sql = "select * from foo where a = ?";
+
+        Assert.assertSame(SqlTemplate.of(sql), SqlTemplate.of(new String(sql)));
+    }
+}
@@ -22,5 +22,28 @@ public class SqlUtilTest {
         String result2 = "select * from boo.foo as foo where foo.type = 'bee'";
 
         Assert.assertEquals(result2, SqlUtil.tokenizeStatement(statement2));
+
+        String statement3 = "select '?' as question, ? as answer -- ?";
+        String result3 = "select '?' as question, {0} as answer -- ?";
+
+        Assert.assertEquals(result3, SqlUtil.tokenizeStatement(statement3));
+    }
+
+    @Test
+    public void testIsReadOnlyQuery() {
+        Assert.assertTrue(SqlUtil.isReadOnlyQuery("select * from foo where bar = 'insert into'"));
+        Assert.assertTrue(SqlUtil.isReadOnlyQuery("/* report */ WITH t AS (SELECT 1) SELECT * FROM t;"));
+        Assert.assertTrue(SqlUtil.isReadOnlyQuery("(select 1) union (select 2)"));
+        Assert.assertTrue(SqlUtil.isReadOnlyQuery("select \"update\" from foo"));
+
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery("select * into bar from foo"));
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery("select 1; delete from foo"));
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery("insert into foo select * from bar"));
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery("show search_path"));
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery(""));
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery(null));
+        // The delete is a second statement when backslashes escape quotes
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery("select 'x\\'' ; delete from t --'"));
+        Assert.assertFalse(SqlUtil.isReadOnlyQuery("select * from t where a = 'C:\\'"));
     }
 }